@@ -4,12 +4,21 @@ import com.cgvsu.math.Vector3f;
 import com.cgvsu.model.Model;
 import com.cgvsu.objreader.ObjReader;
 import com.cgvsu.render_engine.Camera;
+import com.cgvsu.render_engine.RenderScheduler;
+import com.cgvsu.render_engine.RenderScheduler.DirtyFlag;
+import com.cgvsu.render_engine.processing.LodSet;
 import com.cgvsu.render_engine.processing.ModelProcessor;
-import com.cgvsu.render_engine.rendering.UnifiedRenderer;
+import com.cgvsu.render_engine.processing.VertexCacheOptimizer;
+import com.cgvsu.render_engine.processing.VertexWelder;
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rendering.FramePresenter;
+import com.cgvsu.render_engine.rendering.RenderSettings;
+import com.cgvsu.render_engine.rendering.RenderThread;
+import com.cgvsu.render_engine.rendering.ResolutionController;
 import com.cgvsu.render_engine.texture.Texture;
-import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import com.cgvsu.render_engine.texture.TextureManager;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.canvas.Canvas;
@@ -24,11 +33,14 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Set;
 
 public class GuiController {
 
     final private float TRANSLATION = 5.0F;
     final private float ROTATION = 5.0F;
+    // Через сколько после последнего движения камера считается остановившейся
+    final private double CAMERA_SETTLE_MILLIS = 200.0;
 
     @FXML
     private AnchorPane anchorPane;
@@ -55,9 +67,13 @@ public class GuiController {
     private Label statusLabel;
 
     private Model mesh = null;
-    private UnifiedRenderer renderer;
+    private RenderThread renderThread;
+    private FramePresenter framePresenter;
+    private RenderSettings renderSettings;
+    private ResolutionController resolutionController;
+    private PauseTransition cameraSettleTimer;
     private Camera camera;
-    private Timeline timeline;
+    private RenderScheduler renderScheduler;
     private ModelProcessor modelProcessor;
 
     // Текущий цвет заливки
@@ -66,6 +82,8 @@ public class GuiController {
     private float modelScale = 1.0f;
     // Текущая текстура
     private Texture currentTexture = null;
+    // Свет привязан к камере
+    private boolean lightFollowsCamera = true;
 
     @FXML
     private void initialize() {
@@ -81,30 +99,44 @@ public class GuiController {
                 0.01F,                        // Near plane
                 100.0F                        // Far plane
         );
-        renderer = new UnifiedRenderer();
+        // Настройки живут в UI-потоке, поток рендера получает их копию на каждый кадр
+        renderSettings = new RenderSettings();
+        framePresenter = new FramePresenter();
+        resolutionController = new ResolutionController();
+
+        // После остановки камеры дорисовываем кадр в полном разрешении
+        cameraSettleTimer = new PauseTransition(Duration.millis(CAMERA_SETTLE_MILLIS));
+        cameraSettleTimer.setOnFinished(event -> {
+            resolutionController.setCameraMoving(false);
+            requestRender(DirtyFlag.SETTINGS);
+        });
+        renderThread = new RenderThread(
+                () -> Platform.runLater(this::presentFrame),
+                e -> Platform.runLater(() -> {
+                    updateStatus("Rendering error: " + e.getMessage());
+                    e.printStackTrace();
+                }));
         modelProcessor = new ModelProcessor();
+        // Далекая модель рисуется упрощенной копией
+        modelProcessor.setBuildLods(true);
 
         // Настройка обработчиков изменения размеров canvas
         anchorPane.prefWidthProperty().addListener((ov, oldValue, newValue) -> {
             canvas.setWidth(newValue.doubleValue());
             updateCameraAspectRatio();
+            requestRender(DirtyFlag.VIEWPORT);
         });
 
         anchorPane.prefHeightProperty().addListener((ov, oldValue, newValue) -> {
             canvas.setHeight(newValue.doubleValue());
             updateCameraAspectRatio();
+            requestRender(DirtyFlag.VIEWPORT);
         });
 
-        // Инициализация таймлайна для анимации
-        timeline = new Timeline();
-        timeline.setCycleCount(Animation.INDEFINITE);
-
-        KeyFrame frame = new KeyFrame(Duration.millis(32), event -> {
-            renderFrame();
-        });
-
-        timeline.getKeyFrames().add(frame);
-        timeline.play();
+        // Кадр рисуется только при изменениях, а не по фиксированному таймеру
+        renderScheduler = new RenderScheduler(this::renderFrame);
+        updateRenderSettings();
+        renderScheduler.invalidateAll();
 
         updateStatus("Ready to load model. Use File -> Load Model");
     }
@@ -144,52 +176,67 @@ public class GuiController {
 
         colorPicker.setOnAction(event -> {
             fillColor = colorPicker.getValue();
-            renderer.setSolidColor(fillColor);
+            renderSettings.setSolidColor(fillColor);
+            requestRender(DirtyFlag.SETTINGS);
             updateStatus("Color changed to: " + fillColor.toString());
         });
 
         scaleSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
             modelScale = newVal.floatValue();
+            requestRender(DirtyFlag.MODEL);
             updateStatus(String.format("Model scale: %.2f", modelScale));
         });
     }
 
-    private void renderFrame() {
+    private void renderFrame(Set<DirtyFlag> changes) {
         double width = canvas.getWidth();
         double height = canvas.getHeight();
 
         if (width <= 0 || height <= 0) return;
 
-        if (mesh != null) {
-            try {
-                updateRenderSettings();
+        if (changes.contains(DirtyFlag.CAMERA)) {
+            resolutionController.setCameraMoving(true);
+            cameraSettleTimer.playFromStart();
+        }
 
-                renderer.render(
-                        canvas.getGraphicsContext2D(),
-                        camera,
-                        mesh,
-                        (int) width,
-                        (int) height
-                );
+        RenderSettings frameSettings = renderSettings.copy();
+        frameSettings.setResolutionScale(resolutionController.update(renderSettings));
 
-            } catch (Exception e) {
-                updateStatus("Rendering error: " + e.getMessage());
-                e.printStackTrace();
-            }
-        } else {
-            // Если нет модели, просто очищаем экран
-            canvas.getGraphicsContext2D().clearRect(0, 0, width, height);
-        }
+        // Пока камера стоит, поток рендера сам постепенно улучшает кадр
+        boolean refine = !resolutionController.isCameraMoving();
+
+        // Отдаем потоку рендера снимок состояния и сразу возвращаемся
+        renderThread.submit(new RenderThread.FrameRequest(
+                camera.copy(),
+                mesh,
+                frameSettings,
+                currentTexture,
+                lightFollowsCamera,
+                (int) width,
+                (int) height,
+                refine
+        ));
+    }
+
+    private void presentFrame() {
+        FrameBuffer frame = renderThread.takeCompletedFrame();
+        if (frame == null) return;
+
+        resolutionController.onFrameRendered(
+                renderThread.getLastFrameNanos(), renderThread.getLastFrameScale());
+        framePresenter.present(canvas.getGraphicsContext2D(), frame);
+        renderThread.recycle(frame);
     }
 
     private void updateRenderSettings() {
-        if (renderer == null) return;
+        if (renderSettings == null) return;
 
         // Обновляем все настройки рендеринга
-        renderer.getRenderSettings().setDrawWireframe(wireframeCheckBox.isSelected());
-        renderer.getRenderSettings().setUseTexture(textureCheckBox.isSelected());
-        renderer.getRenderSettings().setUseLighting(lightingCheckBox.isSelected());
-        renderer.getRenderSettings().setSolidColor(fillColor);
+        renderSettings.setDrawWireframe(wireframeCheckBox.isSelected());
+        renderSettings.setUseTexture(textureCheckBox.isSelected());
+        renderSettings.setUseLighting(lightingCheckBox.isSelected());
+        renderSettings.setSolidColor(fillColor);
+        requestRender(DirtyFlag.SETTINGS);
 
         // Обновляем статус в зависимости от выбранных опций
         StringBuilder mode = new StringBuilder("Mode: ");
@@ -214,6 +261,12 @@ public class GuiController {
         }
     }
 
+    private void requestRender(DirtyFlag flag) {
+        if (renderScheduler != null) {
+            renderScheduler.invalidate(flag);
+        }
+    }
+
     private void updateStatus(String message) {
         if (statusLabel != null) {
             statusLabel.setText(message);
@@ -247,17 +300,24 @@ public class GuiController {
                 mesh = modelProcessor.processModel(mesh);
 
                 int triangulatedPolygonCount = mesh.getPolygons().size();
+                VertexWelder.WeldReport weldReport = modelProcessor.getLastWeldReport();
+                VertexCacheOptimizer.CacheReport cacheReport = modelProcessor.getLastCacheReport();
+                LodSet lodSet = mesh.getLodSet();
 
                 updateStatus(String.format(
                         "Model loaded: %s\n" +
                                 "Original: Vertices: %d, Polygons: %d\n" +
-                                "Triangulated: Polygons: %d",
+                                "Triangulated: Polygons: %d%s%s%s",
                         file.getName(),
                         vertexCount,
                         polygonCount,
-                        triangulatedPolygonCount));
+                        triangulatedPolygonCount,
+                        weldReport != null ? "\nWelded: " + weldReport : "",
+                        cacheReport != null ? "\nVertex cache: " + cacheReport : "",
+                        lodSet != null ? "\nLOD levels: " + lodSet.getLevelCount() : ""));
                 // Центрирование камеры на модели
                 centerCameraOnModel();
+                requestRender(DirtyFlag.MODEL);
 
             } else {
                 updateStatus("Error: Failed to load model");
@@ -271,6 +331,7 @@ public class GuiController {
             updateStatus("Model loading error: " + e.getMessage());
             e.printStackTrace();
             mesh = null;
+            requestRender(DirtyFlag.MODEL);
         }
     }
 
@@ -311,6 +372,7 @@ public class GuiController {
 
         camera.setPosition(new Vector3f(centerX, centerY + sizeY * 0.3f, centerZ + cameraDistance));
         camera.setTarget(new Vector3f(centerX, centerY, centerZ));
+        requestRender(DirtyFlag.CAMERA);
 
         updateStatus(String.format(
                 "Model centered. Size: %.1f x %.1f x %.1f",
@@ -327,8 +389,8 @@ public class GuiController {
         File file = fileChooser.showOpenDialog(canvas.getScene().getWindow());
         if (file != null) {
             try {
-                // Загружаем текстуру через UnifiedRenderer
-                renderer.loadTexture(file.getAbsolutePath());
+                // Загружаем текстуру, поток рендера получит ее со следующим кадром
+                currentTexture = TextureManager.getInstance().loadTexture(file.getAbsolutePath());
                 textureCheckBox.setSelected(true);
                 updateRenderSettings();
                 updateStatus("Texture loaded: " + file.getName());
@@ -353,6 +415,7 @@ public class GuiController {
                     0.01F,
                     100.0F
             );
+            requestRender(DirtyFlag.CAMERA);
         }
 
         // Сброс настроек
@@ -360,14 +423,16 @@ public class GuiController {
         scaleSlider.setValue(1.0);
         fillColor = Color.LIGHTBLUE;
         colorPicker.setValue(fillColor);
-        renderer.setSolidColor(fillColor);
+        renderSettings.setSolidColor(fillColor);
+        requestRender(DirtyFlag.SETTINGS);
 
         updateStatus("View reset");
     }
 
     @FXML
     private void onExitMenuItemClick() {
-        timeline.stop();
+        renderScheduler.stop();
+        renderThread.shutdown();
         Stage stage = (Stage) canvas.getScene().getWindow();
         stage.close();
     }
@@ -395,6 +460,7 @@ public class GuiController {
     public void handleCameraForward(ActionEvent actionEvent) {
         Vector3f direction = new Vector3f(0, 0, -TRANSLATION);
         camera.movePosition(direction);
+        requestRender(DirtyFlag.CAMERA);
         updateStatus("Camera: forward");
     }
 
@@ -402,6 +468,7 @@ public class GuiController {
     public void handleCameraBackward(ActionEvent actionEvent) {
         Vector3f direction = new Vector3f(0, 0, TRANSLATION);
         camera.movePosition(direction);
+        requestRender(DirtyFlag.CAMERA);
         updateStatus("Camera: backward");
     }
 
@@ -409,6 +476,7 @@ public class GuiController {
     public void handleCameraLeft(ActionEvent actionEvent) {
         Vector3f direction = new Vector3f(-TRANSLATION, 0, 0);
         camera.movePosition(direction);
+        requestRender(DirtyFlag.CAMERA);
         updateStatus("Camera: left");
     }
 
@@ -416,6 +484,7 @@ public class GuiController {
     public void handleCameraRight(ActionEvent actionEvent) {
         Vector3f direction = new Vector3f(TRANSLATION, 0, 0);
         camera.movePosition(direction);
+        requestRender(DirtyFlag.CAMERA);
         updateStatus("Camera: right");
     }
 
@@ -423,6 +492,7 @@ public class GuiController {
     public void handleCameraUp(ActionEvent actionEvent) {
         Vector3f direction = new Vector3f(0, TRANSLATION, 0);
         camera.movePosition(direction);
+        requestRender(DirtyFlag.CAMERA);
         updateStatus("Camera: up");
     }
 
@@ -430,6 +500,7 @@ public class GuiController {
     public void handleCameraDown(ActionEvent actionEvent) {
         Vector3f direction = new Vector3f(0, -TRANSLATION, 0);
         camera.movePosition(direction);
+        requestRender(DirtyFlag.CAMERA);
         updateStatus("Camera: down");
     }
 
@@ -461,6 +532,7 @@ public class GuiController {
     public void handleZoomIn(ActionEvent actionEvent) {
         float currentFov = camera.getFov();
         camera.setFov(currentFov * 0.9f);
+        requestRender(DirtyFlag.CAMERA);
         updateStatus("Zoom in");
     }
 
@@ -468,6 +540,7 @@ public class GuiController {
     public void handleZoomOut(ActionEvent actionEvent) {
         float currentFov = camera.getFov();
         camera.setFov(currentFov * 1.1f);
+        requestRender(DirtyFlag.CAMERA);
         updateStatus("Zoom out");
     }
 
@@ -496,6 +569,7 @@ public class GuiController {
         float newZ = target.getZ() + distance * (float) (Math.cos(yaw) * Math.cos(pitch));
 
         camera.setPosition(new Vector3f(newX, newY, newZ));
+        requestRender(DirtyFlag.CAMERA);
     }
 
     // ============ БЫСТРЫЕ КОМАНДЫ ============
@@ -542,18 +616,17 @@ public class GuiController {
 
     @FXML
     private void onClearTextureAction() {
-        renderer.setTexture(null);
+        currentTexture = null;
         textureCheckBox.setSelected(false);
+        requestRender(DirtyFlag.MODEL);
         updateRenderSettings();
         updateStatus("Texture cleared");
     }
 
     @FXML
     private void onToggleLightFollowCamera() {
-        if (renderer != null && renderer.getSceneLighting() != null) {
-            boolean current = renderer.getSceneLighting().isLightFollowsCamera();
-            renderer.getSceneLighting().setLightFollowsCamera(!current);
-            updateStatus("Light follows camera: " + (!current ? "ON" : "OFF"));
-        }
+        lightFollowsCamera = !lightFollowsCamera;
+        requestRender(DirtyFlag.LIGHTS);
+        updateStatus("Light follows camera: " + (lightFollowsCamera ? "ON" : "OFF"));
     }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.cgvsu.math;
+
+/**
+ * Пакетное преобразование точек, хранящихся структурой массивов (x[], y[], z[]),
+ * на отрезке [from, to). Формулы и порядок операций те же, что у
+ * {@link Matrix4f#multiplyMatrix4ByVector3} и {@link Matrix4f#vertexToPoint}, поэтому результат
+ * совпадает с поштучным преобразованием до бита.
+ */
+interface BatchTransforms {
+
+    void transformPoints(Matrix4f m, float[] x, float[] y, float[] z,
+                         float[] outX, float[] outY, float[] outZ, int from, int to);
+
+    void projectPoints(Matrix4f m, float[] x, float[] y, float[] z,
+                       float[] screenX, float[] screenY, float[] depth, int from, int to,
+                       int width, int height);
+
+    void transformDirections(Matrix4f m, float[] x, float[] y, float[] z,
+                             float[] outX, float[] outY, float[] outZ, int from, int to);
+}
@@ -1,6 +1,13 @@
 package com.cgvsu.math;
 
+import java.util.stream.IntStream;
+
 public class Matrix4f {
+    // Пакетные преобразования: с этого числа точек массив делится на части по ядрам
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int PARALLEL_CHUNK = 1 << 14;
+
+    private static final BatchTransforms BATCH_TRANSFORMS = loadBatchTransforms();
 
     public float m00, m01, m02, m03;
     public float m10, m11, m12, m13;
@@ -243,11 +250,77 @@ public class Matrix4f {
     }
 
     public static Vector3f multiplyMatrix4ByVector3(final Matrix4f matrix, final Vector3f vertex) {
-        final float x = (float) ((vertex.getX() * matrix.m00) + (vertex.getY() * matrix.m10) + (vertex.getZ() * matrix.m20) + matrix.m30);
-        final float y = (float) ((vertex.getX() * matrix.m01) + (vertex.getY() * matrix.m11) + (vertex.getZ() * matrix.m21) + matrix.m31);
-        final float z = (float) ((vertex.getX() * matrix.m02) + (vertex.getY() * matrix.m12) + (vertex.getZ() * matrix.m22) + matrix.m32);
-        final float w = (float) ((vertex.getX() * matrix.m03) + (vertex.getY() * matrix.m13) + (vertex.getZ() * matrix.m23) + matrix.m33);
-        return new Vector3f(x / w, y / w, z / w);
+        return matrix.transformPoint(vertex.getX(), vertex.getY(), vertex.getZ(), new Vector3f());
+    }
+
+    /**
+     * Точка (x, y, z, 1), умноженная на матрицу, с перспективным делением - в dest
+     * (то же, что {@link #multiplyMatrix4ByVector3}, но без создания объекта)
+     */
+    public Vector3f transformPoint(float x, float y, float z, Vector3f dest) {
+        float tx = x * m00 + y * m10 + z * m20 + m30;
+        float ty = x * m01 + y * m11 + z * m21 + m31;
+        float tz = x * m02 + y * m12 + z * m22 + m32;
+        float tw = x * m03 + y * m13 + z * m23 + m33;
+        return dest.set(tx / tw, ty / tw, tz / tw);
+    }
+
+    /**
+     * Направление (x, y, z, 0), умноженное на матрицу, - в dest, без нормализации
+     */
+    public Vector3f transformDirection(float x, float y, float z, Vector3f dest) {
+        return dest.set(
+                x * m00 + y * m10 + z * m20,
+                x * m01 + y * m11 + z * m21,
+                x * m02 + y * m12 + z * m22);
+    }
+
+    /**
+     * Произведение a * b в dest; dest может совпадать с a или b
+     */
+    public static Matrix4f mul(Matrix4f a, Matrix4f b, Matrix4f dest) {
+        if (a == null || b == null || dest == null) {
+            throw new IllegalArgumentException("Матрица не может быть null");
+        }
+        float t00 = a.m00 * b.m00 + a.m01 * b.m10 + a.m02 * b.m20 + a.m03 * b.m30;
+        float t01 = a.m00 * b.m01 + a.m01 * b.m11 + a.m02 * b.m21 + a.m03 * b.m31;
+        float t02 = a.m00 * b.m02 + a.m01 * b.m12 + a.m02 * b.m22 + a.m03 * b.m32;
+        float t03 = a.m00 * b.m03 + a.m01 * b.m13 + a.m02 * b.m23 + a.m03 * b.m33;
+
+        float t10 = a.m10 * b.m00 + a.m11 * b.m10 + a.m12 * b.m20 + a.m13 * b.m30;
+        float t11 = a.m10 * b.m01 + a.m11 * b.m11 + a.m12 * b.m21 + a.m13 * b.m31;
+        float t12 = a.m10 * b.m02 + a.m11 * b.m12 + a.m12 * b.m22 + a.m13 * b.m32;
+        float t13 = a.m10 * b.m03 + a.m11 * b.m13 + a.m12 * b.m23 + a.m13 * b.m33;
+
+        float t20 = a.m20 * b.m00 + a.m21 * b.m10 + a.m22 * b.m20 + a.m23 * b.m30;
+        float t21 = a.m20 * b.m01 + a.m21 * b.m11 + a.m22 * b.m21 + a.m23 * b.m31;
+        float t22 = a.m20 * b.m02 + a.m21 * b.m12 + a.m22 * b.m22 + a.m23 * b.m32;
+        float t23 = a.m20 * b.m03 + a.m21 * b.m13 + a.m22 * b.m23 + a.m23 * b.m33;
+
+        float t30 = a.m30 * b.m00 + a.m31 * b.m10 + a.m32 * b.m20 + a.m33 * b.m30;
+        float t31 = a.m30 * b.m01 + a.m31 * b.m11 + a.m32 * b.m21 + a.m33 * b.m31;
+        float t32 = a.m30 * b.m02 + a.m31 * b.m12 + a.m32 * b.m22 + a.m33 * b.m32;
+        float t33 = a.m30 * b.m03 + a.m31 * b.m13 + a.m32 * b.m23 + a.m33 * b.m33;
+
+        dest.m00 = t00; dest.m01 = t01; dest.m02 = t02; dest.m03 = t03;
+        dest.m10 = t10; dest.m11 = t11; dest.m12 = t12; dest.m13 = t13;
+        dest.m20 = t20; dest.m21 = t21; dest.m22 = t22; dest.m23 = t23;
+        dest.m30 = t30; dest.m31 = t31; dest.m32 = t32; dest.m33 = t33;
+        return dest;
+    }
+
+    /**
+     * Копирует элементы other в эту матрицу
+     */
+    public Matrix4f set(Matrix4f other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Матрица не может быть null");
+        }
+        m00 = other.m00; m01 = other.m01; m02 = other.m02; m03 = other.m03;
+        m10 = other.m10; m11 = other.m11; m12 = other.m12; m13 = other.m13;
+        m20 = other.m20; m21 = other.m21; m22 = other.m22; m23 = other.m23;
+        m30 = other.m30; m31 = other.m31; m32 = other.m32; m33 = other.m33;
+        return this;
     }
 
     public static Vector3f transformNormal(Vector3f normal, Matrix4f matrix) {
@@ -264,6 +337,97 @@ public class Matrix4f {
         return new javax.vecmath.Point2f((float) (vertex.getX() * width + width / 2.0F), (float) (-vertex.getY() * height + height / 2.0F));
     }
 
+    /**
+     * Преобразовать массив точек (x[i], y[i], z[i]) с перспективным делением,
+     * как {@link #multiplyMatrix4ByVector3}. Выходные массивы могут совпадать с входными.
+     */
+    public void transformPoints(float[] x, float[] y, float[] z,
+                                float[] outX, float[] outY, float[] outZ, int count) {
+        checkBatch(count, x, y, z, outX, outY, outZ);
+        forEachChunk(count, (from, to) -> BATCH_TRANSFORMS.transformPoints(
+                this, x, y, z, outX, outY, outZ, from, to));
+    }
+
+    /**
+     * Преобразовать массив точек матрицей модель-вид-проекция и перевести на экран,
+     * как {@link #multiplyMatrix4ByVector3} и затем {@link #vertexToPoint}:
+     * screenX, screenY - пиксели, depth - глубина после деления на w.
+     */
+    public void projectPoints(float[] x, float[] y, float[] z,
+                              float[] screenX, float[] screenY, float[] depth,
+                              int count, int width, int height) {
+        checkBatch(count, x, y, z, screenX, screenY, depth);
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Размер экрана должен быть положительным: " + width + "x" + height);
+        }
+        forEachChunk(count, (from, to) -> BATCH_TRANSFORMS.projectPoints(
+                this, x, y, z, screenX, screenY, depth, from, to, width, height));
+    }
+
+    /**
+     * Преобразовать массив направлений (нормалей) левой верхней частью 3x3, без сдвига
+     * и без нормализации
+     */
+    public void transformDirections(float[] x, float[] y, float[] z,
+                                    float[] outX, float[] outY, float[] outZ, int count) {
+        checkBatch(count, x, y, z, outX, outY, outZ);
+        forEachChunk(count, (from, to) -> BATCH_TRANSFORMS.transformDirections(
+                this, x, y, z, outX, outY, outZ, from, to));
+    }
+
+    /**
+     * Используется ли для пакетных преобразований Vector API
+     */
+    public static boolean isBatchVectorized() {
+        return BATCH_TRANSFORMS instanceof VectorBatchTransforms;
+    }
+
+    private static void checkBatch(int count, float[]... arrays) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Число точек не может быть отрицательным: " + count);
+        }
+        for (float[] array : arrays) {
+            if (array == null) {
+                throw new IllegalArgumentException("Массив не может быть null");
+            }
+            if (array.length < count) {
+                throw new IllegalArgumentException("Массив должен содержать минимум " + count + " элементов");
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+
+    private static void forEachChunk(int count, RangeTask task) {
+        if (count < PARALLEL_THRESHOLD) {
+            task.run(0, count);
+            return;
+        }
+        int chunks = (count + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk ->
+                task.run(chunk * PARALLEL_CHUNK, Math.min(count, (chunk + 1) * PARALLEL_CHUNK)));
+    }
+
+    /**
+     * Векторная реализация подключается, только если модуль jdk.incubator.vector есть
+     * в загрузочном слое (запуск с --add-modules jdk.incubator.vector)
+     */
+    private static BatchTransforms loadBatchTransforms() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (BatchTransforms) Class.forName(Matrix4f.class.getPackageName() + ".VectorBatchTransforms")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Векторы уже 8 float или модуль не загрузился - обычный цикл
+            }
+        }
+        return new ScalarBatchTransforms();
+    }
+
     public Vector3f transformVector(Vector3f vector) {
         if (vector == null) {
             throw new IllegalArgumentException("Вектор не может быть null");
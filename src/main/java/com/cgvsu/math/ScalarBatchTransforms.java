@@ -0,0 +1,51 @@
+package com.cgvsu.math;
+
+/**
+ * Пакетные преобразования обычным циклом (без модуля jdk.incubator.vector и для хвостов векторных)
+ */
+final class ScalarBatchTransforms implements BatchTransforms {
+
+    @Override
+    public void transformPoints(Matrix4f m, float[] x, float[] y, float[] z,
+                                float[] outX, float[] outY, float[] outZ, int from, int to) {
+        for (int i = from; i < to; i++) {
+            float vx = x[i], vy = y[i], vz = z[i];
+            float tx = vx * m.m00 + vy * m.m10 + vz * m.m20 + m.m30;
+            float ty = vx * m.m01 + vy * m.m11 + vz * m.m21 + m.m31;
+            float tz = vx * m.m02 + vy * m.m12 + vz * m.m22 + m.m32;
+            float tw = vx * m.m03 + vy * m.m13 + vz * m.m23 + m.m33;
+            outX[i] = tx / tw;
+            outY[i] = ty / tw;
+            outZ[i] = tz / tw;
+        }
+    }
+
+    @Override
+    public void projectPoints(Matrix4f m, float[] x, float[] y, float[] z,
+                              float[] screenX, float[] screenY, float[] depth, int from, int to,
+                              int width, int height) {
+        float halfWidth = width / 2.0f;
+        float halfHeight = height / 2.0f;
+        for (int i = from; i < to; i++) {
+            float vx = x[i], vy = y[i], vz = z[i];
+            float tx = vx * m.m00 + vy * m.m10 + vz * m.m20 + m.m30;
+            float ty = vx * m.m01 + vy * m.m11 + vz * m.m21 + m.m31;
+            float tz = vx * m.m02 + vy * m.m12 + vz * m.m22 + m.m32;
+            float tw = vx * m.m03 + vy * m.m13 + vz * m.m23 + m.m33;
+            screenX[i] = tx / tw * width + halfWidth;
+            screenY[i] = -(ty / tw) * height + halfHeight;
+            depth[i] = tz / tw;
+        }
+    }
+
+    @Override
+    public void transformDirections(Matrix4f m, float[] x, float[] y, float[] z,
+                                    float[] outX, float[] outY, float[] outZ, int from, int to) {
+        for (int i = from; i < to; i++) {
+            float vx = x[i], vy = y[i], vz = z[i];
+            outX[i] = vx * m.m00 + vy * m.m10 + vz * m.m20;
+            outY[i] = vx * m.m01 + vy * m.m11 + vz * m.m21;
+            outZ[i] = vx * m.m02 + vy * m.m12 + vz * m.m22;
+        }
+    }
+}
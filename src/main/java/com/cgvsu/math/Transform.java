@@ -5,6 +5,11 @@ public class Transform {
     private Vector3f rotation;        // Углы вращения вокруг осей X, Y, Z (в радианах)
     private Vector3f scale;          // Масштабирование по осям X, Y, Z
 
+    // Кеш матрицы: пересобирается, только если изменились позиция, вращение или масштаб
+    private final float[] cachedKey = new float[9];
+    private Matrix4f cachedMatrix;
+    private long version = 0;
+
     public Transform() {
         this.position = new Vector3f(0.0, 0.0, 0.0);
         this.rotation = new Vector3f(0.0, 0.0, 0.0);
@@ -17,7 +22,40 @@ public class Transform {
         this.scale = scale != null ? scale : new Vector3f(1.0, 1.0, 1.0);
     }
 
+    /**
+     * Матрица преобразования (копия закешированной, ее можно менять)
+     */
     public Matrix4f getMatrix() {
+        ensureMatrix();
+        return new Matrix4f(cachedMatrix);
+    }
+
+    /**
+     * Счетчик изменений: растет каждый раз, когда матрица пересобирается
+     */
+    public long getVersion() {
+        ensureMatrix();
+        return version;
+    }
+
+    private void ensureMatrix() {
+        if (cachedMatrix != null
+                && cachedKey[0] == position.getX() && cachedKey[1] == position.getY()
+                && cachedKey[2] == position.getZ() && cachedKey[3] == rotation.getX()
+                && cachedKey[4] == rotation.getY() && cachedKey[5] == rotation.getZ()
+                && cachedKey[6] == scale.getX() && cachedKey[7] == scale.getY()
+                && cachedKey[8] == scale.getZ()) {
+            return;
+        }
+
+        cachedKey[0] = position.getX(); cachedKey[1] = position.getY(); cachedKey[2] = position.getZ();
+        cachedKey[3] = rotation.getX(); cachedKey[4] = rotation.getY(); cachedKey[5] = rotation.getZ();
+        cachedKey[6] = scale.getX(); cachedKey[7] = scale.getY(); cachedKey[8] = scale.getZ();
+        cachedMatrix = buildMatrix();
+        version++;
+    }
+
+    private Matrix4f buildMatrix() {
         Matrix4f scaleMatrix = Matrix4f.scale(scale.getX(), scale.getY(), scale.getZ());
         Matrix4f rotationMatrix = getRotationMatrix();
         Matrix4f translationMatrix = Matrix4f.translate(position);
@@ -45,8 +83,8 @@ public class Transform {
         if (point == null) {
             throw new IllegalArgumentException("Точка не может быть null");
         }
-        Matrix4f transformMatrix = getMatrix();
-        return transformMatrix.transformVector(point);
+        ensureMatrix();
+        return cachedMatrix.transformVector(point);
     }
 
 
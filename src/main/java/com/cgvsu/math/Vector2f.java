@@ -18,6 +18,17 @@ public class Vector2f {
         this.y = y;
     }
 
+    /**
+     * Задать координаты
+     *
+     * @return этот же вектор
+     */
+    public Vector2f set(float x, float y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
     public float getX() {
         return (float) x;
     }
@@ -39,6 +39,25 @@ public class Vector3f {
         this.z = z;
     }
 
+    /**
+     * Задать координаты
+     *
+     * @return этот же вектор
+     */
+    public Vector3f set(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    public Vector3f set(Vector3f other) {
+        this.x = other.x;
+        this.y = other.y;
+        this.z = other.z;
+        return this;
+    }
+
     public Vector3f add(Vector3f other) {
         if (other == null) {
             throw new IllegalArgumentException("Вектор не может быть null");
@@ -150,6 +169,53 @@ public class Vector3f {
         this.setZ(resZ);
     }
 
+    // Операции без создания объектов для горячих циклов: результат пишется в dest
+    // (dest может быть тем же объектом, что и аргументы), вычисления во float
+
+    /**
+     * this + other в dest
+     */
+    public Vector3f addInto(Vector3f other, Vector3f dest) {
+        return dest.set(getX() + other.getX(), getY() + other.getY(), getZ() + other.getZ());
+    }
+
+    /**
+     * this - other в dest
+     */
+    public Vector3f subInto(Vector3f other, Vector3f dest) {
+        return dest.set(getX() - other.getX(), getY() - other.getY(), getZ() - other.getZ());
+    }
+
+    /**
+     * this * scalar в dest
+     */
+    public Vector3f scaleInto(float scalar, Vector3f dest) {
+        return dest.set(getX() * scalar, getY() * scalar, getZ() * scalar);
+    }
+
+    /**
+     * Векторное произведение this x other в dest
+     */
+    public Vector3f crossInto(Vector3f other, Vector3f dest) {
+        float ax = getX(), ay = getY(), az = getZ();
+        float bx = other.getX(), by = other.getY(), bz = other.getZ();
+        return dest.set(ay * bz - az * by, az * bx - ax * bz, ax * by - ay * bx);
+    }
+
+    /**
+     * Единичный вектор того же направления в dest. В отличие от {@link #normalize()}
+     * нулевой вектор не считается ошибкой: он копируется в dest как есть.
+     */
+    public Vector3f normalizeInto(Vector3f dest) {
+        float vx = getX(), vy = getY(), vz = getZ();
+        float lengthSquared = vx * vx + vy * vy + vz * vz;
+        if (lengthSquared == 0.0f) {
+            return dest.set(vx, vy, vz);
+        }
+        float inverseLength = (float) (1.0 / Math.sqrt(lengthSquared));
+        return dest.set(vx * inverseLength, vy * inverseLength, vz * inverseLength);
+    }
+
     public double distance(Vector3f other) {
         double dx = this.x - other.x;
         double dy = this.y - other.y;
@@ -159,6 +225,15 @@ public class Vector3f {
     }
 
 
+    /**
+     * Ненормированная нормаль треугольника (v2 - v1) x (v3 - v1) в dest, во float
+     */
+    public static Vector3f calculatePolygonNormal(Vector3f v1, Vector3f v2, Vector3f v3, Vector3f dest) {
+        float e1x = v2.getX() - v1.getX(), e1y = v2.getY() - v1.getY(), e1z = v2.getZ() - v1.getZ();
+        float e2x = v3.getX() - v1.getX(), e2y = v3.getY() - v1.getY(), e2z = v3.getZ() - v1.getZ();
+        return dest.set(e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x);
+    }
+
     public static Vector3f calculatePolygonNormal(Vector3f v1, Vector3f v2, Vector3f v3) {
         Vector3f edge1 = new Vector3f(
                 v2.getX() - v1.getX(),
@@ -0,0 +1,79 @@
+package com.cgvsu.math;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Пакетные преобразования на Java Vector API: 8 или 16 точек за шаг, остаток - обычным циклом.
+ * Загружается {@link Matrix4f} по имени, только если модуль jdk.incubator.vector подключен.
+ */
+final class VectorBatchTransforms implements BatchTransforms {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    private final ScalarBatchTransforms tail = new ScalarBatchTransforms();
+
+    VectorBatchTransforms() {
+        if (FLOATS.length() < 8) {
+            throw new IllegalStateException("Preferred vector species too narrow: " + FLOATS);
+        }
+    }
+
+    @Override
+    public void transformPoints(Matrix4f m, float[] x, float[] y, float[] z,
+                                float[] outX, float[] outY, float[] outZ, int from, int to) {
+        int end = from + FLOATS.loopBound(to - from);
+        for (int i = from; i < end; i += FLOATS.length()) {
+            FloatVector vx = FloatVector.fromArray(FLOATS, x, i);
+            FloatVector vy = FloatVector.fromArray(FLOATS, y, i);
+            FloatVector vz = FloatVector.fromArray(FLOATS, z, i);
+            FloatVector tw = row(vx, vy, vz, m.m03, m.m13, m.m23).add(m.m33);
+            row(vx, vy, vz, m.m00, m.m10, m.m20).add(m.m30).div(tw).intoArray(outX, i);
+            row(vx, vy, vz, m.m01, m.m11, m.m21).add(m.m31).div(tw).intoArray(outY, i);
+            row(vx, vy, vz, m.m02, m.m12, m.m22).add(m.m32).div(tw).intoArray(outZ, i);
+        }
+        tail.transformPoints(m, x, y, z, outX, outY, outZ, end, to);
+    }
+
+    @Override
+    public void projectPoints(Matrix4f m, float[] x, float[] y, float[] z,
+                              float[] screenX, float[] screenY, float[] depth, int from, int to,
+                              int width, int height) {
+        float halfWidth = width / 2.0f;
+        float halfHeight = height / 2.0f;
+        int end = from + FLOATS.loopBound(to - from);
+        for (int i = from; i < end; i += FLOATS.length()) {
+            FloatVector vx = FloatVector.fromArray(FLOATS, x, i);
+            FloatVector vy = FloatVector.fromArray(FLOATS, y, i);
+            FloatVector vz = FloatVector.fromArray(FLOATS, z, i);
+            FloatVector tw = row(vx, vy, vz, m.m03, m.m13, m.m23).add(m.m33);
+            row(vx, vy, vz, m.m00, m.m10, m.m20).add(m.m30).div(tw)
+                    .mul(width).add(halfWidth).intoArray(screenX, i);
+            row(vx, vy, vz, m.m01, m.m11, m.m21).add(m.m31).div(tw)
+                    .neg().mul(height).add(halfHeight).intoArray(screenY, i);
+            row(vx, vy, vz, m.m02, m.m12, m.m22).add(m.m32).div(tw).intoArray(depth, i);
+        }
+        tail.projectPoints(m, x, y, z, screenX, screenY, depth, end, to, width, height);
+    }
+
+    @Override
+    public void transformDirections(Matrix4f m, float[] x, float[] y, float[] z,
+                                    float[] outX, float[] outY, float[] outZ, int from, int to) {
+        int end = from + FLOATS.loopBound(to - from);
+        for (int i = from; i < end; i += FLOATS.length()) {
+            FloatVector vx = FloatVector.fromArray(FLOATS, x, i);
+            FloatVector vy = FloatVector.fromArray(FLOATS, y, i);
+            FloatVector vz = FloatVector.fromArray(FLOATS, z, i);
+            row(vx, vy, vz, m.m00, m.m10, m.m20).intoArray(outX, i);
+            row(vx, vy, vz, m.m01, m.m11, m.m21).intoArray(outY, i);
+            row(vx, vy, vz, m.m02, m.m12, m.m22).intoArray(outZ, i);
+        }
+        tail.transformDirections(m, x, y, z, outX, outY, outZ, end, to);
+    }
+
+    /**
+     * x * a + y * b + z * c в том же порядке сложения, что и в скалярном коде
+     */
+    private static FloatVector row(FloatVector x, FloatVector y, FloatVector z, float a, float b, float c) {
+        return x.mul(a).add(y.mul(b)).add(z.mul(c));
+    }
+}
@@ -1,7 +1,9 @@
 package com.cgvsu.model;
+import com.cgvsu.math.Transform;
 import com.cgvsu.math.Vector2f;
 import com.cgvsu.math.Vector3f;
 import com.cgvsu.render_engine.lighting.Material;
+import com.cgvsu.render_engine.processing.LodSet;
 import com.cgvsu.render_engine.texture.Texture;
 import com.cgvsu.render_engine.texture.TextureManager;
 
@@ -15,6 +17,10 @@ public class Model {
     public ArrayList<Polygon> polygons = new ArrayList<Polygon>();
     private String texturePath = null;
     private Material material;
+    // Положение модели в сцене
+    private Transform transform = new Transform();
+    // Упрощенные копии для дальних планов (null - только исходная модель)
+    private LodSet lodSet;
 
     public Model(ArrayList<Vector3f> vertices, ArrayList<Vector2f> textureVertices,
                  ArrayList<Vector3f> normals, ArrayList<Polygon> polygons) {
@@ -85,4 +91,23 @@ public class Model {
     public void setMaterial(Material material) {
         this.material = material;
     }
+
+    public LodSet getLodSet() {
+        return lodSet;
+    }
+
+    public void setLodSet(LodSet lodSet) {
+        this.lodSet = lodSet;
+    }
+
+    public Transform getTransform() {
+        return transform;
+    }
+
+    public void setTransform(Transform transform) {
+        if (transform == null) {
+            throw new IllegalArgumentException("Transform cannot be null");
+        }
+        this.transform = transform;
+    }
 }
@@ -70,6 +70,17 @@ public class Camera {
         return GraphicConveyor.perspective(fov, aspectRatio, nearPlane, farPlane);
     }
 
+    /**
+     * Независимая копия камеры (снимок для потока рендера)
+     */
+    public Camera copy() {
+        return new Camera(
+                new Vector3f(position.getX(), position.getY(), position.getZ()),
+                new Vector3f(target.getX(), target.getY(), target.getZ()),
+                fov, aspectRatio, nearPlane, farPlane
+        );
+    }
+
     public void movePosition(Vector3f translation) {
         position.add(translation);
         target.add(translation);
@@ -0,0 +1,90 @@
+package com.cgvsu.render_engine;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Планировщик кадров с отслеживанием изменений.
+ * Кадр рисуется только если что-то поменялось (камера, модель, настройки, свет, размер холста).
+ * Все изменения, пришедшие между двумя импульсами AnimationTimer, объединяются в один кадр.
+ * Когда менять нечего, таймер останавливается, и приложение не тратит процессор.
+ */
+public class RenderScheduler {
+
+    public enum DirtyFlag {
+        CAMERA,
+        MODEL,
+        SETTINGS,
+        LIGHTS,
+        VIEWPORT
+    }
+
+    // Сколько пустых импульсов ждем перед остановкой таймера
+    private static final int IDLE_PULSES_BEFORE_STOP = 2;
+
+    private final Consumer<Set<DirtyFlag>> renderCallback;
+    private final EnumSet<DirtyFlag> dirtyFlags = EnumSet.noneOf(DirtyFlag.class);
+    private final AnimationTimer timer;
+
+    private boolean running = false;
+    private int idlePulses = 0;
+
+    public RenderScheduler(Consumer<Set<DirtyFlag>> renderCallback) {
+        if (renderCallback == null) {
+            throw new IllegalArgumentException("Render callback cannot be null");
+        }
+        this.renderCallback = renderCallback;
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                onPulse(now);
+            }
+        };
+    }
+
+    /**
+     * Отметить изменение. Сам кадр будет нарисован на ближайшем импульсе.
+     */
+    public void invalidate(DirtyFlag flag) {
+        dirtyFlags.add(flag);
+        ensureRunning();
+    }
+
+    public void invalidateAll() {
+        dirtyFlags.addAll(EnumSet.allOf(DirtyFlag.class));
+        ensureRunning();
+    }
+
+    public void stop() {
+        timer.stop();
+        running = false;
+        dirtyFlags.clear();
+    }
+
+    private void ensureRunning() {
+        idlePulses = 0;
+        if (!running) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    private void onPulse(long now) {
+        if (dirtyFlags.isEmpty()) {
+            // Ничего не изменилось - после нескольких пустых импульсов засыпаем
+            if (++idlePulses >= IDLE_PULSES_BEFORE_STOP) {
+                timer.stop();
+                running = false;
+            }
+            return;
+        }
+
+        idlePulses = 0;
+        EnumSet<DirtyFlag> frameFlags = EnumSet.copyOf(dirtyFlags);
+        dirtyFlags.clear();
+        renderCallback.accept(frameFlags);
+    }
+}
@@ -0,0 +1,319 @@
+package com.cgvsu.render_engine.lighting;
+
+import com.cgvsu.math.Vector3f;
+import javafx.scene.paint.Color;
+import java.util.List;
+
+/**
+ * Приближения быстрого режима освещения ({@link SceneLighting#setFastMath}).
+ *
+ * Параметры источников берутся из плоского снимка {@link Lights}, а не из объектов
+ * при каждом пикселе. Максимальные ошибки относительно точного пути:
+ * <ul>
+ *     <li>{@link #inverseLength} - нормализация умножением, ошибка в последнем знаке float;</li>
+ *     <li>таблица блика - абсолютная ошибка не больше s(s-1) / (8 * 2048^2), то есть
+ *     меньше 1e-4 при блеске 32 и меньше 2e-3 (половины единицы 8-битного канала) при блеске 256;</li>
+ *     <li>кривая затухания - абсолютная ошибка не больше 1e-4 (дальше {@link #ATTENUATION_LIMIT}
+ *     затухание считается по формуле).</li>
+ * </ul>
+ * Итоговый цвет в 8 битах отличается от точного не больше чем на 1, кроме точек на разрывах
+ * самой модели (n·L около 0, где блик обрывается, и край радиуса источника).
+ */
+final class FastLighting {
+    // Отрезков таблицы степени на [0, 1]
+    static final int SPECULAR_STEPS = 2048;
+    // Шаг кривой затухания по расстоянию и расстояние, до которого она строится
+    static final float ATTENUATION_STEP = 0.25f;
+    static final float ATTENUATION_LIMIT = 256.0f;
+
+    private FastLighting() {
+    }
+
+    /**
+     * Множитель нормализации 1 / |v| по квадрату длины; для нулевого вектора 0.
+     * Битовое приближение 1/sqrt здесь не выигрывает: аппаратный sqrt быстрее,
+     * экономия только в одном делении вместо трех.
+     */
+    static float inverseLength(float lengthSquared) {
+        return lengthSquared > 0 ? 1.0f / (float) Math.sqrt(lengthSquared) : 0.0f;
+    }
+
+    /**
+     * Значение кусочно-линейной таблицы в точке t (в шагах таблицы);
+     * t вне таблицы прижимается к ее концам
+     */
+    static float lookup(float[] values, float t) {
+        int steps = values.length - 1;
+        if (t <= 0) {
+            return values[0];
+        }
+        if (t >= steps) {
+            return values[steps];
+        }
+        int i = (int) t;
+        float a = values[i];
+        return a + (values[i + 1] - a) * (t - i);
+    }
+
+    /**
+     * Таблица x^shininess на [0, 1]
+     */
+    static Table specularTable(float shininess) {
+        float[] values = new float[SPECULAR_STEPS + 1];
+        for (int i = 0; i <= SPECULAR_STEPS; i++) {
+            float value = (float) Math.pow((double) i / SPECULAR_STEPS, shininess);
+            // Денормализованные числа во много раз замедляют арифметику, а в цвете не видны
+            values[i] = value < Float.MIN_NORMAL ? 0.0f : value;
+        }
+        return new Table(shininess, values);
+    }
+
+    /**
+     * Кривая затухания на [0, min(range, ATTENUATION_LIMIT)] с шагом ATTENUATION_STEP
+     */
+    static Table attenuationCurve(float range) {
+        int steps = (int) Math.ceil(Math.min(range, ATTENUATION_LIMIT) / ATTENUATION_STEP);
+        float[] values = new float[steps + 1];
+        for (int i = 0; i <= steps; i++) {
+            values[i] = LightSource.quadraticAttenuation(i * ATTENUATION_STEP);
+        }
+        return new Table(range, values);
+    }
+
+    /**
+     * Снимок источников сцены для быстрого режима: то же освещение, что
+     * {@link SceneLighting#calculateLighting}, по параметрам в массивах
+     */
+    static final class Lights {
+        private final int count;
+        // Направление на источник для направленных, позиция для остальных
+        private final float[] x, y, z;
+        // Направление прожектора
+        private final float[] spotX, spotY, spotZ;
+        // Цвет, умноженный на интенсивность
+        private final float[] red, green, blue;
+        private final boolean[] directional;
+        private final boolean[] attenuated;
+        private final boolean[] spot;
+        private final float[] range;
+        private final float[] spotCos;
+        private final float[][] attenuationCurves;
+
+        private Lights(int capacity) {
+            x = new float[capacity];
+            y = new float[capacity];
+            z = new float[capacity];
+            spotX = new float[capacity];
+            spotY = new float[capacity];
+            spotZ = new float[capacity];
+            red = new float[capacity];
+            green = new float[capacity];
+            blue = new float[capacity];
+            directional = new boolean[capacity];
+            attenuated = new boolean[capacity];
+            spot = new boolean[capacity];
+            range = new float[capacity];
+            spotCos = new float[capacity];
+            attenuationCurves = new float[capacity][];
+            count = capacity;
+        }
+
+        /**
+         * Снимок: первым идет ambient, затем остальные источники, кроме фоновых (как в SceneLighting)
+         */
+        static Lights of(LightSource ambientLight, List<LightSource> lights) {
+            int count = 1;
+            for (LightSource light : lights) {
+                if (light.getType() != LightSource.LightType.AMBIENT) {
+                    count++;
+                }
+            }
+            Lights snapshot = new Lights(count);
+            snapshot.set(0, ambientLight);
+            int i = 1;
+            for (LightSource light : lights) {
+                if (light.getType() != LightSource.LightType.AMBIENT) {
+                    snapshot.set(i++, light);
+                }
+            }
+            return snapshot;
+        }
+
+        private void set(int i, LightSource light) {
+            LightSource.LightType type = light.getType();
+            Vector3f direction = light.getDirection();
+            Vector3f position = light.getPosition();
+            directional[i] = type == LightSource.LightType.DIRECTIONAL;
+            if (directional[i]) {
+                x[i] = -direction.getX();
+                y[i] = -direction.getY();
+                z[i] = -direction.getZ();
+            } else {
+                x[i] = position.getX();
+                y[i] = position.getY();
+                z[i] = position.getZ();
+            }
+            spotX[i] = direction.getX();
+            spotY[i] = direction.getY();
+            spotZ[i] = direction.getZ();
+            Color color = light.getColor();
+            float intensity = light.getIntensity();
+            red[i] = (float) color.getRed() * intensity;
+            green[i] = (float) color.getGreen() * intensity;
+            blue[i] = (float) color.getBlue() * intensity;
+            attenuated[i] = type == LightSource.LightType.POINT || type == LightSource.LightType.SPOT;
+            spot[i] = type == LightSource.LightType.SPOT;
+            range[i] = light.getRange();
+            spotCos[i] = light.getSpotCos();
+            attenuationCurves[i] = attenuated[i] ? light.getAttenuationCurve() : null;
+        }
+
+        /**
+         * Освещение точки, результат без альфы в rgb[0..2]. Если lightCount не отрицательный,
+         * кроме ambient учитываются только источники с номерами из lightIndices
+         * (номера {@link LightCulling}, у которого тот же порядок источников).
+         * shadowMaps - карты теней в том же порядке или null
+         */
+        void shade(
+                Material material,
+                Vector3f position,
+                Vector3f normal,
+                Vector3f viewDir,
+                float baseR, float baseG, float baseB,
+                int[] lightIndices, int lightCount,
+                ShadowMap[] shadowMaps,
+                float[] rgb) {
+
+            float nx = normal.getX(), ny = normal.getY(), nz = normal.getZ();
+            float normalScale = inverseLength(nx * nx + ny * ny + nz * nz);
+            nx *= normalScale;
+            ny *= normalScale;
+            nz *= normalScale;
+            float vx = viewDir.getX(), vy = viewDir.getY(), vz = viewDir.getZ();
+            float viewScale = inverseLength(vx * vx + vy * vy + vz * vz);
+            vx *= viewScale;
+            vy *= viewScale;
+            vz *= viewScale;
+            float px = position.getX(), py = position.getY(), pz = position.getZ();
+
+            // Параметры материала общие для всех источников
+            float ambient = material.getAmbientCoefficient();
+            float ambientR = baseR * ambient;
+            float ambientG = baseG * ambient;
+            float ambientB = baseB * ambient;
+            float diffuseCoefficient = material.getDiffuseCoefficient();
+            float specularCoefficient = material.getSpecularCoefficient();
+            float[] specularTable = specularCoefficient > 0 ? material.getSpecularTable() : null;
+            Color specularColor = material.getSpecularColor();
+            float specularR = (float) specularColor.getRed();
+            float specularG = (float) specularColor.getGreen();
+            float specularB = (float) specularColor.getBlue();
+
+            float sumR = 0, sumG = 0, sumB = 0;
+            int steps = lightCount < 0 ? count : lightCount + 1;
+            for (int step = 0; step < steps; step++) {
+                int i = lightCount < 0 || step == 0 ? step : lightIndices[step - 1] + 1;
+                float r = ambientR;
+                float g = ambientG;
+                float b = ambientB;
+
+                // Для не направленных, как и в точном пути, направление от точки -normal
+                float lx = x[i], ly = y[i], lz = z[i];
+                if (!directional[i]) {
+                    lx += nx;
+                    ly += ny;
+                    lz += nz;
+                    float scale = inverseLength(lx * lx + ly * ly + lz * lz);
+                    lx *= scale;
+                    ly *= scale;
+                    lz *= scale;
+                }
+
+                float nDotL = nx * lx + ny * ly + nz * lz;
+                float factor = nDotL > 0 && attenuated[i] ? attenuation(i, px, py, pz) : 1.0f;
+                ShadowMap shadow = shadowMaps != null && i > 0 && i <= shadowMaps.length ? shadowMaps[i - 1] : null;
+                if (nDotL > 0 && factor != 0 && shadow != null) {
+                    factor *= shadow.visibility(px, py, pz, nx, ny, nz);
+                }
+                if (nDotL > 0 && factor != 0) {
+                    float diffuse = diffuseCoefficient * nDotL;
+                    float litR = baseR * red[i] * diffuse;
+                    float litG = baseG * green[i] * diffuse;
+                    float litB = baseB * blue[i] * diffuse;
+
+                    if (specularTable != null) {
+                        float twoNDotL = 2 * nDotL;
+                        float rDotV = (twoNDotL * nx - lx) * vx + (twoNDotL * ny - ly) * vy
+                                + (twoNDotL * nz - lz) * vz;
+                        float specular = specularCoefficient * lookup(specularTable, rDotV * SPECULAR_STEPS);
+                        litR += red[i] * specularR * specular;
+                        litG += green[i] * specularG * specular;
+                        litB += blue[i] * specularB * specular;
+                    }
+
+                    r += litR * factor;
+                    g += litG * factor;
+                    b += litB * factor;
+                }
+
+                r = Math.min(1.0f, Math.max(0, r));
+                g = Math.min(1.0f, Math.max(0, g));
+                b = Math.min(1.0f, Math.max(0, b));
+                if (i == 0) {
+                    sumR = r;
+                    sumG = g;
+                    sumB = b;
+                } else {
+                    sumR = Math.min(1.0f, sumR + r);
+                    sumG = Math.min(1.0f, sumG + g);
+                    sumB = Math.min(1.0f, sumB + b);
+                }
+            }
+            rgb[0] = sumR;
+            rgb[1] = sumG;
+            rgb[2] = sumB;
+        }
+
+        /**
+         * Затухание и фактор прожектора источника i для точки (px, py, pz)
+         */
+        private float attenuation(int i, float px, float py, float pz) {
+            float dx = px - x[i];
+            float dy = py - y[i];
+            float dz = pz - z[i];
+            float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (distance > range[i]) {
+                return 0.0f;
+            }
+            float factor = distance > ATTENUATION_LIMIT
+                    ? LightSource.quadraticAttenuation(distance)
+                    : lookup(attenuationCurves[i], distance * (1.0f / ATTENUATION_STEP));
+            if (spot[i]) {
+                if (distance == 0.0f) {
+                    return 0.0f;
+                }
+                float currentCos = -(dx * spotX[i] + dy * spotY[i] + dz * spotZ[i]) / distance;
+                float cosAngle = spotCos[i];
+                if (currentCos < cosAngle) {
+                    return 0.0f;
+                }
+                factor *= (currentCos - cosAngle) / (1.0f - cosAngle);
+            }
+            return factor;
+        }
+    }
+
+    /**
+     * Таблица вместе с параметром, для которого она построена: объекты, которые ее хранят,
+     * перестраивают таблицу, когда параметр меняется
+     */
+    static final class Table {
+        final float key;
+        final float[] values;
+
+        Table(float key, float[] values) {
+            this.key = key;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.cgvsu.render_engine.lighting;
+
+import com.cgvsu.math.Vector3f;
+import java.util.List;
+
+/**
+ * Снимок ограничивающих сфер источников для отбора ({@link SceneLighting#setLightCulling}).
+ *
+ * Точечный источник освещает только точки не дальше range, прожектор - только точки
+ * внутри своего конуса такой же длины, поэтому для них хранится сфера, вне которой вклад
+ * источника - только его фоновая часть. Направленные источники освещают все.
+ * Номера источников - по порядку не фоновых источников сцены, как в {@link FastLighting.Lights}.
+ */
+final class LightCulling {
+    // Запас радиуса на ошибки округления float
+    private static final float RADIUS_MARGIN = 1.001f;
+
+    private final LightSource[] lights;
+    private final float[] centerX, centerY, centerZ;
+    // Отрицательный радиус - источник без ограничивающей сферы
+    private final float[] radius;
+
+    private LightCulling(LightSource[] lights) {
+        int count = lights.length;
+        this.lights = lights;
+        centerX = new float[count];
+        centerY = new float[count];
+        centerZ = new float[count];
+        radius = new float[count];
+        for (int i = 0; i < count; i++) {
+            setBounds(i, lights[i]);
+        }
+    }
+
+    static LightCulling of(List<LightSource> sceneLights) {
+        return new LightCulling(sceneLights.stream()
+                .filter(light -> light.getType() != LightSource.LightType.AMBIENT)
+                .toArray(LightSource[]::new));
+    }
+
+    private void setBounds(int i, LightSource light) {
+        LightSource.LightType type = light.getType();
+        Vector3f position = light.getPosition();
+        centerX[i] = position.getX();
+        centerY[i] = position.getY();
+        centerZ[i] = position.getZ();
+        if (type == LightSource.LightType.POINT) {
+            radius[i] = light.getRange() * RADIUS_MARGIN;
+        } else if (type == LightSource.LightType.SPOT) {
+            // Описанная сфера конуса с вершиной в источнике; прожектор светит против direction
+            // (см. LightSource.getSpotFactor). Для узкого конуса сфера проходит через вершину,
+            // для широкого - центр в основании конуса
+            float range = light.getRange();
+            float cos = light.getSpotCos();
+            float offset;
+            float sphereRadius;
+            if (cos * cos >= 0.5f) {
+                sphereRadius = range / (2 * cos * cos);
+                offset = sphereRadius;
+            } else {
+                sphereRadius = range * (float) Math.sqrt(1 - cos * cos);
+                offset = range * cos;
+            }
+            Vector3f direction = light.getDirection();
+            centerX[i] -= direction.getX() * offset;
+            centerY[i] -= direction.getY() * offset;
+            centerZ[i] -= direction.getZ() * offset;
+            radius[i] = sphereRadius * RADIUS_MARGIN;
+        } else {
+            radius[i] = -1;
+        }
+    }
+
+    int count() {
+        return lights.length;
+    }
+
+    LightSource light(int i) {
+        return lights[i];
+    }
+
+    /**
+     * Записать в indices номера источников, которые могут осветить хоть одну точку
+     * параллелепипеда [min, max] (по возрастанию номеров)
+     *
+     * @return число записанных номеров
+     */
+    int select(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, int[] indices) {
+        int selected = 0;
+        for (int i = 0; i < lights.length; i++) {
+            float r = radius[i];
+            if (r >= 0) {
+                // Квадрат расстояния от центра сферы до параллелепипеда
+                float dx = Math.max(0, Math.max(minX - centerX[i], centerX[i] - maxX));
+                float dy = Math.max(0, Math.max(minY - centerY[i], centerY[i] - maxY));
+                float dz = Math.max(0, Math.max(minZ - centerZ[i], centerZ[i] - maxZ));
+                if (dx * dx + dy * dy + dz * dz > r * r) {
+                    continue;
+                }
+            }
+            indices[selected++] = i;
+        }
+        return selected;
+    }
+}
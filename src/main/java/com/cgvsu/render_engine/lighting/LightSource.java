@@ -18,6 +18,9 @@ public class LightSource {
     private float intensity = 1.0f;
     private float range = 100.0f; // Для точечного источника
     private float spotAngle = 45.0f; // Для прожектора
+    private float spotCos = (float) Math.cos(Math.toRadians(spotAngle));
+    // Кривая затухания быстрого режима освещения, строится при первом обращении
+    private volatile FastLighting.Table attenuationCurve;
 
     public LightSource() {
     }
@@ -55,8 +58,14 @@ public class LightSource {
     public float getSpotAngle() { return spotAngle; }
     public void setSpotAngle(float spotAngle) {
         this.spotAngle = Math.max(0, Math.min(90, spotAngle));
+        this.spotCos = (float) Math.cos(Math.toRadians(this.spotAngle));
     }
 
+    /**
+     * Косинус угла прожектора (от оси до края конуса)
+     */
+    public float getSpotCos() { return spotCos; }
+
     // Для направленного света
     public Vector3f getDirectionFrom(Vector3f point) {
         if (type == LightType.DIRECTIONAL) {
@@ -74,19 +83,46 @@ public class LightSource {
 
         if (distance > range) return 0.0f;
 
-        // Квадратичное затухание
+        return quadraticAttenuation(distance);
+    }
+
+    // Квадратичное затухание
+    static float quadraticAttenuation(float distance) {
         float attenuation = 1.0f / (1.0f + 0.1f * distance + 0.01f * distance * distance);
         return Math.max(0, Math.min(1, attenuation));
     }
 
+    /**
+     * Кривая затухания для быстрого режима освещения (перестраивается при смене радиуса)
+     */
+    float[] getAttenuationCurve() {
+        FastLighting.Table curve = attenuationCurve;
+        if (curve == null || curve.key != range) {
+            curve = FastLighting.attenuationCurve(range);
+            attenuationCurve = curve;
+        }
+        return curve.values;
+    }
+
     // Расчет угла для прожектора
     public float getSpotFactor(Vector3f lightToPoint) {
+        return getSpotFactor(lightToPoint.getX(), lightToPoint.getY(), lightToPoint.getZ());
+    }
+
+    /**
+     * Множитель прожектора для вектора от источника к точке (x, y, z), без создания объектов
+     */
+    public float getSpotFactor(float x, float y, float z) {
         if (type != LightType.SPOT) {
             return 1.0f;
         }
 
-        float cosAngle = (float) Math.cos(Math.toRadians(spotAngle));
-        float currentCos = (float) lightToPoint.normalize().dot(direction.scale(-1));
+        float cosAngle = spotCos;
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length == 0.0f) {
+            return 0.0f;
+        }
+        float currentCos = -(x * direction.getX() + y * direction.getY() + z * direction.getZ()) / length;
 
         if (currentCos < cosAngle) {
             return 0.0f;
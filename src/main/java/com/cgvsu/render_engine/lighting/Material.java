@@ -11,6 +11,8 @@ public class Material {
     private float specularCoefficient = 0.5f;
     private float shininess = 32.0f;
     private Color specularColor = Color.WHITE;
+    // Таблица блика быстрого режима освещения, строится при первом обращении
+    private volatile FastLighting.Table specularTable;
 
     public Material() {
     }
@@ -56,6 +58,18 @@ public class Material {
         this.shininess = Math.max(1, shininess);
     }
 
+    /**
+     * Таблица x^shininess для быстрого режима освещения (перестраивается при смене блеска)
+     */
+    float[] getSpecularTable() {
+        FastLighting.Table table = specularTable;
+        if (table == null || table.key != shininess) {
+            table = FastLighting.specularTable(shininess);
+            specularTable = table;
+        }
+        return table.values;
+    }
+
     public Color getSpecularColor() { return specularColor; }
     public void setSpecularColor(Color specularColor) {
         this.specularColor = specularColor;
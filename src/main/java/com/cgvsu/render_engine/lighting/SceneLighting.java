@@ -9,6 +9,12 @@ public class SceneLighting {
     private final List<LightSource> lights;
     private LightSource ambientLight;
     private boolean lightFollowsCamera = true;
+    // Быстрый режим: снимок источников с таблицами блика и затухания (ошибки см. FastLighting)
+    private FastLighting.Lights fastLights;
+    // Отбор источников: ограничивающие сферы точечных источников и прожекторов
+    private LightCulling lightCulling;
+    // Карты теней по порядку не фоновых источников (null - источник без тени)
+    private ShadowMap[] shadowMaps;
 
     public SceneLighting() {
         lights = new ArrayList<>();
@@ -54,37 +60,226 @@ public class SceneLighting {
             Vector3f viewDir,
             javafx.scene.paint.Color baseColor) {
 
+        return calculateLighting(material, position, normal, viewDir, baseColor, null, -1);
+    }
+
+    /**
+     * То же с отобранными источниками (см. {@link #selectLights})
+     */
+    public javafx.scene.paint.Color calculateLighting(
+            Material material,
+            Vector3f position,
+            Vector3f normal,
+            Vector3f viewDir,
+            javafx.scene.paint.Color baseColor,
+            int[] lightIndices, int lightCount) {
+
+        float[] rgb = new float[3];
+        calculateLighting(material, position, normal, viewDir,
+                (float) baseColor.getRed(), (float) baseColor.getGreen(), (float) baseColor.getBlue(),
+                lightIndices, lightCount, rgb);
+        return new javafx.scene.paint.Color(rgb[0], rgb[1], rgb[2], baseColor.getOpacity());
+    }
+
+    /**
+     * То же освещение без создания объектов (для циклов по пикселям): цвет без альфы
+     * пишется в rgb[0..2]. Векторы только читаются, поэтому вызывающий код может
+     * переиспользовать одни и те же объекты для всех пикселей.
+     */
+    public void calculateLighting(
+            Material material,
+            Vector3f position,
+            Vector3f normal,
+            Vector3f viewDir,
+            float baseR, float baseG, float baseB,
+            float[] rgb) {
+
+        calculateLighting(material, position, normal, viewDir, baseR, baseG, baseB, null, -1, rgb);
+    }
+
+    /**
+     * Освещение только от источников, отобранных {@link #selectLights} для области, где лежит точка.
+     * Остальные источники дают только свою фоновую часть, так что результат тот же, что и
+     * при переборе всех источников (с точностью до порядка сложения).
+     *
+     * @param lightCount число номеров в lightIndices; отрицательное - перебрать все источники
+     */
+    public void calculateLighting(
+            Material material,
+            Vector3f position,
+            Vector3f normal,
+            Vector3f viewDir,
+            float baseR, float baseG, float baseB,
+            int[] lightIndices, int lightCount,
+            float[] rgb) {
+
+        LightCulling culling = lightCulling;
+        if (culling == null) {
+            lightCount = -1;
+        }
+        ShadowMap[] shadows = shadowMaps;
+        if (fastLights != null) {
+            fastLights.shade(material, position, normal, viewDir, baseR, baseG, baseB,
+                    lightIndices, lightCount, shadows, rgb);
+            if (lightCount >= 0) {
+                addAmbientOnly(material, baseR, baseG, baseB, culling.count() - lightCount, rgb);
+            }
+            return;
+        }
+
+        float nx = normal.getX(), ny = normal.getY(), nz = normal.getZ();
+        float normalLength = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (normalLength > 0) {
+            nx /= normalLength;
+            ny /= normalLength;
+            nz /= normalLength;
+        }
+        float vx = viewDir.getX(), vy = viewDir.getY(), vz = viewDir.getZ();
+        float viewLength = (float) Math.sqrt(vx * vx + vy * vy + vz * vz);
+        if (viewLength > 0) {
+            vx /= viewLength;
+            vy /= viewLength;
+            vz /= viewLength;
+        }
+        float px = position.getX(), py = position.getY(), pz = position.getZ();
+
         // Начинаем с ambient света
-        javafx.scene.paint.Color result = LightingModel.calculate(
-                ambientLight, material, position, normal, viewDir, baseColor
-        );
+        addLight(ambientLight, null, material, px, py, pz, nx, ny, nz, vx, vy, vz, baseR, baseG, baseB, rgb, true);
 
-        // Добавляем все остальные источники света
-        for (LightSource light : lights) {
-            if (light.getType() != LightSource.LightType.AMBIENT) {
-                javafx.scene.paint.Color lightContribution = LightingModel.calculate(
-                        light, material, position, normal, viewDir, baseColor
-                );
+        if (lightCount >= 0) {
+            for (int i = 0; i < lightCount; i++) {
+                int index = lightIndices[i];
+                ShadowMap shadow = shadows != null && index < shadows.length ? shadows[index] : null;
+                addLight(culling.light(index), shadow, material,
+                        px, py, pz, nx, ny, nz, vx, vy, vz, baseR, baseG, baseB, rgb, false);
+            }
+            addAmbientOnly(material, baseR, baseG, baseB, culling.count() - lightCount, rgb);
+            return;
+        }
 
-                // Смешиваем цвета (аддитивное смешивание)
-                result = blendAdditive(result, lightContribution);
+        // Добавляем все остальные источники света (аддитивное смешивание)
+        int index = 0;
+        for (int i = 0; i < lights.size(); i++) {
+            LightSource light = lights.get(i);
+            if (light.getType() != LightSource.LightType.AMBIENT) {
+                ShadowMap shadow = shadows != null && index < shadows.length ? shadows[index] : null;
+                addLight(light, shadow, material, px, py, pz, nx, ny, nz, vx, vy, vz, baseR, baseG, baseB, rgb, false);
+                index++;
             }
         }
+    }
 
-        return result;
+    /**
+     * Вклад источников, отброшенных отбором: каждый дает только фоновую часть (как в addLight)
+     */
+    private static void addAmbientOnly(Material material, float baseR, float baseG, float baseB,
+                                       int lightCount, float[] rgb) {
+        if (lightCount <= 0) {
+            return;
+        }
+        float ambient = material.getAmbientCoefficient();
+        rgb[0] = Math.min(1.0f, rgb[0] + lightCount * Math.min(1.0f, baseR * ambient));
+        rgb[1] = Math.min(1.0f, rgb[1] + lightCount * Math.min(1.0f, baseG * ambient));
+        rgb[2] = Math.min(1.0f, rgb[2] + lightCount * Math.min(1.0f, baseB * ambient));
     }
 
-    // Аддитивное смешивание цветов
-    private javafx.scene.paint.Color blendAdditive(
-            javafx.scene.paint.Color a,
-            javafx.scene.paint.Color b) {
+    /**
+     * Вклад одного источника (как {@link LightingModel#calculate}, нормаль и взгляд уже единичные);
+     * shadow - карта теней источника или null, first - записать вклад в rgb, иначе прибавить к нему
+     */
+    private static void addLight(
+            LightSource light, ShadowMap shadow, Material material,
+            float px, float py, float pz,
+            float nx, float ny, float nz,
+            float vx, float vy, float vz,
+            float baseR, float baseG, float baseB,
+            float[] rgb, boolean first) {
+
+        float ambient = material.getAmbientCoefficient();
+        float r = baseR * ambient;
+        float g = baseG * ambient;
+        float b = baseB * ambient;
+
+        // Направление на источник; для не направленных, как и в LightingModel, от точки -normal
+        float lx, ly, lz;
+        Vector3f direction = light.getDirection();
+        Vector3f lightPosition = light.getPosition();
+        if (light.getType() == LightSource.LightType.DIRECTIONAL) {
+            lx = -direction.getX();
+            ly = -direction.getY();
+            lz = -direction.getZ();
+        } else {
+            lx = lightPosition.getX() + nx;
+            ly = lightPosition.getY() + ny;
+            lz = lightPosition.getZ() + nz;
+            float length = (float) Math.sqrt(lx * lx + ly * ly + lz * lz);
+            if (length > 0) {
+                lx /= length;
+                ly /= length;
+                lz /= length;
+            }
+        }
+
+        float nDotL = nx * lx + ny * ly + nz * lz;
+        // Затухание и фактор прожектора; за радиусом и вне конуса источник ничего не добавляет,
+        // диффузную и бликовую части можно не считать
+        float factor = 1.0f;
+        if (nDotL > 0 && light.getType() != LightSource.LightType.DIRECTIONAL) {
+            float dx = px - lightPosition.getX();
+            float dy = py - lightPosition.getY();
+            float dz = pz - lightPosition.getZ();
+            factor = light.getAttenuation((float) Math.sqrt(dx * dx + dy * dy + dz * dz));
+            if (light.getType() == LightSource.LightType.SPOT) {
+                factor *= light.getSpotFactor(dx, dy, dz);
+            }
+        }
+        if (nDotL > 0 && factor != 0 && shadow != null) {
+            factor *= shadow.visibility(px, py, pz, nx, ny, nz);
+        }
+        if (nDotL > 0 && factor != 0) {
+            javafx.scene.paint.Color color = light.getColor();
+            float intensity = light.getIntensity();
+            float lightR = (float) color.getRed() * intensity;
+            float lightG = (float) color.getGreen() * intensity;
+            float lightB = (float) color.getBlue() * intensity;
+
+            float diffuse = material.getDiffuseCoefficient() * nDotL;
+            float litR = baseR * lightR * diffuse;
+            float litG = baseG * lightG * diffuse;
+            float litB = baseB * lightB * diffuse;
+
+            float specularCoefficient = material.getSpecularCoefficient();
+            if (specularCoefficient > 0) {
+                // Отражение -L относительно нормали: 2 (n·L) n - L
+                float twoNDotL = 2 * nDotL;
+                float rx = twoNDotL * nx - lx;
+                float ry = twoNDotL * ny - ly;
+                float rz = twoNDotL * nz - lz;
+                float rDotV = Math.max(0, rx * vx + ry * vy + rz * vz);
+                float specular = specularCoefficient * (float) Math.pow(rDotV, material.getShininess());
+                javafx.scene.paint.Color specularColor = material.getSpecularColor();
+                litR += lightR * (float) specularColor.getRed() * specular;
+                litG += lightG * (float) specularColor.getGreen() * specular;
+                litB += lightB * (float) specularColor.getBlue() * specular;
+            }
 
-        double r = Math.min(1.0, a.getRed() + b.getRed());
-        double g = Math.min(1.0, a.getGreen() + b.getGreen());
-        double b1 = Math.min(1.0, a.getBlue() + b.getBlue());
-        double alpha = Math.max(a.getOpacity(), b.getOpacity());
+            r += litR * factor;
+            g += litG * factor;
+            b += litB * factor;
+        }
 
-        return new javafx.scene.paint.Color(r, g, b1, alpha);
+        r = Math.min(1.0f, Math.max(0, r));
+        g = Math.min(1.0f, Math.max(0, g));
+        b = Math.min(1.0f, Math.max(0, b));
+        if (first) {
+            rgb[0] = r;
+            rgb[1] = g;
+            rgb[2] = b;
+        } else {
+            rgb[0] = Math.min(1.0f, rgb[0] + r);
+            rgb[1] = Math.min(1.0f, rgb[1] + g);
+            rgb[2] = Math.min(1.0f, rgb[2] + b);
+        }
     }
 
     public List<LightSource> getLights() { return lights; }
@@ -106,6 +301,58 @@ public class SceneLighting {
         this.ambientLight = ambientLight;
     }
 
+    public boolean isFastMath() { return fastLights != null; }
+
+    /**
+     * Включить быстрый режим освещения: pow блика и затухание берутся из таблиц,
+     * параметры источников - из снимка, сделанного этим вызовом. После изменения источников
+     * снимок нужно обновить повторным вызовом (рендерер делает это перед каждым кадром).
+     */
+    public void setFastMath(boolean fastMath) {
+        this.fastLights = fastMath ? FastLighting.Lights.of(ambientLight, lights) : null;
+    }
+
+    public ShadowMap[] getShadowMaps() { return shadowMaps; }
+
+    /**
+     * Карты теней: shadowMaps[i] - для i-го источника из {@link #getLights()} без фоновых
+     * (null - источник без тени); null вместо массива - освещение без теней.
+     * Массив читается при каждом расчете, поэтому менять его надо между кадрами.
+     */
+    public void setShadowMaps(ShadowMap[] shadowMaps) {
+        this.shadowMaps = shadowMaps;
+    }
+
+    public boolean isLightCulling() { return lightCulling != null; }
+
+    /**
+     * Включить отбор источников по радиусу действия: ограничивающие сферы берутся из снимка,
+     * сделанного этим вызовом (как и в {@link #setFastMath}, после изменения источников вызов
+     * нужно повторить).
+     */
+    public void setLightCulling(boolean lightCulling) {
+        this.lightCulling = lightCulling ? LightCulling.of(lights) : null;
+    }
+
+    /**
+     * Сколько номеров может вернуть {@link #selectLights} (размер массива для номеров)
+     */
+    public int getSelectableLightCount() {
+        LightCulling culling = lightCulling;
+        return culling == null ? 0 : culling.count();
+    }
+
+    /**
+     * Отобрать источники, которые могут осветить точки параллелепипеда [min, max]
+     * (мировые координаты): их номера пишутся в indices.
+     *
+     * @return число номеров или -1, если отбор выключен (освещать надо всеми источниками)
+     */
+    public int selectLights(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, int[] indices) {
+        LightCulling culling = lightCulling;
+        return culling == null ? -1 : culling.select(minX, minY, minZ, maxX, maxY, maxZ, indices);
+    }
+
     public boolean isLightFollowsCamera() { return lightFollowsCamera; }
     public void setLightFollowsCamera(boolean follow) {
         this.lightFollowsCamera = follow;
@@ -0,0 +1,276 @@
+package com.cgvsu.render_engine.lighting;
+
+import com.cgvsu.math.Matrix4f;
+import com.cgvsu.math.Vector3f;
+
+/**
+ * Карта теней одного источника: глубина ближайшей к источнику поверхности в каждом текселе.
+ *
+ * Направленный источник смотрит ортографически на ограничивающую сферу сцены, прожектор -
+ * перспективно из своей позиции вдоль оси конуса. Карту заполняет рендерер проходом глубины
+ * по матрице {@link #getViewProjection()} (экранные координаты - как у
+ * {@link Matrix4f#projectPoints}), затем глубина переводится в расстояние вдоль оси
+ * источника ({@link #setDepth}). Точка сравнивается с картой фильтром PCF
+ * ({@link #visibility}): (2r + 2)^2 выборок с билинейными весами на краях окна.
+ */
+public final class ShadowMap {
+    // Сдвиг точки вдоль нормали и смещение глубины, в текселях (против самозатенения)
+    private static final float NORMAL_OFFSET = 1.5f;
+    private static final float DEPTH_BIAS = 1.0f;
+    // Ближняя плоскость прожектора как доля радиуса
+    private static final float NEAR_FRACTION = 0.001f;
+
+    private final int size;
+    private final float[] depth;
+    private final boolean perspective;
+    // Начало координат источника и его оси: right, up - по карте, forward - от источника
+    private final float originX, originY, originZ;
+    private final float rightX, rightY, rightZ;
+    private final float upX, upY, upZ;
+    private final float forwardX, forwardY, forwardZ;
+    // Перевод координат вида в доли карты [-0.5, 0.5] (для прожектора - после деления на глубину)
+    private final float scale;
+    private final float near;
+    private final float far;
+    private int filterRadius = 1;
+
+    private ShadowMap(int size, boolean perspective, Vector3f origin, Vector3f forward,
+                      float scale, float near, float far) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Shadow map size must be positive: " + size);
+        }
+        this.size = size;
+        this.depth = new float[size * size];
+        this.perspective = perspective;
+        this.originX = origin.getX();
+        this.originY = origin.getY();
+        this.originZ = origin.getZ();
+
+        float fx = forward.getX(), fy = forward.getY(), fz = forward.getZ();
+        float forwardLength = (float) Math.sqrt(fx * fx + fy * fy + fz * fz);
+        if (forwardLength == 0) {
+            throw new IllegalArgumentException("Shadow map direction must not be zero");
+        }
+        fx /= forwardLength;
+        fy /= forwardLength;
+        fz /= forwardLength;
+        // Оси как в GraphicConveyor.lookAt: right = up x forward, up = forward x right
+        float ux = 0, uy = 1, uz = 0;
+        if (Math.abs(fy) > 0.99f) {
+            ux = 1;
+            uy = 0;
+        }
+        float rx = uy * fz - uz * fy;
+        float ry = uz * fx - ux * fz;
+        float rz = ux * fy - uy * fx;
+        float rightLength = (float) Math.sqrt(rx * rx + ry * ry + rz * rz);
+        rx /= rightLength;
+        ry /= rightLength;
+        rz /= rightLength;
+        this.forwardX = fx;
+        this.forwardY = fy;
+        this.forwardZ = fz;
+        this.rightX = rx;
+        this.rightY = ry;
+        this.rightZ = rz;
+        this.upX = fy * rz - fz * ry;
+        this.upY = fz * rx - fx * rz;
+        this.upZ = fx * ry - fy * rx;
+        this.scale = scale;
+        this.near = near;
+        this.far = far;
+    }
+
+    /**
+     * Карта направленного источника, покрывающая сферу (center, radius)
+     *
+     * @param direction направление, в котором идет свет
+     */
+    public static ShadowMap directional(Vector3f direction, Vector3f center, float radius, int size) {
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("Shadow map radius must be positive: " + radius);
+        }
+        float length = (float) direction.length();
+        if (length == 0) {
+            throw new IllegalArgumentException("Shadow map direction must not be zero");
+        }
+        float offset = radius / length;
+        Vector3f origin = new Vector3f(
+                center.getX() - direction.getX() * offset,
+                center.getY() - direction.getY() * offset,
+                center.getZ() - direction.getZ() * offset);
+        return new ShadowMap(size, false, origin, direction, 0.5f / radius, 0.0f, 2 * radius);
+    }
+
+    /**
+     * Карта прожектора в позиции position с осью axis, углом от оси до края halfAngle (градусы,
+     * меньше 90) и дальностью range
+     */
+    public static ShadowMap spot(Vector3f position, Vector3f axis, float halfAngle, float range, int size) {
+        if (!(halfAngle > 0 && halfAngle < 90)) {
+            throw new IllegalArgumentException("Spot shadow angle must be in (0, 90): " + halfAngle);
+        }
+        if (!(range > 0)) {
+            throw new IllegalArgumentException("Spot shadow range must be positive: " + range);
+        }
+        float scale = (float) (0.5 / Math.tan(Math.toRadians(halfAngle)));
+        return new ShadowMap(size, true, position, axis, scale, range * NEAR_FRACTION, range);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isPerspective() {
+        return perspective;
+    }
+
+    /**
+     * Ближняя плоскость: треугольники ближе к источнику в карту не попадают
+     */
+    public float getNear() {
+        return near;
+    }
+
+    public int getFilterRadius() {
+        return filterRadius;
+    }
+
+    /**
+     * Радиус окна PCF в текселях: 0 - 2x2 выборки, 1 - 4x4 и т.д.
+     */
+    public void setFilterRadius(int filterRadius) {
+        if (filterRadius < 0) {
+            throw new IllegalArgumentException("Shadow filter radius must not be negative: " + filterRadius);
+        }
+        this.filterRadius = filterRadius;
+    }
+
+    /**
+     * Расстояние точки от источника вдоль его оси
+     */
+    public float viewDepth(float x, float y, float z) {
+        return (x - originX) * forwardX + (y - originY) * forwardY + (z - originZ) * forwardZ;
+    }
+
+    /**
+     * Матрица вид-проекция источника в соглашении конвейера (векторы-строки); глубина
+     * после деления на w - как у GraphicConveyor.perspective (-1 на ближней плоскости, 1 на дальней)
+     * или линейная от 0 до 1 для направленного источника
+     */
+    public Matrix4f getViewProjection() {
+        float tx = -(originX * rightX + originY * rightY + originZ * rightZ);
+        float ty = -(originX * upX + originY * upY + originZ * upZ);
+        float tz = -(originX * forwardX + originY * forwardY + originZ * forwardZ);
+        if (perspective) {
+            float a = (far + near) / (far - near);
+            float b = 2 * near * far / (near - far);
+            return new Matrix4f(new float[]{
+                    rightX * scale, upX * scale, forwardX * a, forwardX,
+                    rightY * scale, upY * scale, forwardY * a, forwardY,
+                    rightZ * scale, upZ * scale, forwardZ * a, forwardZ,
+                    tx * scale, ty * scale, tz * a + b, tz});
+        }
+        return new Matrix4f(new float[]{
+                rightX * scale, upX * scale, forwardX / far, 0,
+                rightY * scale, upY * scale, forwardY / far, 0,
+                rightZ * scale, upZ * scale, forwardZ / far, 0,
+                tx * scale, ty * scale, tz / far, 1});
+    }
+
+    /**
+     * Записать карту из буфера глубины прохода по {@link #getViewProjection()}
+     * (size * size значений, пустые - Float.MAX_VALUE)
+     */
+    public void setDepth(float[] projectedDepth) {
+        if (projectedDepth.length < depth.length) {
+            throw new IllegalArgumentException("Shadow depth must contain " + depth.length + " values");
+        }
+        float a = (far + near) / (far - near);
+        float b = 2 * near * far / (near - far);
+        for (int i = 0; i < depth.length; i++) {
+            float d = projectedDepth[i];
+            if (d == Float.MAX_VALUE) {
+                depth[i] = Float.MAX_VALUE;
+            } else if (perspective) {
+                // ndc = a + b / z
+                depth[i] = b / (d - a);
+            } else {
+                depth[i] = d * far;
+            }
+        }
+    }
+
+    /**
+     * Доля света источника, которая доходит до точки (x, y, z) с единичной нормалью (nx, ny, nz):
+     * 1 - точка освещена, 0 - в тени. Точки вне карты считаются освещенными.
+     */
+    public float visibility(float x, float y, float z, float nx, float ny, float nz) {
+        float pointDepth = viewDepth(x, y, z);
+        if (perspective && pointDepth <= near) {
+            return 1.0f;
+        }
+        // Размер текселя на глубине точки
+        float texel = (perspective ? pointDepth : 1.0f) / (scale * size);
+        float offset = texel * NORMAL_OFFSET;
+        x += nx * offset;
+        y += ny * offset;
+        z += nz * offset;
+
+        float dx = x - originX, dy = y - originY, dz = z - originZ;
+        float viewX = dx * rightX + dy * rightY + dz * rightZ;
+        float viewY = dx * upX + dy * upY + dz * upZ;
+        float viewZ = dx * forwardX + dy * forwardY + dz * forwardZ;
+        float mapScale = scale * size;
+        if (perspective) {
+            if (viewZ <= near) {
+                return 1.0f;
+            }
+            mapScale /= viewZ;
+        }
+        float half = size * 0.5f;
+        float sx = viewX * mapScale + half;
+        float sy = -viewY * mapScale + half;
+        if (!(sx > -1 && sy > -1 && sx < size && sy < size)) {
+            return 1.0f;
+        }
+        return filter(sx, sy, viewZ - texel * DEPTH_BIAS);
+    }
+
+    /**
+     * PCF: окно (2r + 2) x (2r + 2) текселей вокруг (sx, sy), крайние ряды с весами
+     * по дробной части координат; вне карты - освещено
+     */
+    private float filter(float sx, float sy, float pointDepth) {
+        int r = filterRadius;
+        int baseX = (int) Math.floor(sx);
+        int baseY = (int) Math.floor(sy);
+        float fx = sx - baseX;
+        float fy = sy - baseY;
+        int taps = 2 * r + 2;
+        int startX = baseX - r;
+        int startY = baseY - r;
+
+        float lit = 0;
+        for (int j = 0; j < taps; j++) {
+            int ty = startY + j;
+            float wy = j == 0 ? 1 - fy : j == taps - 1 ? fy : 1;
+            if (ty < 0 || ty >= size) {
+                lit += wy * (2 * r + 1);
+                continue;
+            }
+            int row = ty * size;
+            float rowLit = 0;
+            for (int i = 0; i < taps; i++) {
+                int tx = startX + i;
+                float wx = i == 0 ? 1 - fx : i == taps - 1 ? fx : 1;
+                if (tx < 0 || tx >= size || pointDepth <= depth[row + tx]) {
+                    rowLit += wx;
+                }
+            }
+            lit += wy * rowLit;
+        }
+        float window = 2 * r + 1;
+        return lit / (window * window);
+    }
+}
@@ -0,0 +1,98 @@
+package com.cgvsu.render_engine.postprocess;
+
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rasterization.ZBuffer;
+import javafx.scene.paint.Color;
+
+/**
+ * Обводка силуэтов и скачков глубины по буферу глубины.
+ *
+ * Глубина в буфере - NDC z, для перспективы 1 - z примерно обратно пропорциональна
+ * расстоянию до камеры. Поэтому край ищется по отношению (1 - z) соседних пикселей:
+ * порог не зависит от того, насколько далеко модель. Пиксель без поверхности
+ * рядом с поверхностью - тоже край (силуэт).
+ */
+public class DepthOutlinePass implements PostProcessPass {
+    // Глубина, начиная с которой пиксель считается пустым (буфер очищается Float.MAX_VALUE)
+    private static final double EMPTY_DEPTH = 1e30;
+
+    private boolean enabled = true;
+    private int argb = FrameBuffer.toArgb(Color.BLACK);
+    private float threshold = 0.1f;
+
+    @Override
+    public void apply(FrameBuffer source, FrameBuffer target, ZBuffer depth, int fromRow, int toRow) {
+        int[] src = source.getPixels();
+        int[] dst = target.getPixels();
+        int width = source.getWidth();
+        int height = source.getHeight();
+
+        if (depth == null || depth.getWidth() != width || depth.getHeight() != height) {
+            System.arraycopy(src, fromRow * width, dst, fromRow * width, (toRow - fromRow) * width);
+            return;
+        }
+
+        double ratio = 1.0 + threshold;
+        for (int y = fromRow; y < toRow; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                double center = depth.getDepth(x, y);
+                boolean edge = isEdge(center, depth.getDepth(Math.max(x - 1, 0), y), ratio)
+                        || isEdge(center, depth.getDepth(Math.min(x + 1, width - 1), y), ratio)
+                        || isEdge(center, depth.getDepth(x, Math.max(y - 1, 0)), ratio)
+                        || isEdge(center, depth.getDepth(x, Math.min(y + 1, height - 1)), ratio);
+                dst[index] = edge ? argb : src[index];
+            }
+        }
+    }
+
+    private static boolean isEdge(double center, double neighbour, double ratio) {
+        boolean centerEmpty = center >= EMPTY_DEPTH;
+        boolean neighbourEmpty = neighbour >= EMPTY_DEPTH;
+        if (centerEmpty || neighbourEmpty) {
+            return !centerEmpty && neighbourEmpty;
+        }
+        // Линия рисуется только с ближней стороны скачка, так она в один пиксель толщиной
+        if (neighbour <= center) {
+            return false;
+        }
+        double nearDistance = 1.0 - center;
+        double farDistance = 1.0 - neighbour;
+        if (farDistance <= 0) {
+            return nearDistance > 0;
+        }
+        return nearDistance > farDistance * ratio;
+    }
+
+    @Override
+    public boolean needsDepth() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setColor(Color color) {
+        this.argb = FrameBuffer.toArgb(color);
+    }
+
+    /**
+     * Порог скачка глубины: доля, на которую сосед дальше пикселя (0.1 - на 10%)
+     */
+    public float getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(float threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Outline threshold must be positive: " + threshold);
+        }
+        this.threshold = threshold;
+    }
+}
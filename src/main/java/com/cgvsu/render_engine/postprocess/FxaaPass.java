@@ -0,0 +1,167 @@
+package com.cgvsu.render_engine.postprocess;
+
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rasterization.ZBuffer;
+
+/**
+ * Сглаживание FXAA (по мотивам FXAA 3.11, вариант Quality).
+ *
+ * Ступенчатый край ищется по перепаду яркости вокруг пикселя. Для пикселя на краю
+ * находятся концы края в обе стороны, и по положению пикселя между ними
+ * он смешивается с соседом через край. Отдельно смешиваются пиксели-одиночки
+ * (субпиксельное сглаживание). Работает на готовом кадре, без лишних образцов.
+ */
+public class FxaaPass implements PostProcessPass {
+    // Перепады яркости меньше этих порогов (абсолютного и доли от яркости) краем не считаются
+    private static final float EDGE_THRESHOLD_MIN = 0.0312f;
+    private static final float EDGE_THRESHOLD_MAX = 0.125f;
+    // Сила субпиксельного сглаживания, от 0 до 1
+    private static final float SUBPIXEL_QUALITY = 0.75f;
+    // Шаги поиска конца края, в пикселях
+    private static final int[] SEARCH_STEPS = {1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 8};
+
+    private boolean enabled = true;
+
+    @Override
+    public void apply(FrameBuffer source, FrameBuffer target, ZBuffer depth, int fromRow, int toRow) {
+        int[] src = source.getPixels();
+        int[] dst = target.getPixels();
+        int width = source.getWidth();
+        int height = source.getHeight();
+
+        for (int y = fromRow; y < toRow; y++) {
+            int up = Math.max(y - 1, 0) * width;
+            int row = y * width;
+            int down = Math.min(y + 1, height - 1) * width;
+
+            for (int x = 0; x < width; x++) {
+                int left = Math.max(x - 1, 0);
+                int right = Math.min(x + 1, width - 1);
+
+                float lumaM = luma(src[row + x]);
+                float lumaU = luma(src[up + x]);
+                float lumaD = luma(src[down + x]);
+                float lumaL = luma(src[row + left]);
+                float lumaR = luma(src[row + right]);
+
+                float lumaMax = Math.max(lumaM, Math.max(Math.max(lumaU, lumaD), Math.max(lumaL, lumaR)));
+                float lumaMin = Math.min(lumaM, Math.min(Math.min(lumaU, lumaD), Math.min(lumaL, lumaR)));
+                float range = lumaMax - lumaMin;
+                if (range < Math.max(EDGE_THRESHOLD_MIN, lumaMax * EDGE_THRESHOLD_MAX)) {
+                    dst[row + x] = src[row + x];
+                    continue;
+                }
+
+                float lumaUL = luma(src[up + left]);
+                float lumaUR = luma(src[up + right]);
+                float lumaDL = luma(src[down + left]);
+                float lumaDR = luma(src[down + right]);
+
+                // Направление края: где перепад яркости поперек сильнее
+                float edgeHorizontal = Math.abs(lumaUL + lumaDL - 2 * lumaL)
+                        + 2 * Math.abs(lumaU + lumaD - 2 * lumaM)
+                        + Math.abs(lumaUR + lumaDR - 2 * lumaR);
+                float edgeVertical = Math.abs(lumaUL + lumaUR - 2 * lumaU)
+                        + 2 * Math.abs(lumaL + lumaR - 2 * lumaM)
+                        + Math.abs(lumaDL + lumaDR - 2 * lumaD);
+                boolean horizontal = edgeHorizontal >= edgeVertical;
+
+                // Сторона края, на которой перепад больше
+                float luma1 = horizontal ? lumaU : lumaL;
+                float luma2 = horizontal ? lumaD : lumaR;
+                float gradient1 = Math.abs(luma1 - lumaM);
+                float gradient2 = Math.abs(luma2 - lumaM);
+                boolean negativeSide = gradient1 >= gradient2;
+                int across = negativeSide ? -1 : 1;
+                float gradientScaled = 0.25f * Math.max(gradient1, gradient2);
+                float lumaLocalAverage = 0.5f * ((negativeSide ? luma1 : luma2) + lumaM);
+
+                // Концы края в обе стороны вдоль него
+                int distance1 = 0;
+                float lumaEnd1 = 0;
+                for (int step : SEARCH_STEPS) {
+                    distance1 += step;
+                    lumaEnd1 = edgeLuma(src, width, height, x, y, horizontal, -distance1, across) - lumaLocalAverage;
+                    if (Math.abs(lumaEnd1) >= gradientScaled) {
+                        break;
+                    }
+                }
+                int distance2 = 0;
+                float lumaEnd2 = 0;
+                for (int step : SEARCH_STEPS) {
+                    distance2 += step;
+                    lumaEnd2 = edgeLuma(src, width, height, x, y, horizontal, distance2, across) - lumaLocalAverage;
+                    if (Math.abs(lumaEnd2) >= gradientScaled) {
+                        break;
+                    }
+                }
+
+                // Чем ближе пиксель к концу ступеньки, тем сильнее он смешивается с соседом
+                boolean nearerNegative = distance1 < distance2;
+                float pixelOffset = 0.5f - (float) Math.min(distance1, distance2) / (distance1 + distance2);
+                boolean centerSmaller = lumaM < lumaLocalAverage;
+                boolean correctVariation = ((nearerNegative ? lumaEnd1 : lumaEnd2) < 0) != centerSmaller;
+                float offset = correctVariation ? pixelOffset : 0.0f;
+
+                // Субпиксельное сглаживание: пиксель сильно отличается от окружения
+                float lumaAverage = (2 * (lumaU + lumaD + lumaL + lumaR)
+                        + lumaUL + lumaUR + lumaDL + lumaDR) / 12.0f;
+                float subpixel = Math.min(1.0f, Math.abs(lumaAverage - lumaM) / range);
+                subpixel = (-2.0f * subpixel + 3.0f) * subpixel * subpixel;
+                offset = Math.max(offset, subpixel * subpixel * SUBPIXEL_QUALITY);
+
+                int neighbour = horizontal
+                        ? (across < 0 ? up : down) + x
+                        : row + (across < 0 ? left : right);
+                dst[row + x] = blend(src[row + x], src[neighbour], offset);
+            }
+        }
+    }
+
+    /**
+     * Средняя яркость пикселя на краю и его соседа через край, со сдвигом вдоль края
+     */
+    private static float edgeLuma(int[] src, int width, int height, int x, int y,
+                                  boolean horizontal, int along, int across) {
+        int ax, ay, bx, by;
+        if (horizontal) {
+            ax = bx = Math.min(width - 1, Math.max(0, x + along));
+            ay = y;
+            by = Math.min(height - 1, Math.max(0, y + across));
+        } else {
+            ay = by = Math.min(height - 1, Math.max(0, y + along));
+            ax = x;
+            bx = Math.min(width - 1, Math.max(0, x + across));
+        }
+        return 0.5f * (luma(src[ay * width + ax]) + luma(src[by * width + bx]));
+    }
+
+    /**
+     * Яркость в [0, 1] (веса 0.3, 0.59, 0.11 в целых)
+     */
+    private static float luma(int argb) {
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        return (r * 77 + g * 151 + b * 28) * (1.0f / (256 * 255));
+    }
+
+    private static int blend(int a, int b, float t) {
+        int wb = (int) (t * 256.0f + 0.5f);
+        int wa = 256 - wb;
+        int alpha = ((a >>> 24) * wa + (b >>> 24) * wb) >> 8;
+        int red = (((a >> 16) & 0xFF) * wa + ((b >> 16) & 0xFF) * wb) >> 8;
+        int green = (((a >> 8) & 0xFF) * wa + ((b >> 8) & 0xFF) * wb) >> 8;
+        int blue = ((a & 0xFF) * wa + (b & 0xFF) * wb) >> 8;
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
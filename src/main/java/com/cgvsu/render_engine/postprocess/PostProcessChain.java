@@ -0,0 +1,117 @@
+package com.cgvsu.render_engine.postprocess;
+
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rasterization.ZBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Цепочка проходов постобработки над готовым кадром.
+ *
+ * Проходы выполняются по очереди, каждый - параллельно по полосам строк.
+ * Промежуточные результаты лежат в двух служебных буферах (ping-pong), которые
+ * создаются только при смене размера кадра; последний проход пишет прямо в кадр.
+ */
+public class PostProcessChain {
+    // Высота полосы строк, обрабатываемой одной задачей
+    private static final int BAND_ROWS = 16;
+
+    private final List<PostProcessPass> passes = new ArrayList<>();
+    private final List<PostProcessPass> activePasses = new ArrayList<>();
+    private FrameBuffer ping;
+    private FrameBuffer pong;
+
+    public void addPass(PostProcessPass pass) {
+        if (pass == null) {
+            throw new IllegalArgumentException("Post-process pass must not be null");
+        }
+        passes.add(pass);
+    }
+
+    public boolean removePass(PostProcessPass pass) {
+        return passes.remove(pass);
+    }
+
+    public List<PostProcessPass> getPasses() {
+        return passes;
+    }
+
+    /**
+     * Есть ли включенные проходы
+     */
+    public boolean isActive() {
+        for (PostProcessPass pass : passes) {
+            if (pass.isEnabled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Нужен ли включенным проходам буфер глубины
+     */
+    public boolean needsDepth() {
+        for (PostProcessPass pass : passes) {
+            if (pass.isEnabled() && pass.needsDepth()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Применить включенные проходы к кадру; результат остается в frame
+     *
+     * @param depth буфер глубины кадра или null
+     */
+    public void process(FrameBuffer frame, ZBuffer depth) {
+        activePasses.clear();
+        for (PostProcessPass pass : passes) {
+            if (pass.isEnabled()) {
+                activePasses.add(pass);
+            }
+        }
+        int count = activePasses.size();
+        if (count == 0) {
+            return;
+        }
+
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        if (ping == null || !ping.hasSize(width, height)) {
+            ping = new FrameBuffer(width, height);
+            pong = new FrameBuffer(width, height);
+        }
+
+        // Первый проход читает кадр, последний пишет в кадр, между ними ping и pong по очереди.
+        // Одному проходу читать и писать кадр нельзя, поэтому кадр сначала копируется.
+        FrameBuffer source = frame;
+        if (count == 1) {
+            System.arraycopy(frame.getPixels(), 0, ping.getPixels(), 0, width * height);
+            source = ping;
+        }
+        for (int i = 0; i < count; i++) {
+            FrameBuffer target;
+            if (i == count - 1) {
+                target = frame;
+            } else {
+                target = source == ping ? pong : ping;
+            }
+            runBands(activePasses.get(i), source, target, depth, height);
+            source = target;
+        }
+    }
+
+    private static void runBands(PostProcessPass pass, FrameBuffer source, FrameBuffer target,
+                                 ZBuffer depth, int height) {
+        pass.prepare(source, depth);
+        int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int fromRow = band * BAND_ROWS;
+            pass.apply(source, target, depth, fromRow, Math.min(height, fromRow + BAND_ROWS));
+        });
+    }
+}
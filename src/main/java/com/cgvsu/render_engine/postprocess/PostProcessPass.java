@@ -0,0 +1,42 @@
+package com.cgvsu.render_engine.postprocess;
+
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rasterization.ZBuffer;
+
+/**
+ * Один проход постобработки кадра.
+ *
+ * {@link PostProcessChain} вызывает {@link #apply} параллельно для разных полос строк,
+ * поэтому проход должен писать только строки своей полосы в target и не менять
+ * общее состояние. Читать source можно где угодно: source и target - разные буферы.
+ */
+public interface PostProcessPass {
+
+    /**
+     * Подготовка к кадру (таблицы, промежуточные буферы). Вызывается один раз
+     * перед полосами, в одном потоке.
+     */
+    default void prepare(FrameBuffer source, ZBuffer depth) {
+    }
+
+    /**
+     * Обработать строки [fromRow, toRow)
+     *
+     * @param depth буфер глубины кадра; null, если его нет
+     */
+    void apply(FrameBuffer source, FrameBuffer target, ZBuffer depth, int fromRow, int toRow);
+
+    /**
+     * Выключенный проход цепочка пропускает целиком
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Проходу нужен буфер глубины (при MSAA его тогда приходится собирать из образцов)
+     */
+    default boolean needsDepth() {
+        return false;
+    }
+}
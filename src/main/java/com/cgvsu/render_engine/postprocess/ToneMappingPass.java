@@ -0,0 +1,162 @@
+package com.cgvsu.render_engine.postprocess;
+
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rasterization.ZBuffer;
+
+/**
+ * Экспозиция, тональная кривая и гамма-коррекция.
+ *
+ * Кадр хранит 8 бит на канал, поэтому вся цепочка сводится к таблице
+ * из 256 значений, которая пересчитывается только при смене параметров.
+ * Цвета предумножены на альфу: непрозрачные пиксели идут прямо через таблицу,
+ * полупрозрачные перед этим делятся на альфу.
+ */
+public class ToneMappingPass implements PostProcessPass {
+
+    public enum Operator {
+        // Только экспозиция с обрезкой в [0, 1]
+        LINEAR,
+        // x / (1 + x), нормированная так, что белая точка переходит в 1
+        REINHARD,
+        // Аппроксимация кривой ACES (Narkowicz)
+        ACES
+    }
+
+    private boolean enabled = true;
+    private Operator operator = Operator.REINHARD;
+    private float exposure = 1.0f;
+    private float gamma = 1.0f;
+    private float whitePoint = 2.0f;
+
+    private final int[] table = new int[256];
+    private boolean tableValid;
+
+    @Override
+    public void apply(FrameBuffer source, FrameBuffer target, ZBuffer depth, int fromRow, int toRow) {
+        int[] src = source.getPixels();
+        int[] dst = target.getPixels();
+        int[] lut = table;
+        int width = source.getWidth();
+
+        for (int i = fromRow * width, end = toRow * width; i < end; i++) {
+            int argb = src[i];
+            int a = argb >>> 24;
+            if (a == 255) {
+                dst[i] = 0xFF000000 | (lut[(argb >> 16) & 0xFF] << 16)
+                        | (lut[(argb >> 8) & 0xFF] << 8) | lut[argb & 0xFF];
+            } else if (a == 0) {
+                dst[i] = argb;
+            } else {
+                dst[i] = (a << 24)
+                        | (mapPremultiplied((argb >> 16) & 0xFF, a) << 16)
+                        | (mapPremultiplied((argb >> 8) & 0xFF, a) << 8)
+                        | mapPremultiplied(argb & 0xFF, a);
+            }
+        }
+    }
+
+    private int mapPremultiplied(int channel, int alpha) {
+        int straight = Math.min(255, (channel * 255 + alpha / 2) / alpha);
+        return (table[straight] * alpha + 127) / 255;
+    }
+
+    /**
+     * Таблица пересчитывается здесь, а не в параллельных полосах
+     */
+    @Override
+    public void prepare(FrameBuffer source, ZBuffer depth) {
+        if (tableValid) {
+            return;
+        }
+        double inverseGamma = 1.0 / gamma;
+        double white = map(whitePoint);
+        for (int i = 0; i < 256; i++) {
+            double value = map(i / 255.0 * exposure);
+            if (operator != Operator.LINEAR) {
+                value /= white;
+            }
+            value = Math.pow(Math.max(0.0, Math.min(1.0, value)), inverseGamma);
+            table[i] = (int) Math.round(value * 255.0);
+        }
+        tableValid = true;
+    }
+
+    private double map(double x) {
+        switch (operator) {
+            case REINHARD:
+                return x / (1.0 + x);
+            case ACES:
+                return (x * (2.51 * x + 0.03)) / (x * (2.43 * x + 0.59) + 0.14);
+            default:
+                return x;
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public void setOperator(Operator operator) {
+        if (operator == null) {
+            throw new IllegalArgumentException("Tone mapping operator must not be null");
+        }
+        if (this.operator != operator) {
+            this.operator = operator;
+            tableValid = false;
+        }
+    }
+
+    public float getExposure() {
+        return exposure;
+    }
+
+    public void setExposure(float exposure) {
+        if (exposure <= 0) {
+            throw new IllegalArgumentException("Exposure must be positive: " + exposure);
+        }
+        if (this.exposure != exposure) {
+            this.exposure = exposure;
+            tableValid = false;
+        }
+    }
+
+    public float getGamma() {
+        return gamma;
+    }
+
+    public void setGamma(float gamma) {
+        if (gamma <= 0) {
+            throw new IllegalArgumentException("Gamma must be positive: " + gamma);
+        }
+        if (this.gamma != gamma) {
+            this.gamma = gamma;
+            tableValid = false;
+        }
+    }
+
+    public float getWhitePoint() {
+        return whitePoint;
+    }
+
+    /**
+     * Яркость (после экспозиции), которая переходит в белый
+     */
+    public void setWhitePoint(float whitePoint) {
+        if (whitePoint <= 0) {
+            throw new IllegalArgumentException("White point must be positive: " + whitePoint);
+        }
+        if (this.whitePoint != whitePoint) {
+            this.whitePoint = whitePoint;
+            tableValid = false;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.cgvsu.render_engine.processing;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Набор уровней детализации одной модели: уровень 0 - исходная модель,
+ * дальше - упрощенные копии с долей треугольников из ratios.
+ *
+ * Уровень выбирается по радиусу модели на экране: число треугольников должно
+ * расти с площадью проекции, поэтому берется самый грубый уровень, у которого
+ * ratio >= (radius / fullDetailRadius)^2.
+ * Для оценки радиуса без модели сцены набор хранит ограничивающую сферу
+ * исходной модели в ее координатах.
+ */
+public class LodSet {
+    public static final float[] DEFAULT_RATIOS = {1.0f, 0.5f, 0.25f, 0.1f};
+    // Радиус на экране (в пикселях), начиная с которого нужна полная детализация
+    public static final float DEFAULT_FULL_DETAIL_RADIUS = 300.0f;
+
+    private final List<Model> levels;
+    private final float[] ratios;
+    private final Vector3f center;
+    private final float radius;
+    private float fullDetailRadius = DEFAULT_FULL_DETAIL_RADIUS;
+
+    private LodSet(List<Model> levels, float[] ratios, Vector3f center, float radius) {
+        this.levels = Collections.unmodifiableList(levels);
+        this.ratios = ratios;
+        this.center = center;
+        this.radius = radius;
+    }
+
+    public static LodSet build(Model model) {
+        return build(model, DEFAULT_RATIOS);
+    }
+
+    /**
+     * Построить уровни параллельно: каждый упрощается из исходной модели независимо
+     *
+     * @param ratios доли треугольников по убыванию, первая должна быть 1.0
+     */
+    public static LodSet build(Model model, float[] ratios) {
+        if (model == null) {
+            throw new IllegalArgumentException("Model cannot be null");
+        }
+        if (ratios == null || ratios.length == 0 || ratios[0] != 1.0f) {
+            throw new IllegalArgumentException("LOD ratios must start with 1.0");
+        }
+        for (int i = 1; i < ratios.length; i++) {
+            if (ratios[i] <= 0 || ratios[i] >= ratios[i - 1]) {
+                throw new IllegalArgumentException("LOD ratios must be positive and decreasing: "
+                        + Arrays.toString(ratios));
+            }
+        }
+
+        MeshSimplifier simplifier = new MeshSimplifier();
+        Model[] simplified = new Model[ratios.length];
+        simplified[0] = model;
+        IntStream.range(1, ratios.length)
+                .parallel()
+                .forEach(i -> simplified[i] = simplifier.simplify(model, ratios[i]));
+
+        // Сфера по центру ограничивающего параллелепипеда, как у SceneRenderer
+        List<Vector3f> vertices = model.getVertices();
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (Vector3f v : vertices) {
+            minX = Math.min(minX, v.getX()); maxX = Math.max(maxX, v.getX());
+            minY = Math.min(minY, v.getY()); maxY = Math.max(maxY, v.getY());
+            minZ = Math.min(minZ, v.getZ()); maxZ = Math.max(maxZ, v.getZ());
+        }
+        Vector3f center = vertices.isEmpty()
+                ? new Vector3f()
+                : new Vector3f((minX + maxX) * 0.5, (minY + maxY) * 0.5, (minZ + maxZ) * 0.5);
+        float radius = 0.0f;
+        for (Vector3f v : vertices) {
+            radius = Math.max(radius, (float) v.distance(center));
+        }
+
+        return new LodSet(new ArrayList<>(Arrays.asList(simplified)), ratios.clone(), center, radius);
+    }
+
+    /**
+     * Номер уровня для модели с радиусом screenRadius пикселей на экране
+     */
+    public int selectLevel(float screenRadius) {
+        float coverage = screenRadius / fullDetailRadius;
+        float needed = coverage * coverage;
+        for (int i = levels.size() - 1; i > 0; i--) {
+            if (ratios[i] >= needed) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    public Model select(float screenRadius) {
+        return levels.get(selectLevel(screenRadius));
+    }
+
+    /**
+     * Уровень для камеры в cameraPosition, когда модель стоит без преобразования:
+     * радиус сферы модели на экране высотой viewportHeight пикселей с углом обзора fov (радианы)
+     */
+    public Model select(Vector3f cameraPosition, float fov, int viewportHeight) {
+        float distance = (float) center.distance(cameraPosition);
+        if (distance <= radius) {
+            return levels.get(0);
+        }
+        float pixelsPerUnitAtUnitDistance = (float) (viewportHeight * 0.5 / Math.tan(fov * 0.5));
+        return select(radius * pixelsPerUnitAtUnitDistance / distance);
+    }
+
+    /**
+     * Центр ограничивающей сферы исходной модели (в ее координатах)
+     */
+    public Vector3f getCenter() {
+        return center;
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    public Model getLevel(int index) {
+        return levels.get(index);
+    }
+
+    public int getLevelCount() {
+        return levels.size();
+    }
+
+    public List<Model> getLevels() {
+        return levels;
+    }
+
+    public float getFullDetailRadius() {
+        return fullDetailRadius;
+    }
+
+    public void setFullDetailRadius(float fullDetailRadius) {
+        if (fullDetailRadius <= 0) {
+            throw new IllegalArgumentException("Full detail radius must be positive, got: " + fullDetailRadius);
+        }
+        this.fullDetailRadius = fullDetailRadius;
+    }
+}
@@ -0,0 +1,545 @@
+package com.cgvsu.render_engine.processing;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Упрощение сетки стягиванием ребер по квадрикам ошибки (Garland-Heckbert).
+ *
+ * Каждой вершине сопоставляется квадрика - сумма квадратов расстояний до плоскостей
+ * прилегающих треугольников. Ребра стягиваются в порядке возрастания ошибки
+ * (очередь с приоритетом, устаревшие записи отбрасываются по версии вершины).
+ * Открытые границы и швы текстурных координат закрепляются дополнительными
+ * перпендикулярными плоскостями, поэтому силуэт и развертка сохраняются.
+ * Стягивание, переворачивающее соседние треугольники, отклоняется.
+ *
+ * Индексы текстурных координат и нормалей остаются у углов треугольников,
+ * так что UV и нормали исходной модели переносятся на упрощенную без пересчета.
+ * Экземпляр без состояния, можно вызывать из нескольких потоков.
+ */
+public class MeshSimplifier {
+    // Вес закрепляющих плоскостей для границ и швов
+    private static final double BOUNDARY_WEIGHT = 1000.0;
+    // Минимальный косинус угла между нормалью треугольника до и после стягивания
+    private static final double FLIP_THRESHOLD = 0.2;
+
+    /**
+     * Упростить модель до доли ratio от исходного числа треугольников
+     */
+    public Model simplify(Model model, float ratio) {
+        if (model == null) {
+            throw new IllegalArgumentException("Model cannot be null");
+        }
+        if (ratio <= 0 || ratio > 1) {
+            throw new IllegalArgumentException("Simplification ratio must be in (0, 1], got: " + ratio);
+        }
+
+        Model source = isTriangulated(model) ? model : new Triangulator().triangulateModel(model);
+        int targetTriangles = Math.max(1, Math.round(source.getPolygons().size() * ratio));
+        return new Simplification(source).run(targetTriangles);
+    }
+
+    private static boolean isTriangulated(Model model) {
+        for (Polygon polygon : model.getPolygons()) {
+            if (polygon.getVertexIndices().size() != 3) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Кандидат на стягивание ребра (a, b) в точку (x, y, z)
+     */
+    private static final class Collapse implements Comparable<Collapse> {
+        final double cost;
+        final int a;
+        final int b;
+        final int versionA;
+        final int versionB;
+        final double x;
+        final double y;
+        final double z;
+
+        Collapse(double cost, int a, int b, int versionA, int versionB, double x, double y, double z) {
+            this.cost = cost;
+            this.a = a;
+            this.b = b;
+            this.versionA = versionA;
+            this.versionB = versionB;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override
+        public int compareTo(Collapse other) {
+            return Double.compare(cost, other.cost);
+        }
+    }
+
+    /**
+     * Состояние одного упрощения; плоские массивы вместо объектов на вершину
+     */
+    private static final class Simplification {
+        private final Model source;
+        private final int vertexCount;
+        private final int triangleCount;
+
+        private final double[] positions;
+        private final double[] quadrics;
+        private final int[] versions;
+        private final boolean[] vertexRemoved;
+
+        private final int[] triangles;
+        private final int[] textureCorners;
+        private final int[] normalCorners;
+        private final boolean[] triangleRemoved;
+        private int aliveTriangles;
+
+        // Треугольники вокруг вершины (могут содержать удаленные, чистятся лениво)
+        private final int[][] vertexTriangles;
+        private final int[] vertexTriangleCount;
+
+        private final PriorityQueue<Collapse> queue = new PriorityQueue<>();
+
+        Simplification(Model source) {
+            this.source = source;
+            List<Vector3f> vertices = source.getVertices();
+            List<Polygon> polygons = source.getPolygons();
+
+            vertexCount = vertices.size();
+            triangleCount = polygons.size();
+
+            positions = new double[vertexCount * 3];
+            for (int i = 0; i < vertexCount; i++) {
+                Vector3f v = vertices.get(i);
+                positions[i * 3] = v.getX();
+                positions[i * 3 + 1] = v.getY();
+                positions[i * 3 + 2] = v.getZ();
+            }
+
+            quadrics = new double[vertexCount * 10];
+            versions = new int[vertexCount];
+            vertexRemoved = new boolean[vertexCount];
+
+            triangles = new int[triangleCount * 3];
+            textureCorners = new int[triangleCount * 3];
+            normalCorners = new int[triangleCount * 3];
+            triangleRemoved = new boolean[triangleCount];
+            Arrays.fill(textureCorners, -1);
+            Arrays.fill(normalCorners, -1);
+
+            vertexTriangleCount = new int[vertexCount];
+            for (int t = 0; t < triangleCount; t++) {
+                Polygon polygon = polygons.get(t);
+                List<Integer> vertexIndices = polygon.getVertexIndices();
+                List<Integer> textureIndices = polygon.getTextureVertexIndices();
+                List<Integer> normalIndices = polygon.getNormalIndices();
+                for (int c = 0; c < 3; c++) {
+                    triangles[t * 3 + c] = vertexIndices.get(c);
+                    if (textureIndices.size() >= 3) {
+                        textureCorners[t * 3 + c] = textureIndices.get(c);
+                    }
+                    if (normalIndices.size() >= 3) {
+                        normalCorners[t * 3 + c] = normalIndices.get(c);
+                    }
+                    vertexTriangleCount[vertexIndices.get(c)]++;
+                }
+            }
+            aliveTriangles = triangleCount;
+
+            vertexTriangles = new int[vertexCount][];
+            for (int v = 0; v < vertexCount; v++) {
+                vertexTriangles[v] = new int[Math.max(4, vertexTriangleCount[v])];
+                vertexTriangleCount[v] = 0;
+            }
+            for (int t = 0; t < triangleCount; t++) {
+                for (int c = 0; c < 3; c++) {
+                    addVertexTriangle(triangles[t * 3 + c], t);
+                }
+            }
+        }
+
+        Model run(int targetTriangles) {
+            computeQuadrics();
+            addBoundaryConstraints();
+
+            Set<Long> queuedEdges = new HashSet<>();
+            for (int t = 0; t < triangleCount; t++) {
+                for (int c = 0; c < 3; c++) {
+                    int a = triangles[t * 3 + c];
+                    int b = triangles[t * 3 + (c + 1) % 3];
+                    // Внутреннее ребро встречается в двух треугольниках - берем один раз
+                    if (queuedEdges.add(edgeKey(a, b))) {
+                        pushCollapse(a, b);
+                    }
+                }
+            }
+
+            while (aliveTriangles > targetTriangles && !queue.isEmpty()) {
+                Collapse collapse = queue.poll();
+                if (vertexRemoved[collapse.a] || vertexRemoved[collapse.b]
+                        || versions[collapse.a] != collapse.versionA
+                        || versions[collapse.b] != collapse.versionB) {
+                    continue;
+                }
+                if (causesFlip(collapse.a, collapse.b, collapse.x, collapse.y, collapse.z)
+                        || causesFlip(collapse.b, collapse.a, collapse.x, collapse.y, collapse.z)) {
+                    continue;
+                }
+                applyCollapse(collapse);
+            }
+
+            return buildModel();
+        }
+
+        private void computeQuadrics() {
+            for (int t = 0; t < triangleCount; t++) {
+                double[] plane = trianglePlane(t);
+                if (plane == null) {
+                    continue;
+                }
+                // Вес по площади: крупные грани влияют сильнее
+                double area = plane[4];
+                for (int c = 0; c < 3; c++) {
+                    addPlaneQuadric(triangles[t * 3 + c], plane[0], plane[1], plane[2], plane[3], area);
+                }
+            }
+        }
+
+        /**
+         * Границы (ребро у одного треугольника) и швы UV (у соседей разные текстурные
+         * индексы в общей вершине) закрепляются плоскостью, перпендикулярной грани
+         */
+        private void addBoundaryConstraints() {
+            Map<Long, Integer> firstTriangleOfEdge = new HashMap<>();
+            Map<Long, Boolean> constrained = new HashMap<>();
+
+            for (int t = 0; t < triangleCount; t++) {
+                for (int c = 0; c < 3; c++) {
+                    int a = triangles[t * 3 + c];
+                    int b = triangles[t * 3 + (c + 1) % 3];
+                    long key = edgeKey(a, b);
+                    Integer other = firstTriangleOfEdge.putIfAbsent(key, t);
+                    if (other == null) {
+                        constrained.put(key, true);
+                    } else {
+                        boolean seam = textureIndexAt(other, a) != textureIndexAt(t, a)
+                                || textureIndexAt(other, b) != textureIndexAt(t, b);
+                        constrained.put(key, seam);
+                    }
+                }
+            }
+
+            for (Map.Entry<Long, Boolean> entry : constrained.entrySet()) {
+                if (!entry.getValue()) {
+                    continue;
+                }
+                long key = entry.getKey();
+                int a = (int) (key >>> 32);
+                int b = (int) key;
+                int t = firstTriangleOfEdge.get(key);
+                double[] plane = trianglePlane(t);
+                if (plane == null) {
+                    continue;
+                }
+
+                double ex = positions[b * 3] - positions[a * 3];
+                double ey = positions[b * 3 + 1] - positions[a * 3 + 1];
+                double ez = positions[b * 3 + 2] - positions[a * 3 + 2];
+                // Нормаль закрепляющей плоскости: ребро x нормаль грани
+                double nx = ey * plane[2] - ez * plane[1];
+                double ny = ez * plane[0] - ex * plane[2];
+                double nz = ex * plane[1] - ey * plane[0];
+                double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+                if (length < 1e-12) {
+                    continue;
+                }
+                nx /= length;
+                ny /= length;
+                nz /= length;
+                double d = -(nx * positions[a * 3] + ny * positions[a * 3 + 1] + nz * positions[a * 3 + 2]);
+                double weight = BOUNDARY_WEIGHT * (ex * ex + ey * ey + ez * ez);
+                addPlaneQuadric(a, nx, ny, nz, d, weight);
+                addPlaneQuadric(b, nx, ny, nz, d, weight);
+            }
+        }
+
+        private int textureIndexAt(int triangle, int vertex) {
+            for (int c = 0; c < 3; c++) {
+                if (triangles[triangle * 3 + c] == vertex) {
+                    return textureCorners[triangle * 3 + c];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Плоскость треугольника: {nx, ny, nz, d, площадь} или null для вырожденного
+         */
+        private double[] trianglePlane(int t) {
+            int i0 = triangles[t * 3] * 3;
+            int i1 = triangles[t * 3 + 1] * 3;
+            int i2 = triangles[t * 3 + 2] * 3;
+
+            double e1x = positions[i1] - positions[i0];
+            double e1y = positions[i1 + 1] - positions[i0 + 1];
+            double e1z = positions[i1 + 2] - positions[i0 + 2];
+            double e2x = positions[i2] - positions[i0];
+            double e2y = positions[i2 + 1] - positions[i0 + 1];
+            double e2z = positions[i2 + 2] - positions[i0 + 2];
+
+            double nx = e1y * e2z - e1z * e2y;
+            double ny = e1z * e2x - e1x * e2z;
+            double nz = e1x * e2y - e1y * e2x;
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length < 1e-12) {
+                return null;
+            }
+            nx /= length;
+            ny /= length;
+            nz /= length;
+            double d = -(nx * positions[i0] + ny * positions[i0 + 1] + nz * positions[i0 + 2]);
+            return new double[]{nx, ny, nz, d, length * 0.5};
+        }
+
+        private void addPlaneQuadric(int v, double a, double b, double c, double d, double weight) {
+            int q = v * 10;
+            quadrics[q] += weight * a * a;
+            quadrics[q + 1] += weight * a * b;
+            quadrics[q + 2] += weight * a * c;
+            quadrics[q + 3] += weight * a * d;
+            quadrics[q + 4] += weight * b * b;
+            quadrics[q + 5] += weight * b * c;
+            quadrics[q + 6] += weight * b * d;
+            quadrics[q + 7] += weight * c * c;
+            quadrics[q + 8] += weight * c * d;
+            quadrics[q + 9] += weight * d * d;
+        }
+
+        private void pushCollapse(int a, int b) {
+            double[] q = new double[10];
+            for (int i = 0; i < 10; i++) {
+                q[i] = quadrics[a * 10 + i] + quadrics[b * 10 + i];
+            }
+
+            // Оптимальная точка: решение системы 3x3 по правилу Крамера
+            double det = determinant(q[0], q[1], q[2], q[1], q[4], q[5], q[2], q[5], q[7]);
+            double x, y, z;
+            if (Math.abs(det) > 1e-12) {
+                x = determinant(-q[3], q[1], q[2], -q[6], q[4], q[5], -q[8], q[5], q[7]) / det;
+                y = determinant(q[0], -q[3], q[2], q[1], -q[6], q[5], q[2], -q[8], q[7]) / det;
+                z = determinant(q[0], q[1], -q[3], q[1], q[4], -q[6], q[2], q[5], -q[8]) / det;
+            } else {
+                // Система вырождена: лучший из концов ребра и середины
+                double ax = positions[a * 3], ay = positions[a * 3 + 1], az = positions[a * 3 + 2];
+                double bx = positions[b * 3], by = positions[b * 3 + 1], bz = positions[b * 3 + 2];
+                double mx = (ax + bx) * 0.5, my = (ay + by) * 0.5, mz = (az + bz) * 0.5;
+                double costA = quadricError(q, ax, ay, az);
+                double costB = quadricError(q, bx, by, bz);
+                double costM = quadricError(q, mx, my, mz);
+                if (costA <= costB && costA <= costM) {
+                    x = ax; y = ay; z = az;
+                } else if (costB <= costM) {
+                    x = bx; y = by; z = bz;
+                } else {
+                    x = mx; y = my; z = mz;
+                }
+            }
+
+            double cost = Math.max(0.0, quadricError(q, x, y, z));
+            queue.add(new Collapse(cost, a, b, versions[a], versions[b], x, y, z));
+        }
+
+        private static double quadricError(double[] q, double x, double y, double z) {
+            return q[0] * x * x + 2 * q[1] * x * y + 2 * q[2] * x * z + 2 * q[3] * x
+                    + q[4] * y * y + 2 * q[5] * y * z + 2 * q[6] * y
+                    + q[7] * z * z + 2 * q[8] * z
+                    + q[9];
+        }
+
+        private static double determinant(double a, double b, double c,
+                                          double d, double e, double f,
+                                          double g, double h, double i) {
+            return a * (e * i - f * h) - b * (d * i - f * g) + c * (d * h - e * g);
+        }
+
+        /**
+         * Перевернется ли какой-нибудь треугольник вокруг moved (кроме общих с other),
+         * если moved переместить в (x, y, z)
+         */
+        private boolean causesFlip(int moved, int other, double x, double y, double z) {
+            int[] list = vertexTriangles[moved];
+            for (int i = 0; i < vertexTriangleCount[moved]; i++) {
+                int t = list[i];
+                if (triangleRemoved[t]) {
+                    continue;
+                }
+                int base = t * 3;
+                if (triangles[base] == other || triangles[base + 1] == other || triangles[base + 2] == other) {
+                    continue;
+                }
+
+                double[] before = trianglePlane(t);
+                if (before == null) {
+                    continue;
+                }
+
+                double saveX = positions[moved * 3];
+                double saveY = positions[moved * 3 + 1];
+                double saveZ = positions[moved * 3 + 2];
+                positions[moved * 3] = x;
+                positions[moved * 3 + 1] = y;
+                positions[moved * 3 + 2] = z;
+                double[] after = trianglePlane(t);
+                positions[moved * 3] = saveX;
+                positions[moved * 3 + 1] = saveY;
+                positions[moved * 3 + 2] = saveZ;
+
+                if (after == null
+                        || before[0] * after[0] + before[1] * after[1] + before[2] * after[2] < FLIP_THRESHOLD) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Стянуть b в a: треугольники с обеими вершинами исчезают, остальные переходят на a
+         */
+        private void applyCollapse(Collapse collapse) {
+            int a = collapse.a;
+            int b = collapse.b;
+
+            positions[a * 3] = collapse.x;
+            positions[a * 3 + 1] = collapse.y;
+            positions[a * 3 + 2] = collapse.z;
+            for (int i = 0; i < 10; i++) {
+                quadrics[a * 10 + i] += quadrics[b * 10 + i];
+            }
+
+            int[] list = vertexTriangles[b];
+            for (int i = 0; i < vertexTriangleCount[b]; i++) {
+                int t = list[i];
+                if (triangleRemoved[t]) {
+                    continue;
+                }
+                int base = t * 3;
+                if (triangles[base] == a || triangles[base + 1] == a || triangles[base + 2] == a) {
+                    triangleRemoved[t] = true;
+                    aliveTriangles--;
+                    continue;
+                }
+                for (int c = 0; c < 3; c++) {
+                    if (triangles[base + c] == b) {
+                        triangles[base + c] = a;
+                    }
+                }
+                addVertexTriangle(a, t);
+            }
+
+            vertexRemoved[b] = true;
+            vertexTriangleCount[b] = 0;
+            versions[a]++;
+            compactVertexTriangles(a);
+
+            // Новые стоимости для всех ребер вокруг a
+            int[] around = vertexTriangles[a];
+            int[] neighbors = new int[vertexTriangleCount[a] * 2];
+            int neighborCount = 0;
+            for (int i = 0; i < vertexTriangleCount[a]; i++) {
+                int base = around[i] * 3;
+                for (int c = 0; c < 3; c++) {
+                    int neighbor = triangles[base + c];
+                    if (neighbor != a && !contains(neighbors, neighborCount, neighbor)) {
+                        neighbors[neighborCount++] = neighbor;
+                        pushCollapse(a, neighbor);
+                    }
+                }
+            }
+        }
+
+        private static boolean contains(int[] values, int count, int value) {
+            for (int i = 0; i < count; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void addVertexTriangle(int v, int t) {
+            int[] list = vertexTriangles[v];
+            if (vertexTriangleCount[v] == list.length) {
+                list = Arrays.copyOf(list, list.length * 2);
+                vertexTriangles[v] = list;
+            }
+            list[vertexTriangleCount[v]++] = t;
+        }
+
+        private void compactVertexTriangles(int v) {
+            int[] list = vertexTriangles[v];
+            int count = 0;
+            for (int i = 0; i < vertexTriangleCount[v]; i++) {
+                int t = list[i];
+                if (!triangleRemoved[t]) {
+                    list[count++] = t;
+                }
+            }
+            vertexTriangleCount[v] = count;
+        }
+
+        private Model buildModel() {
+            int[] remap = new int[vertexCount];
+            Arrays.fill(remap, -1);
+            ArrayList<Vector3f> vertices = new ArrayList<>();
+            ArrayList<Polygon> polygons = new ArrayList<>(aliveTriangles);
+
+            for (int t = 0; t < triangleCount; t++) {
+                if (triangleRemoved[t]) {
+                    continue;
+                }
+                Polygon polygon = new Polygon();
+                for (int c = 0; c < 3; c++) {
+                    int v = triangles[t * 3 + c];
+                    if (remap[v] < 0) {
+                        remap[v] = vertices.size();
+                        vertices.add(new Vector3f(positions[v * 3], positions[v * 3 + 1], positions[v * 3 + 2]));
+                    }
+                    polygon.getVertexIndices().add(remap[v]);
+                    if (textureCorners[t * 3 + c] >= 0) {
+                        polygon.getTextureVertexIndices().add(textureCorners[t * 3 + c]);
+                    }
+                    if (normalCorners[t * 3 + c] >= 0) {
+                        polygon.getNormalIndices().add(normalCorners[t * 3 + c]);
+                    }
+                }
+                polygons.add(polygon);
+            }
+
+            Model result = new Model(vertices,
+                    new ArrayList<>(source.getTextureVertices()),
+                    new ArrayList<>(source.getNormals()),
+                    polygons);
+            result.setMaterial(source.getMaterial());
+            return result;
+        }
+
+        private static long edgeKey(int a, int b) {
+            int min = Math.min(a, b);
+            int max = Math.max(a, b);
+            return ((long) min << 32) | (max & 0xFFFFFFFFL);
+        }
+    }
+}
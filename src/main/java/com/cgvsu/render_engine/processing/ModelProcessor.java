@@ -4,25 +4,119 @@ import com.cgvsu.model.Model;
 
 public class ModelProcessor {
     private final Triangulator triangulator;
+    private boolean weldVertices = false;
+    private float weldTolerance = VertexWelder.DEFAULT_TOLERANCE;
+    private VertexWelder.WeldReport lastWeldReport;
+    private boolean optimizeVertexCache = false;
+    private VertexCacheOptimizer.CacheReport lastCacheReport;
+    private boolean buildLods = false;
 
     public ModelProcessor() {
         this.triangulator = new Triangulator();
     }
 
     public Model processModel(Model model) {
+        // Сварка совпадающих вершин (по желанию)
+        lastWeldReport = weldVertices ? weld(model) : null;
+
         // Триангуляция
         Model triangulatedModel = triangulator.triangulateModel(model);
 
         // Пересчет нормалей
         NormalCalculator.recalculateNormals(triangulatedModel);
 
+        // Порядок треугольников и вершин под кеш вершин
+        lastCacheReport = optimizeVertexCache ? optimizeVertexCache(triangulatedModel) : null;
+
+        // Уровни детализации (по желанию); упрощенные уровни тоже под кеш вершин
+        if (buildLods) {
+            LodSet lodSet = buildLods(triangulatedModel);
+            if (optimizeVertexCache) {
+                for (int i = 1; i < lodSet.getLevelCount(); i++) {
+                    optimizeVertexCache(lodSet.getLevel(i));
+                }
+            }
+        }
+
         return triangulatedModel;
     }
 
+    /**
+     * Слить совпадающие вершины модели с текущим допуском
+     */
+    public VertexWelder.WeldReport weld(Model model) {
+        return new VertexWelder(weldTolerance).weld(model);
+    }
+
+    public boolean isWeldVertices() {
+        return weldVertices;
+    }
+
+    public void setWeldVertices(boolean weldVertices) {
+        this.weldVertices = weldVertices;
+    }
+
+    public float getWeldTolerance() {
+        return weldTolerance;
+    }
+
+    public void setWeldTolerance(float weldTolerance) {
+        if (weldTolerance <= 0) {
+            throw new IllegalArgumentException("Weld tolerance must be positive, got: " + weldTolerance);
+        }
+        this.weldTolerance = weldTolerance;
+    }
+
+    /**
+     * Итог сварки при последнем processModel; null, если сварка была выключена
+     */
+    public VertexWelder.WeldReport getLastWeldReport() {
+        return lastWeldReport;
+    }
+
+    /**
+     * Переупорядочить треугольники и вершины триангулированной модели для локальности кеша
+     */
+    public VertexCacheOptimizer.CacheReport optimizeVertexCache(Model model) {
+        return new VertexCacheOptimizer().optimize(model);
+    }
+
+    public boolean isOptimizeVertexCache() {
+        return optimizeVertexCache;
+    }
+
+    public void setOptimizeVertexCache(boolean optimizeVertexCache) {
+        this.optimizeVertexCache = optimizeVertexCache;
+    }
+
+    /**
+     * ACMR до и после при последнем processModel; null, если оптимизация была выключена
+     */
+    public VertexCacheOptimizer.CacheReport getLastCacheReport() {
+        return lastCacheReport;
+    }
+
     public Model triangulate(Model model) {
         return triangulator.triangulateModel(model);
     }
 
+    /**
+     * Построить уровни детализации и привязать их к модели
+     */
+    public LodSet buildLods(Model model) {
+        LodSet lodSet = LodSet.build(model);
+        model.setLodSet(lodSet);
+        return lodSet;
+    }
+
+    public boolean isBuildLods() {
+        return buildLods;
+    }
+
+    public void setBuildLods(boolean buildLods) {
+        this.buildLods = buildLods;
+    }
+
     public void recalculateNormals(Model model) {
         NormalCalculator.recalculateNormals(model);
     }
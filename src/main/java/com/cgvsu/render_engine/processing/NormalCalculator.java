@@ -5,49 +5,334 @@ import com.cgvsu.model.Model;
 import com.cgvsu.model.Polygon;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
+/**
+ * Расчет нормалей вершин.
+ *
+ * Работает на плоских массивах float/int и параллельно: нормали граней считаются
+ * по граням, а сумма для каждой вершины - по списку ее углов (обратная смежность),
+ * поэтому потоки пишут только в свои ячейки и не мешают друг другу.
+ *
+ * Нормаль грани считается по всем ее вершинам (метод Ньюэлла), поэтому
+ * невыпуклые и неплоские многоугольники тоже дают разумный результат.
+ * При сглаживающем угле меньше 180° углы вершины, грани которых расходятся
+ * сильнее этого угла, получают отдельные нормали - жесткие ребра сохраняются.
+ */
 public class NormalCalculator {
+
+    /**
+     * Вес вклада грани в нормаль вершины
+     */
+    public enum Weighting {
+        /** Все грани одинаково */
+        UNIFORM,
+        /** По площади грани */
+        AREA,
+        /** По углу грани при вершине */
+        ANGLE
+    }
+
+    public static final float SMOOTH_ALL = 180.0f;
+
+    // Грань вырождена, если ее площадь меньше этой доли от квадрата длины ее ребер
+    private static final float DEGENERATE_RATIO = 1e-6f;
+
+    /**
+     * Сглаженные по площади нормали, по одной на вершину
+     */
     public static void recalculateNormals(Model model) {
+        recalculateNormals(model, Weighting.AREA, SMOOTH_ALL);
+    }
+
+    /**
+     * Пересчитать нормали модели.
+     *
+     * @param creaseAngleDegrees наибольший угол между гранями, которые еще сглаживаются;
+     *                           {@link #SMOOTH_ALL} - одна нормаль на вершину
+     */
+    public static void recalculateNormals(Model model, Weighting weighting, float creaseAngleDegrees) {
+        if (model == null) {
+            throw new IllegalArgumentException("Model cannot be null");
+        }
+        if (weighting == null) {
+            throw new IllegalArgumentException("Weighting cannot be null");
+        }
+
         List<Vector3f> vertices = model.getVertices();
         List<Polygon> polygons = model.getPolygons();
+        int vertexCount = vertices.size();
+        int polygonCount = polygons.size();
 
-        ArrayList<Vector3f> newNormals = new ArrayList<>();
-        for (int i = 0; i < vertices.size(); i++) {
-            newNormals.add(new Vector3f(0, 0, 0));
+        float[] positions = new float[vertexCount * 3];
+        IntStream.range(0, vertexCount).parallel().forEach(i -> {
+            Vector3f v = vertices.get(i);
+            positions[i * 3] = v.getX();
+            positions[i * 3 + 1] = v.getY();
+            positions[i * 3 + 2] = v.getZ();
+        });
+
+        int[] cornerOffsets = new int[polygonCount + 1];
+        for (int p = 0; p < polygonCount; p++) {
+            cornerOffsets[p + 1] = cornerOffsets[p] + polygons.get(p).getVertexIndices().size();
         }
+        int[] cornerVertices = new int[cornerOffsets[polygonCount]];
+        IntStream.range(0, polygonCount).parallel().forEach(p -> {
+            ArrayList<Integer> indices = polygons.get(p).getVertexIndices();
+            int base = cornerOffsets[p];
+            for (int k = 0; k < indices.size(); k++) {
+                cornerVertices[base + k] = indices.get(k);
+            }
+        });
 
-        for (Polygon polygon : polygons) {
-            List<Integer> vertexIndices = polygon.getVertexIndices();
-            if (vertexIndices.size() < 3) continue;
+        boolean split = creaseAngleDegrees < SMOOTH_ALL;
+        FlatNormals result = computeNormals(positions, cornerOffsets, cornerVertices,
+                weighting, creaseAngleDegrees);
 
-            Vector3f v1 = vertices.get(vertexIndices.get(0));
-            Vector3f v2 = vertices.get(vertexIndices.get(1));
-            Vector3f v3 = vertices.get(vertexIndices.get(2));
-            Vector3f normal = Vector3f.calculatePolygonNormal(v1, v2, v3);
+        float[] normals = result.normals;
+        Vector3f[] normalObjects = new Vector3f[normals.length / 3];
+        IntStream.range(0, normalObjects.length).parallel().forEach(i ->
+                normalObjects[i] = new Vector3f(normals[i * 3], normals[i * 3 + 1], normals[i * 3 + 2]));
+        model.setNormals(new ArrayList<>(Arrays.asList(normalObjects)));
 
-            for (Integer vertexIndex : vertexIndices) {
-                Vector3f currentNormal = newNormals.get(vertexIndex);
-                currentNormal.setX(currentNormal.getX() + normal.getX());
-                currentNormal.setY(currentNormal.getY() + normal.getY());
-                currentNormal.setZ(currentNormal.getZ() + normal.getZ());
+        int[] cornerNormals = result.cornerNormals;
+        IntStream.range(0, polygonCount).parallel().forEach(p -> {
+            Polygon polygon = polygons.get(p);
+            ArrayList<Integer> normalIndices = polygon.getNormalIndices();
+            normalIndices.clear();
+            if (!split) {
+                // Каждая вершина ссылается на свою нормаль по тому же индексу
+                normalIndices.addAll(polygon.getVertexIndices());
+                return;
+            }
+            for (int c = cornerOffsets[p]; c < cornerOffsets[p + 1]; c++) {
+                normalIndices.add(cornerNormals[c]);
             }
+        });
+    }
+
+    /**
+     * Нормали в плоском виде: normals - по 3 числа на нормаль,
+     * cornerNormals - номер нормали для каждого угла каждой грани
+     */
+    public static final class FlatNormals {
+        public final float[] normals;
+        public final int[] cornerNormals;
+
+        FlatNormals(float[] normals, int[] cornerNormals) {
+            this.normals = normals;
+            this.cornerNormals = cornerNormals;
         }
+    }
+
+    /**
+     * Расчет нормалей на плоских массивах.
+     *
+     * @param positions      координаты вершин, по 3 числа на вершину
+     * @param cornerOffsets  начало углов каждой грани в cornerVertices (длина - число граней + 1)
+     * @param cornerVertices номер вершины для каждого угла
+     * @return без разбиения по жестким ребрам нормаль i принадлежит вершине i
+     */
+    public static FlatNormals computeNormals(float[] positions, int[] cornerOffsets, int[] cornerVertices,
+                                             Weighting weighting, float creaseAngleDegrees) {
+        int vertexCount = positions.length / 3;
+        int polygonCount = cornerOffsets.length - 1;
+        int cornerCount = cornerVertices.length;
 
-        for (Vector3f normal : newNormals) {
-            Vector3f.normalizeVector(normal);
+        // Нормали граней (единичные) и вес каждого угла
+        float[] faceNormals = new float[polygonCount * 3];
+        float[] cornerWeights = new float[cornerCount];
+        IntStream.range(0, polygonCount).parallel().forEach(p ->
+                computeFace(p, positions, cornerOffsets, cornerVertices, weighting, faceNormals, cornerWeights));
+
+        // Обратная смежность: углы каждой вершины
+        int[] cornerFaces = new int[cornerCount];
+        IntStream.range(0, polygonCount).parallel().forEach(p ->
+                Arrays.fill(cornerFaces, cornerOffsets[p], cornerOffsets[p + 1], p));
+        int[] vertexOffsets = new int[vertexCount + 1];
+        for (int vertex : cornerVertices) {
+            vertexOffsets[vertex + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            vertexOffsets[v + 1] += vertexOffsets[v];
+        }
+        int[] vertexCorners = new int[cornerCount];
+        int[] fill = Arrays.copyOf(vertexOffsets, vertexCount);
+        for (int c = 0; c < cornerCount; c++) {
+            vertexCorners[fill[cornerVertices[c]]++] = c;
         }
 
-        model.setNormals(newNormals);
+        if (creaseAngleDegrees >= SMOOTH_ALL) {
+            float[] normals = new float[vertexCount * 3];
+            IntStream.range(0, vertexCount).parallel().forEach(v -> {
+                float x = 0, y = 0, z = 0;
+                for (int k = vertexOffsets[v]; k < vertexOffsets[v + 1]; k++) {
+                    int c = vertexCorners[k];
+                    int f = cornerFaces[c] * 3;
+                    float w = cornerWeights[c];
+                    x += faceNormals[f] * w;
+                    y += faceNormals[f + 1] * w;
+                    z += faceNormals[f + 2] * w;
+                }
+                writeNormalized(normals, v, x, y, z);
+            });
+            return new FlatNormals(normals, cornerVertices);
+        }
 
-        for (Polygon polygon : polygons) {
-            List<Integer> vertexIndices = polygon.getVertexIndices();
-            polygon.getNormalIndices().clear();
+        // Разбиение по жестким ребрам: углы вершины делятся на группы с близкими
+        // нормалями граней, у каждой группы своя нормаль
+        float cosCrease = (float) Math.cos(Math.toRadians(Math.max(0.0f, creaseAngleDegrees)));
+        int[] cornerGroup = new int[cornerCount];
+        boolean[] groupSeed = new boolean[cornerCount];
+        int[] groupCounts = new int[vertexCount];
+        IntStream.range(0, vertexCount).parallel().forEach(v -> {
+            int start = vertexOffsets[v];
+            int end = vertexOffsets[v + 1];
+            int groups = 0;
+            for (int k = start; k < end; k++) {
+                int c = vertexCorners[k];
+                int f = cornerFaces[c] * 3;
+                int group = -1;
+                // Группа определяется первым углом (затравкой), с которым грань сглаживается
+                for (int j = start; j < k && group < 0; j++) {
+                    int seed = vertexCorners[j];
+                    if (!groupSeed[seed]) {
+                        continue;
+                    }
+                    int g = cornerFaces[seed] * 3;
+                    float dot = faceNormals[f] * faceNormals[g]
+                            + faceNormals[f + 1] * faceNormals[g + 1]
+                            + faceNormals[f + 2] * faceNormals[g + 2];
+                    if (dot >= cosCrease) {
+                        group = cornerGroup[seed];
+                    }
+                }
+                if (group < 0) {
+                    group = groups++;
+                    groupSeed[c] = true;
+                }
+                cornerGroup[c] = group;
+            }
+            groupCounts[v] = Math.max(groups, 1);
+        });
+
+        int[] groupBase = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            groupBase[v + 1] = groupBase[v] + groupCounts[v];
+        }
 
-            // Каждая вершина теперь ссылается на свою нормаль по тому же индексу
-            for (Integer vertexIndex : vertexIndices) {
-                polygon.getNormalIndices().add(vertexIndex);
+        float[] normals = new float[groupBase[vertexCount] * 3];
+        int[] cornerNormals = new int[cornerCount];
+        IntStream.range(0, vertexCount).parallel().forEach(v -> {
+            int start = vertexOffsets[v];
+            int end = vertexOffsets[v + 1];
+            for (int group = 0; group < groupCounts[v]; group++) {
+                float x = 0, y = 0, z = 0;
+                for (int k = start; k < end; k++) {
+                    int c = vertexCorners[k];
+                    if (cornerGroup[c] != group) {
+                        continue;
+                    }
+                    int f = cornerFaces[c] * 3;
+                    float w = cornerWeights[c];
+                    x += faceNormals[f] * w;
+                    y += faceNormals[f + 1] * w;
+                    z += faceNormals[f + 2] * w;
+                    cornerNormals[c] = groupBase[v] + group;
+                }
+                writeNormalized(normals, groupBase[v] + group, x, y, z);
             }
+        });
+        return new FlatNormals(normals, cornerNormals);
+    }
+
+    private static void computeFace(int p, float[] positions, int[] cornerOffsets, int[] cornerVertices,
+                                    Weighting weighting, float[] faceNormals, float[] cornerWeights) {
+        int start = cornerOffsets[p];
+        int end = cornerOffsets[p + 1];
+        int count = end - start;
+
+        // Метод Ньюэлла: длина результата - удвоенная площадь многоугольника
+        float nx = 0, ny = 0, nz = 0;
+        float edgeScale = 0;
+        for (int k = 0; k < count; k++) {
+            int a = cornerVertices[start + k] * 3;
+            int b = cornerVertices[start + (k + 1) % count] * 3;
+            float ex = positions[a] - positions[b];
+            float ey = positions[a + 1] - positions[b + 1];
+            float ez = positions[a + 2] - positions[b + 2];
+            edgeScale += ex * ex + ey * ey + ez * ez;
+            nx += (positions[a + 1] - positions[b + 1]) * (positions[a + 2] + positions[b + 2]);
+            ny += (positions[a + 2] - positions[b + 2]) * (positions[a] + positions[b]);
+            nz += (positions[a] - positions[b]) * (positions[a + 1] + positions[b + 1]);
+        }
+        float lengthSquared = nx * nx + ny * ny + nz * nz;
+        float minLength = DEGENERATE_RATIO * edgeScale;
+        if (count < 3 || lengthSquared <= minLength * minLength) {
+            // Вырожденная грань ничего не добавляет
+            Arrays.fill(cornerWeights, start, end, 0.0f);
+            return;
+        }
+        float length = (float) Math.sqrt(lengthSquared);
+        faceNormals[p * 3] = nx / length;
+        faceNormals[p * 3 + 1] = ny / length;
+        faceNormals[p * 3 + 2] = nz / length;
+
+        switch (weighting) {
+            case AREA:
+                Arrays.fill(cornerWeights, start, end, length * 0.5f);
+                break;
+            case ANGLE:
+                for (int k = 0; k < count; k++) {
+                    int previous = cornerVertices[start + (k + count - 1) % count] * 3;
+                    int current = cornerVertices[start + k] * 3;
+                    int next = cornerVertices[start + (k + 1) % count] * 3;
+                    cornerWeights[start + k] = angle(positions, current, previous, next);
+                }
+                break;
+            default:
+                Arrays.fill(cornerWeights, start, end, 1.0f);
+                break;
+        }
+    }
+
+    private static float angle(float[] positions, int vertex, int a, int b) {
+        float ax = positions[a] - positions[vertex];
+        float ay = positions[a + 1] - positions[vertex + 1];
+        float az = positions[a + 2] - positions[vertex + 2];
+        float bx = positions[b] - positions[vertex];
+        float by = positions[b + 1] - positions[vertex + 1];
+        float bz = positions[b + 2] - positions[vertex + 2];
+        float lengths = (float) Math.sqrt((ax * ax + ay * ay + az * az) * (bx * bx + by * by + bz * bz));
+        if (lengths == 0) {
+            return 0.0f;
+        }
+        float cos = (ax * bx + ay * by + az * bz) / lengths;
+        return acos(Math.max(-1.0f, Math.min(1.0f, cos)));
+    }
+
+    /**
+     * Приближение арккосинуса (Абрамовиц и Стиган, 4.4.45), ошибка не больше 7e-5 рад.
+     * Для весов этого достаточно, а Math.acos на каждом углу обходится в разы дороже.
+     */
+    private static float acos(float x) {
+        float a = Math.abs(x);
+        float result = (float) Math.sqrt(1.0f - a)
+                * (1.5707288f + a * (-0.2121144f + a * (0.0742610f - a * 0.0187293f)));
+        return x >= 0 ? result : (float) Math.PI - result;
+    }
+
+    private static void writeNormalized(float[] normals, int index, float x, float y, float z) {
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length > 0) {
+            x /= length;
+            y /= length;
+            z /= length;
         }
+        normals[index * 3] = x;
+        normals[index * 3 + 1] = y;
+        normals[index * 3 + 2] = z;
     }
 }
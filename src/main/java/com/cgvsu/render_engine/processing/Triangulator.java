@@ -1,11 +1,46 @@
 package com.cgvsu.render_engine.processing;
 
+import com.cgvsu.math.Vector3f;
 import com.cgvsu.model.Model;
 import com.cgvsu.model.Polygon;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
+/**
+ * Триангуляция многоугольников.
+ *
+ * Выпуклые грани (и грани без координат вершин) режутся веером от первой вершины.
+ * Невыпуклые - отсечением ушей в плоскости грани: многоугольник проецируется
+ * на координатную плоскость, наиболее близкую к его плоскости. Для больших граней
+ * вогнутые вершины раскладываются по равномерной сетке, и проверка уха смотрит
+ * только соседние ячейки, а не все вершины.
+ *
+ * Грань из n вершин всегда дает n - 2 треугольника, поэтому место под результат
+ * известно заранее (префиксная сумма), и грани обрабатываются параллельно.
+ */
 public class Triangulator {
+    // Начиная с этого числа вершин вогнутые вершины ищутся через сетку
+    private static final int GRID_THRESHOLD = 64;
+
+    /**
+     * Треугольники в плоском виде: по 3 индекса на треугольник.
+     * Там, где у исходной грани не было текстурных координат или нормалей, стоит -1.
+     */
+    public static final class Triangulation {
+        public final int triangleCount;
+        public final int[] vertexIndices;
+        public final int[] textureVertexIndices;
+        public final int[] normalIndices;
+
+        Triangulation(int triangleCount) {
+            this.triangleCount = triangleCount;
+            this.vertexIndices = new int[triangleCount * 3];
+            this.textureVertexIndices = new int[triangleCount * 3];
+            this.normalIndices = new int[triangleCount * 3];
+        }
+    }
+
     public Model processModel(Model model) {
         Model triangulatedModel = triangulateModel(model);
 
@@ -21,18 +56,47 @@ public class Triangulator {
         result.setTextureVertices(new ArrayList<>(model.getTextureVertices()));
         result.setNormals(new ArrayList<>(model.getNormals()));
 
-        for (Polygon polygon : model.getPolygons()) {
-            triangulatePolygon(polygon, result);
+        Triangulation triangulation = triangulateIndices(model);
+
+        Polygon[] triangles = new Polygon[triangulation.triangleCount];
+        IntStream.range(0, triangles.length).parallel().forEach(t -> {
+            Polygon triangle = new Polygon();
+            int base = t * 3;
+            copyIndices(triangulation.vertexIndices, base, triangle.getVertexIndices());
+            copyIndices(triangulation.textureVertexIndices, base, triangle.getTextureVertexIndices());
+            copyIndices(triangulation.normalIndices, base, triangle.getNormalIndices());
+            triangles[t] = triangle;
+        });
+        result.setPolygons(new ArrayList<>(Arrays.asList(triangles)));
+
+        return result;
+    }
+
+    /**
+     * Триангулировать все грани модели в плоские массивы индексов, параллельно по граням
+     */
+    public Triangulation triangulateIndices(Model model) {
+        List<Polygon> polygons = model.getPolygons();
+        float[] positions = flattenPositions(model.getVertices());
+
+        int polygonCount = polygons.size();
+        int[] triangleOffsets = new int[polygonCount + 1];
+        for (int p = 0; p < polygonCount; p++) {
+            triangleOffsets[p + 1] = triangleOffsets[p]
+                    + Math.max(0, polygons.get(p).getVertexIndices().size() - 2);
         }
 
+        Triangulation result = new Triangulation(triangleOffsets[polygonCount]);
+        IntStream.range(0, polygonCount).parallel().forEach(p -> {
+            if (triangleOffsets[p + 1] > triangleOffsets[p]) {
+                writePolygon(polygons.get(p), positions, result, triangleOffsets[p]);
+            }
+        });
         return result;
     }
 
     void triangulatePolygon(Polygon polygon, Model result) {
         ArrayList<Integer> vertices = polygon.getVertexIndices();
-        ArrayList<Integer> textures = polygon.getTextureVertexIndices();
-        ArrayList<Integer> normals = polygon.getNormalIndices();
-
         int vertexCount = vertices.size();
 
         if (vertexCount < 3) return;
@@ -41,28 +105,14 @@ public class Triangulator {
             return;
         }
 
-        boolean hasUV = !textures.isEmpty();
-        boolean hasNormals = !normals.isEmpty();
+        Triangulation triangulation = new Triangulation(vertexCount - 2);
+        writePolygon(polygon, flattenPositions(result.getVertices()), triangulation, 0);
 
-        for (int i = 1; i < vertexCount - 1; i++) {
+        for (int t = 0; t < triangulation.triangleCount; t++) {
             Polygon triangle = new Polygon();
-
-            triangle.getVertexIndices().add(vertices.get(0));
-            triangle.getVertexIndices().add(vertices.get(i));
-            triangle.getVertexIndices().add(vertices.get(i + 1));
-
-            if (hasUV) {
-                triangle.getTextureVertexIndices().add(textures.get(0));
-                triangle.getTextureVertexIndices().add(textures.get(i));
-                triangle.getTextureVertexIndices().add(textures.get(i + 1));
-            }
-
-            if (hasNormals) {
-                triangle.getNormalIndices().add(normals.get(0));
-                triangle.getNormalIndices().add(normals.get(i));
-                triangle.getNormalIndices().add(normals.get(i + 1));
-            }
-
+            copyIndices(triangulation.vertexIndices, t * 3, triangle.getVertexIndices());
+            copyIndices(triangulation.textureVertexIndices, t * 3, triangle.getTextureVertexIndices());
+            copyIndices(triangulation.normalIndices, t * 3, triangle.getNormalIndices());
             result.getPolygons().add(triangle);
         }
     }
@@ -79,4 +129,365 @@ public class Triangulator {
 
         return copy;
     }
-}
\ No newline at end of file
+
+    private static float[] flattenPositions(List<Vector3f> vertices) {
+        if (vertices == null) {
+            return new float[0];
+        }
+        float[] positions = new float[vertices.size() * 3];
+        IntStream.range(0, vertices.size()).parallel().forEach(i -> {
+            Vector3f v = vertices.get(i);
+            positions[i * 3] = v.getX();
+            positions[i * 3 + 1] = v.getY();
+            positions[i * 3 + 2] = v.getZ();
+        });
+        return positions;
+    }
+
+    private static void copyIndices(int[] source, int base, ArrayList<Integer> target) {
+        if (source[base] >= 0) {
+            target.add(source[base]);
+            target.add(source[base + 1]);
+            target.add(source[base + 2]);
+        }
+    }
+
+    /**
+     * Записать треугольники грани в result, начиная с треугольника firstTriangle
+     */
+    private static void writePolygon(Polygon polygon, float[] positions, Triangulation result, int firstTriangle) {
+        ArrayList<Integer> vertices = polygon.getVertexIndices();
+        ArrayList<Integer> textures = polygon.getTextureVertexIndices();
+        ArrayList<Integer> normals = polygon.getNormalIndices();
+        int n = vertices.size();
+        boolean hasUV = !textures.isEmpty();
+        boolean hasNormals = !normals.isEmpty();
+
+        int[] corners = new int[(n - 2) * 3];
+        triangulateCorners(vertices, positions, corners);
+
+        int base = firstTriangle * 3;
+        for (int i = 0; i < corners.length; i++) {
+            int corner = corners[i];
+            result.vertexIndices[base + i] = vertices.get(corner);
+            result.textureVertexIndices[base + i] = hasUV ? textures.get(corner) : -1;
+            result.normalIndices[base + i] = hasNormals ? normals.get(corner) : -1;
+        }
+    }
+
+    /**
+     * Разбить грань на треугольники; в out пишутся номера углов грани (0..n-1)
+     */
+    static void triangulateCorners(List<Integer> vertices, float[] positions, int[] out) {
+        int n = vertices.size();
+        int vertexCount = positions.length / 3;
+
+        boolean hasPositions = true;
+        for (int k = 0; k < n && hasPositions; k++) {
+            int index = vertices.get(k);
+            hasPositions = index >= 0 && index < vertexCount;
+        }
+        if (n == 3 || !hasPositions) {
+            fan(n, out);
+            return;
+        }
+
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        project(vertices, positions, xs, ys);
+
+        // Ориентация в проекции: вершины ушей должны поворачивать в ту же сторону
+        double area = 0;
+        for (int k = 0, j = n - 1; k < n; j = k++) {
+            area += xs[j] * ys[k] - xs[k] * ys[j];
+        }
+        if (area == 0) {
+            fan(n, out);
+            return;
+        }
+        double orientation = Math.signum(area);
+
+        if (isConvex(xs, ys, orientation)) {
+            fan(n, out);
+            return;
+        }
+        new EarClipper(xs, ys, orientation).run(out);
+    }
+
+    private static void fan(int n, int[] out) {
+        for (int i = 1, o = 0; i < n - 1; i++) {
+            out[o++] = 0;
+            out[o++] = i;
+            out[o++] = i + 1;
+        }
+    }
+
+    /**
+     * Проекция на координатную плоскость, ближайшую к плоскости грани (нормаль по Ньюэллу)
+     */
+    private static void project(List<Integer> vertices, float[] positions, double[] xs, double[] ys) {
+        int n = vertices.size();
+        float nx = 0, ny = 0, nz = 0;
+        for (int k = 0; k < n; k++) {
+            int a = vertices.get(k) * 3;
+            int b = vertices.get((k + 1) % n) * 3;
+            nx += (positions[a + 1] - positions[b + 1]) * (positions[a + 2] + positions[b + 2]);
+            ny += (positions[a + 2] - positions[b + 2]) * (positions[a] + positions[b]);
+            nz += (positions[a] - positions[b]) * (positions[a + 1] + positions[b + 1]);
+        }
+
+        float ax = Math.abs(nx), ay = Math.abs(ny), az = Math.abs(nz);
+        int uAxis, vAxis;
+        if (az >= ax && az >= ay) {
+            uAxis = 0;
+            vAxis = 1;
+        } else if (ay >= ax) {
+            uAxis = 2;
+            vAxis = 0;
+        } else {
+            uAxis = 1;
+            vAxis = 2;
+        }
+
+        for (int k = 0; k < n; k++) {
+            int v = vertices.get(k) * 3;
+            xs[k] = positions[v + uAxis];
+            ys[k] = positions[v + vAxis];
+        }
+    }
+
+    private static boolean isConvex(double[] xs, double[] ys, double orientation) {
+        int n = xs.length;
+        for (int k = 0; k < n; k++) {
+            int a = (k + n - 1) % n;
+            int c = (k + 1) % n;
+            if (cross(xs, ys, a, k, c) * orientation < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double cross(double[] xs, double[] ys, int a, int b, int c) {
+        return (xs[b] - xs[a]) * (ys[c] - ys[b]) - (ys[b] - ys[a]) * (xs[c] - xs[b]);
+    }
+
+    /**
+     * Отсечение ушей по двусвязному кольцу вершин
+     */
+    private static final class EarClipper {
+        private final double[] xs;
+        private final double[] ys;
+        private final double orientation;
+        private final int n;
+        private final int[] prev;
+        private final int[] next;
+        private final boolean[] reflex;
+        private int reflexCount;
+
+        // Сетка вогнутых вершин (только для больших граней)
+        private int gridSize;
+        private double minX, minY, cellWidth, cellHeight;
+        private int[] cellStart;
+        private int[] cellVertices;
+
+        EarClipper(double[] xs, double[] ys, double orientation) {
+            this.xs = xs;
+            this.ys = ys;
+            this.orientation = orientation;
+            this.n = xs.length;
+            this.prev = new int[n];
+            this.next = new int[n];
+            this.reflex = new boolean[n];
+
+            for (int k = 0; k < n; k++) {
+                prev[k] = (k + n - 1) % n;
+                next[k] = (k + 1) % n;
+                reflex[k] = !isConvexCorner(prev[k], k, next[k]);
+                if (reflex[k]) {
+                    reflexCount++;
+                }
+            }
+            if (n >= GRID_THRESHOLD) {
+                buildGrid();
+            }
+        }
+
+        void run(int[] out) {
+            int o = 0;
+            int remaining = n;
+            int ear = 0;
+            int stop = ear;
+
+            while (remaining > 3) {
+                int a = prev[ear];
+                int c = next[ear];
+
+                if (isEar(a, ear, c)) {
+                    o = emit(out, o, a, ear, c);
+                    remove(ear);
+                    remaining--;
+                    // Соседи могли стать выпуклыми
+                    updateReflex(a);
+                    updateReflex(c);
+                    // Следующую вершину пропускаем: иначе уши идут веером от a
+                    // и получаются длинные узкие треугольники
+                    ear = next[c];
+                    stop = ear;
+                    continue;
+                }
+
+                ear = c;
+                if (ear == stop) {
+                    // Полный круг без уха: грань самопересекается или вырождена.
+                    // Режем первую выпуклую вершину (или текущую, если таких нет),
+                    // чтобы число треугольников осталось n - 2
+                    ear = firstConvex(ear);
+                    a = prev[ear];
+                    c = next[ear];
+                    o = emit(out, o, a, ear, c);
+                    remove(ear);
+                    remaining--;
+                    updateReflex(a);
+                    updateReflex(c);
+                    ear = c;
+                    stop = c;
+                }
+            }
+            emit(out, o, prev[ear], ear, next[ear]);
+        }
+
+        private int firstConvex(int start) {
+            int k = start;
+            do {
+                if (!reflex[k]) {
+                    return k;
+                }
+                k = next[k];
+            } while (k != start);
+            return start;
+        }
+
+        private int emit(int[] out, int o, int a, int b, int c) {
+            out[o] = a;
+            out[o + 1] = b;
+            out[o + 2] = c;
+            return o + 3;
+        }
+
+        private void remove(int k) {
+            next[prev[k]] = next[k];
+            prev[next[k]] = prev[k];
+            // Удаленная вершина больше не мешает проверкам ушей
+            if (reflex[k]) {
+                reflex[k] = false;
+                reflexCount--;
+            }
+        }
+
+        private void updateReflex(int k) {
+            if (reflex[k] && isConvexCorner(prev[k], k, next[k])) {
+                reflex[k] = false;
+                reflexCount--;
+            }
+        }
+
+        private boolean isConvexCorner(int a, int b, int c) {
+            return cross(xs, ys, a, b, c) * orientation > 0;
+        }
+
+        private boolean isEar(int a, int b, int c) {
+            if (reflex[b]) {
+                return false;
+            }
+            if (reflexCount == 0) {
+                return true;
+            }
+            // Внутри уха не должно быть вогнутых вершин
+            if (cellStart == null) {
+                for (int k = next[c]; k != a; k = next[k]) {
+                    if (reflex[k] && blocks(k, a, b, c)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            double minTx = Math.min(xs[a], Math.min(xs[b], xs[c]));
+            double maxTx = Math.max(xs[a], Math.max(xs[b], xs[c]));
+            double minTy = Math.min(ys[a], Math.min(ys[b], ys[c]));
+            double maxTy = Math.max(ys[a], Math.max(ys[b], ys[c]));
+            int x0 = cellX(minTx), x1 = cellX(maxTx);
+            int y0 = cellY(minTy), y1 = cellY(maxTy);
+            for (int cy = y0; cy <= y1; cy++) {
+                for (int cx = x0; cx <= x1; cx++) {
+                    int cell = cy * gridSize + cx;
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                        int k = cellVertices[i];
+                        if (reflex[k] && k != a && k != c && blocks(k, a, b, c)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Вершина k лежит строго внутри треугольника (a, b, c).
+         * Вершины на границе уха не мешают: многоугольник после отсечения лишь касается себя.
+         */
+        private boolean blocks(int k, int a, int b, int c) {
+            double x = xs[k], y = ys[k];
+            double d1 = ((xs[b] - xs[a]) * (y - ys[a]) - (ys[b] - ys[a]) * (x - xs[a])) * orientation;
+            double d2 = ((xs[c] - xs[b]) * (y - ys[b]) - (ys[c] - ys[b]) * (x - xs[b])) * orientation;
+            double d3 = ((xs[a] - xs[c]) * (y - ys[c]) - (ys[a] - ys[c]) * (x - xs[c])) * orientation;
+            return d1 > 0 && d2 > 0 && d3 > 0;
+        }
+
+        private void buildGrid() {
+            minX = Double.MAX_VALUE;
+            minY = Double.MAX_VALUE;
+            double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for (int k = 0; k < n; k++) {
+                minX = Math.min(minX, xs[k]);
+                minY = Math.min(minY, ys[k]);
+                maxX = Math.max(maxX, xs[k]);
+                maxY = Math.max(maxY, ys[k]);
+            }
+            // В среднем около одной вогнутой вершины на ячейку
+            gridSize = Math.max(1, (int) Math.ceil(Math.sqrt(reflexCount)));
+            cellWidth = Math.max((maxX - minX) / gridSize, Double.MIN_NORMAL);
+            cellHeight = Math.max((maxY - minY) / gridSize, Double.MIN_NORMAL);
+
+            cellStart = new int[gridSize * gridSize + 1];
+            for (int k = 0; k < n; k++) {
+                if (reflex[k]) {
+                    cellStart[cellIndex(k) + 1]++;
+                }
+            }
+            for (int i = 0; i < gridSize * gridSize; i++) {
+                cellStart[i + 1] += cellStart[i];
+            }
+            cellVertices = new int[reflexCount];
+            int[] fill = Arrays.copyOf(cellStart, gridSize * gridSize);
+            for (int k = 0; k < n; k++) {
+                if (reflex[k]) {
+                    cellVertices[fill[cellIndex(k)]++] = k;
+                }
+            }
+        }
+
+        private int cellIndex(int k) {
+            return cellY(ys[k]) * gridSize + cellX(xs[k]);
+        }
+
+        private int cellX(double x) {
+            return Math.min(gridSize - 1, Math.max(0, (int) ((x - minX) / cellWidth)));
+        }
+
+        private int cellY(double y) {
+            return Math.min(gridSize - 1, Math.max(0, (int) ((y - minY) / cellHeight)));
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.cgvsu.render_engine.processing;
+
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Переупорядочивание треугольников для локальности кеша вершин (алгоритм Форсайта)
+ * и последующая перенумерация вершин в порядке первого использования.
+ *
+ * Жадно выбирается треугольник с наибольшей оценкой: вершины, недавно попавшие в кеш,
+ * и вершины, у которых осталось мало необработанных треугольников, ценятся выше.
+ * Качество оценивается через ACMR - среднее число промахов кеша на треугольник
+ * (1.0 - каждый треугольник приносит хотя бы одну новую вершину, около 0.5-0.7 - хорошо).
+ *
+ * Модель должна быть триангулирована.
+ */
+public class VertexCacheOptimizer {
+    public static final int CACHE_SIZE = 32;
+
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+    private static final int MAX_TABLE_VALENCE = 64;
+
+    // Оценки считаются очень часто, поэтому степени берутся из таблиц
+    private static final float[] CACHE_POSITION_SCORE = new float[CACHE_SIZE];
+    private static final float[] VALENCE_SCORE = new float[MAX_TABLE_VALENCE];
+
+    static {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            CACHE_POSITION_SCORE[i] = cachePositionScore(i);
+        }
+        for (int i = 1; i < MAX_TABLE_VALENCE; i++) {
+            VALENCE_SCORE[i] = valenceScore(i);
+        }
+    }
+
+    /**
+     * Итог оптимизации: ACMR до и после при кеше из {@link #CACHE_SIZE} вершин
+     */
+    public static final class CacheReport {
+        private final int triangleCount;
+        private final float acmrBefore;
+        private final float acmrAfter;
+
+        CacheReport(int triangleCount, float acmrBefore, float acmrAfter) {
+            this.triangleCount = triangleCount;
+            this.acmrBefore = acmrBefore;
+            this.acmrAfter = acmrAfter;
+        }
+
+        public int getTriangleCount() { return triangleCount; }
+        public float getAcmrBefore() { return acmrBefore; }
+        public float getAcmrAfter() { return acmrAfter; }
+
+        @Override
+        public String toString() {
+            return String.format("ACMR: %.3f -> %.3f (%d triangles)", acmrBefore, acmrAfter, triangleCount);
+        }
+    }
+
+    /**
+     * Переупорядочить треугольники и вершины модели на месте
+     */
+    public CacheReport optimize(Model model) {
+        if (model == null) {
+            throw new IllegalArgumentException("Model cannot be null");
+        }
+
+        List<Polygon> polygons = model.getPolygons();
+        int triangleCount = polygons.size();
+        int vertexCount = model.getVertices().size();
+
+        int[] indices = new int[triangleCount * 3];
+        for (int t = 0; t < triangleCount; t++) {
+            ArrayList<Integer> vertexIndices = polygons.get(t).getVertexIndices();
+            if (vertexIndices.size() != 3) {
+                throw new IllegalArgumentException("Model must be triangulated, polygon " + t
+                        + " has " + vertexIndices.size() + " vertices");
+            }
+            indices[t * 3] = vertexIndices.get(0);
+            indices[t * 3 + 1] = vertexIndices.get(1);
+            indices[t * 3 + 2] = vertexIndices.get(2);
+        }
+
+        float acmrBefore = computeAcmr(indices);
+        int[] order = reorderTriangles(indices, vertexCount);
+
+        ArrayList<Polygon> reordered = new ArrayList<>(triangleCount);
+        int[] reorderedIndices = new int[indices.length];
+        for (int k = 0; k < triangleCount; k++) {
+            int t = order[k];
+            reordered.add(polygons.get(t));
+            System.arraycopy(indices, t * 3, reorderedIndices, k * 3, 3);
+        }
+        model.setPolygons(reordered);
+
+        reorderVertices(model);
+
+        return new CacheReport(triangleCount, acmrBefore, computeAcmr(reorderedIndices));
+    }
+
+    /**
+     * ACMR для заданного порядка треугольников при LRU-кеше из {@link #CACHE_SIZE} вершин
+     */
+    public static float computeAcmr(int[] indices) {
+        int triangleCount = indices.length / 3;
+        if (triangleCount == 0) {
+            return 0.0f;
+        }
+
+        int[] cache = new int[CACHE_SIZE];
+        int cacheLength = 0;
+        int misses = 0;
+
+        for (int index : indices) {
+            int position = -1;
+            for (int i = 0; i < cacheLength; i++) {
+                if (cache[i] == index) {
+                    position = i;
+                    break;
+                }
+            }
+            if (position < 0) {
+                misses++;
+                position = Math.min(cacheLength, CACHE_SIZE - 1);
+                if (cacheLength < CACHE_SIZE) {
+                    cacheLength++;
+                }
+            }
+            // Сдвиг к началу - вершина становится самой свежей
+            System.arraycopy(cache, 0, cache, 1, position);
+            cache[0] = index;
+        }
+        return (float) misses / triangleCount;
+    }
+
+    /**
+     * @return новый порядок треугольников (номера исходных треугольников)
+     */
+    int[] reorderTriangles(int[] indices, int vertexCount) {
+        int triangleCount = indices.length / 3;
+        int[] order = new int[triangleCount];
+        if (triangleCount == 0) {
+            return order;
+        }
+
+        // Списки треугольников каждой вершины (CSR); активные идут первыми
+        int[] activeCount = new int[vertexCount];
+        for (int index : indices) {
+            activeCount[index]++;
+        }
+        int[] offsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] = offsets[v] + activeCount[v];
+        }
+        int[] vertexTriangles = new int[indices.length];
+        int[] fill = Arrays.copyOf(offsets, vertexCount);
+        for (int i = 0; i < indices.length; i++) {
+            vertexTriangles[fill[indices[i]]++] = i / 3;
+        }
+
+        int[] cachePosition = new int[vertexCount];
+        Arrays.fill(cachePosition, -1);
+        float[] vertexScore = new float[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            vertexScore[v] = score(cachePosition[v], activeCount[v]);
+        }
+        float[] triangleScore = new float[triangleCount];
+        boolean[] emitted = new boolean[triangleCount];
+        for (int t = 0; t < triangleCount; t++) {
+            triangleScore[t] = vertexScore[indices[t * 3]]
+                    + vertexScore[indices[t * 3 + 1]]
+                    + vertexScore[indices[t * 3 + 2]];
+        }
+
+        int[] cache = new int[CACHE_SIZE + 3];
+        int[] newCache = new int[CACHE_SIZE + 3];
+        int cacheLength = 0;
+        int scanCursor = 0;
+        int best = bestTriangle(triangleScore);
+
+        for (int emittedCount = 0; emittedCount < triangleCount; emittedCount++) {
+            if (best < 0) {
+                // В кеше не осталось треугольников - берем следующий необработанный
+                while (emitted[scanCursor]) {
+                    scanCursor++;
+                }
+                best = scanCursor;
+            }
+
+            order[emittedCount] = best;
+            emitted[best] = true;
+
+            // Убираем треугольник из активных списков его вершин
+            int newLength = 0;
+            for (int k = 0; k < 3; k++) {
+                int v = indices[best * 3 + k];
+                int start = offsets[v];
+                int end = start + activeCount[v];
+                for (int i = start; i < end; i++) {
+                    if (vertexTriangles[i] == best) {
+                        vertexTriangles[i] = vertexTriangles[end - 1];
+                        vertexTriangles[end - 1] = best;
+                        break;
+                    }
+                }
+                activeCount[v]--;
+                if (newLength == 0 || (newCache[0] != v && newCache[newLength - 1] != v)) {
+                    newCache[newLength++] = v;
+                }
+            }
+
+            // Вершины треугольника - в начало кеша, остальные сдвигаются
+            int triangleLength = newLength;
+            for (int i = 0; i < cacheLength; i++) {
+                int v = cache[i];
+                if (!containsFirst(newCache, triangleLength, v)) {
+                    newCache[newLength++] = v;
+                }
+            }
+            for (int i = CACHE_SIZE; i < newLength; i++) {
+                cachePosition[newCache[i]] = -1;
+            }
+            cacheLength = Math.min(newLength, CACHE_SIZE);
+            int[] swap = cache;
+            cache = newCache;
+            newCache = swap;
+
+            // Пересчет оценок вершин кеша и их треугольников, выбор следующего
+            for (int i = 0; i < newLength; i++) {
+                int v = cache[i];
+                cachePosition[v] = i < CACHE_SIZE ? i : -1;
+                vertexScore[v] = score(cachePosition[v], activeCount[v]);
+            }
+            best = -1;
+            float bestScore = -1.0f;
+            for (int i = 0; i < newLength; i++) {
+                int v = cache[i];
+                for (int j = offsets[v], end = offsets[v] + activeCount[v]; j < end; j++) {
+                    int t = vertexTriangles[j];
+                    float s = vertexScore[indices[t * 3]]
+                            + vertexScore[indices[t * 3 + 1]]
+                            + vertexScore[indices[t * 3 + 2]];
+                    if (s > bestScore) {
+                        bestScore = s;
+                        best = t;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    private static boolean containsFirst(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int bestTriangle(float[] triangleScore) {
+        int best = -1;
+        float bestScore = -1.0f;
+        for (int t = 0; t < triangleScore.length; t++) {
+            if (triangleScore[t] > bestScore) {
+                bestScore = triangleScore[t];
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    private static float score(int cachePosition, int activeTriangles) {
+        if (activeTriangles == 0) {
+            return -1.0f;
+        }
+        float score = cachePosition >= 0 ? CACHE_POSITION_SCORE[cachePosition] : 0.0f;
+        score += activeTriangles < MAX_TABLE_VALENCE
+                ? VALENCE_SCORE[activeTriangles]
+                : valenceScore(activeTriangles);
+        return score;
+    }
+
+    private static float cachePositionScore(int cachePosition) {
+        if (cachePosition < 3) {
+            // Вершины только что выданного треугольника: штраф, чтобы не выбирать
+            // соседа по той же полосе, пока есть лучшие варианты
+            return LAST_TRIANGLE_SCORE;
+        }
+        float scaler = 1.0f / (CACHE_SIZE - 3);
+        return (float) Math.pow(1.0f - (cachePosition - 3) * scaler, CACHE_DECAY_POWER);
+    }
+
+    /**
+     * Вершины с малым числом оставшихся треугольников стоит закрыть поскорее
+     */
+    private static float valenceScore(int activeTriangles) {
+        return VALENCE_BOOST_SCALE * (float) Math.pow(activeTriangles, -VALENCE_BOOST_POWER);
+    }
+
+    /**
+     * Перенумеровать вершины, текстурные координаты и нормали в порядке первого использования.
+     * Неиспользуемые элементы сохраняются в конце в исходном порядке.
+     */
+    private static void reorderVertices(Model model) {
+        List<Polygon> polygons = model.getPolygons();
+
+        int[] vertexRemap = firstUseRemap(polygons, model.getVertices().size(), Polygon::getVertexIndices);
+        int[] textureRemap = firstUseRemap(polygons, model.getTextureVertices().size(), Polygon::getTextureVertexIndices);
+        int[] normalRemap = firstUseRemap(polygons, model.getNormals().size(), Polygon::getNormalIndices);
+
+        model.setVertices(permute(model.getVertices(), vertexRemap));
+        model.setTextureVertices(permute(model.getTextureVertices(), textureRemap));
+        model.setNormals(permute(model.getNormals(), normalRemap));
+
+        for (Polygon polygon : polygons) {
+            remapIndices(polygon.getVertexIndices(), vertexRemap);
+            remapIndices(polygon.getTextureVertexIndices(), textureRemap);
+            remapIndices(polygon.getNormalIndices(), normalRemap);
+        }
+    }
+
+    private interface IndexStream {
+        ArrayList<Integer> get(Polygon polygon);
+    }
+
+    private static int[] firstUseRemap(List<Polygon> polygons, int count, IndexStream stream) {
+        int[] remap = new int[count];
+        Arrays.fill(remap, -1);
+        int next = 0;
+        for (Polygon polygon : polygons) {
+            for (int index : stream.get(polygon)) {
+                if (remap[index] < 0) {
+                    remap[index] = next++;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (remap[i] < 0) {
+                remap[i] = next++;
+            }
+        }
+        return remap;
+    }
+
+    private static <T> ArrayList<T> permute(List<T> source, int[] remap) {
+        ArrayList<T> result = new ArrayList<>(source);
+        for (int i = 0; i < remap.length; i++) {
+            result.set(remap[i], source.get(i));
+        }
+        return result;
+    }
+
+    private static void remapIndices(ArrayList<Integer> indices, int[] remap) {
+        for (int i = 0; i < indices.size(); i++) {
+            indices.set(i, remap[indices.get(i)]);
+        }
+    }
+}
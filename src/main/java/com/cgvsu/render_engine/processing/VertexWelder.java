@@ -0,0 +1,337 @@
+package com.cgvsu.render_engine.processing;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Слияние совпадающих вершин (сварка) после импорта.
+ *
+ * Координаты квантуются по сетке с шагом tolerance; точки, попавшие в одну ячейку,
+ * сливаются в первую из них. Ячейки раскладываются по корзинам по хешу, и корзины
+ * обрабатываются параллельно - каждая своей хеш-таблицей, без общих блокировок.
+ * Так же (с тем же допуском) свариваются текстурные координаты и нормали,
+ * после чего индексы полигонов перенумеровываются. Полигоны, выродившиеся
+ * после слияния (меньше трех разных вершин), удаляются.
+ *
+ * Точки по разные стороны границы ячейки не сливаются, даже если они ближе tolerance.
+ */
+public class VertexWelder {
+    public static final float DEFAULT_TOLERANCE = 1e-5f;
+
+    private static final int BUCKET_COUNT = 256;
+
+    /**
+     * Итог сварки: сколько было и стало элементов в каждом потоке
+     */
+    public static final class WeldReport {
+        private final int verticesBefore;
+        private final int verticesAfter;
+        private final int textureVerticesBefore;
+        private final int textureVerticesAfter;
+        private final int normalsBefore;
+        private final int normalsAfter;
+        private final int degeneratePolygonsRemoved;
+
+        WeldReport(int verticesBefore, int verticesAfter,
+                   int textureVerticesBefore, int textureVerticesAfter,
+                   int normalsBefore, int normalsAfter,
+                   int degeneratePolygonsRemoved) {
+            this.verticesBefore = verticesBefore;
+            this.verticesAfter = verticesAfter;
+            this.textureVerticesBefore = textureVerticesBefore;
+            this.textureVerticesAfter = textureVerticesAfter;
+            this.normalsBefore = normalsBefore;
+            this.normalsAfter = normalsAfter;
+            this.degeneratePolygonsRemoved = degeneratePolygonsRemoved;
+        }
+
+        public int getVerticesBefore() { return verticesBefore; }
+        public int getVerticesAfter() { return verticesAfter; }
+        public int getTextureVerticesBefore() { return textureVerticesBefore; }
+        public int getTextureVerticesAfter() { return textureVerticesAfter; }
+        public int getNormalsBefore() { return normalsBefore; }
+        public int getNormalsAfter() { return normalsAfter; }
+        public int getDegeneratePolygonsRemoved() { return degeneratePolygonsRemoved; }
+
+        /**
+         * Доля вершин, убранных сваркой (0..1)
+         */
+        public float getVertexReduction() {
+            return verticesBefore == 0 ? 0.0f : 1.0f - (float) verticesAfter / verticesBefore;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Vertices: %d -> %d (-%.1f%%), UV: %d -> %d, Normals: %d -> %d, degenerate removed: %d",
+                    verticesBefore, verticesAfter, getVertexReduction() * 100.0f,
+                    textureVerticesBefore, textureVerticesAfter,
+                    normalsBefore, normalsAfter, degeneratePolygonsRemoved);
+        }
+    }
+
+    private final float tolerance;
+    private WeldReport lastReport;
+
+    public VertexWelder() {
+        this(DEFAULT_TOLERANCE);
+    }
+
+    public VertexWelder(float tolerance) {
+        if (tolerance <= 0) {
+            throw new IllegalArgumentException("Weld tolerance must be positive, got: " + tolerance);
+        }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Сварить вершины модели на месте
+     */
+    public WeldReport weld(Model model) {
+        if (model == null) {
+            throw new IllegalArgumentException("Model cannot be null");
+        }
+
+        List<Vector3f> vertices = model.getVertices();
+        List<Vector2f> textureVertices = model.getTextureVertices();
+        List<Vector3f> normals = model.getNormals();
+
+        float[] positionData = new float[vertices.size() * 3];
+        for (int i = 0; i < vertices.size(); i++) {
+            Vector3f v = vertices.get(i);
+            positionData[i * 3] = v.getX();
+            positionData[i * 3 + 1] = v.getY();
+            positionData[i * 3 + 2] = v.getZ();
+        }
+        float[] textureData = new float[textureVertices.size() * 2];
+        for (int i = 0; i < textureVertices.size(); i++) {
+            Vector2f uv = textureVertices.get(i);
+            textureData[i * 2] = uv.getX();
+            textureData[i * 2 + 1] = uv.getY();
+        }
+        float[] normalData = new float[normals.size() * 3];
+        for (int i = 0; i < normals.size(); i++) {
+            Vector3f n = normals.get(i);
+            normalData[i * 3] = n.getX();
+            normalData[i * 3 + 1] = n.getY();
+            normalData[i * 3 + 2] = n.getZ();
+        }
+
+        int[] vertexRemap = weldStream(positionData, 3);
+        int[] textureRemap = weldStream(textureData, 2);
+        int[] normalRemap = weldStream(normalData, 3);
+
+        ArrayList<Vector3f> newVertices = compact(vertices, vertexRemap);
+        ArrayList<Vector2f> newTextureVertices = compact(textureVertices, textureRemap);
+        ArrayList<Vector3f> newNormals = compact(normals, normalRemap);
+
+        int removed = remapPolygons(model.getPolygons(), vertexRemap, textureRemap, normalRemap);
+
+        lastReport = new WeldReport(
+                vertices.size(), newVertices.size(),
+                textureVertices.size(), newTextureVertices.size(),
+                normals.size(), newNormals.size(),
+                removed);
+
+        model.setVertices(newVertices);
+        model.setTextureVertices(newTextureVertices);
+        model.setNormals(newNormals);
+        return lastReport;
+    }
+
+    public WeldReport getLastReport() {
+        return lastReport;
+    }
+
+    public float getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Слить элементы потока (по dimension чисел на элемент), попавшие в одну ячейку.
+     *
+     * @return для каждого старого индекса - новый индекс; новые идут в порядке первого появления
+     */
+    int[] weldStream(float[] data, int dimension) {
+        int count = data.length / dimension;
+        int[] remap = new int[count];
+        if (count == 0) {
+            return remap;
+        }
+
+        // Квантование координат (параллельно)
+        long[] cells = new long[data.length];
+        float inverseTolerance = 1.0f / tolerance;
+        IntStream.range(0, data.length).parallel()
+                .forEach(i -> cells[i] = Math.round((double) data[i] * inverseTolerance));
+
+        // Раскладка индексов по корзинам, порядок внутри корзины - по возрастанию индекса
+        int[] bucketOf = new int[count];
+        int[] bucketStart = new int[BUCKET_COUNT + 1];
+        for (int i = 0; i < count; i++) {
+            int bucket = bucketIndex(cells, i, dimension);
+            bucketOf[i] = bucket;
+            bucketStart[bucket + 1]++;
+        }
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        int[] order = new int[count];
+        int[] fill = bucketStart.clone();
+        for (int i = 0; i < count; i++) {
+            order[fill[bucketOf[i]]++] = i;
+        }
+
+        // В каждой корзине первая вершина ячейки становится представителем
+        int[] representative = new int[count];
+        IntStream.range(0, BUCKET_COUNT).parallel().forEach(b -> {
+            Map<CellKey, Integer> firstInCell = new HashMap<>();
+            for (int k = bucketStart[b]; k < bucketStart[b + 1]; k++) {
+                int i = order[k];
+                Integer first = firstInCell.putIfAbsent(new CellKey(cells, i, dimension), i);
+                representative[i] = first != null ? first : i;
+            }
+        });
+
+        // Новые номера в порядке первого появления - результат не зависит от числа потоков
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            remap[i] = representative[i] == i ? next++ : remap[representative[i]];
+        }
+        return remap;
+    }
+
+    private static int bucketIndex(long[] cells, int index, int dimension) {
+        long hash = 0;
+        for (int d = 0; d < dimension; d++) {
+            hash = hash * 0x9E3779B97F4A7C15L + cells[index * dimension + d];
+        }
+        hash ^= hash >>> 29;
+        return (int) (hash & (BUCKET_COUNT - 1));
+    }
+
+    private static <T> ArrayList<T> compact(List<T> source, int[] remap) {
+        ArrayList<T> result = new ArrayList<>();
+        for (int i = 0; i < remap.length; i++) {
+            if (remap[i] == result.size()) {
+                result.add(source.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return сколько выродившихся полигонов удалено
+     */
+    private static int remapPolygons(List<Polygon> polygons, int[] vertexRemap,
+                                     int[] textureRemap, int[] normalRemap) {
+        int removed = 0;
+        List<Polygon> kept = new ArrayList<>(polygons.size());
+
+        for (Polygon polygon : polygons) {
+            ArrayList<Integer> vertexIndices = polygon.getVertexIndices();
+            ArrayList<Integer> textureIndices = polygon.getTextureVertexIndices();
+            ArrayList<Integer> normalIndices = polygon.getNormalIndices();
+            boolean hasTexture = textureIndices.size() == vertexIndices.size();
+            boolean hasNormals = normalIndices.size() == vertexIndices.size();
+
+            ArrayList<Integer> newVertices = new ArrayList<>(vertexIndices.size());
+            ArrayList<Integer> newTextures = new ArrayList<>(vertexIndices.size());
+            ArrayList<Integer> newNormals = new ArrayList<>(vertexIndices.size());
+
+            for (int i = 0; i < vertexIndices.size(); i++) {
+                int vertex = vertexRemap[vertexIndices.get(i)];
+                // Соседние вершины, слившиеся в одну, дают одну вершину
+                if (!newVertices.isEmpty() && newVertices.get(newVertices.size() - 1) == vertex) {
+                    continue;
+                }
+                newVertices.add(vertex);
+                if (hasTexture) {
+                    newTextures.add(textureRemap[textureIndices.get(i)]);
+                }
+                if (hasNormals) {
+                    newNormals.add(normalRemap[normalIndices.get(i)]);
+                }
+            }
+            if (newVertices.size() > 1 && newVertices.get(0).equals(newVertices.get(newVertices.size() - 1))) {
+                newVertices.remove(newVertices.size() - 1);
+                if (hasTexture) newTextures.remove(newTextures.size() - 1);
+                if (hasNormals) newNormals.remove(newNormals.size() - 1);
+            }
+
+            if (newVertices.size() < 3) {
+                removed++;
+                continue;
+            }
+
+            vertexIndices.clear();
+            vertexIndices.addAll(newVertices);
+            if (hasTexture) {
+                textureIndices.clear();
+                textureIndices.addAll(newTextures);
+            } else {
+                remapIndices(textureIndices, textureRemap);
+            }
+            if (hasNormals) {
+                normalIndices.clear();
+                normalIndices.addAll(newNormals);
+            } else {
+                remapIndices(normalIndices, normalRemap);
+            }
+            kept.add(polygon);
+        }
+
+        if (removed > 0) {
+            polygons.clear();
+            polygons.addAll(kept);
+        }
+        return removed;
+    }
+
+    /**
+     * Перенумеровать список, который не совпадает с вершинами по длине: углы сопоставить
+     * нельзя, поэтому индексы заменяются на месте, без удаления слившихся
+     */
+    private static void remapIndices(ArrayList<Integer> indices, int[] remap) {
+        for (int i = 0; i < indices.size(); i++) {
+            indices.set(i, remap[indices.get(i)]);
+        }
+    }
+
+    /**
+     * Координаты ячейки сетки; сравнение точное, без коллизий хеша
+     */
+    private static final class CellKey {
+        private final long x;
+        private final long y;
+        private final long z;
+
+        CellKey(long[] cells, int index, int dimension) {
+            int base = index * dimension;
+            this.x = cells[base];
+            this.y = dimension > 1 ? cells[base + 1] : 0;
+            this.z = dimension > 2 ? cells[base + 2] : 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CellKey)) return false;
+            CellKey other = (CellKey) o;
+            return x == other.x && y == other.y && z == other.z;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = x * 31 * 31 + y * 31 + z;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
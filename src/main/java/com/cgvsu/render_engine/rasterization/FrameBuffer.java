@@ -0,0 +1,114 @@
+package com.cgvsu.render_engine.rasterization;
+
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+/**
+ * Буфер кадра в памяти: цвет каждого пикселя хранится как int в формате ARGB
+ * с предумноженной альфой (как IntArgbPre в JavaFX).
+ * В отличие от GraphicsContext, с ним можно работать из любого потока,
+ * поэтому рендер может идти вне JavaFX Application Thread.
+ */
+public class FrameBuffer {
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    public FrameBuffer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Frame buffer size must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+    }
+
+    public void clear() {
+        Arrays.fill(pixels, 0);
+    }
+
+    public void clear(int argb) {
+        Arrays.fill(pixels, argb);
+    }
+
+    public void setArgb(int x, int y, int argb) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return;
+        }
+        pixels[y * width + x] = argb;
+    }
+
+    public void setColor(int x, int y, Color color) {
+        setArgb(x, y, toArgb(color));
+    }
+
+    public int getArgb(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return 0;
+        }
+        return pixels[y * width + x];
+    }
+
+    /**
+     * Линия алгоритмом Брезенхема без проверки глубины
+     */
+    public void drawLine(int x1, int y1, int x2, int y2, int argb) {
+        int dx = Math.abs(x2 - x1);
+        int dy = Math.abs(y2 - y1);
+        int sx = (x1 < x2) ? 1 : -1;
+        int sy = (y1 < y2) ? 1 : -1;
+        int err = dx - dy;
+
+        int x = x1;
+        int y = y1;
+        while (true) {
+            setArgb(x, y, argb);
+            if (x == x2 && y == y2) break;
+
+            int e2 = 2 * err;
+            if (e2 > -dy) {
+                err -= dy;
+                x += sx;
+            }
+            if (e2 < dx) {
+                err += dx;
+                y += sy;
+            }
+        }
+    }
+
+    public boolean hasSize(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Сырые пиксели в порядке строк, для передачи в PixelWriter
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public static int toArgb(Color color) {
+        return toArgb(color.getRed(), color.getGreen(), color.getBlue(), color.getOpacity());
+    }
+
+    /**
+     * То же по отдельным каналам (0..1, не предумноженным), без объекта Color
+     */
+    public static int toArgb(double red, double green, double blue, double opacity) {
+        int a = (int) Math.round(opacity * 255.0);
+        int r = (int) Math.round(red * opacity * 255.0);
+        int g = (int) Math.round(green * opacity * 255.0);
+        int b = (int) Math.round(blue * opacity * 255.0);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+}
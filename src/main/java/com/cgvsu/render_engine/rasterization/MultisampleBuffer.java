@@ -0,0 +1,201 @@
+package com.cgvsu.render_engine.rasterization;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Буфер кадра с несколькими образцами на пиксель (MSAA).
+ *
+ * Покрытие и глубина хранятся для каждого образца, цвет пикселя вычисляется
+ * растеризатором один раз и записывается во все покрытые образцы.
+ * {@link #resolve} усредняет образцы прямо в обычный {@link FrameBuffer}.
+ * Образцы пикселя лежат в массивах подряд: индекс (y * width + x) * samples + s.
+ */
+public class MultisampleBuffer {
+    // Стандартные шаблоны образцов (как в D3D), в шестнадцатых долях пикселя от его центра
+    private static final int[][] PATTERN_2 = {{4, 4}, {-4, -4}};
+    private static final int[][] PATTERN_4 = {{-2, -6}, {6, -2}, {-6, 2}, {2, 6}};
+    private static final int[][] PATTERN_8 = {
+            {1, -3}, {-1, 3}, {5, 1}, {-3, -5}, {-5, 5}, {-7, -1}, {3, 7}, {7, -7}};
+
+    private final int width;
+    private final int height;
+    private final int samples;
+    private final float[] sampleOffsetX;
+    private final float[] sampleOffsetY;
+    private final float[] depth;
+    private final int[] colors;
+
+    public MultisampleBuffer(int width, int height, int samples) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Multisample buffer size must be positive: " + width + "x" + height);
+        }
+        int[][] pattern = pattern(samples);
+        this.width = width;
+        this.height = height;
+        this.samples = samples;
+        this.sampleOffsetX = new float[samples];
+        this.sampleOffsetY = new float[samples];
+        for (int s = 0; s < samples; s++) {
+            sampleOffsetX[s] = pattern[s][0] / 16.0f;
+            sampleOffsetY[s] = pattern[s][1] / 16.0f;
+        }
+        this.depth = new float[width * height * samples];
+        this.colors = new int[width * height * samples];
+        clear(0);
+    }
+
+    /**
+     * Поддерживается ли такое число образцов (2, 4 или 8)
+     */
+    public static boolean isSupported(int samples) {
+        return samples == 2 || samples == 4 || samples == 8;
+    }
+
+    private static int[][] pattern(int samples) {
+        switch (samples) {
+            case 2:
+                return PATTERN_2;
+            case 4:
+                return PATTERN_4;
+            case 8:
+                return PATTERN_8;
+            default:
+                throw new IllegalArgumentException("Unsupported MSAA sample count: " + samples);
+        }
+    }
+
+    public void clear(int argb) {
+        Arrays.fill(colors, argb);
+        Arrays.fill(depth, Float.MAX_VALUE);
+    }
+
+    /**
+     * Записать цвет в образцы пикселя, которые не дальше depth (глубина одна на весь пиксель,
+     * например у линии каркаса). На краю поверхности линия попадает только в образцы перед ней.
+     *
+     * @param writeDepth обновлять глубину образцов (иначе только проверять)
+     */
+    public void writePixel(int x, int y, float depth, int argb, boolean writeDepth) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return;
+        }
+        int base = (y * width + x) * samples;
+        for (int i = base; i < base + samples; i++) {
+            if (depth <= this.depth[i]) {
+                colors[i] = argb;
+                if (writeDepth) {
+                    this.depth[i] = depth;
+                }
+            }
+        }
+    }
+
+    /**
+     * Усреднить образцы каждого пикселя в target (цвета предумножены на альфу,
+     * поэтому каналы просто усредняются). Пиксели, все образцы которых одного цвета -
+     * а это почти все пиксели внутри граней, - копируются без арифметики.
+     */
+    public void resolve(FrameBuffer target) {
+        if (!target.hasSize(width, height)) {
+            throw new IllegalArgumentException("Resolve target size " + target.getWidth() + "x"
+                    + target.getHeight() + " differs from " + width + "x" + height);
+        }
+
+        int[] pixels = target.getPixels();
+        int half = samples / 2;
+        IntStream.range(0, height).parallel().forEach(y -> {
+            int pixel = y * width;
+            int base = pixel * samples;
+            for (int x = 0; x < width; x++, pixel++, base += samples) {
+                int first = colors[base];
+                int i = base + 1;
+                while (i < base + samples && colors[i] == first) {
+                    i++;
+                }
+                if (i == base + samples) {
+                    pixels[pixel] = first;
+                    continue;
+                }
+
+                int a = 0, r = 0, g = 0, b = 0;
+                for (i = base; i < base + samples; i++) {
+                    int argb = colors[i];
+                    a += argb >>> 24;
+                    r += (argb >> 16) & 0xFF;
+                    g += (argb >> 8) & 0xFF;
+                    b += argb & 0xFF;
+                }
+                pixels[pixel] = ((a + half) / samples << 24) | ((r + half) / samples << 16)
+                        | ((g + half) / samples << 8) | (b + half) / samples;
+            }
+        });
+    }
+
+    /**
+     * Записать в target глубину ближайшего образца каждого пикселя
+     * (для проходов постобработки, которым нужна глубина кадра)
+     */
+    public void resolveDepth(ZBuffer target) {
+        if (target.getWidth() != width || target.getHeight() != height) {
+            throw new IllegalArgumentException("Resolve target size " + target.getWidth() + "x"
+                    + target.getHeight() + " differs from " + width + "x" + height);
+        }
+
+        float[] targetDepth = target.getDepthArray();
+        IntStream.range(0, height).parallel().forEach(y -> {
+            for (int pixel = y * width; pixel < (y + 1) * width; pixel++) {
+                int base = pixel * samples;
+                float nearest = depth[base];
+                for (int i = base + 1; i < base + samples; i++) {
+                    nearest = Math.min(nearest, depth[i]);
+                }
+                targetDepth[pixel] = nearest;
+            }
+        });
+    }
+
+    public boolean hasLayout(int width, int height, int samples) {
+        return this.width == width && this.height == height && this.samples == samples;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * Сдвиги образцов по x от центра пикселя, в пикселях
+     */
+    public float[] getSampleOffsetsX() {
+        return sampleOffsetX;
+    }
+
+    /**
+     * Сдвиги образцов по y от центра пикселя, в пикселях
+     */
+    public float[] getSampleOffsetsY() {
+        return sampleOffsetY;
+    }
+
+    /**
+     * Сырые глубины образцов, для растеризатора
+     */
+    public float[] getDepth() {
+        return depth;
+    }
+
+    /**
+     * Сырые цвета образцов, для растеризатора
+     */
+    public int[] getColors() {
+        return colors;
+    }
+}
@@ -0,0 +1,70 @@
+package com.cgvsu.render_engine.rasterization;
+
+/**
+ * Специализированное ядро растеризации с Z-буфером. Режим, затенение и фильтрация
+ * выбираются один раз на кадр, поэтому внутри цикла по пикселям нет ветвлений по настройкам:
+ * у каждого ядра свой небольшой цикл в {@link TriangleRasterizer#rasterize}.
+ */
+public enum RasterKernel {
+    SOLID(false, false),
+    TEXTURED_NEAREST(false, true),
+    TEXTURED_BILINEAR(false, true),
+    LIT_FLAT(true, false),
+    LIT_SMOOTH(true, false),
+    LIT_TEXTURED_FLAT_NEAREST(true, true),
+    LIT_TEXTURED_FLAT_BILINEAR(true, true),
+    LIT_TEXTURED_SMOOTH_NEAREST(true, true),
+    LIT_TEXTURED_SMOOTH_BILINEAR(true, true);
+
+    private final boolean lit;
+    private final boolean textured;
+
+    RasterKernel(boolean lit, boolean textured) {
+        this.lit = lit;
+        this.textured = textured;
+    }
+
+    public static RasterKernel select(boolean lit, boolean textured,
+                                      boolean smoothShading, boolean bilinearFiltering) {
+        if (!lit) {
+            if (!textured) {
+                return SOLID;
+            }
+            return bilinearFiltering ? TEXTURED_BILINEAR : TEXTURED_NEAREST;
+        }
+        if (!textured) {
+            return smoothShading ? LIT_SMOOTH : LIT_FLAT;
+        }
+        if (smoothShading) {
+            return bilinearFiltering ? LIT_TEXTURED_SMOOTH_BILINEAR : LIT_TEXTURED_SMOOTH_NEAREST;
+        }
+        return bilinearFiltering ? LIT_TEXTURED_FLAT_BILINEAR : LIT_TEXTURED_FLAT_NEAREST;
+    }
+
+    /**
+     * То же ядро без текстуры (для треугольников без текстурных координат)
+     */
+    public RasterKernel withoutTexture() {
+        switch (this) {
+            case TEXTURED_NEAREST:
+            case TEXTURED_BILINEAR:
+                return SOLID;
+            case LIT_TEXTURED_FLAT_NEAREST:
+            case LIT_TEXTURED_FLAT_BILINEAR:
+                return LIT_FLAT;
+            case LIT_TEXTURED_SMOOTH_NEAREST:
+            case LIT_TEXTURED_SMOOTH_BILINEAR:
+                return LIT_SMOOTH;
+            default:
+                return this;
+        }
+    }
+
+    public boolean isLit() {
+        return lit;
+    }
+
+    public boolean isTextured() {
+        return textured;
+    }
+}
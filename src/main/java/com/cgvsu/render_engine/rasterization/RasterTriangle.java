@@ -0,0 +1,96 @@
+package com.cgvsu.render_engine.rasterization;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+
+/**
+ * Вершины треугольника для специализированных ядер растеризации, в примитивных полях.
+ * Один объект заполняется заново для каждого треугольника, поэтому ядра получают
+ * один аргумент вместо десятка векторов и ничего не распаковывают в цикле.
+ * Нужные ядру атрибуты задаются до вызова: мировые координаты и нормали - для освещения,
+ * текстурные координаты - для текстуры.
+ */
+public final class RasterTriangle {
+    // Экранные координаты и глубина
+    float x1, y1, z1, x2, y2, z2, x3, y3, z3;
+    // Мировые координаты
+    float wx1, wy1, wz1, wx2, wy2, wz2, wx3, wy3, wz3;
+    // Нормали в мировом пространстве
+    float nx1, ny1, nz1, nx2, ny2, nz2, nx3, ny3, nz3;
+    // Текстурные координаты
+    float u1, v1, u2, v2, u3, v3;
+
+    // Результат prepare: ограничивающий прямоугольник и коэффициенты барицентрических координат
+    int minX, minY, maxX, maxY;
+    float e1x, e1y, e2x, e2y, e3x, e3y;
+    float inverseArea;
+
+    public void setScreen(Vector2f p1, float z1, Vector2f p2, float z2, Vector2f p3, float z3) {
+        this.x1 = p1.getX();
+        this.y1 = p1.getY();
+        this.z1 = z1;
+        this.x2 = p2.getX();
+        this.y2 = p2.getY();
+        this.z2 = z2;
+        this.x3 = p3.getX();
+        this.y3 = p3.getY();
+        this.z3 = z3;
+    }
+
+    public void setScreen(float x1, float y1, float z1, float x2, float y2, float z2,
+                          float x3, float y3, float z3) {
+        this.x1 = x1; this.y1 = y1; this.z1 = z1;
+        this.x2 = x2; this.y2 = y2; this.z2 = z2;
+        this.x3 = x3; this.y3 = y3; this.z3 = z3;
+    }
+
+    public void setWorld(Vector3f w1, Vector3f w2, Vector3f w3) {
+        wx1 = w1.getX(); wy1 = w1.getY(); wz1 = w1.getZ();
+        wx2 = w2.getX(); wy2 = w2.getY(); wz2 = w2.getZ();
+        wx3 = w3.getX(); wy3 = w3.getY(); wz3 = w3.getZ();
+    }
+
+    public void setWorld(float x1, float y1, float z1, float x2, float y2, float z2,
+                         float x3, float y3, float z3) {
+        wx1 = x1; wy1 = y1; wz1 = z1;
+        wx2 = x2; wy2 = y2; wz2 = z2;
+        wx3 = x3; wy3 = y3; wz3 = z3;
+    }
+
+    public void setNormals(Vector3f n1, Vector3f n2, Vector3f n3) {
+        nx1 = n1.getX(); ny1 = n1.getY(); nz1 = n1.getZ();
+        nx2 = n2.getX(); ny2 = n2.getY(); nz2 = n2.getZ();
+        nx3 = n3.getX(); ny3 = n3.getY(); nz3 = n3.getZ();
+    }
+
+    public void setTextureCoordinates(Vector2f t1, Vector2f t2, Vector2f t3) {
+        u1 = t1.getX(); v1 = t1.getY();
+        u2 = t2.getX(); v2 = t2.getY();
+        u3 = t3.getX(); v3 = t3.getY();
+    }
+
+    /**
+     * Подготовка к растеризации в буфер width x height
+     *
+     * @return false, если треугольник вырожден или целиком вне буфера
+     */
+    boolean prepare(int width, int height) {
+        float area = (x3 - x1) * (y2 - y1) - (y3 - y1) * (x2 - x1);
+        if (Math.abs(area) < 0.0001f) {
+            return false;
+        }
+        inverseArea = 1.0f / area;
+        e1x = x3 - x2;
+        e1y = y3 - y2;
+        e2x = x1 - x3;
+        e2y = y1 - y3;
+        e3x = x2 - x1;
+        e3y = y2 - y1;
+
+        minX = (int) Math.max(0, Math.floor(Math.min(x1, Math.min(x2, x3))));
+        minY = (int) Math.max(0, Math.floor(Math.min(y1, Math.min(y2, y3))));
+        maxX = (int) Math.min(width - 1, Math.ceil(Math.max(x1, Math.max(x2, x3))));
+        maxY = (int) Math.min(height - 1, Math.ceil(Math.max(y1, Math.max(y2, y3))));
+        return minX <= maxX && minY <= maxY;
+    }
+}
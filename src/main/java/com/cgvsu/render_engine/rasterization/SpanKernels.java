@@ -0,0 +1,26 @@
+package com.cgvsu.render_engine.rasterization;
+
+/**
+ * Ядра растеризации, которые обрабатывают строку треугольника отрезками по нескольку пикселей.
+ * Покрытие и глубина считаются теми же операциями и в том же порядке, что и в скалярных
+ * ядрах {@link TriangleRasterizer}, поэтому результат совпадает с ними до бита.
+ * Все методы возвращают число записей глубины (для {@link ZBuffer#addWriteCount}).
+ */
+interface SpanKernels {
+
+    /**
+     * Сплошной цвет; depthPrePassed - глубина уже записана, рисуются только ближайшие точки
+     */
+    int solid(RasterTriangle t, int argb, int[] pixels, float[] depth, int width, boolean depthPrePassed);
+
+    /**
+     * Только глубина (проход глубины)
+     */
+    int depth(RasterTriangle t, float[] depth, int width);
+
+    /**
+     * Номер треугольника и барицентрические координаты для буфера видимости
+     */
+    int visibility(RasterTriangle t, int triangleId, int[] triangleIds,
+                   float[] barycentric1, float[] barycentric2, float[] depth, int width);
+}
@@ -4,31 +4,83 @@ import com.cgvsu.math.Vector2f;
 import com.cgvsu.math.Vector3f;
 import com.cgvsu.render_engine.lighting.*;
 import com.cgvsu.render_engine.texture.Texture;
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.image.PixelWriter;
 import javafx.scene.paint.Color;
 
 import java.util.Arrays;
 import java.util.Comparator;
 
 public class TriangleRasterizer {
+    // Направление взгляда для освещения (упрощенно, как в остальных методах)
+    private static final Vector3f VIEW_DIRECTION = new Vector3f(0, 0, -1);
+
+    // Векторные ядра; null, если jdk.incubator.vector не подключен или SIMD слишком узкий
+    private static final SpanKernels VECTOR_KERNELS = loadVectorKernels();
+
+    private boolean vectorized = true;
+
+    // Векторы и цвет для освещения в ядрах: переиспользуются для всех пикселей
+    private final Vector3f shadePosition = new Vector3f();
+    private final Vector3f shadeNormal = new Vector3f();
+    private final Vector3f flatNormal = new Vector3f();
+    private final float[] shadeColor = new float[3];
+    // Источники, отобранные для текущего треугольника (-1 - отбор выключен, освещают все)
+    private int[] lightIndices = new int[0];
+    private int lightCount = -1;
+
+    /**
+     * Ядра на Vector API подключаются, только если модуль есть в загрузочном слое
+     * (запуск с --add-modules jdk.incubator.vector): без него класс ядер даже не загружается
+     */
+    private static SpanKernels loadVectorKernels() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (SpanKernels) Class.forName(TriangleRasterizer.class.getPackageName() + ".VectorSpanKernels")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // В том числе отказ конструктора на процессоре с векторами уже 8 float
+            return null;
+        }
+    }
+
+    /**
+     * Доступны ли векторные ядра в этой JVM
+     */
+    public static boolean isVectorSupported() {
+        return VECTOR_KERNELS != null;
+    }
+
+    /**
+     * Использовать векторные ядра для сплошной заливки, прохода глубины и буфера видимости,
+     * если они доступны; иначе (и при false) работают скалярные ядра, результат тот же
+     */
+    public void setVectorized(boolean vectorized) {
+        this.vectorized = vectorized;
+    }
+
+    private boolean useVectorKernels() {
+        return vectorized && VECTOR_KERNELS != null;
+    }
+
     public void rasterizeTriangle(
             Vector2f p1, Vector2f p2, Vector2f p3,
             Vector3f v1, Vector3f v2, Vector3f v3,
-            GraphicsContext gc, ZBuffer zBuffer, Color color) {
-
-        PixelWriter pw = gc.getPixelWriter();
+            FrameBuffer frameBuffer, ZBuffer zBuffer, Color color) {
 
         int minX = Math.max(0, (int) Math.min(Math.min(p1.getX(), p2.getX()), p3.getX()));
-        int maxX = Math.min((int) gc.getCanvas().getWidth() - 1,
+        int maxX = Math.min(frameBuffer.getWidth() - 1,
                 (int) Math.max(Math.max(p1.getX(), p2.getX()), p3.getX()));
         int minY = Math.max(0, (int) Math.min(Math.min(p1.getY(), p2.getY()), p3.getY()));
-        int maxY = Math.min((int) gc.getCanvas().getHeight() - 1,
+        int maxY = Math.min(frameBuffer.getHeight() - 1,
                 (int) Math.max(Math.max(p1.getY(), p2.getY()), p3.getY()));
 
         float area = (float) Vector2f.edgeFunction(p1, p2, p3);
         if (Math.abs(area) < 1e-6) return;
 
+        int argb = FrameBuffer.toArgb(color);
+
         for (int y = minY; y <= maxY; y++) {
             for (int x = minX; x <= maxX; x++) {
                 Vector2f p = new Vector2f(x, y);
@@ -41,7 +93,7 @@ public class TriangleRasterizer {
                     float z = (float) (w1 * v1.getZ() + w2 * v2.getZ() + w3 * v3.getZ());
 
                     if (zBuffer.testAndSet(x, y, z)) {
-                        pw.setColor(x, y, color);
+                        frameBuffer.setArgb(x, y, argb);
                     }
                 }
             }
@@ -54,26 +106,27 @@ public class TriangleRasterizer {
     public void rasterizeTriangleWithZBuffer(
             Vector2f p1, Vector2f p2, Vector2f p3,
             float z1, float z2, float z3,
-            GraphicsContext gc, ZBuffer zBuffer, Color color) {
+            FrameBuffer frameBuffer, ZBuffer zBuffer, Color color) {
 
-        PixelWriter pw = gc.getPixelWriter();
-        int[] bounds = calculateBoundingBox(p1, p2, p3);
+        int[] bounds = calculateBoundingBox(p1, p2, p3, frameBuffer);
 
         int minX = bounds[0];
         int minY = bounds[1];
         int maxX = bounds[2];
         int maxY = bounds[3];
 
-        // Преобразуем в экранные координаты
-        int x1 = (int) p1.getX(), y1 = (int) p1.getY();
-        int x2 = (int) p2.getX(), y2 = (int) p2.getY();
-        int x3 = (int) p3.getX(), y3 = (int) p3.getY();
+        // Экранные координаты вершин с субпиксельной точностью
+        float x1 = p1.getX(), y1 = p1.getY();
+        float x2 = p2.getX(), y2 = p2.getY();
+        float x3 = p3.getX(), y3 = p3.getY();
 
         // Вычисляем барицентрические координаты для всей области
         float area = edgeFunction(x1, y1, x2, y2, x3, y3);
 
         if (Math.abs(area) < 0.0001f) return; // Вырожденный треугольник
 
+        int argb = FrameBuffer.toArgb(color);
+
         for (int y = minY; y <= maxY; y++) {
             for (int x = minX; x <= maxX; x++) {
                 // Барицентрические координаты
@@ -88,7 +141,7 @@ public class TriangleRasterizer {
 
                     // Проверка Z-буфера
                     if (zBuffer.testAndSet(x, y, z)) {
-                        pw.setColor(x, y, color);
+                        frameBuffer.setArgb(x, y, argb);
                     }
                 }
             }
@@ -103,21 +156,20 @@ public class TriangleRasterizer {
             float z1, float z2, float z3,
             Vector2f uv1, Vector2f uv2, Vector2f uv3,
             Texture texture, boolean bilinearFiltering,
-            GraphicsContext gc, ZBuffer zBuffer) {
+            FrameBuffer frameBuffer, ZBuffer zBuffer) {
 
         if (texture == null) return;
 
-        PixelWriter pw = gc.getPixelWriter();
-        int[] bounds = calculateBoundingBox(p1, p2, p3);
+        int[] bounds = calculateBoundingBox(p1, p2, p3, frameBuffer);
 
         int minX = bounds[0];
         int minY = bounds[1];
         int maxX = bounds[2];
         int maxY = bounds[3];
 
-        int x1 = (int) p1.getX(), y1 = (int) p1.getY();
-        int x2 = (int) p2.getX(), y2 = (int) p2.getY();
-        int x3 = (int) p3.getX(), y3 = (int) p3.getY();
+        float x1 = p1.getX(), y1 = p1.getY();
+        float x2 = p2.getX(), y2 = p2.getY();
+        float x3 = p3.getX(), y3 = p3.getY();
 
         float area = edgeFunction(x1, y1, x2, y2, x3, y3);
         if (Math.abs(area) < 0.0001f) return;
@@ -141,7 +193,7 @@ public class TriangleRasterizer {
                                 texture.getColorBilinear(u, v) :
                                 texture.getColor(u, v);
 
-                        pw.setColor(x, y, texColor);
+                        frameBuffer.setColor(x, y, texColor);
                     }
                 }
             }
@@ -158,23 +210,24 @@ public class TriangleRasterizer {
             Vector3f n1, Vector3f n2, Vector3f n3,
             Material material, SceneLighting sceneLighting,
             boolean smoothShading,
-            GraphicsContext gc, ZBuffer zBuffer) {
+            FrameBuffer frameBuffer, ZBuffer zBuffer) {
 
-        PixelWriter pw = gc.getPixelWriter();
-        int[] bounds = calculateBoundingBox(p1, p2, p3);
+        int[] bounds = calculateBoundingBox(p1, p2, p3, frameBuffer);
 
         int minX = bounds[0];
         int minY = bounds[1];
         int maxX = bounds[2];
         int maxY = bounds[3];
 
-        int x1 = (int) p1.getX(), y1 = (int) p1.getY();
-        int x2 = (int) p2.getX(), y2 = (int) p2.getY();
-        int x3 = (int) p3.getX(), y3 = (int) p3.getY();
+        float x1 = p1.getX(), y1 = p1.getY();
+        float x2 = p2.getX(), y2 = p2.getY();
+        float x3 = p3.getX(), y3 = p3.getY();
 
         float area = edgeFunction(x1, y1, x2, y2, x3, y3);
         if (Math.abs(area) < 0.0001f) return;
 
+        Color baseColor = material.getBaseColor();
+        selectLights(sceneLighting, world1, world2, world3);
         for (int y = minY; y <= maxY; y++) {
             for (int x = minX; x <= maxX; x++) {
                 float w1 = edgeFunction(x2, y2, x3, y3, x, y) / area;
@@ -186,25 +239,13 @@ public class TriangleRasterizer {
 
                     if (zBuffer.testAndSet(x, y, z)) {
                         // Интерполяция мировых координат и нормалей
-                        Vector3f worldPos = interpolateVector3(world1, world2, world3, w1, w2, w3);
-                        Vector3f normal;
-
-                        if (smoothShading) {
-                            normal = interpolateVector3(n1, n2, n3, w1, w2, w3).normalize();
-                        } else {
-                            // Flat shading - используем нормаль первого треугольника
-                            normal = n1;
-                        }
+                        Vector3f worldPos = interpolateVector3(world1, world2, world3, w1, w2, w3, shadePosition);
+                        // Нормаль нормализуется при расчете освещения
+                        Vector3f normal = smoothShading
+                                ? interpolateVector3(n1, n2, n3, w1, w2, w3, shadeNormal)
+                                : n1;
 
-                        // Расчет освещения
-                        Color baseColor = material.getBaseColor();
-                        Color finalColor = sceneLighting.calculateLighting(
-                                material, worldPos, normal,
-                                new Vector3f(0, 0, -1), // Направление взгляда (упрощенно)
-                                baseColor
-                        );
-
-                        pw.setColor(x, y, finalColor);
+                        frameBuffer.setArgb(x, y, shadeArgb(sceneLighting, material, worldPos, normal, baseColor));
                     }
                 }
             }
@@ -222,31 +263,31 @@ public class TriangleRasterizer {
             Vector2f uv1, Vector2f uv2, Vector2f uv3,
             Material material, SceneLighting sceneLighting,
             boolean smoothShading, boolean bilinearFiltering,
-            GraphicsContext gc, ZBuffer zBuffer) {
+            FrameBuffer frameBuffer, ZBuffer zBuffer) {
 
         if (!material.hasTexture()) {
             // Если нет текстуры, рисуем с освещением но без текстуры
             rasterizeLitTriangleWithZBuffer(p1, p2, p3, z1, z2, z3,
                     world1, world2, world3, n1, n2, n3,
-                    material, sceneLighting, smoothShading, gc, zBuffer);
+                    material, sceneLighting, smoothShading, frameBuffer, zBuffer);
             return;
         }
 
-        PixelWriter pw = gc.getPixelWriter();
-        int[] bounds = calculateBoundingBox(p1, p2, p3);
+        int[] bounds = calculateBoundingBox(p1, p2, p3, frameBuffer);
 
         int minX = bounds[0];
         int minY = bounds[1];
         int maxX = bounds[2];
         int maxY = bounds[3];
 
-        int x1 = (int) p1.getX(), y1 = (int) p1.getY();
-        int x2 = (int) p2.getX(), y2 = (int) p2.getY();
-        int x3 = (int) p3.getX(), y3 = (int) p3.getY();
+        float x1 = p1.getX(), y1 = p1.getY();
+        float x2 = p2.getX(), y2 = p2.getY();
+        float x3 = p3.getX(), y3 = p3.getY();
 
         float area = edgeFunction(x1, y1, x2, y2, x3, y3);
         if (Math.abs(area) < 0.0001f) return;
 
+        selectLights(sceneLighting, world1, world2, world3);
         for (int y = minY; y <= maxY; y++) {
             for (int x = minX; x <= maxX; x++) {
                 float w1 = edgeFunction(x2, y2, x3, y3, x, y) / area;
@@ -267,23 +308,13 @@ public class TriangleRasterizer {
                                 material.getDiffuseTexture().getColor(u, v);
 
                         // Интерполяция мировых координат и нормалей
-                        Vector3f worldPos = interpolateVector3(world1, world2, world3, w1, w2, w3);
-                        Vector3f normal;
-
-                        if (smoothShading) {
-                            normal = interpolateVector3(n1, n2, n3, w1, w2, w3).normalize();
-                        } else {
-                            normal = n1;
-                        }
+                        Vector3f worldPos = interpolateVector3(world1, world2, world3, w1, w2, w3, shadePosition);
+                        // Нормаль нормализуется при расчете освещения
+                        Vector3f normal = smoothShading
+                                ? interpolateVector3(n1, n2, n3, w1, w2, w3, shadeNormal)
+                                : n1;
 
-                        // Расчет освещения с учетом текстуры
-                        Color finalColor = sceneLighting.calculateLighting(
-                                material, worldPos, normal,
-                                new Vector3f(0, 0, -1),
-                                texColor
-                        );
-
-                        pw.setColor(x, y, finalColor);
+                        frameBuffer.setArgb(x, y, shadeArgb(sceneLighting, material, worldPos, normal, texColor));
                     }
                 }
             }
@@ -295,14 +326,35 @@ public class TriangleRasterizer {
      */
     public void rasterizeTriangle(
             Vector2f p1, Vector2f p2, Vector2f p3,
-            GraphicsContext gc, Color color) {
+            FrameBuffer frameBuffer, Color color) {
 
-        gc.setFill(color);
-        gc.fillPolygon(
-                new double[]{p1.getX(), p2.getX(), p3.getX()},
-                new double[]{p1.getY(), p2.getY(), p3.getY()},
-                3
-        );
+        int[] bounds = calculateBoundingBox(p1, p2, p3, frameBuffer);
+
+        int minX = bounds[0];
+        int minY = bounds[1];
+        int maxX = bounds[2];
+        int maxY = bounds[3];
+
+        float x1 = p1.getX(), y1 = p1.getY();
+        float x2 = p2.getX(), y2 = p2.getY();
+        float x3 = p3.getX(), y3 = p3.getY();
+
+        float area = edgeFunction(x1, y1, x2, y2, x3, y3);
+        if (Math.abs(area) < 0.0001f) return;
+
+        int argb = FrameBuffer.toArgb(color);
+
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                float w1 = edgeFunction(x2, y2, x3, y3, x, y) / area;
+                float w2 = edgeFunction(x3, y3, x1, y1, x, y) / area;
+                float w3 = edgeFunction(x1, y1, x2, y2, x, y) / area;
+
+                if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f) {
+                    frameBuffer.setArgb(x, y, argb);
+                }
+            }
+        }
     }
 
     /**
@@ -312,21 +364,20 @@ public class TriangleRasterizer {
             Vector2f p1, Vector2f p2, Vector2f p3,
             Vector2f uv1, Vector2f uv2, Vector2f uv3,
             Texture texture, boolean bilinearFiltering,
-            GraphicsContext gc) {
+            FrameBuffer frameBuffer) {
 
         if (texture == null) return;
 
-        PixelWriter pw = gc.getPixelWriter();
-        int[] bounds = calculateBoundingBox(p1, p2, p3);
+        int[] bounds = calculateBoundingBox(p1, p2, p3, frameBuffer);
 
         int minX = bounds[0];
         int minY = bounds[1];
         int maxX = bounds[2];
         int maxY = bounds[3];
 
-        int x1 = (int) p1.getX(), y1 = (int) p1.getY();
-        int x2 = (int) p2.getX(), y2 = (int) p2.getY();
-        int x3 = (int) p3.getX(), y3 = (int) p3.getY();
+        float x1 = p1.getX(), y1 = p1.getY();
+        float x2 = p2.getX(), y2 = p2.getY();
+        float x3 = p3.getX(), y3 = p3.getY();
 
         float area = edgeFunction(x1, y1, x2, y2, x3, y3);
         if (Math.abs(area) < 0.0001f) return;
@@ -347,7 +398,7 @@ public class TriangleRasterizer {
                             texture.getColorBilinear(u, v) :
                             texture.getColor(u, v);
 
-                    pw.setColor(x, y, texColor);
+                    frameBuffer.setColor(x, y, texColor);
                 }
             }
         }
@@ -362,23 +413,24 @@ public class TriangleRasterizer {
             Vector3f n1, Vector3f n2, Vector3f n3,
             Material material, SceneLighting sceneLighting,
             boolean smoothShading,
-            GraphicsContext gc) {
+            FrameBuffer frameBuffer) {
 
-        PixelWriter pw = gc.getPixelWriter();
-        int[] bounds = calculateBoundingBox(p1, p2, p3);
+        int[] bounds = calculateBoundingBox(p1, p2, p3, frameBuffer);
 
         int minX = bounds[0];
         int minY = bounds[1];
         int maxX = bounds[2];
         int maxY = bounds[3];
 
-        int x1 = (int) p1.getX(), y1 = (int) p1.getY();
-        int x2 = (int) p2.getX(), y2 = (int) p2.getY();
-        int x3 = (int) p3.getX(), y3 = (int) p3.getY();
+        float x1 = p1.getX(), y1 = p1.getY();
+        float x2 = p2.getX(), y2 = p2.getY();
+        float x3 = p3.getX(), y3 = p3.getY();
 
         float area = edgeFunction(x1, y1, x2, y2, x3, y3);
         if (Math.abs(area) < 0.0001f) return;
 
+        Color baseColor = material.getBaseColor();
+        selectLights(sceneLighting, world1, world2, world3);
         for (int y = minY; y <= maxY; y++) {
             for (int x = minX; x <= maxX; x++) {
                 float w1 = edgeFunction(x2, y2, x3, y3, x, y) / area;
@@ -387,24 +439,13 @@ public class TriangleRasterizer {
 
                 if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f) {
                     // Интерполяция мировых координат и нормалей
-                    Vector3f worldPos = interpolateVector3(world1, world2, world3, w1, w2, w3);
-                    Vector3f normal;
-
-                    if (smoothShading) {
-                        normal = interpolateVector3(n1, n2, n3, w1, w2, w3).normalize();
-                    } else {
-                        normal = n1;
-                    }
+                    Vector3f worldPos = interpolateVector3(world1, world2, world3, w1, w2, w3, shadePosition);
+                    // Нормаль нормализуется при расчете освещения
+                    Vector3f normal = smoothShading
+                            ? interpolateVector3(n1, n2, n3, w1, w2, w3, shadeNormal)
+                            : n1;
 
-                    // Расчет освещения
-                    Color baseColor = material.getBaseColor();
-                    Color finalColor = sceneLighting.calculateLighting(
-                            material, worldPos, normal,
-                            new Vector3f(0, 0, -1),
-                            baseColor
-                    );
-
-                    pw.setColor(x, y, finalColor);
+                    frameBuffer.setArgb(x, y, shadeArgb(sceneLighting, material, worldPos, normal, baseColor));
                 }
             }
         }
@@ -420,29 +461,29 @@ public class TriangleRasterizer {
             Vector2f uv1, Vector2f uv2, Vector2f uv3,
             Material material, SceneLighting sceneLighting,
             boolean smoothShading, boolean bilinearFiltering,
-            GraphicsContext gc) {
+            FrameBuffer frameBuffer) {
 
         if (!material.hasTexture()) {
             rasterizeLitTriangle(p1, p2, p3, world1, world2, world3,
-                    n1, n2, n3, material, sceneLighting, smoothShading, gc);
+                    n1, n2, n3, material, sceneLighting, smoothShading, frameBuffer);
             return;
         }
 
-        PixelWriter pw = gc.getPixelWriter();
-        int[] bounds = calculateBoundingBox(p1, p2, p3);
+        int[] bounds = calculateBoundingBox(p1, p2, p3, frameBuffer);
 
         int minX = bounds[0];
         int minY = bounds[1];
         int maxX = bounds[2];
         int maxY = bounds[3];
 
-        int x1 = (int) p1.getX(), y1 = (int) p1.getY();
-        int x2 = (int) p2.getX(), y2 = (int) p2.getY();
-        int x3 = (int) p3.getX(), y3 = (int) p3.getY();
+        float x1 = p1.getX(), y1 = p1.getY();
+        float x2 = p2.getX(), y2 = p2.getY();
+        float x3 = p3.getX(), y3 = p3.getY();
 
         float area = edgeFunction(x1, y1, x2, y2, x3, y3);
         if (Math.abs(area) < 0.0001f) return;
 
+        selectLights(sceneLighting, world1, world2, world3);
         for (int y = minY; y <= maxY; y++) {
             for (int x = minX; x <= maxX; x++) {
                 float w1 = edgeFunction(x2, y2, x3, y3, x, y) / area;
@@ -460,23 +501,13 @@ public class TriangleRasterizer {
                             material.getDiffuseTexture().getColor(u, v);
 
                     // Интерполяция мировых координат и нормалей
-                    Vector3f worldPos = interpolateVector3(world1, world2, world3, w1, w2, w3);
-                    Vector3f normal;
-
-                    if (smoothShading) {
-                        normal = interpolateVector3(n1, n2, n3, w1, w2, w3).normalize();
-                    } else {
-                        normal = n1;
-                    }
-
-                    // Расчет освещения с учетом текстуры
-                    Color finalColor = sceneLighting.calculateLighting(
-                            material, worldPos, normal,
-                            new Vector3f(0, 0, -1),
-                            texColor
-                    );
+                    Vector3f worldPos = interpolateVector3(world1, world2, world3, w1, w2, w3, shadePosition);
+                    // Нормаль нормализуется при расчете освещения
+                    Vector3f normal = smoothShading
+                            ? interpolateVector3(n1, n2, n3, w1, w2, w3, shadeNormal)
+                            : n1;
 
-                    pw.setColor(x, y, finalColor);
+                    frameBuffer.setArgb(x, y, shadeArgb(sceneLighting, material, worldPos, normal, texColor));
                 }
             }
         }
@@ -491,7 +522,7 @@ public class TriangleRasterizer {
             Vector3f world1, Vector3f world2, Vector3f world3,
             Vector3f n1, Vector3f n2, Vector3f n3,
             Material material, SceneLighting sceneLighting,
-            GraphicsContext gc, ZBuffer zBuffer) {
+            FrameBuffer frameBuffer, ZBuffer zBuffer) {
 
         // Вычисляем освещение в вершинах
         Color c1 = calculateVertexLighting(world1, n1, material, sceneLighting);
@@ -499,7 +530,7 @@ public class TriangleRasterizer {
         Color c3 = calculateVertexLighting(world3, n3, material, sceneLighting);
 
         // Интерполируем цвет по треугольнику
-        rasterizeTriangleWithColorInterpolation(p1, p2, p3, z1, z2, z3, c1, c2, c3, gc, zBuffer);
+        rasterizeTriangleWithColorInterpolation(p1, p2, p3, z1, z2, z3, c1, c2, c3, frameBuffer, zBuffer);
     }
 
     /**
@@ -513,26 +544,25 @@ public class TriangleRasterizer {
             Vector2f uv1, Vector2f uv2, Vector2f uv3,
             Texture texture, Material material, SceneLighting sceneLighting,
             boolean bilinearFiltering,
-            GraphicsContext gc, ZBuffer zBuffer) {
+            FrameBuffer frameBuffer, ZBuffer zBuffer) {
 
         if (texture == null) {
             rasterizeTriangleGouraud(p1, p2, p3, z1, z2, z3,
                     world1, world2, world3, n1, n2, n3,
-                    material, sceneLighting, gc, zBuffer);
+                    material, sceneLighting, frameBuffer, zBuffer);
             return;
         }
 
-        PixelWriter pw = gc.getPixelWriter();
-        int[] bounds = calculateBoundingBox(p1, p2, p3);
+        int[] bounds = calculateBoundingBox(p1, p2, p3, frameBuffer);
 
         int minX = bounds[0];
         int minY = bounds[1];
         int maxX = bounds[2];
         int maxY = bounds[3];
 
-        int x1 = (int) p1.getX(), y1 = (int) p1.getY();
-        int x2 = (int) p2.getX(), y2 = (int) p2.getY();
-        int x3 = (int) p3.getX(), y3 = (int) p3.getY();
+        float x1 = p1.getX(), y1 = p1.getY();
+        float x2 = p2.getX(), y2 = p2.getY();
+        float x3 = p3.getX(), y3 = p3.getY();
 
         float area = edgeFunction(x1, y1, x2, y2, x3, y3);
         if (Math.abs(area) < 0.0001f) return;
@@ -572,7 +602,7 @@ public class TriangleRasterizer {
                                 texColor.getOpacity()
                         );
 
-                        pw.setColor(x, y, finalColor);
+                        frameBuffer.setColor(x, y, finalColor);
                     }
                 }
             }
@@ -586,19 +616,18 @@ public class TriangleRasterizer {
             Vector2f p1, Vector2f p2, Vector2f p3,
             float z1, float z2, float z3,
             Color c1, Color c2, Color c3,
-            GraphicsContext gc, ZBuffer zBuffer) {
+            FrameBuffer frameBuffer, ZBuffer zBuffer) {
 
-        PixelWriter pw = gc.getPixelWriter();
-        int[] bounds = calculateBoundingBox(p1, p2, p3);
+        int[] bounds = calculateBoundingBox(p1, p2, p3, frameBuffer);
 
         int minX = bounds[0];
         int minY = bounds[1];
         int maxX = bounds[2];
         int maxY = bounds[3];
 
-        int x1 = (int) p1.getX(), y1 = (int) p1.getY();
-        int x2 = (int) p2.getX(), y2 = (int) p2.getY();
-        int x3 = (int) p3.getX(), y3 = (int) p3.getY();
+        float x1 = p1.getX(), y1 = p1.getY();
+        float x2 = p2.getX(), y2 = p2.getY();
+        float x3 = p3.getX(), y3 = p3.getY();
 
         float area = edgeFunction(x1, y1, x2, y2, x3, y3);
         if (Math.abs(area) < 0.0001f) return;
@@ -615,7 +644,7 @@ public class TriangleRasterizer {
                     if (zBuffer.testAndSet(x, y, z)) {
                         // Интерполяция цвета
                         Color finalColor = interpolateColor(c1, c2, c3, w1, w2, w3);
-                        pw.setColor(x, y, finalColor);
+                        frameBuffer.setColor(x, y, finalColor);
                     }
                 }
             }
@@ -623,14 +652,563 @@ public class TriangleRasterizer {
     }
 
 
+    /**
+     * Растеризация треугольника специализированным ядром (с Z-буфером, в буфер кадра).
+     * Выбор ядра - одно ветвление на треугольник, циклы по пикселям у ядер свои.
+     *
+     * @param depthPrePassed глубина уже записана {@link #rasterizeDepth}: точка рисуется,
+     *                       только если она и есть ближайшая, глубина не пишется
+     */
+    public void rasterize(
+            RasterKernel kernel, RasterTriangle t,
+            Material material, SceneLighting sceneLighting,
+            FrameBuffer frameBuffer, ZBuffer zBuffer,
+            boolean depthPrePassed) {
+
+        if (!t.prepare(frameBuffer.getWidth(), frameBuffer.getHeight())) {
+            return;
+        }
+        int[] pixels = frameBuffer.getPixels();
+        int width = frameBuffer.getWidth();
+        Texture texture = material.getDiffuseTexture();
+
+        switch (kernel) {
+            case SOLID:
+                int argb = FrameBuffer.toArgb(material.getBaseColor());
+                if (useVectorKernels()) {
+                    zBuffer.addWriteCount(VECTOR_KERNELS.solid(t, argb, pixels, zBuffer.getDepthArray(),
+                            width, depthPrePassed));
+                } else {
+                    solidKernel(t, argb, pixels, width, zBuffer, depthPrePassed);
+                }
+                break;
+            case TEXTURED_NEAREST:
+                texturedNearestKernel(t, texture, pixels, width, zBuffer, depthPrePassed);
+                break;
+            case TEXTURED_BILINEAR:
+                texturedBilinearKernel(t, texture, pixels, width, zBuffer, depthPrePassed);
+                break;
+            case LIT_FLAT:
+                selectLights(sceneLighting, t.wx1, t.wy1, t.wz1, t.wx2, t.wy2, t.wz2, t.wx3, t.wy3, t.wz3);
+                litFlatKernel(t, material, sceneLighting, pixels, width, zBuffer, depthPrePassed);
+                break;
+            case LIT_SMOOTH:
+                selectLights(sceneLighting, t.wx1, t.wy1, t.wz1, t.wx2, t.wy2, t.wz2, t.wx3, t.wy3, t.wz3);
+                litSmoothKernel(t, material, sceneLighting, pixels, width, zBuffer, depthPrePassed);
+                break;
+            case LIT_TEXTURED_FLAT_NEAREST:
+                selectLights(sceneLighting, t.wx1, t.wy1, t.wz1, t.wx2, t.wy2, t.wz2, t.wx3, t.wy3, t.wz3);
+                litTexturedFlatNearestKernel(t, material, texture, sceneLighting, pixels, width, zBuffer, depthPrePassed);
+                break;
+            case LIT_TEXTURED_FLAT_BILINEAR:
+                selectLights(sceneLighting, t.wx1, t.wy1, t.wz1, t.wx2, t.wy2, t.wz2, t.wx3, t.wy3, t.wz3);
+                litTexturedFlatBilinearKernel(t, material, texture, sceneLighting, pixels, width, zBuffer, depthPrePassed);
+                break;
+            case LIT_TEXTURED_SMOOTH_NEAREST:
+                selectLights(sceneLighting, t.wx1, t.wy1, t.wz1, t.wx2, t.wy2, t.wz2, t.wx3, t.wy3, t.wz3);
+                litTexturedSmoothNearestKernel(t, material, texture, sceneLighting, pixels, width, zBuffer, depthPrePassed);
+                break;
+            case LIT_TEXTURED_SMOOTH_BILINEAR:
+                selectLights(sceneLighting, t.wx1, t.wy1, t.wz1, t.wx2, t.wy2, t.wz2, t.wx3, t.wy3, t.wz3);
+                litTexturedSmoothBilinearKernel(t, material, texture, sceneLighting, pixels, width, zBuffer, depthPrePassed);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported raster kernel: " + kernel);
+        }
+    }
+
+    /**
+     * Проход глубины: только Z-буфер. Глубина и покрытие считаются так же, как в {@link #rasterize},
+     * поэтому на втором проходе ближайшая точка совпадает с записанной до бита.
+     */
+    public void rasterizeDepth(RasterTriangle t, ZBuffer zBuffer) {
+        if (!t.prepare(zBuffer.getWidth(), zBuffer.getHeight())) {
+            return;
+        }
+        if (useVectorKernels()) {
+            zBuffer.addWriteCount(VECTOR_KERNELS.depth(t, zBuffer.getDepthArray(), zBuffer.getWidth()));
+            return;
+        }
+        for (int y = t.minY; y <= t.maxY; y++) {
+            for (int x = t.minX; x <= t.maxX; x++) {
+                float w1 = ((x - t.x2) * t.e1y - (y - t.y2) * t.e1x) * t.inverseArea;
+                float w2 = ((x - t.x3) * t.e2y - (y - t.y3) * t.e2x) * t.inverseArea;
+                float w3 = ((x - t.x1) * t.e3y - (y - t.y1) * t.e3x) * t.inverseArea;
+                if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f) {
+                    zBuffer.testAndSet(x, y, t.z1 * w1 + t.z2 * w2 + t.z3 * w3);
+                }
+            }
+        }
+    }
+
+    private static boolean depthTest(ZBuffer zBuffer, int x, int y, float z, boolean depthPrePassed) {
+        return depthPrePassed ? zBuffer.testEqual(x, y, z) : zBuffer.testAndSet(x, y, z);
+    }
+
+    private static void solidKernel(RasterTriangle t, int argb, int[] pixels, int width,
+                                    ZBuffer zBuffer, boolean depthPrePassed) {
+        for (int y = t.minY; y <= t.maxY; y++) {
+            int row = y * width;
+            for (int x = t.minX; x <= t.maxX; x++) {
+                float w1 = ((x - t.x2) * t.e1y - (y - t.y2) * t.e1x) * t.inverseArea;
+                float w2 = ((x - t.x3) * t.e2y - (y - t.y3) * t.e2x) * t.inverseArea;
+                float w3 = ((x - t.x1) * t.e3y - (y - t.y1) * t.e3x) * t.inverseArea;
+                if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f
+                        && depthTest(zBuffer, x, y, t.z1 * w1 + t.z2 * w2 + t.z3 * w3, depthPrePassed)) {
+                    pixels[row + x] = argb;
+                }
+            }
+        }
+    }
+
+    private static void texturedNearestKernel(RasterTriangle t, Texture texture, int[] pixels, int width,
+                                              ZBuffer zBuffer, boolean depthPrePassed) {
+        for (int y = t.minY; y <= t.maxY; y++) {
+            int row = y * width;
+            for (int x = t.minX; x <= t.maxX; x++) {
+                float w1 = ((x - t.x2) * t.e1y - (y - t.y2) * t.e1x) * t.inverseArea;
+                float w2 = ((x - t.x3) * t.e2y - (y - t.y3) * t.e2x) * t.inverseArea;
+                float w3 = ((x - t.x1) * t.e3y - (y - t.y1) * t.e3x) * t.inverseArea;
+                if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f
+                        && depthTest(zBuffer, x, y, t.z1 * w1 + t.z2 * w2 + t.z3 * w3, depthPrePassed)) {
+                    Color texColor = texture.getColor(
+                            t.u1 * w1 + t.u2 * w2 + t.u3 * w3, t.v1 * w1 + t.v2 * w2 + t.v3 * w3);
+                    pixels[row + x] = FrameBuffer.toArgb(texColor);
+                }
+            }
+        }
+    }
+
+    private static void texturedBilinearKernel(RasterTriangle t, Texture texture, int[] pixels, int width,
+                                               ZBuffer zBuffer, boolean depthPrePassed) {
+        for (int y = t.minY; y <= t.maxY; y++) {
+            int row = y * width;
+            for (int x = t.minX; x <= t.maxX; x++) {
+                float w1 = ((x - t.x2) * t.e1y - (y - t.y2) * t.e1x) * t.inverseArea;
+                float w2 = ((x - t.x3) * t.e2y - (y - t.y3) * t.e2x) * t.inverseArea;
+                float w3 = ((x - t.x1) * t.e3y - (y - t.y1) * t.e3x) * t.inverseArea;
+                if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f
+                        && depthTest(zBuffer, x, y, t.z1 * w1 + t.z2 * w2 + t.z3 * w3, depthPrePassed)) {
+                    Color texColor = texture.getColorBilinear(
+                            t.u1 * w1 + t.u2 * w2 + t.u3 * w3, t.v1 * w1 + t.v2 * w2 + t.v3 * w3);
+                    pixels[row + x] = FrameBuffer.toArgb(texColor);
+                }
+            }
+        }
+    }
+
+    private void litFlatKernel(RasterTriangle t, Material material, SceneLighting sceneLighting,
+                                      int[] pixels, int width, ZBuffer zBuffer, boolean depthPrePassed) {
+        Color baseColor = material.getBaseColor();
+        Vector3f normal = flatNormal.set(t.nx1, t.ny1, t.nz1);
+        for (int y = t.minY; y <= t.maxY; y++) {
+            int row = y * width;
+            for (int x = t.minX; x <= t.maxX; x++) {
+                float w1 = ((x - t.x2) * t.e1y - (y - t.y2) * t.e1x) * t.inverseArea;
+                float w2 = ((x - t.x3) * t.e2y - (y - t.y3) * t.e2x) * t.inverseArea;
+                float w3 = ((x - t.x1) * t.e3y - (y - t.y1) * t.e3x) * t.inverseArea;
+                if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f
+                        && depthTest(zBuffer, x, y, t.z1 * w1 + t.z2 * w2 + t.z3 * w3, depthPrePassed)) {
+                    pixels[row + x] = shadeArgb(sceneLighting, material,
+                            worldPosition(t, w1, w2, w3), normal, baseColor);
+                }
+            }
+        }
+    }
+
+    private void litSmoothKernel(RasterTriangle t, Material material, SceneLighting sceneLighting,
+                                        int[] pixels, int width, ZBuffer zBuffer, boolean depthPrePassed) {
+        Color baseColor = material.getBaseColor();
+        for (int y = t.minY; y <= t.maxY; y++) {
+            int row = y * width;
+            for (int x = t.minX; x <= t.maxX; x++) {
+                float w1 = ((x - t.x2) * t.e1y - (y - t.y2) * t.e1x) * t.inverseArea;
+                float w2 = ((x - t.x3) * t.e2y - (y - t.y3) * t.e2x) * t.inverseArea;
+                float w3 = ((x - t.x1) * t.e3y - (y - t.y1) * t.e3x) * t.inverseArea;
+                if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f
+                        && depthTest(zBuffer, x, y, t.z1 * w1 + t.z2 * w2 + t.z3 * w3, depthPrePassed)) {
+                    pixels[row + x] = shadeArgb(sceneLighting, material,
+                            worldPosition(t, w1, w2, w3), smoothNormal(t, w1, w2, w3), baseColor);
+                }
+            }
+        }
+    }
+
+    private void litTexturedFlatNearestKernel(
+            RasterTriangle t, Material material, Texture texture, SceneLighting sceneLighting,
+            int[] pixels, int width, ZBuffer zBuffer, boolean depthPrePassed) {
+        Vector3f normal = flatNormal.set(t.nx1, t.ny1, t.nz1);
+        for (int y = t.minY; y <= t.maxY; y++) {
+            int row = y * width;
+            for (int x = t.minX; x <= t.maxX; x++) {
+                float w1 = ((x - t.x2) * t.e1y - (y - t.y2) * t.e1x) * t.inverseArea;
+                float w2 = ((x - t.x3) * t.e2y - (y - t.y3) * t.e2x) * t.inverseArea;
+                float w3 = ((x - t.x1) * t.e3y - (y - t.y1) * t.e3x) * t.inverseArea;
+                if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f
+                        && depthTest(zBuffer, x, y, t.z1 * w1 + t.z2 * w2 + t.z3 * w3, depthPrePassed)) {
+                    Color texColor = texture.getColor(
+                            t.u1 * w1 + t.u2 * w2 + t.u3 * w3, t.v1 * w1 + t.v2 * w2 + t.v3 * w3);
+                    pixels[row + x] = shadeArgb(sceneLighting, material,
+                            worldPosition(t, w1, w2, w3), normal, texColor);
+                }
+            }
+        }
+    }
+
+    private void litTexturedFlatBilinearKernel(
+            RasterTriangle t, Material material, Texture texture, SceneLighting sceneLighting,
+            int[] pixels, int width, ZBuffer zBuffer, boolean depthPrePassed) {
+        Vector3f normal = flatNormal.set(t.nx1, t.ny1, t.nz1);
+        for (int y = t.minY; y <= t.maxY; y++) {
+            int row = y * width;
+            for (int x = t.minX; x <= t.maxX; x++) {
+                float w1 = ((x - t.x2) * t.e1y - (y - t.y2) * t.e1x) * t.inverseArea;
+                float w2 = ((x - t.x3) * t.e2y - (y - t.y3) * t.e2x) * t.inverseArea;
+                float w3 = ((x - t.x1) * t.e3y - (y - t.y1) * t.e3x) * t.inverseArea;
+                if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f
+                        && depthTest(zBuffer, x, y, t.z1 * w1 + t.z2 * w2 + t.z3 * w3, depthPrePassed)) {
+                    Color texColor = texture.getColorBilinear(
+                            t.u1 * w1 + t.u2 * w2 + t.u3 * w3, t.v1 * w1 + t.v2 * w2 + t.v3 * w3);
+                    pixels[row + x] = shadeArgb(sceneLighting, material,
+                            worldPosition(t, w1, w2, w3), normal, texColor);
+                }
+            }
+        }
+    }
+
+    private void litTexturedSmoothNearestKernel(
+            RasterTriangle t, Material material, Texture texture, SceneLighting sceneLighting,
+            int[] pixels, int width, ZBuffer zBuffer, boolean depthPrePassed) {
+        for (int y = t.minY; y <= t.maxY; y++) {
+            int row = y * width;
+            for (int x = t.minX; x <= t.maxX; x++) {
+                float w1 = ((x - t.x2) * t.e1y - (y - t.y2) * t.e1x) * t.inverseArea;
+                float w2 = ((x - t.x3) * t.e2y - (y - t.y3) * t.e2x) * t.inverseArea;
+                float w3 = ((x - t.x1) * t.e3y - (y - t.y1) * t.e3x) * t.inverseArea;
+                if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f
+                        && depthTest(zBuffer, x, y, t.z1 * w1 + t.z2 * w2 + t.z3 * w3, depthPrePassed)) {
+                    Color texColor = texture.getColor(
+                            t.u1 * w1 + t.u2 * w2 + t.u3 * w3, t.v1 * w1 + t.v2 * w2 + t.v3 * w3);
+                    pixels[row + x] = shadeArgb(sceneLighting, material,
+                            worldPosition(t, w1, w2, w3), smoothNormal(t, w1, w2, w3), texColor);
+                }
+            }
+        }
+    }
+
+    private void litTexturedSmoothBilinearKernel(
+            RasterTriangle t, Material material, Texture texture, SceneLighting sceneLighting,
+            int[] pixels, int width, ZBuffer zBuffer, boolean depthPrePassed) {
+        for (int y = t.minY; y <= t.maxY; y++) {
+            int row = y * width;
+            for (int x = t.minX; x <= t.maxX; x++) {
+                float w1 = ((x - t.x2) * t.e1y - (y - t.y2) * t.e1x) * t.inverseArea;
+                float w2 = ((x - t.x3) * t.e2y - (y - t.y3) * t.e2x) * t.inverseArea;
+                float w3 = ((x - t.x1) * t.e3y - (y - t.y1) * t.e3x) * t.inverseArea;
+                if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f
+                        && depthTest(zBuffer, x, y, t.z1 * w1 + t.z2 * w2 + t.z3 * w3, depthPrePassed)) {
+                    Color texColor = texture.getColorBilinear(
+                            t.u1 * w1 + t.u2 * w2 + t.u3 * w3, t.v1 * w1 + t.v2 * w2 + t.v3 * w3);
+                    pixels[row + x] = shadeArgb(sceneLighting, material,
+                            worldPosition(t, w1, w2, w3), smoothNormal(t, w1, w2, w3), texColor);
+                }
+            }
+        }
+    }
+
+    private void selectLights(SceneLighting sceneLighting, Vector3f world1, Vector3f world2, Vector3f world3) {
+        selectLights(sceneLighting, world1.getX(), world1.getY(), world1.getZ(),
+                world2.getX(), world2.getY(), world2.getZ(), world3.getX(), world3.getY(), world3.getZ());
+    }
+
+    /**
+     * Отобрать источники, которые могут осветить треугольник: освещаемые точки - выпуклые
+     * комбинации вершин (с допуском барицентрических координат), поэтому хватает параллелепипеда
+     * вершин с небольшим запасом
+     */
+    private void selectLights(SceneLighting sceneLighting,
+                              float x1, float y1, float z1,
+                              float x2, float y2, float z2,
+                              float x3, float y3, float z3) {
+        int capacity = sceneLighting.getSelectableLightCount();
+        if (lightIndices.length < capacity) {
+            lightIndices = new int[capacity];
+        }
+        float minX = Math.min(x1, Math.min(x2, x3)), maxX = Math.max(x1, Math.max(x2, x3));
+        float minY = Math.min(y1, Math.min(y2, y3)), maxY = Math.max(y1, Math.max(y2, y3));
+        float minZ = Math.min(z1, Math.min(z2, z3)), maxZ = Math.max(z1, Math.max(z2, z3));
+        float margin = 0.001f * (maxX - minX + maxY - minY + maxZ - minZ
+                + Math.max(Math.abs(minX), Math.abs(maxX))
+                + Math.max(Math.abs(minY), Math.abs(maxY))
+                + Math.max(Math.abs(minZ), Math.abs(maxZ)));
+        lightCount = sceneLighting.selectLights(minX - margin, minY - margin, minZ - margin,
+                maxX + margin, maxY + margin, maxZ + margin, lightIndices);
+    }
+
+    /**
+     * Освещенный цвет точки; расчет идет без создания объектов, векторы - поля растеризатора
+     */
+    private int shadeArgb(SceneLighting sceneLighting, Material material,
+                          Vector3f position, Vector3f normal, Color baseColor) {
+        sceneLighting.calculateLighting(material, position, normal, VIEW_DIRECTION,
+                (float) baseColor.getRed(), (float) baseColor.getGreen(), (float) baseColor.getBlue(),
+                lightIndices, lightCount, shadeColor);
+        return FrameBuffer.toArgb(shadeColor[0], shadeColor[1], shadeColor[2], baseColor.getOpacity());
+    }
+
+    private Vector3f worldPosition(RasterTriangle t, float w1, float w2, float w3) {
+        return shadePosition.set(
+                t.wx1 * w1 + t.wx2 * w2 + t.wx3 * w3,
+                t.wy1 * w1 + t.wy2 * w2 + t.wy3 * w3,
+                t.wz1 * w1 + t.wz2 * w2 + t.wz3 * w3);
+    }
+
+    /**
+     * Интерполированная нормаль (нормализуется при освещении);
+     * если она вырождена, берется нормаль первой вершины
+     */
+    private Vector3f smoothNormal(RasterTriangle t, float w1, float w2, float w3) {
+        float x = t.nx1 * w1 + t.nx2 * w2 + t.nx3 * w3;
+        float y = t.ny1 * w1 + t.ny2 * w2 + t.ny3 * w3;
+        float z = t.nz1 * w1 + t.nz2 * w2 + t.nz3 * w3;
+        if (x == 0 && y == 0 && z == 0) {
+            return shadeNormal.set(t.nx1, t.ny1, t.nz1);
+        }
+        return shadeNormal.set(x, y, z);
+    }
+
+    /**
+     * Растеризация только видимости: глубина, номер треугольника и барицентрические
+     * координаты. Затенение выполняется позже, по готовому буферу видимости.
+     */
+    public void rasterizeVisibility(RasterTriangle t, int triangleId,
+                                    VisibilityBuffer visibilityBuffer, ZBuffer zBuffer) {
+        if (!t.prepare(visibilityBuffer.getWidth(), visibilityBuffer.getHeight())) {
+            return;
+        }
+        if (useVectorKernels()) {
+            zBuffer.addWriteCount(VECTOR_KERNELS.visibility(t, triangleId,
+                    visibilityBuffer.getTriangleIds(), visibilityBuffer.getBarycentric1(),
+                    visibilityBuffer.getBarycentric2(), zBuffer.getDepthArray(), zBuffer.getWidth()));
+            return;
+        }
+        for (int y = t.minY; y <= t.maxY; y++) {
+            for (int x = t.minX; x <= t.maxX; x++) {
+                float w1 = ((x - t.x2) * t.e1y - (y - t.y2) * t.e1x) * t.inverseArea;
+                float w2 = ((x - t.x3) * t.e2y - (y - t.y3) * t.e2x) * t.inverseArea;
+                float w3 = ((x - t.x1) * t.e3y - (y - t.y1) * t.e3x) * t.inverseArea;
+                if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f
+                        && zBuffer.testAndSet(x, y, t.z1 * w1 + t.z2 * w2 + t.z3 * w3)) {
+                    visibilityBuffer.set(x, y, triangleId, w1, w2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Цвет пикселя для MSAA по барицентрическим координатам точки, в которой он вычисляется
+     */
+    @FunctionalInterface
+    private interface PixelShader {
+        int shade(float w1, float w2, float w3);
+    }
+
+    /**
+     * Растеризация сплошного треугольника в MSAA-буфер
+     */
+    public void rasterizeTriangleMultisample(
+            Vector2f p1, Vector2f p2, Vector2f p3,
+            float z1, float z2, float z3,
+            MultisampleBuffer buffer, Color color) {
+
+        int argb = FrameBuffer.toArgb(color);
+        rasterizeMultisample(p1, p2, p3, z1, z2, z3, buffer, (w1, w2, w3) -> argb);
+    }
+
+    /**
+     * Растеризация текстурированного треугольника в MSAA-буфер
+     */
+    public void rasterizeTexturedTriangleMultisample(
+            Vector2f p1, Vector2f p2, Vector2f p3,
+            float z1, float z2, float z3,
+            Vector2f uv1, Vector2f uv2, Vector2f uv3,
+            Texture texture, boolean bilinearFiltering,
+            MultisampleBuffer buffer) {
+
+        if (texture == null) return;
+
+        rasterizeMultisample(p1, p2, p3, z1, z2, z3, buffer, (w1, w2, w3) -> {
+            float u = uv1.getX() * w1 + uv2.getX() * w2 + uv3.getX() * w3;
+            float v = uv1.getY() * w1 + uv2.getY() * w2 + uv3.getY() * w3;
+
+            Color texColor = bilinearFiltering ?
+                    texture.getColorBilinear(u, v) :
+                    texture.getColor(u, v);
+            return FrameBuffer.toArgb(texColor);
+        });
+    }
+
+    /**
+     * Растеризация освещенного треугольника в MSAA-буфер
+     */
+    public void rasterizeLitTriangleMultisample(
+            Vector2f p1, Vector2f p2, Vector2f p3,
+            float z1, float z2, float z3,
+            Vector3f world1, Vector3f world2, Vector3f world3,
+            Vector3f n1, Vector3f n2, Vector3f n3,
+            Material material, SceneLighting sceneLighting,
+            boolean smoothShading,
+            MultisampleBuffer buffer) {
+
+        Color baseColor = material.getBaseColor();
+        selectLights(sceneLighting, world1, world2, world3);
+        rasterizeMultisample(p1, p2, p3, z1, z2, z3, buffer, (w1, w2, w3) -> {
+            Vector3f worldPos = interpolateVector3(world1, world2, world3, w1, w2, w3, shadePosition);
+            Vector3f normal = smoothShading
+                    ? interpolateVector3(n1, n2, n3, w1, w2, w3, shadeNormal)
+                    : n1;
+            return shadeArgb(sceneLighting, material, worldPos, normal, baseColor);
+        });
+    }
+
+    /**
+     * Растеризация текстурированного и освещенного треугольника в MSAA-буфер
+     */
+    public void rasterizeLitTexturedTriangleMultisample(
+            Vector2f p1, Vector2f p2, Vector2f p3,
+            float z1, float z2, float z3,
+            Vector3f world1, Vector3f world2, Vector3f world3,
+            Vector3f n1, Vector3f n2, Vector3f n3,
+            Vector2f uv1, Vector2f uv2, Vector2f uv3,
+            Material material, SceneLighting sceneLighting,
+            boolean smoothShading, boolean bilinearFiltering,
+            MultisampleBuffer buffer) {
+
+        if (!material.hasTexture()) {
+            rasterizeLitTriangleMultisample(p1, p2, p3, z1, z2, z3,
+                    world1, world2, world3, n1, n2, n3,
+                    material, sceneLighting, smoothShading, buffer);
+            return;
+        }
+
+        Texture texture = material.getDiffuseTexture();
+        selectLights(sceneLighting, world1, world2, world3);
+        rasterizeMultisample(p1, p2, p3, z1, z2, z3, buffer, (w1, w2, w3) -> {
+            float u = uv1.getX() * w1 + uv2.getX() * w2 + uv3.getX() * w3;
+            float v = uv1.getY() * w1 + uv2.getY() * w2 + uv3.getY() * w3;
+
+            Color texColor = bilinearFiltering ?
+                    texture.getColorBilinear(u, v) :
+                    texture.getColor(u, v);
+
+            Vector3f worldPos = interpolateVector3(world1, world2, world3, w1, w2, w3, shadePosition);
+            Vector3f normal = smoothShading
+                    ? interpolateVector3(n1, n2, n3, w1, w2, w3, shadeNormal)
+                    : n1;
+            return shadeArgb(sceneLighting, material, worldPos, normal, texColor);
+        });
+    }
+
+    /**
+     * Общий цикл MSAA: покрытие и глубина проверяются в каждом образце пикселя,
+     * а цвет вычисляется один раз на пиксель - в его центре, либо, если центр
+     * вне треугольника, в первом видимом образце (иначе текстурные координаты
+     * и нормали на краю экстраполируются за треугольник).
+     */
+    private void rasterizeMultisample(
+            Vector2f p1, Vector2f p2, Vector2f p3,
+            float z1, float z2, float z3,
+            MultisampleBuffer buffer, PixelShader shader) {
+
+        int width = buffer.getWidth();
+        int[] bounds = calculateBoundingBox(p1, p2, p3, width, buffer.getHeight());
+
+        int minX = bounds[0];
+        int minY = bounds[1];
+        int maxX = bounds[2];
+        int maxY = bounds[3];
+
+        float x1 = p1.getX(), y1 = p1.getY();
+        float x2 = p2.getX(), y2 = p2.getY();
+        float x3 = p3.getX(), y3 = p3.getY();
+
+        float area = edgeFunction(x1, y1, x2, y2, x3, y3);
+        if (Math.abs(area) < 0.0001f) return;
+        float inverseArea = 1.0f / area;
+
+        // Ребра, противолежащие вершинам 1, 2 и 3 (как в edgeFunction)
+        float e1x = x3 - x2, e1y = y3 - y2;
+        float e2x = x1 - x3, e2y = y1 - y3;
+        float e3x = x2 - x1, e3y = y2 - y1;
+
+        int samples = buffer.getSamples();
+        float[] offsetX = buffer.getSampleOffsetsX();
+        float[] offsetY = buffer.getSampleOffsetsY();
+        float[] depth = buffer.getDepth();
+        int[] colors = buffer.getColors();
+
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                int base = (y * width + x) * samples;
+                int coverage = 0;
+                int firstVisible = -1;
+
+                for (int s = 0; s < samples; s++) {
+                    float sx = x + offsetX[s];
+                    float sy = y + offsetY[s];
+                    float w1 = ((sx - x2) * e1y - (sy - y2) * e1x) * inverseArea;
+                    float w2 = ((sx - x3) * e2y - (sy - y3) * e2x) * inverseArea;
+                    float w3 = ((sx - x1) * e3y - (sy - y1) * e3x) * inverseArea;
+
+                    if (w1 >= -0.0001f && w2 >= -0.0001f && w3 >= -0.0001f) {
+                        float z = z1 * w1 + z2 * w2 + z3 * w3;
+                        if (z < depth[base + s]) {
+                            depth[base + s] = z;
+                            coverage |= 1 << s;
+                            if (firstVisible < 0) {
+                                firstVisible = s;
+                            }
+                        }
+                    }
+                }
+                if (coverage == 0) {
+                    continue;
+                }
+
+                float sx = x, sy = y;
+                float w1 = ((sx - x2) * e1y - (sy - y2) * e1x) * inverseArea;
+                float w2 = ((sx - x3) * e2y - (sy - y3) * e2x) * inverseArea;
+                float w3 = ((sx - x1) * e3y - (sy - y1) * e3x) * inverseArea;
+                if (w1 < -0.0001f || w2 < -0.0001f || w3 < -0.0001f) {
+                    sx = x + offsetX[firstVisible];
+                    sy = y + offsetY[firstVisible];
+                    w1 = ((sx - x2) * e1y - (sy - y2) * e1x) * inverseArea;
+                    w2 = ((sx - x3) * e2y - (sy - y3) * e2x) * inverseArea;
+                    w3 = ((sx - x1) * e3y - (sy - y1) * e3x) * inverseArea;
+                }
+
+                int argb = shader.shade(w1, w2, w3);
+                for (int s = 0; s < samples; s++) {
+                    if ((coverage & (1 << s)) != 0) {
+                        colors[base + s] = argb;
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Вычисление ограничивающего прямоугольника треугольника
      */
-    private int[] calculateBoundingBox(Vector2f p1, Vector2f p2, Vector2f p3) {
+    private int[] calculateBoundingBox(Vector2f p1, Vector2f p2, Vector2f p3, FrameBuffer frameBuffer) {
+        return calculateBoundingBox(p1, p2, p3, frameBuffer.getWidth(), frameBuffer.getHeight());
+    }
+
+    private int[] calculateBoundingBox(Vector2f p1, Vector2f p2, Vector2f p3, int width, int height) {
         int minX = (int) Math.max(0, Math.floor(Math.min(p1.getX(), Math.min(p2.getX(), p3.getX()))));
         int minY = (int) Math.max(0, Math.floor(Math.min(p1.getY(), Math.min(p2.getY(), p3.getY()))));
-        int maxX = (int) Math.min(Integer.MAX_VALUE, Math.ceil(Math.max(p1.getX(), Math.max(p2.getX(), p3.getX()))));
-        int maxY = (int) Math.min(Integer.MAX_VALUE, Math.ceil(Math.max(p1.getY(), Math.max(p2.getY(), p3.getY()))));
+        int maxX = (int) Math.min(width - 1, Math.ceil(Math.max(p1.getX(), Math.max(p2.getX(), p3.getX()))));
+        int maxY = (int) Math.min(height - 1, Math.ceil(Math.max(p1.getY(), Math.max(p2.getY(), p3.getY()))));
 
         return new int[]{minX, minY, maxX, maxY};
     }
@@ -638,18 +1216,19 @@ public class TriangleRasterizer {
     /**
      * Функция определения ориентации ребра (edge function)
      */
-    private float edgeFunction(int ax, int ay, int bx, int by, int cx, int cy) {
+    private float edgeFunction(float ax, float ay, float bx, float by, float cx, float cy) {
         return (cx - ax) * (by - ay) - (cy - ay) * (bx - ax);
     }
 
     /**
-     * Интерполяция вектора
+     * Интерполяция вектора с записью в dest (без создания объекта)
      */
-    private Vector3f interpolateVector3(Vector3f v1, Vector3f v2, Vector3f v3, float w1, float w2, float w3) {
-        float x = (float) (v1.getX() * w1 + v2.getX() * w2 + v3.getX() * w3);
-        float y = (float) (v1.getY() * w1 + v2.getY() * w2 + v3.getY() * w3);
-        float z = v1.getZ() * w1 + v2.getZ() * w2 + v3.getZ() * w3;
-        return new Vector3f(x, y, z);
+    private Vector3f interpolateVector3(Vector3f v1, Vector3f v2, Vector3f v3,
+                                        float w1, float w2, float w3, Vector3f dest) {
+        return dest.set(
+                v1.getX() * w1 + v2.getX() * w2 + v3.getX() * w3,
+                v1.getY() * w1 + v2.getY() * w2 + v3.getY() * w3,
+                v1.getZ() * w1 + v2.getZ() * w2 + v3.getZ() * w3);
     }
 
     /**
@@ -710,14 +1289,15 @@ public class TriangleRasterizer {
      */
     public void drawTriangleOutline(
             Vector2f p1, Vector2f p2, Vector2f p3,
-            GraphicsContext gc, Color color) {
-
-        gc.setStroke(color);
-        gc.setLineWidth(1);
-        gc.strokePolygon(
-                new double[]{p1.getX(), p2.getX(), p3.getX()},
-                new double[]{p1.getY(), p2.getY(), p3.getY()},
-                3
-        );
+            FrameBuffer frameBuffer, Color color) {
+
+        int argb = FrameBuffer.toArgb(color);
+        int x1 = Math.round(p1.getX()), y1 = Math.round(p1.getY());
+        int x2 = Math.round(p2.getX()), y2 = Math.round(p2.getY());
+        int x3 = Math.round(p3.getX()), y3 = Math.round(p3.getY());
+
+        frameBuffer.drawLine(x1, y1, x2, y2, argb);
+        frameBuffer.drawLine(x2, y2, x3, y3, argb);
+        frameBuffer.drawLine(x3, y3, x1, y1, argb);
     }
 }
\ No newline at end of file
@@ -0,0 +1,146 @@
+package com.cgvsu.render_engine.rasterization;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Ядра на Java Vector API (модуль jdk.incubator.vector): за один шаг 8 пикселей строки
+ * на AVX2 или 16 на AVX-512. Функции ребер, глубина и проверка глубины считаются
+ * для всего отрезка сразу, в буферы пишутся только прошедшие проверку пиксели (запись по маске).
+ *
+ * Класс загружается {@link TriangleRasterizer} по имени и только если модуль есть
+ * в загрузочном слое (запуск с --add-modules jdk.incubator.vector); иначе остаются скалярные ядра.
+ */
+final class VectorSpanKernels implements SpanKernels {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = FLOATS.length();
+
+    // Смещения пикселей отрезка: 0, 1, 2, ...
+    private static final FloatVector LANE_OFFSETS = FloatVector.fromArray(FLOATS, laneOffsets(), 0);
+
+    VectorSpanKernels() {
+        // Без SIMD-регистров шириной от 256 бит Vector API работает медленнее скалярного кода
+        if (LANES < 8 || INTS.length() != LANES) {
+            throw new IllegalStateException("Preferred vector species too narrow: " + FLOATS);
+        }
+    }
+
+    private static float[] laneOffsets() {
+        float[] offsets = new float[LANES];
+        for (int i = 0; i < LANES; i++) {
+            offsets[i] = i;
+        }
+        return offsets;
+    }
+
+    @Override
+    public int solid(RasterTriangle t, int argb, int[] pixels, float[] depth, int width, boolean depthPrePassed) {
+        IntVector color = IntVector.broadcast(INTS, argb);
+        int writes = 0;
+        for (int y = t.minY; y <= t.maxY; y++) {
+            int row = y * width;
+            float row1 = (y - t.y2) * t.e1x;
+            float row2 = (y - t.y3) * t.e2x;
+            float row3 = (y - t.y1) * t.e3x;
+            for (int x = t.minX; x <= t.maxX; x += LANES) {
+                VectorMask<Float> inRange = FLOATS.indexInRange(x, t.maxX + 1);
+                FloatVector xs = LANE_OFFSETS.add(x);
+                FloatVector w1 = xs.sub(t.x2).mul(t.e1y).sub(row1).mul(t.inverseArea);
+                FloatVector w2 = xs.sub(t.x3).mul(t.e2y).sub(row2).mul(t.inverseArea);
+                FloatVector w3 = xs.sub(t.x1).mul(t.e3y).sub(row3).mul(t.inverseArea);
+                VectorMask<Float> mask = inRange.and(covered(w1, w2, w3));
+                if (!mask.anyTrue()) {
+                    continue;
+                }
+
+                FloatVector z = w1.mul(t.z1).add(w2.mul(t.z2)).add(w3.mul(t.z3));
+                FloatVector stored = FloatVector.fromArray(FLOATS, depth, row + x, inRange);
+                if (depthPrePassed) {
+                    mask = mask.and(z.compare(VectorOperators.LE, stored));
+                } else {
+                    mask = mask.and(z.compare(VectorOperators.LT, stored));
+                    z.intoArray(depth, row + x, mask);
+                    writes += mask.trueCount();
+                }
+                color.intoArray(pixels, row + x, mask.cast(INTS));
+            }
+        }
+        return writes;
+    }
+
+    @Override
+    public int depth(RasterTriangle t, float[] depth, int width) {
+        int writes = 0;
+        for (int y = t.minY; y <= t.maxY; y++) {
+            int row = y * width;
+            float row1 = (y - t.y2) * t.e1x;
+            float row2 = (y - t.y3) * t.e2x;
+            float row3 = (y - t.y1) * t.e3x;
+            for (int x = t.minX; x <= t.maxX; x += LANES) {
+                VectorMask<Float> inRange = FLOATS.indexInRange(x, t.maxX + 1);
+                FloatVector xs = LANE_OFFSETS.add(x);
+                FloatVector w1 = xs.sub(t.x2).mul(t.e1y).sub(row1).mul(t.inverseArea);
+                FloatVector w2 = xs.sub(t.x3).mul(t.e2y).sub(row2).mul(t.inverseArea);
+                FloatVector w3 = xs.sub(t.x1).mul(t.e3y).sub(row3).mul(t.inverseArea);
+                VectorMask<Float> mask = inRange.and(covered(w1, w2, w3));
+                if (!mask.anyTrue()) {
+                    continue;
+                }
+
+                FloatVector z = w1.mul(t.z1).add(w2.mul(t.z2)).add(w3.mul(t.z3));
+                FloatVector stored = FloatVector.fromArray(FLOATS, depth, row + x, inRange);
+                mask = mask.and(z.compare(VectorOperators.LT, stored));
+                z.intoArray(depth, row + x, mask);
+                writes += mask.trueCount();
+            }
+        }
+        return writes;
+    }
+
+    @Override
+    public int visibility(RasterTriangle t, int triangleId, int[] triangleIds,
+                          float[] barycentric1, float[] barycentric2, float[] depth, int width) {
+        IntVector id = IntVector.broadcast(INTS, triangleId);
+        int writes = 0;
+        for (int y = t.minY; y <= t.maxY; y++) {
+            int row = y * width;
+            float row1 = (y - t.y2) * t.e1x;
+            float row2 = (y - t.y3) * t.e2x;
+            float row3 = (y - t.y1) * t.e3x;
+            for (int x = t.minX; x <= t.maxX; x += LANES) {
+                VectorMask<Float> inRange = FLOATS.indexInRange(x, t.maxX + 1);
+                FloatVector xs = LANE_OFFSETS.add(x);
+                FloatVector w1 = xs.sub(t.x2).mul(t.e1y).sub(row1).mul(t.inverseArea);
+                FloatVector w2 = xs.sub(t.x3).mul(t.e2y).sub(row2).mul(t.inverseArea);
+                FloatVector w3 = xs.sub(t.x1).mul(t.e3y).sub(row3).mul(t.inverseArea);
+                VectorMask<Float> mask = inRange.and(covered(w1, w2, w3));
+                if (!mask.anyTrue()) {
+                    continue;
+                }
+
+                FloatVector z = w1.mul(t.z1).add(w2.mul(t.z2)).add(w3.mul(t.z3));
+                FloatVector stored = FloatVector.fromArray(FLOATS, depth, row + x, inRange);
+                mask = mask.and(z.compare(VectorOperators.LT, stored));
+                z.intoArray(depth, row + x, mask);
+                w1.intoArray(barycentric1, row + x, mask);
+                w2.intoArray(barycentric2, row + x, mask);
+                id.intoArray(triangleIds, row + x, mask.cast(INTS));
+                writes += mask.trueCount();
+            }
+        }
+        return writes;
+    }
+
+    /**
+     * Точки внутри треугольника (с тем же допуском, что и в скалярных ядрах)
+     */
+    private static VectorMask<Float> covered(FloatVector w1, FloatVector w2, FloatVector w3) {
+        return w1.compare(VectorOperators.GE, -0.0001f)
+                .and(w2.compare(VectorOperators.GE, -0.0001f))
+                .and(w3.compare(VectorOperators.GE, -0.0001f));
+    }
+}
@@ -0,0 +1,69 @@
+package com.cgvsu.render_engine.rasterization;
+
+import java.util.Arrays;
+
+/**
+ * Буфер видимости: для каждого пикселя номер видимого треугольника и две его
+ * барицентрические координаты (третья - 1 минус сумма). Глубина при этом
+ * хранится в обычном {@link ZBuffer}. По буферу видимости каждый пиксель
+ * затеняется ровно один раз, после растеризации всех треугольников кадра.
+ */
+public class VisibilityBuffer {
+    public static final int EMPTY = -1;
+
+    private final int width;
+    private final int height;
+    private final int[] triangleIds;
+    private final float[] barycentric1;
+    private final float[] barycentric2;
+
+    public VisibilityBuffer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Visibility buffer size must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.triangleIds = new int[width * height];
+        this.barycentric1 = new float[width * height];
+        this.barycentric2 = new float[width * height];
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(triangleIds, EMPTY);
+    }
+
+    public void set(int x, int y, int triangleId, float w1, float w2) {
+        int index = y * width + x;
+        triangleIds[index] = triangleId;
+        barycentric1[index] = w1;
+        barycentric2[index] = w2;
+    }
+
+    public boolean hasSize(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Номера треугольников по пикселям в порядке строк, {@link #EMPTY} - пусто
+     */
+    public int[] getTriangleIds() {
+        return triangleIds;
+    }
+
+    public float[] getBarycentric1() {
+        return barycentric1;
+    }
+
+    public float[] getBarycentric2() {
+        return barycentric2;
+    }
+}
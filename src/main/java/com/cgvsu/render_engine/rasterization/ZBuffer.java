@@ -1,23 +1,32 @@
 package com.cgvsu.render_engine.rasterization;
 
+import java.util.Arrays;
+
+/**
+ * Буфер глубины. Глубина хранится как float построчно (индекс y * width + x),
+ * как и пиксели {@link FrameBuffer}: строка треугольника - непрерывный отрезок массива,
+ * который векторные ядра растеризации читают и пишут целиком.
+ */
 public class ZBuffer {
-    private final double[][] buffer;
+    // Значение пустого пикселя
+    public static final float EMPTY = Float.MAX_VALUE;
+
+    private final float[] depth;
     private final int width;
     private final int height;
+    // Сколько раз глубина перезаписывалась с последней очистки (для оценки перекрытия)
+    private long writeCount;
 
     public ZBuffer(int width, int height) {
         this.width = width;
         this.height = height;
-        this.buffer = new double[width][height];
+        this.depth = new float[width * height];
         clear();
     }
 
     public void clear() {
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                buffer[x][y] = Float.MAX_VALUE;
-            }
-        }
+        Arrays.fill(depth, EMPTY);
+        writeCount = 0;
     }
 
     public boolean testAndSet(int x, int y, double depth) {
@@ -25,19 +34,70 @@ public class ZBuffer {
             return false;
         }
 
-        if (depth < buffer[x][y]) {
-            buffer[x][y] = depth;
+        int i = y * width + x;
+        if (depth < this.depth[i]) {
+            this.depth[i] = (float) depth;
+            writeCount++;
             return true;
         }
 
         return false;
     }
 
+    /**
+     * Проверка после прохода глубины: точка проходит, только если она и есть
+     * ближайшая (глубина та же, что записал проход глубины). Буфер не меняется.
+     */
+    public boolean testEqual(int x, int y, double depth) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return false;
+        }
+        return depth <= this.depth[y * width + x];
+    }
+
+    public void setDepth(int x, int y, double depth) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return;
+        }
+        this.depth[y * width + x] = (float) depth;
+    }
+
     public double getDepth(int x, int y) {
         if (x < 0 || x >= width || y < 0 || y >= height) {
             return Double.MAX_VALUE;
         }
-        return buffer[x][y];
+        return depth[y * width + x];
+    }
+
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Учесть записи, сделанные напрямую в {@link #getDepthArray()}
+     */
+    public void addWriteCount(int writes) {
+        writeCount += writes;
+    }
+
+    /**
+     * Число пикселей, в которые хоть что-то нарисовано
+     */
+    public int countCovered() {
+        int covered = 0;
+        for (float d : depth) {
+            if (d < EMPTY) {
+                covered++;
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * Сырые значения глубины, для растеризатора
+     */
+    public float[] getDepthArray() {
+        return depth;
     }
 
     public int getWidth() {
@@ -47,4 +107,4 @@ public class ZBuffer {
     public int getHeight() {
         return height;
     }
-}
\ No newline at end of file
+}
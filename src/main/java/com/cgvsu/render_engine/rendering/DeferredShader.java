@@ -0,0 +1,303 @@
+package com.cgvsu.render_engine.rendering;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.render_engine.lighting.Material;
+import com.cgvsu.render_engine.lighting.SceneLighting;
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rasterization.VisibilityBuffer;
+import com.cgvsu.render_engine.texture.Texture;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Отложенное затенение по буферу видимости.
+ *
+ * За кадр сюда складываются данные всех треугольников освещенных режимов
+ * (мировые координаты, нормали, текстурные координаты, материал), а растеризатор
+ * пишет в {@link VisibilityBuffer} только номер видимого треугольника. Затем
+ * {@link #shade} освещает каждый видимый пиксель один раз, параллельно по полосам строк,
+ * так что стоимость освещения зависит от разрешения, а не от перекрытия.
+ * Полоса делится на плитки TILE_SIZE x TILE_SIZE: для каждой плитки по мировым координатам
+ * ее пикселей отбираются источники, которые могут до них дотянуться
+ * ({@link SceneLighting#selectLights}), и пиксели плитки освещаются только ими.
+ * Массивы треугольников растут по мере надобности и переиспользуются между кадрами.
+ */
+public class DeferredShader {
+    // Размер плитки отбора источников; полоса строк, затеняемая одной задачей, - ряд плиток
+    private static final int TILE_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Vector3f VIEW_DIRECTION = new Vector3f(0, 0, -1);
+
+    // На треугольник: 9 чисел мировых координат, 9 нормалей, 6 текстурных координат
+    private float[] positions = new float[INITIAL_CAPACITY * 9];
+    private float[] normals = new float[INITIAL_CAPACITY * 9];
+    private float[] textureCoordinates = new float[INITIAL_CAPACITY * 6];
+    // Номер материала в materials; отрицательный (-1 - номер) - материал с текстурой
+    private int[] materialIndices = new int[INITIAL_CAPACITY];
+    private int triangleCount;
+
+    private final List<Material> materials = new ArrayList<>();
+    private Material lastMaterial;
+    // Рабочие массивы полос: полосы освещаются параллельно, у каждой свои, между кадрами не пересоздаются
+    private BandScratch[] bandScratch = new BandScratch[0];
+
+    /**
+     * Начать новый кадр: данные прошлого кадра забываются, память остается
+     */
+    public void reset() {
+        triangleCount = 0;
+        materials.clear();
+        lastMaterial = null;
+    }
+
+    /**
+     * Запомнить треугольник кадра
+     *
+     * @param uv1 текстурные координаты или null, если треугольник без текстуры
+     * @return номер треугольника для буфера видимости
+     */
+    public int addTriangle(
+            Vector3f world1, Vector3f world2, Vector3f world3,
+            Vector3f n1, Vector3f n2, Vector3f n3,
+            Vector2f uv1, Vector2f uv2, Vector2f uv3,
+            Material material) {
+
+        if (triangleCount == materialIndices.length) {
+            int capacity = triangleCount * 2;
+            positions = Arrays.copyOf(positions, capacity * 9);
+            normals = Arrays.copyOf(normals, capacity * 9);
+            textureCoordinates = Arrays.copyOf(textureCoordinates, capacity * 6);
+            materialIndices = Arrays.copyOf(materialIndices, capacity);
+        }
+
+        int id = triangleCount++;
+        put(positions, id * 9, world1, world2, world3);
+        put(normals, id * 9, n1, n2, n3);
+
+        // Модель обычно рисуется одним материалом подряд, поэтому хватает сравнения с последним
+        if (material != lastMaterial) {
+            materials.add(material);
+            lastMaterial = material;
+        }
+        int materialIndex = materials.size() - 1;
+
+        boolean textured = uv1 != null && uv2 != null && uv3 != null && material.hasTexture();
+        if (textured) {
+            int base = id * 6;
+            textureCoordinates[base] = uv1.getX();
+            textureCoordinates[base + 1] = uv1.getY();
+            textureCoordinates[base + 2] = uv2.getX();
+            textureCoordinates[base + 3] = uv2.getY();
+            textureCoordinates[base + 4] = uv3.getX();
+            textureCoordinates[base + 5] = uv3.getY();
+            materialIndices[id] = -1 - materialIndex;
+        } else {
+            materialIndices[id] = materialIndex;
+        }
+        return id;
+    }
+
+    private static void put(float[] target, int base, Vector3f a, Vector3f b, Vector3f c) {
+        target[base] = a.getX();
+        target[base + 1] = a.getY();
+        target[base + 2] = a.getZ();
+        target[base + 3] = b.getX();
+        target[base + 4] = b.getY();
+        target[base + 5] = b.getZ();
+        target[base + 6] = c.getX();
+        target[base + 7] = c.getY();
+        target[base + 8] = c.getZ();
+    }
+
+    public int getMaterialCount() {
+        return materials.size();
+    }
+
+    /**
+     * Заменить материал уже запомненных треугольников (для повторного освещения
+     * с новым цветом или коэффициентами без растеризации)
+     */
+    public void setMaterial(int index, Material material) {
+        if (material == null) {
+            throw new IllegalArgumentException("Material must not be null");
+        }
+        materials.set(index, material);
+    }
+
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    /**
+     * Осветить видимые пиксели. Пустые пиксели буфера кадра не меняются.
+     *
+     * @param smoothShading интерполировать нормали (иначе нормаль первой вершины)
+     */
+    public void shade(
+            VisibilityBuffer visibilityBuffer,
+            FrameBuffer frameBuffer,
+            SceneLighting sceneLighting,
+            boolean smoothShading,
+            boolean bilinearFiltering) {
+
+        if (!frameBuffer.hasSize(visibilityBuffer.getWidth(), visibilityBuffer.getHeight())) {
+            throw new IllegalArgumentException("Frame buffer size differs from visibility buffer size");
+        }
+        if (triangleCount == 0) {
+            return;
+        }
+
+        int width = visibilityBuffer.getWidth();
+        int height = visibilityBuffer.getHeight();
+        int bands = (height + TILE_SIZE - 1) / TILE_SIZE;
+        if (bandScratch.length < bands) {
+            int from = bandScratch.length;
+            bandScratch = Arrays.copyOf(bandScratch, bands);
+            for (int band = from; band < bands; band++) {
+                bandScratch[band] = new BandScratch();
+            }
+        }
+        int lightCount = sceneLighting.getSelectableLightCount();
+        IntStream.range(0, bands).parallel().forEach(band -> shadeBand(
+                visibilityBuffer, frameBuffer.getPixels(), band * TILE_SIZE,
+                Math.min(height, (band + 1) * TILE_SIZE), sceneLighting, smoothShading, bilinearFiltering,
+                bandScratch[band].withLightCapacity(lightCount)));
+    }
+
+    private void shadeBand(
+            VisibilityBuffer visibilityBuffer,
+            int[] pixels,
+            int fromRow,
+            int toRow,
+            SceneLighting sceneLighting,
+            boolean smoothShading,
+            boolean bilinearFiltering,
+            BandScratch scratch) {
+
+        int width = visibilityBuffer.getWidth();
+        int[] ids = visibilityBuffer.getTriangleIds();
+        float[] barycentric1 = visibilityBuffer.getBarycentric1();
+        float[] barycentric2 = visibilityBuffer.getBarycentric2();
+        Vector3f worldPos = scratch.worldPos;
+        Vector3f normal = scratch.normal;
+        float[] rgb = scratch.rgb;
+        float[] tileX = scratch.tileX;
+        float[] tileY = scratch.tileY;
+        float[] tileZ = scratch.tileZ;
+        int[] lightIndices = scratch.lightIndices;
+
+        for (int fromX = 0; fromX < width; fromX += TILE_SIZE) {
+            int toX = Math.min(width, fromX + TILE_SIZE);
+
+            // Мировые координаты видимых пикселей плитки и их границы
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+            boolean visible = false;
+            for (int y = fromRow, k = 0; y < toRow; y++) {
+                for (int i = y * width + fromX; i < y * width + toX; i++, k++) {
+                    int id = ids[i];
+                    if (id == VisibilityBuffer.EMPTY) {
+                        continue;
+                    }
+                    float w1 = barycentric1[i];
+                    float w2 = barycentric2[i];
+                    float w3 = 1.0f - w1 - w2;
+                    int p = id * 9;
+                    float px = positions[p] * w1 + positions[p + 3] * w2 + positions[p + 6] * w3;
+                    float py = positions[p + 1] * w1 + positions[p + 4] * w2 + positions[p + 7] * w3;
+                    float pz = positions[p + 2] * w1 + positions[p + 5] * w2 + positions[p + 8] * w3;
+                    tileX[k] = px;
+                    tileY[k] = py;
+                    tileZ[k] = pz;
+                    minX = Math.min(minX, px);
+                    minY = Math.min(minY, py);
+                    minZ = Math.min(minZ, pz);
+                    maxX = Math.max(maxX, px);
+                    maxY = Math.max(maxY, py);
+                    maxZ = Math.max(maxZ, pz);
+                    visible = true;
+                }
+            }
+            if (!visible) {
+                continue;
+            }
+            int lightCount = sceneLighting.selectLights(minX, minY, minZ, maxX, maxY, maxZ, lightIndices);
+
+            for (int y = fromRow, k = 0; y < toRow; y++) {
+                for (int i = y * width + fromX; i < y * width + toX; i++, k++) {
+                    int id = ids[i];
+                    if (id == VisibilityBuffer.EMPTY) {
+                        continue;
+                    }
+                    float w1 = barycentric1[i];
+                    float w2 = barycentric2[i];
+                    float w3 = 1.0f - w1 - w2;
+                    int p = id * 9;
+                    worldPos.set(tileX[k], tileY[k], tileZ[k]);
+                    interpolateNormal(p, w1, w2, w3, smoothShading, normal);
+
+                    int materialIndex = materialIndices[id];
+                    Material material = materials.get(materialIndex < 0 ? -1 - materialIndex : materialIndex);
+                    Color baseColor;
+                    if (materialIndex < 0) {
+                        int t = id * 6;
+                        float u = textureCoordinates[t] * w1 + textureCoordinates[t + 2] * w2 + textureCoordinates[t + 4] * w3;
+                        float v = textureCoordinates[t + 1] * w1 + textureCoordinates[t + 3] * w2 + textureCoordinates[t + 5] * w3;
+                        Texture texture = material.getDiffuseTexture();
+                        baseColor = bilinearFiltering ? texture.getColorBilinear(u, v) : texture.getColor(u, v);
+                    } else {
+                        baseColor = material.getBaseColor();
+                    }
+
+                    sceneLighting.calculateLighting(material, worldPos, normal, VIEW_DIRECTION,
+                            (float) baseColor.getRed(), (float) baseColor.getGreen(), (float) baseColor.getBlue(),
+                            lightIndices, lightCount, rgb);
+                    pixels[i] = FrameBuffer.toArgb(rgb[0], rgb[1], rgb[2], baseColor.getOpacity());
+                }
+            }
+        }
+    }
+
+    /**
+     * Нормаль в точке треугольника в dest; если интерполированная нормаль вырождена,
+     * берется нормаль первой вершины
+     */
+    private void interpolateNormal(int p, float w1, float w2, float w3, boolean smoothShading, Vector3f dest) {
+        if (smoothShading) {
+            float x = normals[p] * w1 + normals[p + 3] * w2 + normals[p + 6] * w3;
+            float y = normals[p + 1] * w1 + normals[p + 4] * w2 + normals[p + 7] * w3;
+            float z = normals[p + 2] * w1 + normals[p + 5] * w2 + normals[p + 8] * w3;
+            if (x * x + y * y + z * z > 0) {
+                dest.set(x, y, z).normalizeInto(dest);
+                return;
+            }
+        }
+        dest.set(normals[p], normals[p + 1], normals[p + 2]);
+    }
+
+    /**
+     * Векторы и массивы одной полосы, общие для всех ее пикселей; номера источников
+     * пересоздаются только при смене числа источников
+     */
+    private static final class BandScratch {
+        private final Vector3f worldPos = new Vector3f();
+        private final Vector3f normal = new Vector3f();
+        private final float[] rgb = new float[3];
+        private final float[] tileX = new float[TILE_SIZE * TILE_SIZE];
+        private final float[] tileY = new float[TILE_SIZE * TILE_SIZE];
+        private final float[] tileZ = new float[TILE_SIZE * TILE_SIZE];
+        private int[] lightIndices = new int[0];
+
+        BandScratch withLightCapacity(int lightCount) {
+            if (lightIndices.length != lightCount) {
+                lightIndices = new int[lightCount];
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.cgvsu.render_engine.rendering;
+
+/**
+ * Предварительный проход глубины для освещенных режимов без отложенного затенения:
+ * сначала растеризуется только глубина, потом освещение считается лишь там,
+ * где треугольник оказался ближайшим.
+ */
+public enum DepthPrePass {
+    OFF,
+    ON,
+    // Включается сам, если источников света несколько и перекрытие в прошлом кадре большое
+    AUTO
+}
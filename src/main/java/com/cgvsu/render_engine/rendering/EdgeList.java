@@ -0,0 +1,89 @@
+package com.cgvsu.render_engine.rendering;
+
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Уникальные ребра сетки для каркасного рендера: ребро, общее для двух граней,
+ * хранится один раз. Строится один раз на модель и пересобирается,
+ * только если у модели сменились списки вершин или полигонов.
+ */
+public final class EdgeList {
+    // Пары индексов вершин: ребро i - (edges[2i], edges[2i + 1])
+    private final int[] edges;
+
+    private final List<?> sourcePolygons;
+    private final int sourcePolygonCount;
+    private final int sourceVertexCount;
+
+    private EdgeList(int[] edges, Model model) {
+        this.edges = edges;
+        this.sourcePolygons = model.getPolygons();
+        this.sourcePolygonCount = model.getPolygons().size();
+        this.sourceVertexCount = model.getVertices().size();
+    }
+
+    public static EdgeList build(Model model) {
+        List<Polygon> polygons = model.getPolygons();
+        int vertexCount = model.getVertices().size();
+
+        int cornerCount = 0;
+        for (Polygon polygon : polygons) {
+            cornerCount += polygon.getVertexIndices().size();
+        }
+
+        // Ребро кодируется в long (меньший индекс в старших битах), дубликаты убираются сортировкой
+        long[] keys = new long[cornerCount];
+        int keyCount = 0;
+        for (Polygon polygon : polygons) {
+            ArrayList<Integer> indices = polygon.getVertexIndices();
+            int n = indices.size();
+            if (n < 2) {
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                int a = indices.get(i);
+                int b = indices.get((i + 1) % n);
+                if (a == b || a < 0 || b < 0 || a >= vertexCount || b >= vertexCount) {
+                    continue;
+                }
+                // У двуугольника ребро (a, b) и (b, a) одно и то же - сортировка его и схлопнет
+                keys[keyCount++] = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+            }
+        }
+        Arrays.parallelSort(keys, 0, keyCount);
+
+        int[] edges = new int[keyCount * 2];
+        int edgeCount = 0;
+        for (int i = 0; i < keyCount; i++) {
+            if (i > 0 && keys[i] == keys[i - 1]) {
+                continue;
+            }
+            edges[edgeCount * 2] = (int) (keys[i] >>> 32);
+            edges[edgeCount * 2 + 1] = (int) keys[i];
+            edgeCount++;
+        }
+        return new EdgeList(Arrays.copyOf(edges, edgeCount * 2), model);
+    }
+
+    /**
+     * Список еще соответствует модели (списки не заменялись и не меняли размер)
+     */
+    public boolean matches(Model model) {
+        return model.getPolygons() == sourcePolygons
+                && model.getPolygons().size() == sourcePolygonCount
+                && model.getVertices().size() == sourceVertexCount;
+    }
+
+    public int getEdgeCount() {
+        return edges.length / 2;
+    }
+
+    public int[] getEdges() {
+        return edges;
+    }
+}
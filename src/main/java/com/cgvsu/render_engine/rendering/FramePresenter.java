@@ -0,0 +1,43 @@
+package com.cgvsu.render_engine.rendering;
+
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.nio.IntBuffer;
+
+/**
+ * Вывод готового буфера кадра на холст.
+ * Если кадр отрисован в уменьшенном разрешении, он растягивается
+ * на весь холст с билинейной фильтрацией.
+ * Вызывается только из JavaFX Application Thread.
+ */
+public class FramePresenter {
+    private static final PixelFormat<IntBuffer> PIXEL_FORMAT = PixelFormat.getIntArgbPreInstance();
+
+    private WritableImage image;
+
+    public void present(GraphicsContext gc, FrameBuffer frameBuffer) {
+        int width = frameBuffer.getWidth();
+        int height = frameBuffer.getHeight();
+
+        if (image == null || (int) image.getWidth() != width || (int) image.getHeight() != height) {
+            image = new WritableImage(width, height);
+        }
+
+        image.getPixelWriter().setPixels(0, 0, width, height,
+                PIXEL_FORMAT, frameBuffer.getPixels(), 0, width);
+
+        double canvasWidth = gc.getCanvas().getWidth();
+        double canvasHeight = gc.getCanvas().getHeight();
+
+        gc.clearRect(0, 0, canvasWidth, canvasHeight);
+        if (width == (int) canvasWidth && height == (int) canvasHeight) {
+            gc.drawImage(image, 0, 0);
+        } else {
+            gc.setImageSmoothing(true);
+            gc.drawImage(image, 0, 0, width, height, 0, 0, canvasWidth, canvasHeight);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.cgvsu.render_engine.rendering;
+
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+
+/**
+ * Постепенное улучшение неподвижного кадра.
+ *
+ * Шаги: быстрое превью (пониженное разрешение, плоское затенение), затем полный кадр
+ * с гладким затенением, затем сглаживание - несколько кадров со сдвигом растеризации
+ * на доли пикселя (последовательность Халтона), которые усредняются в накопителе.
+ * Превью пропускается, если полный кадр и так укладывается в бюджет кадра
+ * или если полный кадр можно взять из G-буфера прошлого кадра (поменялись только свет или цвет).
+ *
+ * Сам по себе класс ничего не рисует: поток рендера спрашивает настройки текущего шага,
+ * рисует кадр и отдает его обратно через {@link #onStageRendered}.
+ */
+public class ProgressiveRefiner {
+
+    public enum Stage {
+        PREVIEW,
+        FULL,
+        SUPERSAMPLE,
+        DONE
+    }
+
+    private Stage stage = Stage.DONE;
+    private int sampleIndex;
+    private int sampleCount;
+    private long fullFrameNanos = -1;
+    // Полный кадр этого круга рисуется из G-буфера: его время не говорит о цене растеризации
+    private boolean fullFrameCached;
+
+    // Сумма каналов A, R, G, B по всем накопленным кадрам, 4 int на пиксель
+    private int[] accumulation;
+    private int accumulatedWidth;
+    private int accumulatedHeight;
+
+    /**
+     * Начать улучшение заново для нового неподвижного кадра
+     */
+    public void restart(RenderSettings settings) {
+        restart(settings, false);
+    }
+
+    /**
+     * Начать улучшение заново
+     *
+     * @param fullFrameCached полный кадр будет нарисован из G-буфера, без растеризации -
+     *                        превью не нужно
+     */
+    public void restart(RenderSettings settings, boolean fullFrameCached) {
+        sampleIndex = 0;
+        sampleCount = settings.getSupersampleFrames();
+        this.fullFrameCached = fullFrameCached;
+
+        long budgetNanos = (long) (1_000_000_000.0 / settings.getTargetFrameRate());
+        boolean previewNeeded = !fullFrameCached
+                && (fullFrameNanos < 0 || fullFrameNanos > budgetNanos);
+        stage = previewNeeded ? Stage.PREVIEW : Stage.FULL;
+    }
+
+    public void cancel() {
+        stage = Stage.DONE;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public boolean isFinished() {
+        return stage == Stage.DONE;
+    }
+
+    /**
+     * Копия базовых настроек, подправленная под текущий шаг
+     */
+    public RenderSettings createStageSettings(RenderSettings baseSettings) {
+        RenderSettings settings = baseSettings.copy();
+        settings.setSubpixelOffset(0.0f, 0.0f);
+
+        switch (stage) {
+            case PREVIEW:
+                settings.setMinResolutionScale(baseSettings.getPreviewScale());
+                settings.setResolutionScale(baseSettings.getPreviewScale());
+                settings.setSmoothShading(false);
+                settings.setBilinearFiltering(false);
+                break;
+
+            case SUPERSAMPLE:
+                settings.setResolutionScale(1.0f);
+                settings.setSubpixelOffset(
+                        halton(sampleIndex, 2) - 0.5f,
+                        halton(sampleIndex, 3) - 0.5f);
+                break;
+
+            default:
+                settings.setResolutionScale(1.0f);
+                break;
+        }
+        return settings;
+    }
+
+    /**
+     * Учесть отрисованный шаг и перейти к следующему.
+     * Кадр шага FULL становится первым образцом накопителя,
+     * кадры шага SUPERSAMPLE добавляются к сумме - показывать нужно результат {@link #resolve}.
+     */
+    public void onStageRendered(FrameBuffer frame, long frameNanos) {
+        switch (stage) {
+            case PREVIEW:
+                stage = Stage.FULL;
+                break;
+
+            case FULL:
+                if (!fullFrameCached) {
+                    fullFrameNanos = frameNanos;
+                }
+                resetAccumulation(frame);
+                sampleIndex = 1;
+                stage = sampleCount > 1 ? Stage.SUPERSAMPLE : Stage.DONE;
+                break;
+
+            case SUPERSAMPLE:
+                accumulate(frame);
+                sampleIndex++;
+                if (sampleIndex >= sampleCount) {
+                    stage = Stage.DONE;
+                }
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Записать в target среднее по всем накопленным кадрам
+     */
+    public void resolve(FrameBuffer target) {
+        if (accumulation == null || !target.hasSize(accumulatedWidth, accumulatedHeight)) {
+            throw new IllegalStateException("Nothing accumulated for target size "
+                    + target.getWidth() + "x" + target.getHeight());
+        }
+
+        int[] pixels = target.getPixels();
+        int samples = sampleIndex;
+        int half = samples / 2;
+        for (int i = 0, j = 0; i < pixels.length; i++, j += 4) {
+            int a = (accumulation[j] + half) / samples;
+            int r = (accumulation[j + 1] + half) / samples;
+            int g = (accumulation[j + 2] + half) / samples;
+            int b = (accumulation[j + 3] + half) / samples;
+            pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    private void resetAccumulation(FrameBuffer frame) {
+        int size = frame.getWidth() * frame.getHeight() * 4;
+        if (accumulation == null || accumulation.length != size) {
+            accumulation = new int[size];
+        }
+        accumulatedWidth = frame.getWidth();
+        accumulatedHeight = frame.getHeight();
+
+        int[] pixels = frame.getPixels();
+        for (int i = 0, j = 0; i < pixels.length; i++, j += 4) {
+            int argb = pixels[i];
+            accumulation[j] = argb >>> 24;
+            accumulation[j + 1] = (argb >> 16) & 0xFF;
+            accumulation[j + 2] = (argb >> 8) & 0xFF;
+            accumulation[j + 3] = argb & 0xFF;
+        }
+    }
+
+    private void accumulate(FrameBuffer frame) {
+        if (!frame.hasSize(accumulatedWidth, accumulatedHeight)) {
+            throw new IllegalStateException("Supersample frame size differs from accumulated frame");
+        }
+
+        int[] pixels = frame.getPixels();
+        for (int i = 0, j = 0; i < pixels.length; i++, j += 4) {
+            int argb = pixels[i];
+            accumulation[j] += argb >>> 24;
+            accumulation[j + 1] += (argb >> 16) & 0xFF;
+            accumulation[j + 2] += (argb >> 8) & 0xFF;
+            accumulation[j + 3] += argb & 0xFF;
+        }
+    }
+
+    /**
+     * Элемент последовательности Халтона по основанию base, в диапазоне [0, 1)
+     */
+    private static float halton(int index, int base) {
+        float result = 0.0f;
+        float fraction = 1.0f / base;
+        int i = index;
+        while (i > 0) {
+            result += fraction * (i % base);
+            i /= base;
+            fraction /= base;
+        }
+        return result;
+    }
+}
@@ -1,5 +1,7 @@
 package com.cgvsu.render_engine.rendering;
 
+import com.cgvsu.render_engine.postprocess.ToneMappingPass;
+import com.cgvsu.render_engine.rasterization.MultisampleBuffer;
 import javafx.scene.paint.Color;
 
 public class RenderSettings {
@@ -15,6 +17,48 @@ public class RenderSettings {
     private boolean smoothShading = true;
     private boolean BilinearFiltering = true;
 
+    // Динамическое разрешение: доля от размера холста, в которой реально рисуется кадр
+    private float resolutionScale = 1.0f;
+    private boolean dynamicResolution = true;
+    private float targetFrameRate = 30.0f;
+    private float minResolutionScale = 0.25f;
+
+    // Постепенное улучшение неподвижного кадра: превью -> полный кадр -> накопление сглаживания
+    private boolean progressiveRefinement = true;
+    private float previewScale = 0.5f;
+    private int supersampleFrames = 8;
+    // Субпиксельный сдвиг растеризации (в пикселях), задается при накоплении сглаживания
+    private float subpixelOffsetX = 0.0f;
+    private float subpixelOffsetY = 0.0f;
+    // Число образцов MSAA на пиксель: 1 - без MSAA, иначе 2, 4 или 8 (работает только с Z-буфером)
+    private int msaaSamples = 1;
+    // Освещенные режимы: сначала буфер видимости, потом освещение каждого видимого пикселя один раз
+    private boolean deferredShading = true;
+    // Проход глубины перед освещением, если отложенное затенение выключено
+    private DepthPrePass depthPrePass = DepthPrePass.AUTO;
+    // Векторные ядра растеризации (Vector API), если JVM запущена с модулем jdk.incubator.vector
+    private boolean vectorRasterization = true;
+    // Быстрое освещение: таблицы блика и затухания, приближенный 1/sqrt (цвет отличается не больше чем на 1)
+    private boolean fastMathLighting = false;
+    // Отбор источников по радиусу действия: пиксель освещают только источники, которые до него достают
+    private boolean lightCulling = true;
+    // Тени направленных источников и прожекторов: карты глубины из точки зрения источника,
+    // перестраиваются только при изменении источника или геометрии в его пирамиде
+    private boolean shadows = false;
+    private int shadowMapSize = 1024;
+    // Радиус фильтра PCF в текселях: 0 - 2x2 выборки, 1 - 4x4 и т.д.
+    private int shadowFilterRadius = 1;
+
+    // Постобработка готового кадра
+    private boolean fxaa = false;
+    private boolean toneMapping = false;
+    private ToneMappingPass.Operator toneMappingOperator = ToneMappingPass.Operator.REINHARD;
+    private float exposure = 1.0f;
+    private float gamma = 1.0f;
+    private boolean depthOutline = false;
+    private Color outlineColor = Color.BLACK;
+    private float outlineThreshold = 0.1f;
+
     public boolean isDrawWireframe() { return drawWireframe; }
     public void setDrawWireframe(boolean drawWireframe) { this.drawWireframe = drawWireframe; }
 
@@ -69,6 +113,207 @@ public class RenderSettings {
         this.BilinearFiltering = bilinearFiltering;
     }
 
+    public float getResolutionScale() {
+        return resolutionScale;
+    }
+    public void setResolutionScale(float resolutionScale) {
+        this.resolutionScale = Math.max(minResolutionScale, Math.min(1.0f, resolutionScale));
+    }
+
+    public boolean isDynamicResolution() {
+        return dynamicResolution;
+    }
+    public void setDynamicResolution(boolean dynamicResolution) {
+        this.dynamicResolution = dynamicResolution;
+    }
+
+    public float getTargetFrameRate() {
+        return targetFrameRate;
+    }
+    public void setTargetFrameRate(float targetFrameRate) {
+        this.targetFrameRate = Math.max(1.0f, targetFrameRate);
+    }
+
+    public float getMinResolutionScale() {
+        return minResolutionScale;
+    }
+    public void setMinResolutionScale(float minResolutionScale) {
+        this.minResolutionScale = Math.max(0.05f, Math.min(1.0f, minResolutionScale));
+    }
+
+    public boolean isProgressiveRefinement() {
+        return progressiveRefinement;
+    }
+    public void setProgressiveRefinement(boolean progressiveRefinement) {
+        this.progressiveRefinement = progressiveRefinement;
+    }
+
+    public float getPreviewScale() {
+        return previewScale;
+    }
+    public void setPreviewScale(float previewScale) {
+        this.previewScale = Math.max(0.05f, Math.min(1.0f, previewScale));
+    }
+
+    public int getSupersampleFrames() {
+        return supersampleFrames;
+    }
+    public void setSupersampleFrames(int supersampleFrames) {
+        this.supersampleFrames = Math.max(1, Math.min(64, supersampleFrames));
+    }
+
+    public float getSubpixelOffsetX() {
+        return subpixelOffsetX;
+    }
+    public float getSubpixelOffsetY() {
+        return subpixelOffsetY;
+    }
+    public void setSubpixelOffset(float offsetX, float offsetY) {
+        this.subpixelOffsetX = offsetX;
+        this.subpixelOffsetY = offsetY;
+    }
+
+    public int getMsaaSamples() {
+        return msaaSamples;
+    }
+    public void setMsaaSamples(int msaaSamples) {
+        if (msaaSamples != 1 && !MultisampleBuffer.isSupported(msaaSamples)) {
+            throw new IllegalArgumentException("MSAA sample count must be 1, 2, 4 or 8: " + msaaSamples);
+        }
+        this.msaaSamples = msaaSamples;
+    }
+
+    /**
+     * Кадр рисуется с MSAA: образцов больше одного и включен Z-буфер
+     */
+    public boolean isMultisampling() {
+        return msaaSamples > 1 && useZBuffer;
+    }
+
+    public boolean isDeferredShading() {
+        return deferredShading;
+    }
+    public void setDeferredShading(boolean deferredShading) {
+        this.deferredShading = deferredShading;
+    }
+
+    public DepthPrePass getDepthPrePass() {
+        return depthPrePass;
+    }
+    public void setDepthPrePass(DepthPrePass depthPrePass) {
+        if (depthPrePass == null) {
+            throw new IllegalArgumentException("Depth pre-pass mode must not be null");
+        }
+        this.depthPrePass = depthPrePass;
+    }
+
+    public boolean isVectorRasterization() {
+        return vectorRasterization;
+    }
+    public void setVectorRasterization(boolean vectorRasterization) {
+        this.vectorRasterization = vectorRasterization;
+    }
+
+    public boolean isFastMathLighting() {
+        return fastMathLighting;
+    }
+    public void setFastMathLighting(boolean fastMathLighting) {
+        this.fastMathLighting = fastMathLighting;
+    }
+
+    public boolean isLightCulling() {
+        return lightCulling;
+    }
+    public void setLightCulling(boolean lightCulling) {
+        this.lightCulling = lightCulling;
+    }
+
+    public boolean isShadows() {
+        return shadows;
+    }
+    public void setShadows(boolean shadows) {
+        this.shadows = shadows;
+    }
+
+    public int getShadowMapSize() {
+        return shadowMapSize;
+    }
+    public void setShadowMapSize(int shadowMapSize) {
+        if (shadowMapSize < 16 || shadowMapSize > 8192) {
+            throw new IllegalArgumentException("Shadow map size must be in [16, 8192]: " + shadowMapSize);
+        }
+        this.shadowMapSize = shadowMapSize;
+    }
+
+    public int getShadowFilterRadius() {
+        return shadowFilterRadius;
+    }
+    public void setShadowFilterRadius(int shadowFilterRadius) {
+        if (shadowFilterRadius < 0 || shadowFilterRadius > 4) {
+            throw new IllegalArgumentException("Shadow filter radius must be in [0, 4]: " + shadowFilterRadius);
+        }
+        this.shadowFilterRadius = shadowFilterRadius;
+    }
+
+    public boolean isFxaa() {
+        return fxaa;
+    }
+    public void setFxaa(boolean fxaa) {
+        this.fxaa = fxaa;
+    }
+
+    public boolean isToneMapping() {
+        return toneMapping;
+    }
+    public void setToneMapping(boolean toneMapping) {
+        this.toneMapping = toneMapping;
+    }
+
+    public ToneMappingPass.Operator getToneMappingOperator() {
+        return toneMappingOperator;
+    }
+    public void setToneMappingOperator(ToneMappingPass.Operator toneMappingOperator) {
+        if (toneMappingOperator == null) {
+            throw new IllegalArgumentException("Tone mapping operator must not be null");
+        }
+        this.toneMappingOperator = toneMappingOperator;
+    }
+
+    public float getExposure() {
+        return exposure;
+    }
+    public void setExposure(float exposure) {
+        this.exposure = Math.max(0.01f, exposure);
+    }
+
+    public float getGamma() {
+        return gamma;
+    }
+    public void setGamma(float gamma) {
+        this.gamma = Math.max(0.1f, Math.min(5.0f, gamma));
+    }
+
+    public boolean isDepthOutline() {
+        return depthOutline;
+    }
+    public void setDepthOutline(boolean depthOutline) {
+        this.depthOutline = depthOutline;
+    }
+
+    public Color getOutlineColor() {
+        return outlineColor;
+    }
+    public void setOutlineColor(Color outlineColor) {
+        this.outlineColor = outlineColor;
+    }
+
+    public float getOutlineThreshold() {
+        return outlineThreshold;
+    }
+    public void setOutlineThreshold(float outlineThreshold) {
+        this.outlineThreshold = Math.max(0.001f, outlineThreshold);
+    }
+
     public RenderMode getCurrentMode() {
         if (!drawWireframe && !useTexture && !useLighting) {
             return RenderMode.SOLID;
@@ -109,6 +354,32 @@ public class RenderSettings {
         copy.backfaceCulling = this.backfaceCulling;
         copy.smoothShading = this.smoothShading;
         copy.BilinearFiltering = this.BilinearFiltering;
+        copy.resolutionScale = this.resolutionScale;
+        copy.dynamicResolution = this.dynamicResolution;
+        copy.targetFrameRate = this.targetFrameRate;
+        copy.minResolutionScale = this.minResolutionScale;
+        copy.progressiveRefinement = this.progressiveRefinement;
+        copy.previewScale = this.previewScale;
+        copy.supersampleFrames = this.supersampleFrames;
+        copy.subpixelOffsetX = this.subpixelOffsetX;
+        copy.subpixelOffsetY = this.subpixelOffsetY;
+        copy.msaaSamples = this.msaaSamples;
+        copy.deferredShading = this.deferredShading;
+        copy.depthPrePass = this.depthPrePass;
+        copy.vectorRasterization = this.vectorRasterization;
+        copy.fastMathLighting = this.fastMathLighting;
+        copy.lightCulling = this.lightCulling;
+        copy.shadows = this.shadows;
+        copy.shadowMapSize = this.shadowMapSize;
+        copy.shadowFilterRadius = this.shadowFilterRadius;
+        copy.fxaa = this.fxaa;
+        copy.toneMapping = this.toneMapping;
+        copy.toneMappingOperator = this.toneMappingOperator;
+        copy.exposure = this.exposure;
+        copy.gamma = this.gamma;
+        copy.depthOutline = this.depthOutline;
+        copy.outlineColor = this.outlineColor;
+        copy.outlineThreshold = this.outlineThreshold;
         return copy;
     }
 }
\ No newline at end of file
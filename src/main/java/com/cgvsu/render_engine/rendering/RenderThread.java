@@ -0,0 +1,296 @@
+package com.cgvsu.render_engine.rendering;
+
+import com.cgvsu.math.Transform;
+import com.cgvsu.model.Model;
+import com.cgvsu.render_engine.Camera;
+import com.cgvsu.render_engine.lighting.Material;
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.scene.ModelInstances;
+import com.cgvsu.render_engine.scene.SceneRenderer;
+import com.cgvsu.render_engine.texture.Texture;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Отдельный поток рендера с тройной буферизацией.
+ *
+ * UI-поток кладет снимок состояния (камера, настройки, модель) через {@link #submit}.
+ * Обмен идет через AtomicReference без блокировок: если поток рендера занят,
+ * более новый запрос просто заменяет старый. Готовый кадр забирается
+ * через {@link #takeCompletedFrame()}, UI-поток никогда не ждет рендер.
+ *
+ * Запрос с флагом refine (камера стоит) рисуется в несколько шагов через
+ * {@link ProgressiveRefiner}, каждый шаг показывается сразу. Любой новый запрос
+ * прерывает улучшение прямо посреди кадра.
+ *
+ * Кадр рисует {@link SceneRenderer}: модель запроса лежит в его сцене одним экземпляром
+ * без преобразования, с материалом из цвета и текстуры запроса.
+ */
+public class RenderThread {
+
+    /**
+     * Неизменяемый снимок всего, что нужно для одного кадра
+     */
+    public static final class FrameRequest {
+        private final Camera camera;
+        private final Model model;
+        private final RenderSettings settings;
+        private final Texture texture;
+        private final boolean lightFollowsCamera;
+        private final int width;
+        private final int height;
+        private final boolean refine;
+
+        public FrameRequest(Camera camera, Model model, RenderSettings settings,
+                            Texture texture, boolean lightFollowsCamera,
+                            int width, int height, boolean refine) {
+            this.camera = camera;
+            this.model = model;
+            this.settings = settings;
+            this.texture = texture;
+            this.lightFollowsCamera = lightFollowsCamera;
+            this.width = width;
+            this.height = height;
+            this.refine = refine;
+        }
+
+        public Camera getCamera() { return camera; }
+        public Model getModel() { return model; }
+        public RenderSettings getSettings() { return settings; }
+        public Texture getTexture() { return texture; }
+        public boolean isLightFollowsCamera() { return lightFollowsCamera; }
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+        public boolean isRefine() { return refine; }
+    }
+
+    private final SceneRenderer sceneRenderer;
+    private final UnifiedRenderer renderer;
+    // Материал модели в сцене: копия модели не нужна, настройки кадра меняют только его
+    private final Material frameMaterial = new Material();
+    private ModelInstances sceneModel;
+    private final ProgressiveRefiner refiner = new ProgressiveRefiner();
+    private final Runnable frameReadyCallback;
+    private final Consumer<Throwable> errorHandler;
+
+    private final AtomicReference<FrameRequest> pendingRequest = new AtomicReference<>();
+    private final AtomicReference<FrameBuffer> completedFrame = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<FrameBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean presentScheduled = new AtomicBoolean(false);
+
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile long lastFrameNanos = 0;
+    private volatile float lastFrameScale = 1.0f;
+
+    /**
+     * @param frameReadyCallback вызывается из потока рендера, когда появился новый кадр
+     *                           (не чаще одного раза до следующего takeCompletedFrame)
+     * @param errorHandler       вызывается из потока рендера при ошибке кадра
+     */
+    public RenderThread(Runnable frameReadyCallback, Consumer<Throwable> errorHandler) {
+        this.sceneRenderer = new SceneRenderer();
+        this.renderer = sceneRenderer.getRenderer();
+        this.frameReadyCallback = frameReadyCallback;
+        this.errorHandler = errorHandler;
+
+        this.thread = new Thread(this::renderLoop, "render-thread");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Передать новый запрос кадра. Неотрисованный предыдущий запрос отбрасывается.
+     */
+    public void submit(FrameRequest request) {
+        pendingRequest.set(request);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Забрать последний готовый кадр (или null, если нового кадра нет).
+     * После вывода буфер нужно вернуть через {@link #recycle}.
+     */
+    public FrameBuffer takeCompletedFrame() {
+        presentScheduled.set(false);
+        return completedFrame.getAndSet(null);
+    }
+
+    public void recycle(FrameBuffer frameBuffer) {
+        if (frameBuffer != null) {
+            freeBuffers.offer(frameBuffer);
+        }
+    }
+
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    /**
+     * Масштаб разрешения, в котором был отрисован последний кадр
+     */
+    public float getLastFrameScale() {
+        return lastFrameScale;
+    }
+
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private void renderLoop() {
+        while (running) {
+            FrameRequest request = pendingRequest.getAndSet(null);
+            if (request == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            try {
+                renderRequest(request);
+            } catch (Exception e) {
+                if (errorHandler != null) {
+                    errorHandler.accept(e);
+                }
+            }
+        }
+    }
+
+    private void renderRequest(FrameRequest request) {
+        if (request.getWidth() <= 0 || request.getHeight() <= 0) {
+            return;
+        }
+
+        if (request.isRefine() && request.getSettings().isProgressiveRefinement()) {
+            renderProgressive(request);
+        } else {
+            refiner.cancel();
+            FrameBuffer frame = renderStep(request, request.getSettings());
+            if (frame != null) {
+                publish(frame);
+            }
+        }
+    }
+
+    /**
+     * Шаги улучшения неподвижного кадра; прерываются, как только пришел новый запрос
+     */
+    private void renderProgressive(FrameRequest request) {
+        // Если с прошлого кадра поменялись только свет или цвет, полный кадр почти бесплатен
+        RenderSettings fullSettings = request.getSettings().copy();
+        fullSettings.setSubpixelOffset(0.0f, 0.0f);
+        prepareScene(request, fullSettings);
+        boolean fullFrameCached = sceneRenderer.canReshade(request.getWidth(), request.getHeight(),
+                request.getCamera(), fullSettings);
+        refiner.restart(request.getSettings(), fullFrameCached);
+        renderer.setCancellationCheck(this::hasPendingRequest);
+        try {
+            while (!refiner.isFinished() && !hasPendingRequest()) {
+                ProgressiveRefiner.Stage stage = refiner.getStage();
+                RenderSettings stageSettings = refiner.createStageSettings(request.getSettings());
+
+                FrameBuffer frame = renderStep(request, stageSettings);
+                if (frame == null) {
+                    refiner.cancel();
+                    return;
+                }
+
+                if (stage == ProgressiveRefiner.Stage.SUPERSAMPLE) {
+                    refiner.onStageRendered(frame, lastFrameNanos);
+                    recycle(frame);
+                    FrameBuffer resolved = acquireBuffer(request.getWidth(), request.getHeight());
+                    refiner.resolve(resolved);
+                    publish(resolved);
+                } else {
+                    // Кадр копируется в накопитель до того, как его заберет UI-поток
+                    refiner.onStageRendered(frame, lastFrameNanos);
+                    publish(frame);
+                }
+            }
+        } finally {
+            renderer.setCancellationCheck(null);
+        }
+    }
+
+    /**
+     * Отрисовать один кадр с заданными настройками (без публикации)
+     *
+     * @return готовый буфер или null, если кадр прерван
+     */
+    private FrameBuffer renderStep(FrameRequest request, RenderSettings settings) {
+        float scale = settings.getResolutionScale();
+        FrameBuffer target = acquireBuffer(
+                UnifiedRenderer.scaledSize(request.getWidth(), scale),
+                UnifiedRenderer.scaledSize(request.getHeight(), scale));
+
+        long start = System.nanoTime();
+        prepareScene(request, settings);
+        boolean completed = sceneRenderer.renderScene(target, request.getCamera());
+
+        if (!completed) {
+            recycle(target);
+            return null;
+        }
+
+        lastFrameNanos = System.nanoTime() - start;
+        lastFrameScale = scale;
+        return target;
+    }
+
+    /**
+     * Сцена и настройки рендерера для кадра запроса
+     */
+    private void prepareScene(FrameRequest request, RenderSettings settings) {
+        renderer.setRenderSettings(settings);
+        renderer.setTexture(request.getTexture());
+        renderer.getSceneLighting().setLightFollowsCamera(request.isLightFollowsCamera());
+
+        frameMaterial.setBaseColor(settings.getSolidColor());
+        frameMaterial.setDiffuseTexture(settings.isUseTexture() ? request.getTexture() : null);
+
+        Model model = request.getModel();
+        if (sceneModel != null && sceneModel.getModel() == model) {
+            return;
+        }
+        // Загружена другая модель: прежняя убирается из сцены
+        if (sceneModel != null) {
+            sceneRenderer.getScene().removeInstances(sceneModel);
+            sceneModel = null;
+        }
+        if (model != null) {
+            sceneModel = new ModelInstances(model);
+            sceneModel.addInstance(new Transform());
+            sceneModel.setMaterial(frameMaterial);
+            sceneRenderer.getScene().addInstances(sceneModel);
+        }
+    }
+
+    private boolean hasPendingRequest() {
+        return pendingRequest.get() != null;
+    }
+
+    private void publish(FrameBuffer frame) {
+        // Непоказанный старый кадр сразу идет в пул
+        FrameBuffer dropped = completedFrame.getAndSet(frame);
+        recycle(dropped);
+
+        if (frameReadyCallback != null && presentScheduled.compareAndSet(false, true)) {
+            frameReadyCallback.run();
+        }
+    }
+
+    private FrameBuffer acquireBuffer(int width, int height) {
+        FrameBuffer buffer;
+        while ((buffer = freeBuffers.poll()) != null) {
+            if (buffer.hasSize(width, height)) {
+                return buffer;
+            }
+            // Буфер старого размера больше не нужен
+        }
+        return new FrameBuffer(width, height);
+    }
+}
@@ -0,0 +1,72 @@
+package com.cgvsu.render_engine.rendering;
+
+/**
+ * Регулятор динамического разрешения.
+ *
+ * Пока камера движется, подбирает масштаб разрешения по измеренному времени кадра,
+ * чтобы держать целевую частоту кадров. Стоимость кадра считается пропорциональной
+ * числу пикселей (scale^2), поэтому время кадра сначала приводится к полному разрешению.
+ * Когда камера останавливается, масштаб возвращается к 1.0.
+ */
+public class ResolutionController {
+    // Коэффициент сглаживания измерений (экспоненциальное среднее)
+    private static final double SMOOTHING = 0.3;
+    // Запас, чтобы не прыгать между масштабами на каждом кадре
+    private static final double HEADROOM = 0.9;
+    // Максимальный шаг увеличения масштаба за кадр
+    private static final float MAX_SCALE_UP_STEP = 0.1f;
+
+    private float scale = 1.0f;
+    private boolean cameraMoving = false;
+    private double fullResolutionFrameNanos = -1;
+
+    /**
+     * Учесть время последнего кадра, отрисованного в масштабе usedScale
+     */
+    public void onFrameRendered(long frameNanos, float usedScale) {
+        if (frameNanos <= 0 || usedScale <= 0) {
+            return;
+        }
+
+        double estimate = frameNanos / ((double) usedScale * usedScale);
+        if (fullResolutionFrameNanos < 0) {
+            fullResolutionFrameNanos = estimate;
+        } else {
+            fullResolutionFrameNanos += SMOOTHING * (estimate - fullResolutionFrameNanos);
+        }
+    }
+
+    /**
+     * Пересчитать масштаб под текущие настройки и вернуть его
+     */
+    public float update(RenderSettings settings) {
+        if (!settings.isDynamicResolution() || !cameraMoving || fullResolutionFrameNanos <= 0) {
+            scale = 1.0f;
+            return scale;
+        }
+
+        double budgetNanos = 1_000_000_000.0 / settings.getTargetFrameRate() * HEADROOM;
+        float desired = (float) Math.sqrt(budgetNanos / fullResolutionFrameNanos);
+        desired = Math.max(settings.getMinResolutionScale(), Math.min(1.0f, desired));
+
+        // Вниз переходим сразу, вверх - плавно
+        if (desired > scale) {
+            scale = Math.min(desired, scale + MAX_SCALE_UP_STEP);
+        } else {
+            scale = desired;
+        }
+        return scale;
+    }
+
+    public void setCameraMoving(boolean cameraMoving) {
+        this.cameraMoving = cameraMoving;
+    }
+
+    public boolean isCameraMoving() {
+        return cameraMoving;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+}
@@ -0,0 +1,400 @@
+package com.cgvsu.render_engine.rendering;
+
+import com.cgvsu.math.Matrix4f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import com.cgvsu.render_engine.lighting.LightSource;
+import com.cgvsu.render_engine.lighting.ShadowMap;
+import com.cgvsu.render_engine.rasterization.RasterTriangle;
+import com.cgvsu.render_engine.rasterization.TriangleRasterizer;
+import com.cgvsu.render_engine.rasterization.ZBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Карты теней направленных источников и прожекторов, закешированные между кадрами.
+ *
+ * Карта строится проходом глубины ({@link TriangleRasterizer#rasterizeDepth}) из точки
+ * зрения источника и перестраивается, только если изменились параметры источника, размер
+ * карты или геометрия внутри его пирамиды: набор моделей, их матрицы, списки вершин и
+ * полигонов и их размеры (как и G-буфер, правку координат на месте кеш не замечает).
+ * Направленный источник охватывает все модели, прожектор - только попавшие в его конус.
+ * Точечные источники теней не отбрасывают (им нужна кубическая карта).
+ */
+final class ShadowMapCache {
+    // Прожектор шире этого угла от оси в карту целиком не помещается: края считаются освещенными
+    private static final float MAX_SPOT_ANGLE = 80.0f;
+
+    private final Map<LightSource, Entry> entries = new IdentityHashMap<>();
+    private final Map<Model, LocalBounds> boundsCache = new IdentityHashMap<>();
+    private final List<Caster> casters = new ArrayList<>();
+    private final RasterTriangle triangle = new RasterTriangle();
+    private ZBuffer depthTarget;
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] z = new float[0];
+    private float[] screenX = new float[0];
+    private float[] screenY = new float[0];
+    private float[] depth = new float[0];
+    private float[] viewDepth = new float[0];
+    private int renderCount;
+
+    /**
+     * Карты для не фоновых источников lights (в их порядке, null - источник без тени).
+     * Устаревшие карты перестраиваются, остальные берутся из кеша.
+     *
+     * @param models        модели, отбрасывающие тени
+     * @param modelMatrices их матрицы (векторы-строки)
+     */
+    ShadowMap[] update(List<LightSource> lights, List<Model> models, List<Matrix4f> modelMatrices,
+                       int size, int filterRadius, TriangleRasterizer rasterizer) {
+        if (models.size() != modelMatrices.size()) {
+            throw new IllegalArgumentException("Shadow casters and matrices differ in size: "
+                    + models.size() + " and " + modelMatrices.size());
+        }
+        collectCasters(models, modelMatrices);
+
+        List<ShadowMap> maps = new ArrayList<>();
+        Map<LightSource, Entry> used = new IdentityHashMap<>();
+        for (LightSource light : lights) {
+            LightSource.LightType type = light.getType();
+            if (type == LightSource.LightType.AMBIENT) {
+                continue;
+            }
+            ShadowMap map = null;
+            if (type == LightSource.LightType.DIRECTIONAL || type == LightSource.LightType.SPOT) {
+                Entry entry = entries.computeIfAbsent(light, key -> new Entry());
+                map = type == LightSource.LightType.DIRECTIONAL
+                        ? directionalMap(entry, light, size, rasterizer)
+                        : spotMap(entry, light, size, rasterizer);
+                if (map != null) {
+                    map.setFilterRadius(filterRadius);
+                }
+                used.put(light, entry);
+            }
+            maps.add(map);
+        }
+        // Карты удаленных источников больше не нужны
+        entries.keySet().retainAll(used.keySet());
+        casters.clear();
+        return maps.toArray(new ShadowMap[0]);
+    }
+
+    /**
+     * Сколько раз карты строились заново (в остальных кадрах они брались из кеша)
+     */
+    int getRenderCount() {
+        return renderCount;
+    }
+
+    private void collectCasters(List<Model> models, List<Matrix4f> modelMatrices) {
+        casters.clear();
+        for (int i = 0; i < models.size(); i++) {
+            Model model = models.get(i);
+            if (model == null || model.getVertices() == null || model.getVertices().isEmpty()
+                    || model.getPolygons() == null) {
+                continue;
+            }
+            LocalBounds bounds = boundsCache.computeIfAbsent(model, LocalBounds::new);
+            bounds.update();
+            casters.add(new Caster(model, modelMatrices.get(i), bounds));
+        }
+        if (boundsCache.size() > casters.size()) {
+            List<Model> current = new ArrayList<>();
+            for (Caster caster : casters) {
+                current.add(caster.key.model);
+            }
+            boundsCache.keySet().retainAll(current);
+        }
+    }
+
+    /**
+     * Ортографическая карта по сфере, охватывающей все модели
+     */
+    private ShadowMap directionalMap(Entry entry, LightSource light, int size, TriangleRasterizer rasterizer) {
+        Vector3f direction = light.getDirection();
+        float[] lightKey = {size, direction.getX(), direction.getY(), direction.getZ()};
+        if (entry.isValid(lightKey, casters)) {
+            return entry.map;
+        }
+
+        ShadowMap map = null;
+        if (!casters.isEmpty()) {
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+            for (Caster caster : casters) {
+                minX = Math.min(minX, caster.centerX - caster.radius);
+                minY = Math.min(minY, caster.centerY - caster.radius);
+                minZ = Math.min(minZ, caster.centerZ - caster.radius);
+                maxX = Math.max(maxX, caster.centerX + caster.radius);
+                maxY = Math.max(maxY, caster.centerY + caster.radius);
+                maxZ = Math.max(maxZ, caster.centerZ + caster.radius);
+            }
+            Vector3f center = new Vector3f((minX + maxX) * 0.5f, (minY + maxY) * 0.5f, (minZ + maxZ) * 0.5f);
+            float radius = 0.0f;
+            for (Caster caster : casters) {
+                float dx = caster.centerX - center.getX();
+                float dy = caster.centerY - center.getY();
+                float dz = caster.centerZ - center.getZ();
+                radius = Math.max(radius, (float) Math.sqrt(dx * dx + dy * dy + dz * dz) + caster.radius);
+            }
+            map = ShadowMap.directional(direction, center, Math.max(radius, 1e-3f), size);
+            render(map, casters, rasterizer);
+        }
+        entry.set(lightKey, casters, map);
+        return map;
+    }
+
+    /**
+     * Перспективная карта по конусу прожектора (ось - против direction, как в LightSource.getSpotFactor)
+     */
+    private ShadowMap spotMap(Entry entry, LightSource light, int size, TriangleRasterizer rasterizer) {
+        Vector3f position = light.getPosition();
+        Vector3f direction = light.getDirection();
+        float angle = Math.min(light.getSpotAngle(), MAX_SPOT_ANGLE);
+        float range = light.getRange();
+        float[] lightKey = {size, position.getX(), position.getY(), position.getZ(),
+                direction.getX(), direction.getY(), direction.getZ(), angle, range};
+
+        List<Caster> inCone = new ArrayList<>();
+        if (angle > 0 && range > 0) {
+            float cos = (float) Math.cos(Math.toRadians(angle));
+            float sin = (float) Math.sin(Math.toRadians(angle));
+            for (Caster caster : casters) {
+                float vx = caster.centerX - position.getX();
+                float vy = caster.centerY - position.getY();
+                float vz = caster.centerZ - position.getZ();
+                float along = -(vx * direction.getX() + vy * direction.getY() + vz * direction.getZ());
+                float distanceSquared = vx * vx + vy * vy + vz * vz;
+                float perpendicular = (float) Math.sqrt(Math.max(0, distanceSquared - along * along));
+                // Сфера дальше радиуса действия или целиком снаружи боковой поверхности конуса
+                if ((float) Math.sqrt(distanceSquared) > range + caster.radius
+                        || perpendicular * cos - along * sin > caster.radius) {
+                    continue;
+                }
+                inCone.add(caster);
+            }
+        }
+        if (entry.isValid(lightKey, inCone)) {
+            return entry.map;
+        }
+
+        ShadowMap map = null;
+        if (!inCone.isEmpty()) {
+            map = ShadowMap.spot(position, direction.scale(-1), angle, range, size);
+            render(map, inCone, rasterizer);
+        }
+        entry.set(lightKey, inCone, map);
+        return map;
+    }
+
+    /**
+     * Проход глубины моделей в карту. Треугольники, задевающие ближнюю плоскость прожектора,
+     * пропускаются: отсечения по ней у растеризатора нет.
+     */
+    private void render(ShadowMap map, List<Caster> casters, TriangleRasterizer rasterizer) {
+        int size = map.getSize();
+        if (depthTarget == null || depthTarget.getWidth() != size || depthTarget.getHeight() != size) {
+            depthTarget = new ZBuffer(size, size);
+        } else {
+            depthTarget.clear();
+        }
+        Matrix4f lightViewProjection = map.getViewProjection();
+        boolean perspective = map.isPerspective();
+        float near = map.getNear();
+
+        for (Caster caster : casters) {
+            List<Vector3f> vertices = caster.key.model.getVertices();
+            int count = load(vertices);
+            caster.modelMatrix.transformPoints(x, y, z, x, y, z, count);
+            if (perspective) {
+                for (int i = 0; i < count; i++) {
+                    viewDepth[i] = map.viewDepth(x[i], y[i], z[i]);
+                }
+            }
+            lightViewProjection.projectPoints(x, y, z, screenX, screenY, depth, count, size, size);
+
+            for (Polygon polygon : caster.key.model.getPolygons()) {
+                List<Integer> vertexIndices = polygon.getVertexIndices();
+                if (vertexIndices.size() != 3) {
+                    continue;
+                }
+                int i1 = vertexIndices.get(0);
+                int i2 = vertexIndices.get(1);
+                int i3 = vertexIndices.get(2);
+                if (perspective && (viewDepth[i1] <= near || viewDepth[i2] <= near || viewDepth[i3] <= near)) {
+                    continue;
+                }
+                triangle.setScreen(
+                        screenX[i1], screenY[i1], depth[i1],
+                        screenX[i2], screenY[i2], depth[i2],
+                        screenX[i3], screenY[i3], depth[i3]);
+                rasterizer.rasterizeDepth(triangle, depthTarget);
+            }
+        }
+        map.setDepth(depthTarget.getDepthArray());
+        renderCount++;
+    }
+
+    private int load(List<Vector3f> vertices) {
+        int count = vertices.size();
+        if (x.length < count) {
+            x = new float[count];
+            y = new float[count];
+            z = new float[count];
+            screenX = new float[count];
+            screenY = new float[count];
+            depth = new float[count];
+            viewDepth = new float[count];
+        }
+        for (int i = 0; i < count; i++) {
+            Vector3f v = vertices.get(i);
+            x[i] = v.getX();
+            y[i] = v.getY();
+            z[i] = v.getZ();
+        }
+        return count;
+    }
+
+    /**
+     * Карта источника и то, из чего она построена
+     */
+    private static final class Entry {
+        private float[] lightKey;
+        private List<CasterKey> casterKeys;
+        private ShadowMap map;
+
+        boolean isValid(float[] lightKey, List<Caster> casters) {
+            if (this.lightKey == null || !Arrays.equals(this.lightKey, lightKey)
+                    || casterKeys.size() != casters.size()) {
+                return false;
+            }
+            for (int i = 0; i < casters.size(); i++) {
+                if (!casterKeys.get(i).equals(casters.get(i).key)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void set(float[] lightKey, List<Caster> casters, ShadowMap map) {
+            this.lightKey = lightKey;
+            this.casterKeys = new ArrayList<>(casters.size());
+            for (Caster caster : casters) {
+                casterKeys.add(caster.key);
+            }
+            this.map = map;
+        }
+    }
+
+    /**
+     * Модель кадра с мировой ограничивающей сферой
+     */
+    private static final class Caster {
+        private final CasterKey key;
+        private final Matrix4f modelMatrix;
+        private final float centerX, centerY, centerZ;
+        private final float radius;
+
+        Caster(Model model, Matrix4f modelMatrix, LocalBounds bounds) {
+            this.key = new CasterKey(model, modelMatrix);
+            this.modelMatrix = modelMatrix;
+            Vector3f center = modelMatrix.transformPoint(
+                    bounds.centerX, bounds.centerY, bounds.centerZ, new Vector3f());
+            this.centerX = center.getX();
+            this.centerY = center.getY();
+            this.centerZ = center.getZ();
+            // Строки 3x3 - образы осей модели, самая длинная дает наибольший масштаб
+            Matrix4f m = modelMatrix;
+            float scale = (float) Math.sqrt(Math.max(m.m00 * m.m00 + m.m01 * m.m01 + m.m02 * m.m02,
+                    Math.max(m.m10 * m.m10 + m.m11 * m.m11 + m.m12 * m.m12,
+                            m.m20 * m.m20 + m.m21 * m.m21 + m.m22 * m.m22)));
+            this.radius = bounds.radius * scale;
+        }
+    }
+
+    /**
+     * Все, от чего зависит вклад модели в карту
+     */
+    private static final class CasterKey {
+        private final Model model;
+        private final List<Polygon> polygons;
+        private final int polygonCount;
+        private final List<Vector3f> vertices;
+        private final int vertexCount;
+        private final float[] matrix;
+
+        CasterKey(Model model, Matrix4f m) {
+            this.model = model;
+            this.polygons = model.getPolygons();
+            this.polygonCount = polygons.size();
+            this.vertices = model.getVertices();
+            this.vertexCount = vertices.size();
+            this.matrix = new float[]{
+                    m.m00, m.m01, m.m02, m.m03,
+                    m.m10, m.m11, m.m12, m.m13,
+                    m.m20, m.m21, m.m22, m.m23,
+                    m.m30, m.m31, m.m32, m.m33};
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CasterKey)) return false;
+            CasterKey other = (CasterKey) o;
+            return model == other.model && polygons == other.polygons
+                    && polygonCount == other.polygonCount && vertices == other.vertices
+                    && vertexCount == other.vertexCount && Arrays.equals(matrix, other.matrix);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(model) * 31 + Arrays.hashCode(matrix);
+        }
+    }
+
+    /**
+     * Ограничивающая сфера модели в ее координатах; пересчитывается при смене списка вершин или их числа
+     */
+    private static final class LocalBounds {
+        private final Model model;
+        private List<Vector3f> vertices;
+        private int vertexCount = -1;
+        private float centerX, centerY, centerZ;
+        private float radius;
+
+        LocalBounds(Model model) {
+            this.model = model;
+        }
+
+        void update() {
+            List<Vector3f> current = model.getVertices();
+            if (current == vertices && current.size() == vertexCount) {
+                return;
+            }
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+            for (Vector3f v : current) {
+                minX = Math.min(minX, v.getX()); maxX = Math.max(maxX, v.getX());
+                minY = Math.min(minY, v.getY()); maxY = Math.max(maxY, v.getY());
+                minZ = Math.min(minZ, v.getZ()); maxZ = Math.max(maxZ, v.getZ());
+            }
+            centerX = (minX + maxX) * 0.5f;
+            centerY = (minY + maxY) * 0.5f;
+            centerZ = (minZ + maxZ) * 0.5f;
+            float maxDistanceSquared = 0.0f;
+            for (Vector3f v : current) {
+                float dx = v.getX() - centerX, dy = v.getY() - centerY, dz = v.getZ() - centerZ;
+                maxDistanceSquared = Math.max(maxDistanceSquared, dx * dx + dy * dy + dz * dz);
+            }
+            radius = (float) Math.sqrt(maxDistanceSquared);
+            vertices = current;
+            vertexCount = current.size();
+        }
+    }
+}
@@ -8,34 +8,128 @@ import com.cgvsu.model.Polygon;
 import com.cgvsu.render_engine.Camera;
 import com.cgvsu.render_engine.GraphicConveyor;
 import com.cgvsu.render_engine.lighting.*;
+import com.cgvsu.render_engine.postprocess.DepthOutlinePass;
+import com.cgvsu.render_engine.postprocess.FxaaPass;
+import com.cgvsu.render_engine.postprocess.PostProcessChain;
+import com.cgvsu.render_engine.postprocess.ToneMappingPass;
+import com.cgvsu.render_engine.processing.LodSet;
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rasterization.MultisampleBuffer;
+import com.cgvsu.render_engine.rasterization.RasterKernel;
+import com.cgvsu.render_engine.rasterization.RasterTriangle;
 import com.cgvsu.render_engine.rasterization.TriangleRasterizer;
+import com.cgvsu.render_engine.rasterization.VisibilityBuffer;
 import com.cgvsu.render_engine.rasterization.ZBuffer;
 import com.cgvsu.render_engine.texture.Texture;
 import com.cgvsu.render_engine.texture.TextureManager;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 
-import javax.vecmath.Point2f;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
 
 import static com.cgvsu.math.Matrix4f.multiplyMatrix4ByVector3;
-import static com.cgvsu.math.Matrix4f.vertexToPoint;
 
 public class UnifiedRenderer {
+    // Как часто (в полигонах) проверять запрос на отмену кадра
+    private static final int CANCELLATION_CHECK_INTERVAL = 256;
+    // Допуск при проверке, что матрица модели - поворот, перенос и равномерный масштаб
+    private static final float RIGID_EPSILON = 1e-4f;
+    // Перекрытие (записей глубины на видимый пиксель), начиная с которого
+    // режим DepthPrePass.AUTO включает проход глубины при нескольких источниках света
+    private static final float AUTO_PRE_PASS_OVERDRAW = 1.5f;
+
     private final TriangleRasterizer triangleRasterizer;
+    private final WireframeRenderer wireframeRenderer;
     private final SceneLighting sceneLighting;
     private RenderSettings renderSettings;
 
+    private final FramePresenter framePresenter;
+
+    // Постобработка: встроенные проходы включаются по настройкам, свои можно добавить в цепочку
+    private final PostProcessChain postProcessChain;
+    private final ToneMappingPass toneMappingPass;
+    private final DepthOutlinePass depthOutlinePass;
+    private final FxaaPass fxaaPass;
+
+    private FrameBuffer presentBuffer;
+    // Буфер глубины текущего кадра (один из буферов mainTargets или jitterTargets)
     private ZBuffer triangleZBuffer;
-    private Matrix4f cachedViewProjectionMatrix;
+    // Образцы MSAA текущего кадра; null, если кадр рисуется без MSAA
+    private MultisampleBuffer multisampleBuffer;
+    private MultisampleBuffer frameMultisampleBuffer;
+    // Буфер видимости отложенного затенения; null, если кадр затеняется сразу при растеризации
+    private VisibilityBuffer frameVisibilityBuffer;
+    // Кадры со сдвигом растеризации (накопление сглаживания) рисуются в свои буферы,
+    // чтобы не затереть G-буфер последнего обычного кадра
+    private final FrameTargets mainTargets = new FrameTargets();
+    private final FrameTargets jitterTargets = new FrameTargets();
+    // G-буфер (буфер видимости, глубина и треугольники deferredShader) годится для
+    // повторного освещения, пока совпадает ключ: камера, модель и настройки растеризации
+    private GBufferKey gBufferKey;
+    private boolean gBufferValid;
+    private final DeferredShader deferredShader = new DeferredShader();
+    private final ShadowMapCache shadowMapCache = new ShadowMapCache();
+    // Каркас поверх отложенного затенения рисуется после него, в endFrame
+    private final List<Model> deferredWireframeModels = new ArrayList<>();
+    private final List<Matrix4f> deferredWireframeMatrices = new ArrayList<>();
+    // Матрицы кадра и модели пересчитываются на месте (Matrix4f.mul), без новых объектов
+    private final Matrix4f cachedViewProjectionMatrix = new Matrix4f();
+    private final Matrix4f frameViewProjectionMatrix = new Matrix4f();
+    private final Matrix4f wireframeMatrix = new Matrix4f();
+    private final Matrix4f inverseModelMatrix = new Matrix4f();
     private Matrix4f cachedNormalMatrix;
     private Texture currentTexture;
+    // Материал render(): один на рендерер, каждый кадр меняются только цвет и текстура
+    private final Material frameMaterial = new Material();
     private Vector3f cameraPosition;
+    private Vector3f modelSpaceCameraPosition;
+
+    // Ядро растеризации кадра; null, если кадр рисуется не в общий Z-буфер
+    // (MSAA, отложенное затенение или без Z-буфера)
+    private RasterKernel frameKernel;
+    private final RasterTriangle rasterTriangle = new RasterTriangle();
+    // Вершины модели, преобразованные пакетно один раз на модель (а не на каждый треугольник)
+    private final VertexArrays vertexArrays = new VertexArrays();
+    // Данные моделей в их собственных координатах: экземпляры одной модели берут их один раз за кадр
+    private final Map<Model, ModelGeometry> modelGeometry = new IdentityHashMap<>();
+    private int frameIndex;
+    // Промежуточные векторы отсечения задних граней и нормалей треугольника
+    private final Vector3f[] scratchNormals = {new Vector3f(), new Vector3f(), new Vector3f(), new Vector3f()};
+    private final Vector3f[] scratchWorld = {new Vector3f(), new Vector3f(), new Vector3f()};
+    // Экранные вершины треугольника в пути без ядра кадра (MSAA и кадры без Z-буфера)
+    private final Vector2f[] scratchScreen = {new Vector2f(), new Vector2f(), new Vector2f()};
+    // Проход глубины в текущем кадре; depthOnlyPass - идет первый проход (только глубина)
+    private boolean frameDepthPrePass;
+    private boolean depthOnlyPass;
+    // Перекрытие последнего освещенного кадра без отложенного затенения; 0 - еще не измерено
+    private float measuredOverdraw;
+
+    private BooleanSupplier cancellationCheck;
+    private boolean cancelled;
+    private float jitterX;
+    private float jitterY;
 
     public UnifiedRenderer() {
         this.triangleRasterizer = new TriangleRasterizer();
+        this.wireframeRenderer = new WireframeRenderer();
         this.sceneLighting = new SceneLighting();
         this.renderSettings = new RenderSettings();
+        this.framePresenter = new FramePresenter();
+
+        this.toneMappingPass = new ToneMappingPass();
+        this.depthOutlinePass = new DepthOutlinePass();
+        this.fxaaPass = new FxaaPass();
+        this.postProcessChain = new PostProcessChain();
+        // FXAA последним: он сглаживает и ступеньки обводки
+        postProcessChain.addPass(toneMappingPass);
+        postProcessChain.addPass(depthOutlinePass);
+        postProcessChain.addPass(fxaaPass);
     }
 
     public UnifiedRenderer(RenderSettings settings) {
@@ -43,6 +137,11 @@ public class UnifiedRenderer {
         this.renderSettings = settings;
     }
 
+    /**
+     * Рендеринг прямо в GraphicsContext (только из JavaFX Application Thread).
+     * Кадр рисуется во внутренний буфер размером с учетом resolutionScale
+     * и затем растягивается на холст с билинейной фильтрацией.
+     */
     public void render(
             GraphicsContext graphicsContext,
             Camera camera,
@@ -50,129 +149,590 @@ public class UnifiedRenderer {
             int width,
             int height) {
 
-        if (model == null || model.getVertices() == null || model.getVertices().isEmpty()) {
-            graphicsContext.clearRect(0, 0, width, height);
+        if (width <= 0 || height <= 0) {
             return;
         }
 
+        int internalWidth = scaledSize(width, renderSettings.getResolutionScale());
+        int internalHeight = scaledSize(height, renderSettings.getResolutionScale());
+
+        if (presentBuffer == null || !presentBuffer.hasSize(internalWidth, internalHeight)) {
+            presentBuffer = new FrameBuffer(internalWidth, internalHeight);
+        }
+
+        render(presentBuffer, camera, model);
+        framePresenter.present(graphicsContext, presentBuffer);
+    }
+
+    /**
+     * Размер внутреннего буфера для заданного масштаба разрешения
+     */
+    public static int scaledSize(int size, float resolutionScale) {
+        return Math.max(1, Math.round(size * resolutionScale));
+    }
+
+    /**
+     * Рендеринг в буфер кадра. Не трогает JavaFX-сцену, поэтому может
+     * выполняться в отдельном потоке рендера.
+     *
+     * @return false, если кадр был прерван проверкой отмены и буфер заполнен не полностью
+     */
+    public boolean render(
+            FrameBuffer frameBuffer,
+            Camera camera,
+            Model model) {
+
+        Material material = frameMaterial;
+        material.setBaseColor(renderSettings.getSolidColor());
+        material.setDiffuseTexture(renderSettings.isUseTexture() ? currentTexture : null);
+        return render(frameBuffer, camera, model, selectLod(model, camera, frameBuffer.getHeight()),
+                GraphicConveyor.rotateScaleTranslate(), material);
+    }
+
+    /**
+     * Кадр из одной модели с матрицей modelMatrix (в соглашении конвейера).
+     * Если с прошлого такого кадра поменялись только свет, цвет или материал,
+     * кадр получается повторным освещением G-буфера, без растеризации.
+     *
+     * @param model     модель, отбрасывающая тени (в полной детализации)
+     * @param drawModel что рисуется: сама модель или ее уровень детализации
+     * @return false, если кадр был прерван проверкой отмены и буфер заполнен не полностью
+     */
+    public boolean render(
+            FrameBuffer frameBuffer,
+            Camera camera,
+            Model model,
+            Model drawModel,
+            Matrix4f modelMatrix,
+            Material material) {
+
+        GBufferKey key = GBufferKey.of(frameBuffer.getWidth(), frameBuffer.getHeight(),
+                camera, drawModel, modelMatrix, renderSettings, material.getDiffuseTexture());
+        if (canReuseGBuffer(key, renderSettings)) {
+            reshade(frameBuffer, camera, model, modelMatrix, material);
+            return true;
+        }
+        boolean keepGBuffer = gBufferValid && key.equals(gBufferKey);
+
+        beginFrame(frameBuffer, camera);
+        updateShadowMaps(model, modelMatrix);
+        boolean completed = renderModel(frameBuffer, camera, drawModel, modelMatrix, material);
+        endFrame(frameBuffer);
+
+        if (completed && frameVisibilityBuffer != null) {
+            if (frameVisibilityBuffer == mainTargets.visibility) {
+                gBufferKey = key;
+                gBufferValid = true;
+            } else {
+                // Кадр со сдвигом заново заполнил deferredShader теми же треугольниками
+                gBufferValid = keepGBuffer;
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Можно ли нарисовать такой кадр повторным освещением G-буфера прошлого кадра,
+     * без растеризации (камера, модель, размер и влияющие на растеризацию настройки те же)
+     */
+    public boolean canReshade(int width, int height, Camera camera, Model model,
+                              RenderSettings settings, Texture texture) {
+        return canReshade(width, height, camera, selectLod(model, camera, height),
+                GraphicConveyor.rotateScaleTranslate(), settings, texture);
+    }
+
+    /**
+     * То же для кадра {@link #render(FrameBuffer, Camera, Model, Model, Matrix4f, Material)}
+     *
+     * @param texture текстура материала модели
+     */
+    public boolean canReshade(int width, int height, Camera camera, Model drawModel, Matrix4f modelMatrix,
+                              RenderSettings settings, Texture texture) {
+        return canReuseGBuffer(GBufferKey.of(width, height, camera, drawModel, modelMatrix, settings, texture),
+                settings);
+    }
+
+    /**
+     * Уровень детализации модели по ее радиусу на экране (модель в render() стоит без преобразования)
+     */
+    private static Model selectLod(Model model, Camera camera, int viewportHeight) {
+        LodSet lodSet = model != null ? model.getLodSet() : null;
+        if (lodSet == null) {
+            return model;
+        }
+        return lodSet.select(camera.getPosition(), camera.getFov(), viewportHeight);
+    }
+
+    /**
+     * G-буфер годится только для кадра, который и сам затенялся бы отложенно:
+     * при MSAA, без Z-буфера или без отложенного затенения кадр рисуется заново
+     */
+    private boolean canReuseGBuffer(GBufferKey key, RenderSettings settings) {
+        return gBufferValid && isDeferred(settings) && !isJittered(settings) && key.equals(gBufferKey);
+    }
+
+    /**
+     * Кадр из G-буфера: только параллельный проход освещения, каркас и постобработка
+     */
+    private void reshade(FrameBuffer frameBuffer, Camera camera, Model model, Matrix4f modelMatrix,
+                         Material material) {
+        frameBuffer.clear();
+        cancelled = false;
+        jitterX = 0.0f;
+        jitterY = 0.0f;
+        cameraPosition = camera.getPosition();
+        Matrix4f.mul(camera.getViewMatrix(), camera.getProjectionMatrix(), frameViewProjectionMatrix);
+
+        frameMultisampleBuffer = null;
+        frameVisibilityBuffer = mainTargets.visibility;
+        triangleZBuffer = mainTargets.depth;
+        for (int i = 0; i < deferredShader.getMaterialCount(); i++) {
+            deferredShader.setMaterial(i, material);
+        }
+
+        sceneLighting.updateForCamera(camera);
+        // Снимки источников берутся после того, как свет повернут за камерой
+        sceneLighting.setFastMath(renderSettings.isFastMathLighting());
+        sceneLighting.setLightCulling(renderSettings.isLightCulling());
+        updateShadowMaps(model, modelMatrix);
+        endFrame(frameBuffer);
+    }
+
+    private void updateShadowMaps(Model model, Matrix4f modelMatrix) {
+        if (model == null) {
+            updateShadowMaps(List.of(), List.of());
+        } else {
+            updateShadowMaps(List.of(model), List.of(modelMatrix));
+        }
+    }
+
+    /**
+     * Карты теней кадра: тени отбрасывают models с матрицами modelMatrices.
+     * Вызывается после {@link #beginFrame} и до первой модели; без этого вызова кадр рисуется
+     * без теней. Карты берутся из кеша и перестраиваются, только если изменился источник
+     * или геометрия в его пирамиде (см. ShadowMapCache).
+     */
+    public void updateShadowMaps(List<Model> models, List<Matrix4f> modelMatrices) {
+        if (!renderSettings.isShadows()) {
+            sceneLighting.setShadowMaps(null);
+            return;
+        }
+        sceneLighting.setShadowMaps(shadowMapCache.update(sceneLighting.getLights(), models, modelMatrices,
+                renderSettings.getShadowMapSize(), renderSettings.getShadowFilterRadius(), triangleRasterizer));
+    }
+
+    /**
+     * Сколько раз карты теней строились заново (остальные кадры брали их из кеша)
+     */
+    public int getShadowMapRenderCount() {
+        return shadowMapCache.getRenderCount();
+    }
+
+    private static boolean isJittered(RenderSettings settings) {
+        return settings.getSubpixelOffsetX() != 0.0f || settings.getSubpixelOffsetY() != 0.0f;
+    }
+
+    /**
+     * Начало кадра: очистка буфера кадра и общего буфера глубины.
+     * После этого в кадр можно добавить любое число моделей через {@link #renderModel},
+     * а затем завершить кадр вызовом {@link #endFrame}.
+     */
+    public void beginFrame(FrameBuffer frameBuffer, Camera camera) {
+        int width = frameBuffer.getWidth();
+        int height = frameBuffer.getHeight();
+
+        frameBuffer.clear();
+        cancelled = false;
+        jitterX = renderSettings.getSubpixelOffsetX();
+        jitterY = renderSettings.getSubpixelOffsetY();
         this.cameraPosition = camera.getPosition();
-        graphicsContext.clearRect(0, 0, width, height);
 
-        if (renderSettings.isUseZBuffer()) {
-            triangleZBuffer = new ZBuffer(width, height);
+        // Модели, не рисовавшиеся в прошлом кадре, больше не держим
+        frameIndex++;
+        modelGeometry.values().removeIf(geometry -> geometry.frame < frameIndex - 1);
+
+        // Вид и проекция общие для всех моделей кадра
+        Matrix4f.mul(camera.getViewMatrix(), camera.getProjectionMatrix(), frameViewProjectionMatrix);
+
+        frameMultisampleBuffer = null;
+        frameVisibilityBuffer = null;
+        triangleZBuffer = null;
+        deferredWireframeModels.clear();
+        deferredWireframeMatrices.clear();
+
+        boolean jittered = isJittered(renderSettings);
+        boolean deferred = isDeferred(renderSettings);
+        FrameTargets targets = jittered ? jitterTargets : mainTargets;
+        // Основные буферы или треугольники deferredShader сейчас будут перезаписаны
+        if (!jittered || deferred) {
+            gBufferValid = false;
+        }
+
+        if (deferred) {
+            frameVisibilityBuffer = targets.clearedVisibility(width, height);
+            deferredShader.reset();
+        }
+
+        if (renderSettings.isMultisampling()) {
+            // Глубина хранится в образцах, общий буфер глубины в этом кадре не нужен
+            int samples = renderSettings.getMsaaSamples();
+            if (multisampleBuffer == null || !multisampleBuffer.hasLayout(width, height, samples)) {
+                multisampleBuffer = new MultisampleBuffer(width, height, samples);
+            } else {
+                multisampleBuffer.clear(0);
+            }
+            frameMultisampleBuffer = multisampleBuffer;
+        } else if (renderSettings.isUseZBuffer()) {
+            triangleZBuffer = targets.clearedDepth(width, height);
         }
+        triangleRasterizer.setVectorized(renderSettings.isVectorRasterization());
+        frameKernel = deferred ? null : selectKernel();
+        frameDepthPrePass = isDepthPrePassNeeded();
+        depthOnlyPass = false;
 
         sceneLighting.updateForCamera(camera);
+        // Снимки источников берутся после того, как свет повернут за камерой
+        sceneLighting.setFastMath(renderSettings.isFastMathLighting());
+        sceneLighting.setLightCulling(renderSettings.isLightCulling());
+        // Карты теней задает updateShadowMaps
+        sceneLighting.setShadowMaps(null);
+    }
+
+    /**
+     * Нужен ли проход глубины: только освещенные режимы с Z-буфером и без MSAA
+     * (отложенное затенение решает ту же задачу само)
+     */
+    private boolean isDepthPrePassNeeded() {
+        if (!isLitForward()) {
+            return false;
+        }
+        switch (renderSettings.getDepthPrePass()) {
+            case ON:
+                return true;
+            case AUTO:
+                return sceneLighting.getLights().size() > 1
+                        && measuredOverdraw >= AUTO_PRE_PASS_OVERDRAW;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Освещенный режим, который затеняется прямо при растеризации с общим Z-буфером
+     */
+    private boolean isLitForward() {
+        return frameKernel != null && frameKernel.isLit();
+    }
+
+    /**
+     * Ядро для кадра в общий Z-буфер (режим, затенение и фильтрация выбираются один раз)
+     */
+    private RasterKernel selectKernel() {
+        if (!renderSettings.isUseZBuffer() || renderSettings.isMultisampling()) {
+            return null;
+        }
+        boolean smooth = renderSettings.isSmoothShading();
+        boolean bilinear = renderSettings.isBilinearFiltering();
+        switch (renderSettings.getCurrentMode()) {
+            case WIREFRAME:
+                return null;
+            case TEXTURED:
+                return RasterKernel.select(false, true, smooth, bilinear);
+            case LIT_SOLID:
+            case WIREFRAME_LIT_SOLID:
+                return RasterKernel.select(true, false, smooth, bilinear);
+            case LIT_TEXTURED:
+            case ALL:
+                return RasterKernel.select(true, true, smooth, bilinear);
+            default:
+                // SOLID, а также WIREFRAME_TEXTURED (как и раньше, рисуется сплошным цветом)
+                return RasterKernel.SOLID;
+        }
+    }
+
+    /**
+     * Конец кадра: при MSAA образцы усредняются в буфер кадра
+     * (без MSAA модели и так рисуются прямо в него), затем идет постобработка.
+     */
+    public void endFrame(FrameBuffer frameBuffer) {
+        if (renderSettings.getDepthPrePass() == DepthPrePass.AUTO && triangleZBuffer != null
+                && frameVisibilityBuffer == null && !cancelled && isLitForward()) {
+            // Записи глубины на видимый пиксель: с проходом глубины их делает он,
+            // освещенный проход глубину не пишет
+            int covered = triangleZBuffer.countCovered();
+            measuredOverdraw = covered > 0 ? (float) triangleZBuffer.getWriteCount() / covered : 0.0f;
+        }
+        if (frameMultisampleBuffer != null) {
+            frameMultisampleBuffer.resolve(frameBuffer);
+        }
+        if (frameVisibilityBuffer != null) {
+            deferredShader.shade(frameVisibilityBuffer, frameBuffer, sceneLighting,
+                    renderSettings.isSmoothShading(), renderSettings.isBilinearFiltering());
+            for (int i = 0; i < deferredWireframeModels.size() && !cancelled; i++) {
+                renderWireframe(frameBuffer, deferredWireframeModels.get(i),
+                        deferredWireframeMatrices.get(i), false);
+            }
+        }
+
+        toneMappingPass.setEnabled(renderSettings.isToneMapping());
+        toneMappingPass.setOperator(renderSettings.getToneMappingOperator());
+        toneMappingPass.setExposure(renderSettings.getExposure());
+        toneMappingPass.setGamma(renderSettings.getGamma());
+        depthOutlinePass.setEnabled(renderSettings.isDepthOutline());
+        depthOutlinePass.setColor(renderSettings.getOutlineColor());
+        depthOutlinePass.setThreshold(renderSettings.getOutlineThreshold());
+        fxaaPass.setEnabled(renderSettings.isFxaa());
+
+        if (postProcessChain.isActive()) {
+            ZBuffer depth = postProcessChain.needsDepth() ? resolveFrameDepth(frameBuffer) : null;
+            postProcessChain.process(frameBuffer, depth);
+        }
+    }
+
+    /**
+     * Кадр затеняется отложенно: режим с освещением, Z-буфер и без MSAA
+     * (в MSAA цвет и так считается один раз на пиксель, но для каждого треугольника)
+     */
+    private static boolean isDeferred(RenderSettings settings) {
+        if (!settings.isDeferredShading() || !settings.isUseZBuffer()
+                || settings.isMultisampling()) {
+            return false;
+        }
+        switch (settings.getCurrentMode()) {
+            case LIT_SOLID:
+            case LIT_TEXTURED:
+            case WIREFRAME_LIT_SOLID:
+            case ALL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Глубина кадра для постобработки: общий буфер глубины,
+     * а при MSAA - ближайшие образцы, собранные в него же
+     */
+    private ZBuffer resolveFrameDepth(FrameBuffer frameBuffer) {
+        if (frameMultisampleBuffer != null) {
+            FrameTargets targets = isJittered(renderSettings) ? jitterTargets : mainTargets;
+            triangleZBuffer = targets.depth(frameBuffer.getWidth(), frameBuffer.getHeight());
+            frameMultisampleBuffer.resolveDepth(triangleZBuffer);
+            return triangleZBuffer;
+        }
+        return renderSettings.isUseZBuffer() ? triangleZBuffer : null;
+    }
+
+    /**
+     * Цепочка постобработки кадра: сюда можно добавить свои проходы
+     * после встроенных (тональная кривая, обводка, FXAA)
+     */
+    public PostProcessChain getPostProcessChain() {
+        return postProcessChain;
+    }
+
+    /**
+     * Добавить модель в текущий кадр.
+     *
+     * @param modelMatrix матрица модели в соглашении конвейера (векторы-строки)
+     * @param material    материал модели; его текстура используется в текстурных режимах
+     * @return false, если кадр был прерван
+     */
+    public boolean renderModel(
+            FrameBuffer frameBuffer,
+            Camera camera,
+            Model model,
+            Matrix4f modelMatrix,
+            Material material) {
+        return renderModel(frameBuffer, camera, model, modelMatrix, material, isRigid(modelMatrix));
+    }
+
+    /**
+     * То же, но с заранее известным признаком жесткого преобразования
+     * (поворот, перенос и равномерный масштаб). Для такой матрицы матрица нормалей
+     * и обратное преобразование получаются без обращения матрицы 4x4.
+     */
+    public boolean renderModel(
+            FrameBuffer frameBuffer,
+            Camera camera,
+            Model model,
+            Matrix4f modelMatrix,
+            Material material,
+            boolean rigid) {
+
+        if (cancelled) {
+            return false;
+        }
+        if (model == null || model.getVertices() == null || model.getVertices().isEmpty()) {
+            return true;
+        }
+
+        int width = frameBuffer.getWidth();
+        int height = frameBuffer.getHeight();
+
+        // Задние грани проверяются в пространстве модели, нормали переводятся в мировое
+        if (rigid) {
+            modelSpaceCameraPosition = inverseRigidTransform(modelMatrix, cameraPosition);
+            cachedNormalMatrix = modelMatrix;
+        } else {
+            inverseModelMatrix.set(modelMatrix);
+            if (inverseModelMatrix.invert()) {
+                modelSpaceCameraPosition = multiplyMatrix4ByVector3(inverseModelMatrix, cameraPosition);
+                inverseModelMatrix.transpose();
+                cachedNormalMatrix = inverseModelMatrix;
+            } else {
+                modelSpaceCameraPosition = cameraPosition;
+                cachedNormalMatrix = modelMatrix;
+            }
+        }
 
         RenderMode mode = renderSettings.getCurrentMode();
 
         if (mode == RenderMode.WIREFRAME) {
-            renderWireframeOnly(graphicsContext, camera, model, width, height);
-            return;
+            renderWireframeOnly(frameBuffer, model, modelMatrix);
+            return !cancelled;
         }
 
-        renderFull(graphicsContext, camera, model, width, height, mode);
+        renderFull(frameBuffer, camera, model, modelMatrix, material, width, height, mode);
+        return !cancelled;
+    }
+
+    /**
+     * Проверка, по которой долгий кадр можно прервать между полигонами
+     * (например, когда камера снова начала двигаться). null - кадр не прерывается.
+     */
+    public void setCancellationCheck(BooleanSupplier cancellationCheck) {
+        this.cancellationCheck = cancellationCheck;
+    }
+
+    private boolean checkCancelled(int polygonIndex) {
+        if (!cancelled && cancellationCheck != null
+                && polygonIndex % CANCELLATION_CHECK_INTERVAL == 0
+                && cancellationCheck.getAsBoolean()) {
+            cancelled = true;
+        }
+        return cancelled;
     }
 
     private void renderFull(
-            GraphicsContext graphicsContext,
+            FrameBuffer frameBuffer,
             Camera camera,
             Model model,
+            Matrix4f modelMatrix,
+            Material material,
             int width,
             int height,
             RenderMode mode) {
 
-        Matrix4f modelMatrix = GraphicConveyor.rotateScaleTranslate();
-        Matrix4f viewMatrix = camera.getViewMatrix();
-        Matrix4f projectionMatrix = camera.getProjectionMatrix();
-
-        Matrix4f modelViewMatrix = new Matrix4f(modelMatrix);
-        modelViewMatrix.multiply(viewMatrix);
-
-        Matrix4f modelViewProjectionMatrix = new Matrix4f(modelViewMatrix);
-        modelViewProjectionMatrix.multiply(projectionMatrix);
-
-        Matrix4f normalMatrix = new Matrix4f(modelViewMatrix);
-        normalMatrix.invert();
-        normalMatrix.transpose();
-
-        cachedViewProjectionMatrix = modelViewProjectionMatrix;
-        cachedNormalMatrix = normalMatrix;
+        Matrix4f.mul(modelMatrix, frameViewProjectionMatrix, cachedViewProjectionMatrix);
 
         if (mode != RenderMode.WIREFRAME) {
-            renderTriangles(graphicsContext, model, width, height, mode);
+            if (frameDepthPrePass) {
+                // Сначала только глубина, затем освещение ровно одной точки на пиксель
+                depthOnlyPass = true;
+                renderTriangles(frameBuffer, model, modelMatrix, material, width, height, mode);
+                depthOnlyPass = false;
+            }
+            renderTriangles(frameBuffer, model, modelMatrix, material, width, height, mode);
         }
 
-        if (renderSettings.isDrawWireframe()) {
-            renderWireframeOverlay(graphicsContext, camera, model, width, height);
+        if (renderSettings.isDrawWireframe() && !cancelled) {
+            if (frameVisibilityBuffer != null) {
+                deferredWireframeModels.add(model);
+                deferredWireframeMatrices.add(modelMatrix);
+            } else {
+                renderWireframeOverlay(frameBuffer, model, modelMatrix);
+            }
         }
     }
 
     private void renderTriangles(
-            GraphicsContext graphicsContext,
+            FrameBuffer frameBuffer,
             Model model,
+            Matrix4f modelMatrix,
+            Material material,
             int width,
             int height,
             RenderMode mode) {
 
+        if (frameKernel != null) {
+            renderTrianglesWithKernel(frameBuffer, model, modelMatrix, material, width, height);
+            return;
+        }
+        if (frameVisibilityBuffer != null) {
+            deferTriangles(model, modelMatrix, material, width, height, mode);
+            return;
+        }
+
         List<Polygon> polygons = model.getPolygons();
-        List<Vector3f> vertices = model.getVertices();
         List<Vector3f> normals = model.getNormals();
         List<Vector2f> textureVertices = model.getTextureVertices();
-
-        Material material = new Material(renderSettings.getSolidColor());
-
-        if (renderSettings.isUseTexture() && currentTexture != null) {
-            material.setDiffuseTexture(currentTexture);
+        boolean lit = mode == RenderMode.LIT_SOLID || mode == RenderMode.LIT_TEXTURED
+                || mode == RenderMode.WIREFRAME_LIT_SOLID || mode == RenderMode.ALL;
+
+        // Вершины преобразуются пакетно, как в renderTrianglesWithKernel
+        ModelGeometry geometry = geometry(model);
+        int vertexCount = geometry.vertexCount;
+        VertexArrays va = vertexArrays;
+        va.ensureCapacity(vertexCount);
+        cachedViewProjectionMatrix.projectPoints(geometry.x, geometry.y, geometry.z,
+                va.screenX, va.screenY, va.depth, vertexCount, width, height);
+        if (lit) {
+            modelMatrix.transformPoints(geometry.x, geometry.y, geometry.z,
+                    va.worldX, va.worldY, va.worldZ, vertexCount);
         }
+        Vector2f p1 = scratchScreen[0], p2 = scratchScreen[1], p3 = scratchScreen[2];
+
+        for (int polygonIndex = 0; polygonIndex < polygons.size(); polygonIndex++) {
+            if (checkCancelled(polygonIndex)) {
+                return;
+            }
 
-        for (Polygon polygon : polygons) {
+            Polygon polygon = polygons.get(polygonIndex);
             List<Integer> vertexIndices = polygon.getVertexIndices();
 
             if (vertexIndices.size() != 3) {
                 continue;
             }
 
+            int i1 = vertexIndices.get(0);
+            int i2 = vertexIndices.get(1);
+            int i3 = vertexIndices.get(2);
             // Отсечение задних граней (опционально)
-            if (renderSettings.isBackfaceCulling() && isBackface(polygon, vertices)) {
+            if (renderSettings.isBackfaceCulling() && isBackface(geometry, polygonIndex, i1)) {
                 continue;
             }
 
-            Vector3f v1 = vertices.get(vertexIndices.get(0));
-            Vector3f v2 = vertices.get(vertexIndices.get(1));
-            Vector3f v3 = vertices.get(vertexIndices.get(2));
-
-            Vector3f transformed1 = multiplyMatrix4ByVector3(cachedViewProjectionMatrix, v1);
-            Vector3f transformed2 = multiplyMatrix4ByVector3(cachedViewProjectionMatrix, v2);
-            Vector3f transformed3 = multiplyMatrix4ByVector3(cachedViewProjectionMatrix, v3);
-
-            Point2f screen1 = vertexToPoint(transformed1, width, height);
-            Point2f screen2 = vertexToPoint(transformed2, width, height);
-            Point2f screen3 = vertexToPoint(transformed3, width, height);
-
-            Vector2f p1 = new Vector2f(screen1.x, screen1.y);
-            Vector2f p2 = new Vector2f(screen2.x, screen2.y);
-            Vector2f p3 = new Vector2f(screen3.x, screen3.y);
-
-            // Получение нормалей
-            Vector3f n1, n2, n3;
-            List<Integer> normalIndices = polygon.getNormalIndices();
-            if (!normalIndices.isEmpty() && normalIndices.size() >= 3) {
-                n1 = normals.get(normalIndices.get(0));
-                n2 = normals.get(normalIndices.get(1));
-                n3 = normals.get(normalIndices.get(2));
-            } else {
-                Vector3f flatNormal = Vector3f.calculatePolygonNormal(v1, v2, v3);
-                n1 = flatNormal;
-                n2 = flatNormal;
-                n3 = flatNormal;
+            p1.set(va.screenX[i1] + jitterX, va.screenY[i1] + jitterY);
+            p2.set(va.screenX[i2] + jitterX, va.screenY[i2] + jitterY);
+            p3.set(va.screenX[i3] + jitterX, va.screenY[i3] + jitterY);
+            float z1 = va.depth[i1], z2 = va.depth[i2], z3 = va.depth[i3];
+
+            // Мировые координаты и нормали для освещения
+            Vector3f v1 = null, v2 = null, v3 = null;
+            Vector3f n1 = null, n2 = null, n3 = null;
+            if (lit) {
+                v1 = scratchWorld[0].set(va.worldX[i1], va.worldY[i1], va.worldZ[i1]);
+                v2 = scratchWorld[1].set(va.worldX[i2], va.worldY[i2], va.worldZ[i2]);
+                v3 = scratchWorld[2].set(va.worldX[i3], va.worldY[i3], va.worldZ[i3]);
+
+                List<Integer> normalIndices = polygon.getNormalIndices();
+                if (normalIndices.size() >= 3) {
+                    n1 = normals.get(normalIndices.get(0));
+                    n2 = normals.get(normalIndices.get(1));
+                    n3 = normals.get(normalIndices.get(2));
+                } else {
+                    Vector3f flatNormal = geometry.faceNormal(polygonIndex, scratchNormals[0]);
+                    n1 = flatNormal;
+                    n2 = flatNormal;
+                    n3 = flatNormal;
+                }
+                // Преобразование нормалей в мировое пространство (как позиции и свет)
+                n1 = transformNormal(n1, scratchNormals[1]);
+                n2 = transformNormal(n2, scratchNormals[2]);
+                n3 = transformNormal(n3, scratchNormals[3]);
             }
 
-            // Преобразование нормалей в пространство камеры
-            n1 = multiplyMatrix4ByVector3(cachedNormalMatrix, n1).normalize();
-            n2 = multiplyMatrix4ByVector3(cachedNormalMatrix, n2).normalize();
-            n3 = multiplyMatrix4ByVector3(cachedNormalMatrix, n3).normalize();
-
             // Получение текстурных координат
             Vector2f uv1 = null, uv2 = null, uv3 = null;
             if (renderSettings.isUseTexture() && !textureVertices.isEmpty()) {
@@ -181,84 +741,185 @@ public class UnifiedRenderer {
                     uv1 = textureVertices.get(textureIndices.get(0));
                     uv2 = textureVertices.get(textureIndices.get(1));
                     uv3 = textureVertices.get(textureIndices.get(2));
-
-//                     uv1 = new Vector2f(uv1.getX(), 1.0f - uv1.getY());
-//                     uv2 = new Vector2f(uv2.getX(), 1.0f - uv2.getY());
-//                     uv3 = new Vector2f(uv3.getX(), 1.0f - uv3.getY());
-
-                    // ИЛИ, если нужно инвертировать, делайте это аккуратно:
-                    uv1 = new Vector2f(uv1.getX(), uv1.getY());
-                    uv2 = new Vector2f(uv2.getX(), uv2.getY());
-                    uv3 = new Vector2f(uv3.getX(), uv3.getY());
                 }
             }
 
             // Выбор метода рендеринга в зависимости от режима
             switch (mode) {
                 case SOLID:
-                    renderSolidTriangle(graphicsContext, p1, p2, p3,
-                            transformed1, transformed2, transformed3, material);
+                    renderSolidTriangle(frameBuffer, p1, p2, p3,
+                            z1, z2, z3, material);
                     break;
 
                 case TEXTURED:
-                    renderTexturedTriangle(graphicsContext, p1, p2, p3,
-                            transformed1, transformed2, transformed3,
+                    renderTexturedTriangle(frameBuffer, p1, p2, p3,
+                            z1, z2, z3,
                             material, uv1, uv2, uv3);
                     break;
 
                 case LIT_SOLID:
-                    renderLitSolidTriangle(graphicsContext, p1, p2, p3,
-                            transformed1, transformed2, transformed3,
+                    renderLitSolidTriangle(frameBuffer, p1, p2, p3,
+                            z1, z2, z3,
                             v1, v2, v3, n1, n2, n3, material);
                     break;
 
                 case LIT_TEXTURED:
-                    renderLitTexturedTriangle(graphicsContext, p1, p2, p3,
-                            transformed1, transformed2, transformed3,
+                    renderLitTexturedTriangle(frameBuffer, p1, p2, p3,
+                            z1, z2, z3,
                             v1, v2, v3, n1, n2, n3,
                             material, uv1, uv2, uv3);
                     break;
 
                 case WIREFRAME_LIT_SOLID:
                 case ALL:
-                    renderAllFeatures(graphicsContext, p1, p2, p3,
-                            transformed1, transformed2, transformed3,
+                    renderAllFeatures(frameBuffer, p1, p2, p3,
+                            z1, z2, z3,
                             v1, v2, v3, n1, n2, n3,
                             material, uv1, uv2, uv3);
                     break;
 
                 default:
-                    renderSolidTriangle(graphicsContext, p1, p2, p3,
-                            transformed1, transformed2, transformed3, material);
+                    renderSolidTriangle(frameBuffer, p1, p2, p3,
+                            z1, z2, z3, material);
                     break;
             }
         }
     }
 
+    /**
+     * Треугольники модели ядром кадра (frameKernel): режим уже выбран, для каждого треугольника
+     * считаются только нужные ядру атрибуты. Без текстуры или текстурных координат
+     * берется то же ядро без текстуры.
+     */
+    private void renderTrianglesWithKernel(
+            FrameBuffer frameBuffer,
+            Model model,
+            Matrix4f modelMatrix,
+            Material material,
+            int width,
+            int height) {
+
+        List<Polygon> polygons = model.getPolygons();
+        List<Vector3f> normals = model.getNormals();
+        List<Vector2f> textureVertices = model.getTextureVertices();
+
+        RasterKernel modelKernel = frameKernel;
+        if (modelKernel.isTextured() && (material.getDiffuseTexture() == null || textureVertices.isEmpty())) {
+            modelKernel = modelKernel.withoutTexture();
+        }
+        boolean lit = modelKernel.isLit();
+
+        ModelGeometry geometry = geometry(model);
+        int vertexCount = geometry.vertexCount;
+        VertexArrays va = vertexArrays;
+        va.ensureCapacity(vertexCount);
+        cachedViewProjectionMatrix.projectPoints(geometry.x, geometry.y, geometry.z,
+                va.screenX, va.screenY, va.depth, vertexCount, width, height);
+        if (lit && !depthOnlyPass) {
+            modelMatrix.transformPoints(geometry.x, geometry.y, geometry.z,
+                    va.worldX, va.worldY, va.worldZ, vertexCount);
+        }
+
+        for (int polygonIndex = 0; polygonIndex < polygons.size(); polygonIndex++) {
+            if (checkCancelled(polygonIndex)) {
+                return;
+            }
+
+            Polygon polygon = polygons.get(polygonIndex);
+            List<Integer> vertexIndices = polygon.getVertexIndices();
+
+            if (vertexIndices.size() != 3) {
+                continue;
+            }
+
+            int i1 = vertexIndices.get(0);
+            int i2 = vertexIndices.get(1);
+            int i3 = vertexIndices.get(2);
+            if (renderSettings.isBackfaceCulling() && isBackface(geometry, polygonIndex, i1)) {
+                continue;
+            }
+            rasterTriangle.setScreen(
+                    va.screenX[i1] + jitterX, va.screenY[i1] + jitterY, va.depth[i1],
+                    va.screenX[i2] + jitterX, va.screenY[i2] + jitterY, va.depth[i2],
+                    va.screenX[i3] + jitterX, va.screenY[i3] + jitterY, va.depth[i3]);
+
+            if (depthOnlyPass) {
+                triangleRasterizer.rasterizeDepth(rasterTriangle, triangleZBuffer);
+                continue;
+            }
+
+            RasterKernel kernel = modelKernel;
+            if (kernel.isTextured()) {
+                List<Integer> textureIndices = polygon.getTextureVertexIndices();
+                if (textureIndices.size() >= 3) {
+                    rasterTriangle.setTextureCoordinates(
+                            textureVertices.get(textureIndices.get(0)),
+                            textureVertices.get(textureIndices.get(1)),
+                            textureVertices.get(textureIndices.get(2)));
+                } else {
+                    kernel = kernel.withoutTexture();
+                }
+            }
+
+            if (lit) {
+                rasterTriangle.setWorld(
+                        va.worldX[i1], va.worldY[i1], va.worldZ[i1],
+                        va.worldX[i2], va.worldY[i2], va.worldZ[i2],
+                        va.worldX[i3], va.worldY[i3], va.worldZ[i3]);
+
+                Vector3f n1, n2, n3;
+                List<Integer> normalIndices = polygon.getNormalIndices();
+                if (normalIndices.size() >= 3) {
+                    n1 = normals.get(normalIndices.get(0));
+                    n2 = normals.get(normalIndices.get(1));
+                    n3 = normals.get(normalIndices.get(2));
+                } else {
+                    Vector3f flatNormal = geometry.faceNormal(polygonIndex, scratchNormals[0]);
+                    n1 = flatNormal;
+                    n2 = flatNormal;
+                    n3 = flatNormal;
+                }
+                rasterTriangle.setNormals(
+                        transformNormal(n1, scratchNormals[1]),
+                        transformNormal(n2, scratchNormals[2]),
+                        transformNormal(n3, scratchNormals[3]));
+            }
+
+            triangleRasterizer.rasterize(kernel, rasterTriangle, material, sceneLighting,
+                    frameBuffer, triangleZBuffer, frameDepthPrePass);
+        }
+    }
+
     /**
      * Рендеринг сплошного треугольника
      */
     private void renderSolidTriangle(
-            GraphicsContext gc,
+            FrameBuffer frameBuffer,
             Vector2f p1, Vector2f p2, Vector2f p3,
-            Vector3f transformed1, Vector3f transformed2, Vector3f transformed3,
+            float z1, float z2, float z3,
             Material material) {
 
         Color color = material.getBaseColor();
 
-        if (renderSettings.isUseZBuffer()) {
+        if (frameMultisampleBuffer != null) {
+            triangleRasterizer.rasterizeTriangleMultisample(
+                    p1, p2, p3,
+                    z1, z2, z3,
+                    frameMultisampleBuffer, color
+            );
+        } else if (renderSettings.isUseZBuffer()) {
             triangleRasterizer.rasterizeTriangleWithZBuffer(
                     p1, p2, p3,
-                    transformed1.getZ(), transformed2.getZ(), transformed3.getZ(),
-                    gc, triangleZBuffer, color
+                    z1, z2, z3,
+                    frameBuffer, triangleZBuffer, color
             );
         } else {
-            triangleRasterizer.rasterizeTriangle(p1, p2, p3, gc, color);
+            triangleRasterizer.rasterizeTriangle(p1, p2, p3, frameBuffer, color);
         }
 
         // Обводка для контраста
 //        if (renderSettings.getWireframeThickness() > 0) {
-//            drawWireframe(gc, p1, p2, p3);
+//            drawWireframe(frameBuffer, p1, p2, p3);
 //        }
     }
 
@@ -266,43 +927,51 @@ public class UnifiedRenderer {
      * Рендеринг текстурированного треугольника
      */
     private void renderTexturedTriangle(
-            GraphicsContext gc,
+            FrameBuffer frameBuffer,
             Vector2f p1, Vector2f p2, Vector2f p3,
-            Vector3f transformed1, Vector3f transformed2, Vector3f transformed3,
+            float z1, float z2, float z3,
             Material material,
             Vector2f uv1, Vector2f uv2, Vector2f uv3) {
 
-        Texture texture = currentTexture != null ? currentTexture : material.getDiffuseTexture();
+        Texture texture = material.getDiffuseTexture();
 
         if (uv1 == null || uv2 == null || uv3 == null || texture == null) {
             // Если нет текстурных координат или текстуры, рисуем сплошным цветом
-            renderSolidTriangle(gc, p1, p2, p3,
-                    transformed1, transformed2, transformed3, material);
+            renderSolidTriangle(frameBuffer, p1, p2, p3,
+                    z1, z2, z3, material);
             return;
         }
 
         boolean bilinearFiltering = renderSettings.isBilinearFiltering();
 
-        if (renderSettings.isUseZBuffer()) {
+        if (frameMultisampleBuffer != null) {
+            triangleRasterizer.rasterizeTexturedTriangleMultisample(
+                    p1, p2, p3,
+                    z1, z2, z3,
+                    uv1, uv2, uv3,
+                    texture, bilinearFiltering,
+                    frameMultisampleBuffer
+            );
+        } else if (renderSettings.isUseZBuffer()) {
             triangleRasterizer.rasterizeTexturedTriangleWithZBuffer(
                     p1, p2, p3,
-                    transformed1.getZ(), transformed2.getZ(), transformed3.getZ(),
+                    z1, z2, z3,
                     uv1, uv2, uv3,
                     texture, bilinearFiltering,
-                    gc, triangleZBuffer
+                    frameBuffer, triangleZBuffer
             );
         } else {
             triangleRasterizer.rasterizeTexturedTriangle(
                     p1, p2, p3,
                     uv1, uv2, uv3,
                     texture, bilinearFiltering,
-                    gc
+                    frameBuffer
             );
         }
 
         // Обводка для контраста
 //        if (renderSettings.getWireframeThickness() > 0) {
-//            drawWireframe(gc, p1, p2, p3);
+//            drawWireframe(frameBuffer, p1, p2, p3);
 //        }
     }
 
@@ -310,24 +979,34 @@ public class UnifiedRenderer {
      * Рендеринг освещенного сплошного треугольника
      */
     private void renderLitSolidTriangle(
-            GraphicsContext gc,
+            FrameBuffer frameBuffer,
             Vector2f p1, Vector2f p2, Vector2f p3,
-            Vector3f transformed1, Vector3f transformed2, Vector3f transformed3,
+            float z1, float z2, float z3,
             Vector3f world1, Vector3f world2, Vector3f world3,
             Vector3f n1, Vector3f n2, Vector3f n3,
             Material material) {
 
         boolean smoothShading = renderSettings.isSmoothShading();
 
-        if (renderSettings.isUseZBuffer()) {
+        if (frameMultisampleBuffer != null) {
+            triangleRasterizer.rasterizeLitTriangleMultisample(
+                    p1, p2, p3,
+                    z1, z2, z3,
+                    world1, world2, world3,
+                    n1, n2, n3,
+                    material, sceneLighting,
+                    smoothShading,
+                    frameMultisampleBuffer
+            );
+        } else if (renderSettings.isUseZBuffer()) {
             triangleRasterizer.rasterizeLitTriangleWithZBuffer(
                     p1, p2, p3,
-                    transformed1.getZ(), transformed2.getZ(), transformed3.getZ(),
+                    z1, z2, z3,
                     world1, world2, world3,
                     n1, n2, n3,
                     material, sceneLighting,
                     smoothShading,
-                    gc, triangleZBuffer
+                    frameBuffer, triangleZBuffer
             );
         } else {
             triangleRasterizer.rasterizeLitTriangle(
@@ -336,13 +1015,13 @@ public class UnifiedRenderer {
                     n1, n2, n3,
                     material, sceneLighting,
                     smoothShading,
-                    gc
+                    frameBuffer
             );
         }
 
         // Обводка для контраста
 //        if (renderSettings.getWireframeThickness() > 0) {
-//            drawWireframe(gc, p1, p2, p3);
+//            drawWireframe(frameBuffer, p1, p2, p3);
 //        }
     }
 
@@ -350,20 +1029,20 @@ public class UnifiedRenderer {
      * Рендеринг освещенного текстурированного треугольника
      */
     private void renderLitTexturedTriangle(
-            GraphicsContext gc,
+            FrameBuffer frameBuffer,
             Vector2f p1, Vector2f p2, Vector2f p3,
-            Vector3f transformed1, Vector3f transformed2, Vector3f transformed3,
+            float z1, float z2, float z3,
             Vector3f world1, Vector3f world2, Vector3f world3,
             Vector3f n1, Vector3f n2, Vector3f n3,
             Material material,
             Vector2f uv1, Vector2f uv2, Vector2f uv3) {
 
-        Texture texture = currentTexture != null ? currentTexture : material.getDiffuseTexture();
+        Texture texture = material.getDiffuseTexture();
 
         if (uv1 == null || uv2 == null || uv3 == null || texture == null) {
             // Если нет текстурных координат или текстуры, рисуем освещенный сплошной треугольник
-            renderLitSolidTriangle(gc, p1, p2, p3,
-                    transformed1, transformed2, transformed3,
+            renderLitSolidTriangle(frameBuffer, p1, p2, p3,
+                    z1, z2, z3,
                     world1, world2, world3,
                     n1, n2, n3, material);
             return;
@@ -372,16 +1051,27 @@ public class UnifiedRenderer {
         boolean smoothShading = renderSettings.isSmoothShading();
         boolean bilinearFiltering = renderSettings.isBilinearFiltering();
 
-        if (renderSettings.isUseZBuffer()) {
+        if (frameMultisampleBuffer != null) {
+            triangleRasterizer.rasterizeLitTexturedTriangleMultisample(
+                    p1, p2, p3,
+                    z1, z2, z3,
+                    world1, world2, world3,
+                    n1, n2, n3,
+                    uv1, uv2, uv3,
+                    material, sceneLighting,
+                    smoothShading, bilinearFiltering,
+                    frameMultisampleBuffer
+            );
+        } else if (renderSettings.isUseZBuffer()) {
             triangleRasterizer.rasterizeLitTexturedTriangleWithZBuffer(
                     p1, p2, p3,
-                    transformed1.getZ(), transformed2.getZ(), transformed3.getZ(),
+                    z1, z2, z3,
                     world1, world2, world3,
                     n1, n2, n3,
                     uv1, uv2, uv3,
                     material, sceneLighting,
                     smoothShading, bilinearFiltering,
-                    gc, triangleZBuffer
+                    frameBuffer, triangleZBuffer
             );
         } else {
             triangleRasterizer.rasterizeLitTexturedTriangle(
@@ -391,150 +1081,239 @@ public class UnifiedRenderer {
                     uv1, uv2, uv3,
                     material, sceneLighting,
                     smoothShading, bilinearFiltering,
-                    gc
+                    frameBuffer
             );
         }
 
         // Обводка для контраста
 //        if (renderSettings.getWireframeThickness() > 0) {
-//            drawWireframe(gc, p1, p2, p3);
+//            drawWireframe(frameBuffer, p1, p2, p3);
 //        }
     }
 
     /**
-     * Рендеринг со всеми функциями (освещение + текстуры + каркас)
+     * Отложенное затенение: треугольники запоминаются в deferredShader, растеризуется только
+     * видимость. Вершины преобразуются пакетно, как в {@link #renderTrianglesWithKernel}.
+     */
+    private void deferTriangles(
+            Model model,
+            Matrix4f modelMatrix,
+            Material material,
+            int width,
+            int height,
+            RenderMode mode) {
+
+        List<Polygon> polygons = model.getPolygons();
+        List<Vector3f> normals = model.getNormals();
+        List<Vector2f> textureVertices = model.getTextureVertices();
+        boolean textured = mode != RenderMode.LIT_SOLID && renderSettings.isUseTexture()
+                && material.getDiffuseTexture() != null && !textureVertices.isEmpty();
+
+        ModelGeometry geometry = geometry(model);
+        int vertexCount = geometry.vertexCount;
+        VertexArrays va = vertexArrays;
+        va.ensureCapacity(vertexCount);
+        cachedViewProjectionMatrix.projectPoints(geometry.x, geometry.y, geometry.z,
+                va.screenX, va.screenY, va.depth, vertexCount, width, height);
+        modelMatrix.transformPoints(geometry.x, geometry.y, geometry.z,
+                va.worldX, va.worldY, va.worldZ, vertexCount);
+
+        Vector3f world1 = scratchWorld[0], world2 = scratchWorld[1], world3 = scratchWorld[2];
+        for (int polygonIndex = 0; polygonIndex < polygons.size(); polygonIndex++) {
+            if (checkCancelled(polygonIndex)) {
+                return;
+            }
+
+            Polygon polygon = polygons.get(polygonIndex);
+            List<Integer> vertexIndices = polygon.getVertexIndices();
+            if (vertexIndices.size() != 3) {
+                continue;
+            }
+
+            int i1 = vertexIndices.get(0);
+            int i2 = vertexIndices.get(1);
+            int i3 = vertexIndices.get(2);
+            if (renderSettings.isBackfaceCulling() && isBackface(geometry, polygonIndex, i1)) {
+                continue;
+            }
+            world1.set(va.worldX[i1], va.worldY[i1], va.worldZ[i1]);
+            world2.set(va.worldX[i2], va.worldY[i2], va.worldZ[i2]);
+            world3.set(va.worldX[i3], va.worldY[i3], va.worldZ[i3]);
+
+            Vector3f n1, n2, n3;
+            List<Integer> normalIndices = polygon.getNormalIndices();
+            if (normalIndices.size() >= 3) {
+                n1 = normals.get(normalIndices.get(0));
+                n2 = normals.get(normalIndices.get(1));
+                n3 = normals.get(normalIndices.get(2));
+            } else {
+                Vector3f flatNormal = geometry.faceNormal(polygonIndex, scratchNormals[0]);
+                n1 = flatNormal;
+                n2 = flatNormal;
+                n3 = flatNormal;
+            }
+
+            Vector2f uv1 = null, uv2 = null, uv3 = null;
+            List<Integer> textureIndices = polygon.getTextureVertexIndices();
+            if (textured && textureIndices.size() >= 3) {
+                uv1 = textureVertices.get(textureIndices.get(0));
+                uv2 = textureVertices.get(textureIndices.get(1));
+                uv3 = textureVertices.get(textureIndices.get(2));
+            }
+
+            // Номер не зависит от экранных координат (вырожденные треугольники тоже получают номер),
+            // поэтому кадры со сдвигом нумеруют треугольники так же, как G-буфер
+            int triangleId = deferredShader.addTriangle(world1, world2, world3,
+                    transformNormal(n1, scratchNormals[1]),
+                    transformNormal(n2, scratchNormals[2]),
+                    transformNormal(n3, scratchNormals[3]),
+                    uv1, uv2, uv3, material);
+            rasterTriangle.setScreen(
+                    va.screenX[i1] + jitterX, va.screenY[i1] + jitterY, va.depth[i1],
+                    va.screenX[i2] + jitterX, va.screenY[i2] + jitterY, va.depth[i2],
+                    va.screenX[i3] + jitterX, va.screenY[i3] + jitterY, va.depth[i3]);
+            triangleRasterizer.rasterizeVisibility(rasterTriangle, triangleId, frameVisibilityBuffer, triangleZBuffer);
+        }
+    }
+
+    /**
+     * Рендеринг со всеми функциями (освещение + текстуры)
      */
     private void renderAllFeatures(
-            GraphicsContext gc,
+            FrameBuffer frameBuffer,
             Vector2f p1, Vector2f p2, Vector2f p3,
-            Vector3f transformed1, Vector3f transformed2, Vector3f transformed3,
+            float z1, float z2, float z3,
             Vector3f world1, Vector3f world2, Vector3f world3,
             Vector3f n1, Vector3f n2, Vector3f n3,
             Material material,
             Vector2f uv1, Vector2f uv2, Vector2f uv3) {
 
-        Texture texture = currentTexture != null ? currentTexture : material.getDiffuseTexture();
+        Texture texture = material.getDiffuseTexture();
 
         if (uv1 != null && uv2 != null && uv3 != null && texture != null) {
             // С текстурами
-            renderLitTexturedTriangle(gc, p1, p2, p3,
-                    transformed1, transformed2, transformed3,
+            renderLitTexturedTriangle(frameBuffer, p1, p2, p3,
+                    z1, z2, z3,
                     world1, world2, world3,
                     n1, n2, n3,
                     material, uv1, uv2, uv3);
         } else {
             // Без текстур
-            renderLitSolidTriangle(gc, p1, p2, p3,
-                    transformed1, transformed2, transformed3,
+            renderLitSolidTriangle(frameBuffer, p1, p2, p3,
+                    z1, z2, z3,
                     world1, world2, world3,
                     n1, n2, n3, material);
         }
-
-        // Всегда рисуем каркас в этом режиме
-        drawWireframe(gc, p1, p2, p3);
-    }
-
-    /**
-     * Рисование каркаса треугольника
-     */
-    private void drawWireframe(GraphicsContext gc, Vector2f p1, Vector2f p2, Vector2f p3) {
-        gc.setStroke(renderSettings.getWireframeColor());
-        gc.setLineWidth(renderSettings.getWireframeThickness());
-        gc.strokePolygon(
-                new double[]{p1.getX(), p2.getX(), p3.getX()},
-                new double[]{p1.getY(), p2.getY(), p3.getY()},
-                3
-        );
+        // Каркас в этом режиме рисуется общим проходом по ребрам (renderWireframeOverlay)
     }
 
     /**
-     * Рендеринг только каркаса
+     * Рендеринг только каркаса: поверхностей нет, линии сами пишут глубину
      */
     private void renderWireframeOnly(
-            GraphicsContext graphicsContext,
-            Camera camera,
+            FrameBuffer frameBuffer,
             Model model,
-            int width,
-            int height) {
+            Matrix4f modelMatrix) {
 
-        renderWireframeSimple(graphicsContext, camera, model, width, height);
+        renderWireframe(frameBuffer, model, modelMatrix, true);
     }
 
     /**
-     * Рендеринг каркаса поверх остального
+     * Рендеринг каркаса поверх остального: линии, закрытые поверхностями, не рисуются
      */
     private void renderWireframeOverlay(
-            GraphicsContext graphicsContext,
-            Camera camera,
+            FrameBuffer frameBuffer,
             Model model,
-            int width,
-            int height) {
+            Matrix4f modelMatrix) {
 
-        renderWireframeSimple(graphicsContext, camera, model, width, height);
+        renderWireframe(frameBuffer, model, modelMatrix, false);
     }
 
-    /**
-     * Упрощенный рендеринг каркаса
-     */
-    private void renderWireframeSimple(
-            GraphicsContext gc,
-            Camera camera,
+    private void renderWireframe(
+            FrameBuffer frameBuffer,
             Model model,
-            int width,
-            int height) {
-
-        Matrix4f modelMatrix = GraphicConveyor.rotateScaleTranslate();
-        Matrix4f viewMatrix = camera.getViewMatrix();
-        Matrix4f projectionMatrix = camera.getProjectionMatrix();
+            Matrix4f modelMatrix,
+            boolean writeDepth) {
 
-        Matrix4f modelViewProjectionMatrix = new Matrix4f(modelMatrix);
-        modelViewProjectionMatrix.multiply(viewMatrix);
-        modelViewProjectionMatrix.multiply(projectionMatrix);
+        Matrix4f modelViewProjectionMatrix = Matrix4f.mul(modelMatrix, frameViewProjectionMatrix, wireframeMatrix);
 
-        List<Polygon> polygons = model.getPolygons();
-        List<Vector3f> vertices = model.getVertices();
+        ZBuffer zBuffer = renderSettings.isUseZBuffer() ? triangleZBuffer : null;
+        int argb = FrameBuffer.toArgb(renderSettings.getWireframeColor());
 
-        gc.setStroke(renderSettings.getWireframeColor());
-        gc.setLineWidth(renderSettings.getWireframeThickness());
-
-        for (Polygon polygon : polygons) {
-            List<Integer> vertexIndices = polygon.getVertexIndices();
-            int n = vertexIndices.size();
-
-            if (n < 2) continue;
+        wireframeRenderer.render(frameBuffer, zBuffer, frameMultisampleBuffer, model, modelViewProjectionMatrix,
+                argb, jitterX, jitterY, writeDepth, this::checkCancelled);
+    }
 
-            Point2f[] points = new Point2f[n];
-            for (int i = 0; i < n; i++) {
-                Vector3f vertex = vertices.get(vertexIndices.get(i));
-                Vector3f transformed = multiplyMatrix4ByVector3(modelViewProjectionMatrix, vertex);
-                points[i] = vertexToPoint(transformed, width, height);
-            }
+    /**
+     * Матрица задает поворот, перенос и равномерный масштаб:
+     * строки 3x3 попарно ортогональны и одной длины
+     */
+    public static boolean isRigid(Matrix4f m) {
+        float len0 = m.m00 * m.m00 + m.m01 * m.m01 + m.m02 * m.m02;
+        float len1 = m.m10 * m.m10 + m.m11 * m.m11 + m.m12 * m.m12;
+        float len2 = m.m20 * m.m20 + m.m21 * m.m21 + m.m22 * m.m22;
+        float tolerance = RIGID_EPSILON * Math.max(len0, 1.0f);
+
+        return Math.abs(m.m03) < RIGID_EPSILON && Math.abs(m.m13) < RIGID_EPSILON
+                && Math.abs(m.m23) < RIGID_EPSILON
+                && Math.abs(len0 - len1) < tolerance && Math.abs(len0 - len2) < tolerance
+                && Math.abs(m.m00 * m.m10 + m.m01 * m.m11 + m.m02 * m.m12) < tolerance
+                && Math.abs(m.m00 * m.m20 + m.m01 * m.m21 + m.m02 * m.m22) < tolerance
+                && Math.abs(m.m10 * m.m20 + m.m11 * m.m21 + m.m12 * m.m22) < tolerance;
+    }
 
-            for (int i = 0; i < n; i++) {
-                int next = (i + 1) % n;
-                gc.strokeLine(points[i].x, points[i].y, points[next].x, points[next].y);
-            }
+    /**
+     * Обратное жесткое преобразование точки: p = (p' - t) * A^T / s^2,
+     * где A - часть 3x3, s - масштаб
+     */
+    private static Vector3f inverseRigidTransform(Matrix4f m, Vector3f point) {
+        float scaleSquared = m.m00 * m.m00 + m.m01 * m.m01 + m.m02 * m.m02;
+        if (scaleSquared < 1e-12f) {
+            return point;
         }
+        float x = point.getX() - m.m30;
+        float y = point.getY() - m.m31;
+        float z = point.getZ() - m.m32;
+        return new Vector3f(
+                (x * m.m00 + y * m.m01 + z * m.m02) / scaleSquared,
+                (x * m.m10 + y * m.m11 + z * m.m12) / scaleSquared,
+                (x * m.m20 + y * m.m21 + z * m.m22) / scaleSquared);
     }
 
     /**
-     * Проверка на заднюю грань
+     * Данные модели в ее координатах на текущий кадр: в первый раз за кадр копируются из модели,
+     * остальные экземпляры той же модели берут готовые
      */
-    private boolean isBackface(Polygon polygon, List<Vector3f> vertices) {
-        if (polygon.getVertexIndices().size() < 3) return false;
-
-        Vector3f v1 = vertices.get(polygon.getVertexIndices().get(0));
-        Vector3f v2 = vertices.get(polygon.getVertexIndices().get(1));
-        Vector3f v3 = vertices.get(polygon.getVertexIndices().get(2));
-
-        // Вычисляем нормаль полигона
-        Vector3f normal = Vector3f.calculatePolygonNormal(v1, v2, v3);
+    private ModelGeometry geometry(Model model) {
+        ModelGeometry geometry = modelGeometry.computeIfAbsent(model, key -> new ModelGeometry());
+        if (geometry.frame != frameIndex) {
+            geometry.load(model);
+            geometry.frame = frameIndex;
+        }
+        return geometry;
+    }
 
-        // Вектор от камеры к полигону
-        Vector3f cameraToPolygon = cameraPosition.subtract(v1);
+    /**
+     * Проверка на заднюю грань в пространстве модели; first - первая вершина треугольника
+     */
+    private boolean isBackface(ModelGeometry geometry, int polygonIndex, int first) {
+        geometry.ensureFaceNormals();
+        // Вектор от полигона к камере
+        float toCameraX = modelSpaceCameraPosition.getX() - geometry.x[first];
+        float toCameraY = modelSpaceCameraPosition.getY() - geometry.y[first];
+        float toCameraZ = modelSpaceCameraPosition.getZ() - geometry.z[first];
 
         // Если нормаль направлена от камеры - это задняя грань
-        return normal.dot(cameraToPolygon) < 0;
+        return geometry.faceX[polygonIndex] * toCameraX + geometry.faceY[polygonIndex] * toCameraY
+                + geometry.faceZ[polygonIndex] * toCameraZ < 0;
+    }
+
+    /**
+     * Нормаль в мировом пространстве (матрица нормалей кадра) в dest, единичная
+     */
+    private Vector3f transformNormal(Vector3f normal, Vector3f dest) {
+        return cachedNormalMatrix.transformDirection(normal.getX(), normal.getY(), normal.getZ(), dest)
+                .normalizeInto(dest);
     }
 
     /**
@@ -650,4 +1429,204 @@ public class UnifiedRenderer {
     public void setBilinearFiltering(boolean bilinearFiltering) {
         renderSettings.setBilinearFiltering(bilinearFiltering);
     }
-}
\ No newline at end of file
+
+    /**
+     * Координаты вершин экземпляра структурой массивов: экранные с глубиной и мировые.
+     * Массивы растут по самой большой модели и переиспользуются между кадрами.
+     */
+    private static final class VertexArrays {
+        private float[] screenX = new float[0];
+        private float[] screenY = new float[0];
+        private float[] depth = new float[0];
+        private float[] worldX = new float[0];
+        private float[] worldY = new float[0];
+        private float[] worldZ = new float[0];
+
+        void ensureCapacity(int count) {
+            if (screenX.length < count) {
+                screenX = new float[count];
+                screenY = new float[count];
+                depth = new float[count];
+                worldX = new float[count];
+                worldY = new float[count];
+                worldZ = new float[count];
+            }
+        }
+    }
+
+    /**
+     * Модель в ее собственных координатах: вершины (x, y, z) и ненормированные нормали
+     * треугольников для отсечения задних граней и плоского затенения. Не зависит от матрицы
+     * экземпляра, поэтому считается один раз за кадр на модель. Нормали граней - по первому запросу.
+     */
+    private static final class ModelGeometry {
+        private int frame = -1;
+        private List<Polygon> polygons;
+        private float[] x = new float[0];
+        private float[] y = new float[0];
+        private float[] z = new float[0];
+        private int vertexCount;
+        private float[] faceX = new float[0];
+        private float[] faceY = new float[0];
+        private float[] faceZ = new float[0];
+        private boolean facesValid;
+
+        void load(Model model) {
+            List<Vector3f> vertices = model.getVertices();
+            int count = vertices.size();
+            if (x.length < count) {
+                x = new float[count];
+                y = new float[count];
+                z = new float[count];
+            }
+            for (int i = 0; i < count; i++) {
+                Vector3f v = vertices.get(i);
+                x[i] = v.getX();
+                y[i] = v.getY();
+                z[i] = v.getZ();
+            }
+            vertexCount = count;
+            polygons = model.getPolygons();
+            facesValid = false;
+        }
+
+        void ensureFaceNormals() {
+            if (facesValid) {
+                return;
+            }
+            int count = polygons.size();
+            if (faceX.length < count) {
+                faceX = new float[count];
+                faceY = new float[count];
+                faceZ = new float[count];
+            }
+            for (int p = 0; p < count; p++) {
+                List<Integer> indices = polygons.get(p).getVertexIndices();
+                if (indices.size() != 3) {
+                    continue;
+                }
+                int a = indices.get(0), b = indices.get(1), c = indices.get(2);
+                // Как Vector3f.calculatePolygonNormal: (v2 - v1) x (v3 - v1)
+                float e1x = x[b] - x[a], e1y = y[b] - y[a], e1z = z[b] - z[a];
+                float e2x = x[c] - x[a], e2y = y[c] - y[a], e2z = z[c] - z[a];
+                faceX[p] = e1y * e2z - e1z * e2y;
+                faceY[p] = e1z * e2x - e1x * e2z;
+                faceZ[p] = e1x * e2y - e1y * e2x;
+            }
+            facesValid = true;
+        }
+
+        Vector3f faceNormal(int polygonIndex, Vector3f dest) {
+            ensureFaceNormals();
+            return dest.set(faceX[polygonIndex], faceY[polygonIndex], faceZ[polygonIndex]);
+        }
+    }
+
+    /**
+     * Буферы глубины и видимости одного набора; создаются при первой надобности
+     * и пересоздаются только при смене размера
+     */
+    private static final class FrameTargets {
+        private ZBuffer depth;
+        private VisibilityBuffer visibility;
+
+        ZBuffer depth(int width, int height) {
+            if (depth == null || depth.getWidth() != width || depth.getHeight() != height) {
+                depth = new ZBuffer(width, height);
+            }
+            return depth;
+        }
+
+        ZBuffer clearedDepth(int width, int height) {
+            if (depth == null || depth.getWidth() != width || depth.getHeight() != height) {
+                depth = new ZBuffer(width, height);
+            } else {
+                depth.clear();
+            }
+            return depth;
+        }
+
+        VisibilityBuffer clearedVisibility(int width, int height) {
+            if (visibility == null || !visibility.hasSize(width, height)) {
+                visibility = new VisibilityBuffer(width, height);
+            } else {
+                visibility.clear();
+            }
+            return visibility;
+        }
+    }
+
+    /**
+     * Все, от чего зависит содержимое G-буфера, включая то, затенялся ли кадр отложенно
+     * (отложенное затенение, Z-буфер, MSAA). Цвет, материал, свет,
+     * сглаживание нормалей и фильтрация текстур сюда не входят - они влияют только на освещение.
+     */
+    private static final class GBufferKey {
+        private final int width;
+        private final int height;
+        private final Model model;
+        private final List<Polygon> polygons;
+        private final int polygonCount;
+        private final int vertexCount;
+        private final float[] viewProjection;
+        private final float[] modelMatrix;
+        private final RenderMode mode;
+        private final boolean backfaceCulling;
+        private final boolean deferred;
+        private final int msaaSamples;
+        private final Texture texture;
+
+        private GBufferKey(int width, int height, Model model, float[] viewProjection, float[] modelMatrix,
+                           RenderSettings settings, Texture texture) {
+            this.width = width;
+            this.height = height;
+            this.model = model;
+            this.polygons = model != null ? model.getPolygons() : null;
+            this.polygonCount = polygons != null ? polygons.size() : 0;
+            this.vertexCount = model != null && model.getVertices() != null ? model.getVertices().size() : 0;
+            this.viewProjection = viewProjection;
+            this.modelMatrix = modelMatrix;
+            this.mode = settings.getCurrentMode();
+            this.backfaceCulling = settings.isBackfaceCulling();
+            this.deferred = isDeferred(settings);
+            this.msaaSamples = settings.isMultisampling() ? settings.getMsaaSamples() : 1;
+            this.texture = settings.isUseTexture() ? texture : null;
+        }
+
+        static GBufferKey of(int width, int height, Camera camera, Model model, Matrix4f modelMatrix,
+                             RenderSettings settings, Texture texture) {
+            Matrix4f m = camera.getViewMatrix();
+            Matrix4f.mul(m, camera.getProjectionMatrix(), m);
+            return new GBufferKey(width, height, model, values(m), values(modelMatrix), settings, texture);
+        }
+
+        private static float[] values(Matrix4f m) {
+            return new float[]{
+                    m.m00, m.m01, m.m02, m.m03,
+                    m.m10, m.m11, m.m12, m.m13,
+                    m.m20, m.m21, m.m22, m.m23,
+                    m.m30, m.m31, m.m32, m.m33};
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof GBufferKey)) return false;
+            GBufferKey other = (GBufferKey) o;
+            return width == other.width && height == other.height
+                    && model == other.model && polygons == other.polygons
+                    && polygonCount == other.polygonCount && vertexCount == other.vertexCount
+                    && mode == other.mode && backfaceCulling == other.backfaceCulling
+                    && deferred == other.deferred && msaaSamples == other.msaaSamples
+                    && texture == other.texture
+                    && Arrays.equals(viewProjection, other.viewProjection)
+                    && Arrays.equals(modelMatrix, other.modelMatrix);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(width, height, System.identityHashCode(model), polygonCount,
+                    vertexCount, mode, backfaceCulling, deferred, msaaSamples, Arrays.hashCode(viewProjection));
+        }
+    }
+}
@@ -1,135 +1,296 @@
 package com.cgvsu.render_engine.rendering;
 
 import com.cgvsu.math.Matrix4f;
-import com.cgvsu.math.Vector2f;
 import com.cgvsu.math.Vector3f;
 import com.cgvsu.model.Model;
-import com.cgvsu.model.Polygon;
-import com.cgvsu.render_engine.Camera;
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rasterization.MultisampleBuffer;
 import com.cgvsu.render_engine.rasterization.ZBuffer;
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.paint.Color;
-import javax.vecmath.Point2f;
-import java.util.ArrayList;
-import java.util.List;
 
-import static com.cgvsu.render_engine.GraphicConveyor.rotateScaleTranslate;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.IntPredicate;
 
+/**
+ * Каркасный рендер прямо в int-буфер кадра.
+ *
+ * Каждая вершина преобразуется один раз, ребра берутся из {@link EdgeList}
+ * (общие ребра рисуются один раз). Ребра, целиком лежащие по одну сторону
+ * от какой-либо плоскости пирамиды видимости, отбрасываются, остальные
+ * отсекаются ближней плоскостью в пространстве отсечения и краями экрана,
+ * поэтому цикл по пикселям идет только по видимой части линии.
+ * В режиме MSAA линия пишется в образцы MSAA-буфера, а не в буфер кадра.
+ */
 public class WireframeRenderer {
+    // Сдвиг линии к камере, в долях расстояния до нее: каркас поверх своей же поверхности не мерцает
+    private static final float DEPTH_BIAS = 0.002f;
+
+    private static final int OUT_LEFT = 1;
+    private static final int OUT_RIGHT = 2;
+    private static final int OUT_BOTTOM = 4;
+    private static final int OUT_TOP = 8;
+    private static final int OUT_NEAR = 16;
+    private static final int OUT_FAR = 32;
+
+    private final Map<Model, EdgeList> edgeLists = new WeakHashMap<>();
+
+    // Вершины в пространстве отсечения и их коды выхода за плоскости; переиспользуются между кадрами
+    private float[] clip = new float[0];
+    private int[] outcodes = new int[0];
+    // Экранные x, y и глубина вершин перед ближней плоскостью (без сдвига jitter)
+    private float[] screen = new float[0];
+
+    // Концы текущей линии после отсечения: x, y на экране и глубина
+    private float lineX1, lineY1, lineZ1, lineX2, lineY2, lineZ2;
+    private float clipT0, clipT1;
+
+    /**
+     * Нарисовать ребра модели.
+     *
+     * @param modelViewProjection матрица модель-вид-проекция (векторы-строки)
+     * @param zBuffer             буфер глубины; null - без проверки глубины
+     * @param multisampleBuffer   MSAA-буфер кадра (глубина берется из его образцов);
+     *                            null - рисование прямо в frameBuffer
+     * @param writeDepth          записывать глубину линий (иначе линии только проверяются
+     *                            по уже нарисованным поверхностям)
+     * @param cancelled           проверка отмены по номеру ребра
+     * @return false, если рисование прервано
+     */
+    public boolean render(
+            FrameBuffer frameBuffer,
+            ZBuffer zBuffer,
+            MultisampleBuffer multisampleBuffer,
+            Model model,
+            Matrix4f modelViewProjection,
+            int argb,
+            float jitterX,
+            float jitterY,
+            boolean writeDepth,
+            IntPredicate cancelled) {
+
+        EdgeList edgeList = getEdgeList(model);
+        int width = frameBuffer.getWidth();
+        int height = frameBuffer.getHeight();
+        transformVertices(model.getVertices(), modelViewProjection, width, height);
+
+        int[] pixels = frameBuffer.getPixels();
+        int[] edges = edgeList.getEdges();
+        int edgeCount = edgeList.getEdgeCount();
 
-    public void renderWireframeWithZBuffer(
-            GraphicsContext gc,
-            Camera camera,
-            Model mesh,
-            int width,
-            int height,
-            Color lineColor,
-            float lineThickness,
-            ZBuffer zBuffer) {
-
-        Matrix4f modelMatrix = rotateScaleTranslate();
-        Matrix4f viewMatrix = camera.getViewMatrix();
-        Matrix4f projectionMatrix = camera.getProjectionMatrix();
-
-        Matrix4f modelViewProjectionMatrix = new Matrix4f(modelMatrix);
-        modelViewProjectionMatrix.multiply(viewMatrix);
-        modelViewProjectionMatrix.multiply(projectionMatrix);
-
-        // Настройка контекста
-        gc.setStroke(lineColor);
-        gc.setLineWidth(lineThickness);
-
-        // Рендерим все полигоны
-        for (Polygon polygon : mesh.getPolygons()) {
-            List<Integer> vertexIndices = polygon.getVertexIndices();
-            int nVertices = vertexIndices.size();
-
-            if (nVertices < 2) continue;
-
-            // Получаем преобразованные вершины
-            List<Point2f> screenPoints = new ArrayList<>();
-            List<Float> depths = new ArrayList<>();
-
-            for (int i = 0; i < nVertices; i++) {
-                Vector3f vertex = mesh.getVertices().get(vertexIndices.get(i));
-                Vector3f transformed = Matrix4f.multiplyMatrix4ByVector3(modelViewProjectionMatrix, vertex);
-                Point2f screenPoint = Vector2f.vertexToPoint(transformed, width, height);
-
-                screenPoints.add(screenPoint);
-                depths.add(transformed.getZ());
+        for (int e = 0; e < edgeCount; e++) {
+            if (cancelled != null && cancelled.test(e)) {
+                return false;
             }
 
-            // Рисуем линии полигона с Z-буфером
-            for (int i = 0; i < nVertices; i++) {
-                int next = (i + 1) % nVertices;
-                drawLineWithZBuffer(
-                        screenPoints.get(i), depths.get(i),
-                        screenPoints.get(next), depths.get(next),
-                        gc, lineColor, zBuffer
-                );
+            int a = edges[e * 2];
+            int b = edges[e * 2 + 1];
+            if ((outcodes[a] & outcodes[b]) != 0) {
+                // Обе вершины снаружи одной плоскости
+                continue;
             }
+            if (!projectEdge(a, b, width, height, jitterX, jitterY)) {
+                continue;
+            }
+            if (multisampleBuffer != null) {
+                drawLine(multisampleBuffer, width, height, argb, writeDepth);
+            } else {
+                drawLine(pixels, width, height, zBuffer, argb, writeDepth);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Список ребер модели (строится при первом обращении)
+     */
+    public EdgeList getEdgeList(Model model) {
+        EdgeList edgeList = edgeLists.get(model);
+        if (edgeList == null || !edgeList.matches(model)) {
+            edgeList = EdgeList.build(model);
+            edgeLists.put(model, edgeList);
         }
+        return edgeList;
     }
 
-    private void drawLineWithZBuffer(
-            Point2f p1, float z1,
-            Point2f p2, float z2,
-            GraphicsContext gc,
-            Color color,
-            ZBuffer zBuffer) {
+    private void transformVertices(List<Vector3f> vertices, Matrix4f m, int width, int height) {
+        int count = vertices.size();
+        if (outcodes.length < count) {
+            clip = new float[count * 4];
+            screen = new float[count * 3];
+            outcodes = new int[count];
+        }
+
+        for (int i = 0; i < count; i++) {
+            Vector3f v = vertices.get(i);
+            float x = v.getX(), y = v.getY(), z = v.getZ();
+            float cx = x * m.m00 + y * m.m10 + z * m.m20 + m.m30;
+            float cy = x * m.m01 + y * m.m11 + z * m.m21 + m.m31;
+            float cz = x * m.m02 + y * m.m12 + z * m.m22 + m.m32;
+            float cw = x * m.m03 + y * m.m13 + z * m.m23 + m.m33;
+
+            int base = i * 4;
+            clip[base] = cx;
+            clip[base + 1] = cy;
+            clip[base + 2] = cz;
+            clip[base + 3] = cw;
 
-        int x1 = (int) Math.round(p1.x);
-        int y1 = (int) Math.round(p1.y);
-        int x2 = (int) Math.round(p2.x);
-        int y2 = (int) Math.round(p2.y);
+            // Экран занимает |x|, |y| <= w / 2 (см. vertexToPoint)
+            float half = cw * 0.5f;
+            int code = 0;
+            if (cx < -half) code |= OUT_LEFT;
+            if (cx > half) code |= OUT_RIGHT;
+            if (cy < -half) code |= OUT_BOTTOM;
+            if (cy > half) code |= OUT_TOP;
+            if (cz < -cw) code |= OUT_NEAR;
+            if (cz > cw) code |= OUT_FAR;
+            outcodes[i] = code;
 
-        // Используем алгоритм Брезенхема с Z-буфером
-        bresenhamWithZBuffer(x1, y1, z1, x2, y2, z2, gc, color, zBuffer);
+            // Общие вершины проецируются один раз, а не на каждом ребре
+            if ((code & OUT_NEAR) == 0 && cw > 0) {
+                float inverseW = 1.0f / cw;
+                screen[i * 3] = cx * inverseW * width + width / 2.0f;
+                screen[i * 3 + 1] = -cy * inverseW * height + height / 2.0f;
+                screen[i * 3 + 2] = cz * inverseW;
+            }
+        }
     }
 
-    private void bresenhamWithZBuffer(
-            int x1, int y1, float z1,
-            int x2, int y2, float z2,
-            GraphicsContext gc,
-            Color color,
-            ZBuffer zBuffer) {
+    /**
+     * Отсечь ребро ближней плоскостью, спроецировать и отсечь краями экрана.
+     *
+     * @return false, если от ребра ничего не осталось
+     */
+    private boolean projectEdge(int a, int b, int width, int height, float jitterX, float jitterY) {
+        float x1, y1, z1, x2, y2, z2;
 
-        int dx = Math.abs(x2 - x1);
-        int dy = Math.abs(y2 - y1);
+        if (((outcodes[a] | outcodes[b]) & OUT_NEAR) == 0) {
+            x1 = screen[a * 3] + jitterX;
+            y1 = screen[a * 3 + 1] + jitterY;
+            z1 = screen[a * 3 + 2];
+            x2 = screen[b * 3] + jitterX;
+            y2 = screen[b * 3 + 1] + jitterY;
+            z2 = screen[b * 3 + 2];
+        } else {
+            int ia = a * 4;
+            int ib = b * 4;
+            float ax = clip[ia], ay = clip[ia + 1], az = clip[ia + 2], aw = clip[ia + 3];
+            float bx = clip[ib], by = clip[ib + 1], bz = clip[ib + 2], bw = clip[ib + 3];
 
-        int sx = (x1 < x2) ? 1 : -1;
-        int sy = (y1 < y2) ? 1 : -1;
+            // Ближняя плоскость z = -w: за ней перспективное деление бессмысленно
+            float da = az + aw;
+            float db = bz + bw;
+            float t = da / (da - db);
+            float x = ax + (bx - ax) * t, y = ay + (by - ay) * t;
+            float z = az + (bz - az) * t, w = aw + (bw - aw) * t;
+            if (da < 0) {
+                ax = x; ay = y; az = z; aw = w;
+            } else {
+                bx = x; by = y; bz = z; bw = w;
+            }
+            if (aw <= 0 || bw <= 0) {
+                return false;
+            }
 
-        int err = dx - dy;
-        int e2;
-        int x = x1;
-        int y = y1;
+            x1 = ax / aw * width + width / 2.0f + jitterX;
+            y1 = -ay / aw * height + height / 2.0f + jitterY;
+            z1 = az / aw;
+            x2 = bx / bw * width + width / 2.0f + jitterX;
+            y2 = -by / bw * height + height / 2.0f + jitterY;
+            z2 = bz / bw;
+        }
 
-        float t = 0;
-        float step = 1.0f / Math.max(dx, dy);
+        // Отсечение прямоугольником экрана (Лианг - Барски)
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float maxX = width - 0.5f;
+        float maxY = height - 0.5f;
+        clipT0 = 0.0f;
+        clipT1 = 1.0f;
+        if (!clipBoundary(-dx, x1) || !clipBoundary(dx, maxX - x1)
+                || !clipBoundary(-dy, y1) || !clipBoundary(dy, maxY - y1)) {
+            return false;
+        }
+        float t0 = clipT0, t1 = clipT1;
 
-        while (true) {
-            // Линейная интерполяция Z
-            float z = z1 * (1 - t) + z2 * t;
+        float dz = z2 - z1;
+        lineX1 = x1 + dx * t0;
+        lineY1 = y1 + dy * t0;
+        lineZ1 = z1 + dz * t0;
+        lineX2 = x1 + dx * t1;
+        lineY2 = y1 + dy * t1;
+        lineZ2 = z1 + dz * t1;
+        return true;
+    }
 
-            // Проверка Z-буфера
-            if (zBuffer == null || zBuffer.testAndSet(x, y, z)) {
-                gc.getPixelWriter().setColor(x, y, color);
-            }
+    /**
+     * Одна граница для отсечения Лианга - Барски: сужает [clipT0, clipT1]
+     */
+    private boolean clipBoundary(float p, float q) {
+        if (p == 0) {
+            return q >= 0;
+        }
+        float r = q / p;
+        if (p < 0) {
+            if (r > clipT1) return false;
+            if (r > clipT0) clipT0 = r;
+        } else {
+            if (r < clipT0) return false;
+            if (r < clipT1) clipT1 = r;
+        }
+        return true;
+    }
 
-            if (x == x2 && y == y2) break;
+    /**
+     * Линия DDA с линейной интерполяцией глубины (глубина после деления на w
+     * линейна в экранных координатах)
+     */
+    private void drawLine(int[] pixels, int width, int height, ZBuffer zBuffer, int argb, boolean writeDepth) {
+        float dx = lineX2 - lineX1;
+        float dy = lineY2 - lineY1;
+        int steps = (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)));
+        float stepX = steps > 0 ? dx / steps : 0;
+        float stepY = steps > 0 ? dy / steps : 0;
+        float stepZ = steps > 0 ? (lineZ2 - lineZ1) / steps : 0;
 
-            e2 = 2 * err;
-            if (e2 > -dy) {
-                err -= dy;
-                x += sx;
-            }
-            if (e2 < dx) {
-                err += dx;
-                y += sy;
+        float x = lineX1, y = lineY1, z = lineZ1;
+        for (int i = 0; i <= steps; i++, x += stepX, y += stepY, z += stepZ) {
+            int px = Math.min(width - 1, Math.max(0, Math.round(x)));
+            int py = Math.min(height - 1, Math.max(0, Math.round(y)));
+
+            if (zBuffer != null) {
+                // Ближе к камере на долю расстояния: NDC-глубина стремится к 1 с удалением
+                float biased = z - DEPTH_BIAS * Math.max(0.0f, 1.0f - z);
+                if (writeDepth) {
+                    if (!zBuffer.testAndSet(px, py, biased)) {
+                        continue;
+                    }
+                } else if (biased > zBuffer.getDepth(px, py)) {
+                    continue;
+                }
             }
+            pixels[py * width + px] = argb;
+        }
+    }
+
+    /**
+     * Та же линия в MSAA-буфер: глубина линии одна на пиксель, она проверяется
+     * по каждому образцу, поэтому на силуэте поверхности линия закрывает только образцы за собой
+     */
+    private void drawLine(MultisampleBuffer buffer, int width, int height, int argb, boolean writeDepth) {
+        float dx = lineX2 - lineX1;
+        float dy = lineY2 - lineY1;
+        int steps = (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)));
+        float stepX = steps > 0 ? dx / steps : 0;
+        float stepY = steps > 0 ? dy / steps : 0;
+        float stepZ = steps > 0 ? (lineZ2 - lineZ1) / steps : 0;
 
-            t += step;
+        float x = lineX1, y = lineY1, z = lineZ1;
+        for (int i = 0; i <= steps; i++, x += stepX, y += stepY, z += stepZ) {
+            int px = Math.min(width - 1, Math.max(0, Math.round(x)));
+            int py = Math.min(height - 1, Math.max(0, Math.round(y)));
+            float biased = z - DEPTH_BIAS * Math.max(0.0f, 1.0f - z);
+            buffer.writePixel(px, py, biased, argb, writeDepth);
         }
     }
-}
\ No newline at end of file
+}
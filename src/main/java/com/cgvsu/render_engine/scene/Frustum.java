@@ -0,0 +1,59 @@
+package com.cgvsu.render_engine.scene;
+
+import com.cgvsu.math.Matrix4f;
+import com.cgvsu.math.Vector3f;
+
+/**
+ * Пирамида видимости камеры: шесть плоскостей, извлеченных из матрицы вид-проекция.
+ * Матрица в соглашении конвейера (векторы-строки), поэтому плоскости
+ * строятся из столбцов: clip = (x, y, z, 1) * M.
+ */
+public class Frustum {
+    // a, b, c, d для каждой из 6 плоскостей; внутренняя часть - где a*x + b*y + c*z + d >= 0
+    private final float[] planes = new float[24];
+
+    public void update(Matrix4f viewProjection) {
+        Matrix4f m = viewProjection;
+        // Левая, правая: w +- x
+        setPlane(0, m.m03 + m.m00, m.m13 + m.m10, m.m23 + m.m20, m.m33 + m.m30);
+        setPlane(1, m.m03 - m.m00, m.m13 - m.m10, m.m23 - m.m20, m.m33 - m.m30);
+        // Нижняя, верхняя: w +- y
+        setPlane(2, m.m03 + m.m01, m.m13 + m.m11, m.m23 + m.m21, m.m33 + m.m31);
+        setPlane(3, m.m03 - m.m01, m.m13 - m.m11, m.m23 - m.m21, m.m33 - m.m31);
+        // Ближняя, дальняя: w +- z
+        setPlane(4, m.m03 + m.m02, m.m13 + m.m12, m.m23 + m.m22, m.m33 + m.m32);
+        setPlane(5, m.m03 - m.m02, m.m13 - m.m12, m.m23 - m.m22, m.m33 - m.m32);
+    }
+
+    /**
+     * false, если сфера целиком снаружи хотя бы одной плоскости
+     */
+    public boolean intersectsSphere(Vector3f center, float radius) {
+        return intersectsSphere(center.getX(), center.getY(), center.getZ(), radius);
+    }
+
+    public boolean intersectsSphere(float x, float y, float z, float radius) {
+        for (int i = 0; i < 24; i += 4) {
+            float distance = planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3];
+            if (distance < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setPlane(int index, float a, float b, float c, float d) {
+        float length = (float) Math.sqrt(a * a + b * b + c * c);
+        if (length > 0) {
+            a /= length;
+            b /= length;
+            c /= length;
+            d /= length;
+        }
+        int offset = index * 4;
+        planes[offset] = a;
+        planes[offset + 1] = b;
+        planes[offset + 2] = c;
+        planes[offset + 3] = d;
+    }
+}
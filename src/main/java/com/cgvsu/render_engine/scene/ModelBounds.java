@@ -0,0 +1,74 @@
+package com.cgvsu.render_engine.scene;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+
+import java.util.List;
+
+/**
+ * Ограничивающая сфера модели в ее собственных координатах.
+ * Пересчитывается, только если у модели сменился список вершин или их число.
+ */
+final class ModelBounds {
+    private final Model model;
+    private List<Vector3f> vertices;
+    private int vertexCount = -1;
+    private int version = 0;
+    private Vector3f center = new Vector3f();
+    private float radius;
+
+    ModelBounds(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * @return true, если сфера пересчитана
+     */
+    boolean update() {
+        List<Vector3f> current = model.getVertices();
+        if (current == null || (current == vertices && current.size() == vertexCount)) {
+            return false;
+        }
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (Vector3f v : current) {
+            minX = Math.min(minX, v.getX()); maxX = Math.max(maxX, v.getX());
+            minY = Math.min(minY, v.getY()); maxY = Math.max(maxY, v.getY());
+            minZ = Math.min(minZ, v.getZ()); maxZ = Math.max(maxZ, v.getZ());
+        }
+
+        if (current.isEmpty()) {
+            center = new Vector3f();
+            radius = 0.0f;
+        } else {
+            center = new Vector3f((minX + maxX) * 0.5, (minY + maxY) * 0.5, (minZ + maxZ) * 0.5);
+            float maxDistance = 0.0f;
+            for (Vector3f v : current) {
+                maxDistance = Math.max(maxDistance, (float) v.distance(center));
+            }
+            radius = maxDistance;
+        }
+
+        vertices = current;
+        vertexCount = current.size();
+        version++;
+        return true;
+    }
+
+    Model getModel() {
+        return model;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    Vector3f getCenter() {
+        return center;
+    }
+
+    float getRadius() {
+        return radius;
+    }
+}
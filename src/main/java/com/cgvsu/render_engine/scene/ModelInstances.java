@@ -0,0 +1,62 @@
+package com.cgvsu.render_engine.scene;
+
+import com.cgvsu.math.Transform;
+import com.cgvsu.model.Model;
+import com.cgvsu.render_engine.lighting.Material;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Одна модель, размещенная в сцене много раз.
+ * Геометрия хранится один раз, на каждый экземпляр - только его Transform.
+ */
+public class ModelInstances {
+    private final Model model;
+    private final List<Transform> transforms = new ArrayList<>();
+    private Material material;
+
+    public ModelInstances(Model model) {
+        if (model == null) {
+            throw new IllegalArgumentException("Model cannot be null");
+        }
+        this.model = model;
+        this.material = model.getMaterial();
+    }
+
+    public Transform addInstance(Transform transform) {
+        if (transform == null) {
+            throw new IllegalArgumentException("Transform cannot be null");
+        }
+        transforms.add(transform);
+        return transform;
+    }
+
+    public void removeInstance(Transform transform) {
+        transforms.remove(transform);
+    }
+
+    public void clearInstances() {
+        transforms.clear();
+    }
+
+    public Model getModel() {
+        return model;
+    }
+
+    public List<Transform> getTransforms() {
+        return transforms;
+    }
+
+    public int getInstanceCount() {
+        return transforms.size();
+    }
+
+    public Material getMaterial() {
+        return material;
+    }
+
+    public void setMaterial(Material material) {
+        this.material = material;
+    }
+}
@@ -8,12 +8,15 @@ import java.util.List;
 
 public class Scene {
     private List<Model> models;
+    private List<ModelInstances> instancedModels;
+    private final SceneNode root = new SceneNode("root");
     private List<Camera> cameras;
     private List<Texture> textures;
     private int activeCameraIndex;
 
     public Scene() {
         this.models = new ArrayList<>();
+        this.instancedModels = new ArrayList<>();
         this.cameras = new ArrayList<>();
         this.textures = new ArrayList<>();
         this.activeCameraIndex = 0;
@@ -35,6 +38,25 @@ public class Scene {
         return models.get(index);
     }
 
+    public void addInstances(ModelInstances instances) {
+        instancedModels.add(instances);
+    }
+
+    public void removeInstances(ModelInstances instances) {
+        instancedModels.remove(instances);
+    }
+
+    public List<ModelInstances> getInstancedModels() {
+        return instancedModels;
+    }
+
+    /**
+     * Корень графа сцены; модели узлов рисуются вместе с плоским списком моделей
+     */
+    public SceneNode getRoot() {
+        return root;
+    }
+
     public void addCamera(Camera camera) {
         cameras.add(camera);
     }
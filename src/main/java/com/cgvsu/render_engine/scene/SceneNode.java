@@ -0,0 +1,377 @@
+package com.cgvsu.render_engine.scene;
+
+import com.cgvsu.math.Matrix4f;
+import com.cgvsu.math.Transform;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.render_engine.Camera;
+import com.cgvsu.render_engine.lighting.LightSource;
+import com.cgvsu.render_engine.rendering.UnifiedRenderer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.cgvsu.math.Matrix4f.multiplyMatrix4ByVector3;
+
+/**
+ * Узел графа сцены: локальный Transform относительно родителя, дочерние узлы
+ * и необязательные привязанные модель, камера и источник света.
+ *
+ * Мировая матрица и ограничивающие сферы кешируются. Изменение узла помечает
+ * грязным его поддерево и путь до корня, поэтому {@link #updateWorld()} обходит
+ * только измененные ветки: перемещение одной детали не пересчитывает матрицы
+ * остальных узлов. Матрицы хранятся в соглашении конвейера (векторы-строки).
+ *
+ * После изменения Transform напрямую (через getLocalTransform()) нужно вызвать
+ * {@link #invalidateTransform()}; сеттеры узла делают это сами.
+ */
+public class SceneNode {
+    private static final Matrix4f IDENTITY = Matrix4f.identity();
+
+    private final String name;
+    private SceneNode parent;
+    private final List<SceneNode> children = new ArrayList<>();
+
+    private Transform localTransform = new Transform();
+    private final Matrix4f localMatrix = Matrix4f.identity();
+    private final Matrix4f worldMatrix = Matrix4f.identity();
+    private boolean worldRigid = true;
+    private long worldVersion = 0;
+
+    private Model model;
+    private ModelBounds modelBounds;
+    private Camera camera;
+    private LightSource light;
+
+    // Сфера привязанной модели в мировых координатах
+    private Vector3f boundsCenter = new Vector3f();
+    private float boundsRadius = -1.0f;
+    // Сфера всего поддерева (для отсечения веток целиком)
+    private Vector3f subtreeCenter = new Vector3f();
+    private float subtreeRadius = -1.0f;
+
+    private boolean worldDirty = true;
+    private boolean subtreeDirty = true;
+    // Набор детей изменился: сферу поддерева нужно пересобрать, даже если ни одна не сдвинулась
+    private boolean childrenChanged = false;
+
+    public SceneNode(String name) {
+        this.name = name;
+    }
+
+    public SceneNode(String name, Model model) {
+        this(name);
+        setModel(model);
+    }
+
+    // Иерархия
+
+    public SceneNode addChild(SceneNode child) {
+        if (child == null) {
+            throw new IllegalArgumentException("Child node cannot be null");
+        }
+        for (SceneNode node = this; node != null; node = node.parent) {
+            if (node == child) {
+                throw new IllegalArgumentException("Scene graph cannot contain cycles: " + child.name);
+            }
+        }
+        if (child.parent != null) {
+            child.parent.removeChild(child);
+        }
+        children.add(child);
+        child.parent = this;
+        child.worldDirty = true;
+        childrenChanged = true;
+        child.markPathDirty();
+        return child;
+    }
+
+    public void removeChild(SceneNode child) {
+        if (children.remove(child)) {
+            child.parent = null;
+            child.worldDirty = true;
+            child.subtreeDirty = true;
+            childrenChanged = true;
+            markPathDirty();
+        }
+    }
+
+    public SceneNode getParent() {
+        return parent;
+    }
+
+    public List<SceneNode> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Локальное преобразование
+
+    public Transform getLocalTransform() {
+        return localTransform;
+    }
+
+    public void setLocalTransform(Transform transform) {
+        if (transform == null) {
+            throw new IllegalArgumentException("Transform cannot be null");
+        }
+        this.localTransform = transform;
+        invalidateTransform();
+    }
+
+    public void setPosition(double x, double y, double z) {
+        localTransform.setPosition(x, y, z);
+        invalidateTransform();
+    }
+
+    public void setRotation(double x, double y, double z) {
+        localTransform.setRotation(x, y, z);
+        invalidateTransform();
+    }
+
+    public void setScale(double x, double y, double z) {
+        localTransform.setScale(x, y, z);
+        invalidateTransform();
+    }
+
+    /**
+     * Пометить, что локальное преобразование изменилось: поддерево будет пересчитано
+     * при ближайшем {@link #updateWorld()}
+     */
+    public void invalidateTransform() {
+        worldDirty = true;
+        markPathDirty();
+    }
+
+    private void markPathDirty() {
+        subtreeDirty = true;
+        // Подъем останавливается на первом уже помеченном предке
+        for (SceneNode node = parent; node != null && !node.subtreeDirty; node = node.parent) {
+            node.subtreeDirty = true;
+        }
+    }
+
+    // Привязанные объекты
+
+    public Model getModel() {
+        return model;
+    }
+
+    public void setModel(Model model) {
+        this.model = model;
+        this.modelBounds = model != null ? new ModelBounds(model) : null;
+        invalidateTransform();
+    }
+
+    /**
+     * Вызвать после изменения вершин привязанной модели
+     */
+    public void invalidateBounds() {
+        invalidateTransform();
+    }
+
+    public Camera getCamera() {
+        return camera;
+    }
+
+    public void setCamera(Camera camera) {
+        this.camera = camera;
+        invalidateTransform();
+    }
+
+    public LightSource getLight() {
+        return light;
+    }
+
+    public void setLight(LightSource light) {
+        this.light = light;
+        invalidateTransform();
+    }
+
+    // Кешированные мировые данные
+
+    /**
+     * Мировая матрица (векторы-строки). Действительна после {@link #updateWorld()}; менять нельзя.
+     */
+    public Matrix4f getWorldMatrix() {
+        return worldMatrix;
+    }
+
+    /**
+     * Мировая матрица - поворот, перенос и равномерный масштаб
+     */
+    public boolean isWorldRigid() {
+        return worldRigid;
+    }
+
+    /**
+     * Растет каждый раз, когда мировая матрица или сфера узла пересчитываются
+     */
+    public long getWorldVersion() {
+        return worldVersion;
+    }
+
+    public Vector3f getWorldPosition() {
+        return new Vector3f(worldMatrix.m30, worldMatrix.m31, worldMatrix.m32);
+    }
+
+    public Vector3f getBoundsCenter() {
+        return boundsCenter;
+    }
+
+    /**
+     * Радиус сферы привязанной модели; отрицательный, если модели нет
+     */
+    public float getBoundsRadius() {
+        return boundsRadius;
+    }
+
+    public Vector3f getSubtreeCenter() {
+        return subtreeCenter;
+    }
+
+    /**
+     * Радиус сферы всего поддерева; отрицательный, если в поддереве нет моделей
+     */
+    public float getSubtreeRadius() {
+        return subtreeRadius;
+    }
+
+    public boolean isDirty() {
+        return subtreeDirty;
+    }
+
+    /**
+     * Пересчитать мировые матрицы и сферы в измененных ветках.
+     * Вызывается у корня перед рендером кадра.
+     */
+    public void updateWorld() {
+        Matrix4f parentWorld = parent != null ? parent.worldMatrix : null;
+        update(parentWorld, false);
+    }
+
+    /**
+     * @return true, если сфера поддерева изменилась
+     */
+    private boolean update(Matrix4f parentWorld, boolean parentChanged) {
+        if (!subtreeDirty && !parentChanged) {
+            return false;
+        }
+
+        boolean changed = worldDirty || parentChanged;
+        if (changed) {
+            recomputeWorld(parentWorld);
+        }
+
+        boolean childBoundsChanged = false;
+        for (SceneNode child : children) {
+            childBoundsChanged |= child.update(worldMatrix, changed);
+        }
+
+        boolean membershipChanged = childrenChanged;
+        worldDirty = false;
+        subtreeDirty = false;
+        childrenChanged = false;
+
+        if (changed || childBoundsChanged || membershipChanged) {
+            recomputeSubtreeBounds();
+            return true;
+        }
+        return false;
+    }
+
+    private void recomputeWorld(Matrix4f parentWorld) {
+        // Transform строит матрицу для векторов-столбцов, конвейер работает с векторами-строками
+        localTransform.getMatrix().transpose(localMatrix);
+        localMatrix.multiply(parentWorld != null ? parentWorld : IDENTITY, worldMatrix);
+        worldRigid = UnifiedRenderer.isRigid(worldMatrix);
+        worldVersion++;
+
+        if (modelBounds != null) {
+            modelBounds.update();
+        }
+        recomputeModelBounds();
+        syncAttachments();
+    }
+
+    private void recomputeModelBounds() {
+        if (modelBounds == null || model.getVertices() == null || model.getVertices().isEmpty()) {
+            boundsRadius = -1.0f;
+            return;
+        }
+        boundsCenter = multiplyMatrix4ByVector3(worldMatrix, modelBounds.getCenter());
+        boundsRadius = modelBounds.getRadius() * maxScale(worldMatrix);
+        worldVersion++;
+    }
+
+    private void recomputeSubtreeBounds() {
+        Vector3f center = boundsCenter;
+        float radius = boundsRadius;
+
+        for (SceneNode child : children) {
+            if (child.subtreeRadius < 0) {
+                continue;
+            }
+            if (radius < 0) {
+                center = child.subtreeCenter;
+                radius = child.subtreeRadius;
+                continue;
+            }
+
+            // Объединение двух сфер
+            Vector3f offset = child.subtreeCenter.subtract(center);
+            float distance = (float) offset.length();
+            if (distance + child.subtreeRadius <= radius) {
+                continue;
+            }
+            if (distance + radius <= child.subtreeRadius) {
+                center = child.subtreeCenter;
+                radius = child.subtreeRadius;
+                continue;
+            }
+            float newRadius = (distance + radius + child.subtreeRadius) * 0.5f;
+            float shift = (newRadius - radius) / distance;
+            center = new Vector3f(
+                    center.getX() + offset.getX() * shift,
+                    center.getY() + offset.getY() * shift,
+                    center.getZ() + offset.getZ() * shift);
+            radius = newRadius;
+        }
+
+        subtreeCenter = center;
+        subtreeRadius = radius;
+    }
+
+    /**
+     * Камера и свет следуют за узлом: позиция - начало координат узла,
+     * направление - его локальная ось Z
+     */
+    private void syncAttachments() {
+        if (camera == null && light == null) {
+            return;
+        }
+
+        Vector3f position = getWorldPosition();
+        Vector3f forward = new Vector3f(worldMatrix.m20, worldMatrix.m21, worldMatrix.m22).normalize();
+
+        if (camera != null) {
+            camera.setPosition(position);
+            camera.setTarget(position.add(forward));
+        }
+        if (light != null) {
+            light.setPosition(position);
+            light.setDirection(forward);
+        }
+    }
+
+    private static float maxScale(Matrix4f m) {
+        float len0 = m.m00 * m.m00 + m.m01 * m.m01 + m.m02 * m.m02;
+        float len1 = m.m10 * m.m10 + m.m11 * m.m11 + m.m12 * m.m12;
+        float len2 = m.m20 * m.m20 + m.m21 * m.m21 + m.m22 * m.m22;
+        return (float) Math.sqrt(Math.max(len0, Math.max(len1, len2)));
+    }
+}
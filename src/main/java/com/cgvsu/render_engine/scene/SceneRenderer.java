@@ -1,19 +1,69 @@
 package com.cgvsu.render_engine.scene;
 
+import com.cgvsu.math.Matrix4f;
+import com.cgvsu.math.Transform;
+import com.cgvsu.math.Vector3f;
 import com.cgvsu.model.Model;
 import com.cgvsu.render_engine.Camera;
 import com.cgvsu.render_engine.RenderManager;
+import com.cgvsu.render_engine.lighting.Material;
+import com.cgvsu.render_engine.processing.LodSet;
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rendering.FramePresenter;
 import com.cgvsu.render_engine.rendering.RenderSettings;
-import com.cgvsu.render_engine.texture.Texture;
+import com.cgvsu.render_engine.rendering.UnifiedRenderer;
 import javafx.scene.canvas.GraphicsContext;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+import static com.cgvsu.math.Matrix4f.multiplyMatrix4ByVector3;
+
+/**
+ * Рендер всех моделей сцены в один кадр с общим буфером глубины.
+ *
+ * У каждой модели свой Transform и свой материал. Непрозрачные модели рисуются
+ * от ближних к дальним, чтобы тест глубины отбрасывал как можно больше пикселей
+ * перекрытых моделей; полупрозрачные - после них, от дальних к ближним.
+ * Матрица модели и ограничивающая сфера кешируются и пересчитываются только
+ * при изменении Transform или вершин.
+ *
+ * Экземпляры ({@link ModelInstances}) рисуются той же геометрией без копирования:
+ * ограничивающая сфера модели общая, у экземпляра своя только матрица.
+ * Экземпляры и модели вне пирамиды видимости отбрасываются целиком.
+ *
+ * Модели из графа сцены ({@link Scene#getRoot()}) берут готовые мировые матрицы
+ * и сферы из узлов; ветка графа, сфера которой вне пирамиды, не обходится.
+ * Если у модели есть {@link LodSet}, уровень выбирается по ее радиусу на экране.
+ *
+ * Тени отбрасывают все непрозрачные модели и экземпляры, в том числе вне пирамиды камеры
+ * (из графа - только из обойденных веток), в полной детализации: иначе карта теней
+ * перестраивалась бы при каждой смене уровня детализации.
+ */
 public class SceneRenderer {
     private RenderManager renderManager;
     private Scene scene;
     private boolean showCameras = true;
 
+    private final FramePresenter framePresenter = new FramePresenter();
+    private final Frustum frustum = new Frustum();
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Map<Model, ModelBounds> boundsCache = new IdentityHashMap<>();
+    private final Map<Model, DrawItem> modelItems = new IdentityHashMap<>();
+    private final Map<ModelInstances, List<DrawItem>> instanceItems = new IdentityHashMap<>();
+    private final Map<SceneNode, DrawItem> nodeItems = new IdentityHashMap<>();
+    private int frameIndex;
+    private float pixelsPerUnitAtUnitDistance;
+    private final List<DrawItem> opaqueOrder = new ArrayList<>();
+    private final List<DrawItem> transparentOrder = new ArrayList<>();
+    private final List<Model> shadowCasters = new ArrayList<>();
+    private final List<Matrix4f> shadowCasterMatrices = new ArrayList<>();
+    private FrameBuffer frameBuffer;
+    private int culledCount;
+
     public SceneRenderer() {
         this.renderManager = new RenderManager();
         this.scene = new Scene();
@@ -25,15 +75,17 @@ public class SceneRenderer {
 
         // Получаем активную камеру
         Camera activeCamera = scene.getActiveCamera();
-        if (activeCamera == null) {
+        if (activeCamera == null || width <= 0 || height <= 0) {
             return; // Нет камер для рендеринга
         }
 
+        if (frameBuffer == null || !frameBuffer.hasSize(width, height)) {
+            frameBuffer = new FrameBuffer(width, height);
+        }
+
         // Рендерим все модели сцены
-//        for (Model model : scene.getModels()) {
-//            Texture texture = scene.getTextures().isEmpty() ? null : scene.getTextures().get(0);
-//            renderManager.render(gc, activeCamera, model, width, height, texture);
-//        }
+        renderScene(frameBuffer, activeCamera);
+        framePresenter.present(gc, frameBuffer);
 
         // Рендерим модели камер, если включено
         if (showCameras) {
@@ -41,6 +93,233 @@ public class SceneRenderer {
         }
     }
 
+    /**
+     * Рендер всех моделей сцены в буфер кадра. Не трогает JavaFX-сцену.
+     *
+     * @return false, если кадр был прерван
+     */
+    public boolean renderScene(FrameBuffer target, Camera camera) {
+        UnifiedRenderer renderer = renderManager.getRenderer();
+        prepareDrawOrder(camera, target.getHeight());
+
+        // Одна модель рисуется так, чтобы при смене только света или цвета кадр переосвещался из G-буфера
+        DrawItem single = singleItem();
+        if (single != null) {
+            return renderer.render(target, camera, single.model, single.drawModel, single.modelMatrix,
+                    single.material);
+        }
+
+        renderer.beginFrame(target, camera);
+        renderer.updateShadowMaps(shadowCasters, shadowCasterMatrices);
+
+        for (DrawItem item : opaqueOrder) {
+            if (!renderer.renderModel(target, camera, item.drawModel, item.modelMatrix, item.material, item.rigid)) {
+                return false;
+            }
+        }
+        for (DrawItem item : transparentOrder) {
+            if (!renderer.renderModel(target, camera, item.drawModel, item.modelMatrix, item.material, item.rigid)) {
+                return false;
+            }
+        }
+        renderer.endFrame(target);
+        return true;
+    }
+
+    /**
+     * Можно ли нарисовать такой кадр сцены повторным освещением G-буфера прошлого кадра
+     * (см. {@link UnifiedRenderer#canReshade})
+     */
+    public boolean canReshade(int width, int height, Camera camera, RenderSettings settings) {
+        prepareDrawOrder(camera, height);
+        DrawItem single = singleItem();
+        return single != null && renderManager.getRenderer().canReshade(width, height, camera,
+                single.drawModel, single.modelMatrix, settings, single.material.getDiffuseTexture());
+    }
+
+    /**
+     * Единственная видимая модель кадра, если она же единственная отбрасывает тени
+     */
+    private DrawItem singleItem() {
+        if (opaqueOrder.size() != 1 || !transparentOrder.isEmpty() || shadowCasters.size() != 1) {
+            return null;
+        }
+        return opaqueOrder.get(0);
+    }
+
+    /**
+     * Сколько моделей и экземпляров отброшено отсечением по пирамиде видимости в последнем кадре
+     */
+    public int getCulledCount() {
+        return culledCount;
+    }
+
+    private void prepareDrawOrder(Camera camera, int viewportHeight) {
+        RenderSettings settings = renderManager.getRenderer().getRenderSettings();
+        Vector3f cameraPosition = camera.getPosition();
+
+        // Перевод радиуса на расстоянии 1 в пиксели: (h / 2) / tan(fov / 2)
+        pixelsPerUnitAtUnitDistance = (float) (viewportHeight * 0.5 / Math.tan(camera.getFov() * 0.5));
+
+        frustum.update(Matrix4f.mul(camera.getViewMatrix(), camera.getProjectionMatrix(), viewProjection));
+
+        pruneCaches();
+
+        opaqueOrder.clear();
+        transparentOrder.clear();
+        shadowCasters.clear();
+        shadowCasterMatrices.clear();
+        culledCount = 0;
+
+        Material defaultMaterial = new Material(settings.getSolidColor());
+        frameIndex++;
+
+        for (Model model : scene.getModels()) {
+            if (isEmpty(model)) {
+                continue;
+            }
+            DrawItem item = modelItems.computeIfAbsent(model, DrawItem::new);
+            item.material = model.getMaterial() != null ? model.getMaterial() : defaultMaterial;
+            enqueue(item, model.getTransform(), boundsFor(model), cameraPosition);
+        }
+
+        for (ModelInstances instances : scene.getInstancedModels()) {
+            Model model = instances.getModel();
+            if (isEmpty(model)) {
+                continue;
+            }
+
+            ModelBounds bounds = boundsFor(model);
+            Material material = instances.getMaterial() != null ? instances.getMaterial() : defaultMaterial;
+            List<Transform> transforms = instances.getTransforms();
+            List<DrawItem> items = instanceItems.computeIfAbsent(instances, key -> new ArrayList<>());
+
+            while (items.size() < transforms.size()) {
+                items.add(new DrawItem(model));
+            }
+            while (items.size() > transforms.size()) {
+                items.remove(items.size() - 1);
+            }
+
+            for (int i = 0; i < transforms.size(); i++) {
+                DrawItem item = items.get(i);
+                item.material = material;
+                enqueue(item, transforms.get(i), bounds, cameraPosition);
+            }
+        }
+
+        SceneNode root = scene.getRoot();
+        root.updateWorld();
+        collectNodes(root, defaultMaterial, cameraPosition);
+
+        opaqueOrder.sort(Comparator.comparingDouble(item -> item.depth));
+        transparentOrder.sort(Comparator.comparingDouble(item -> -item.depth));
+    }
+
+    /**
+     * Обход графа сцены с отсечением целых веток по сфере поддерева
+     */
+    private void collectNodes(SceneNode node, Material defaultMaterial, Vector3f cameraPosition) {
+        if (node.getSubtreeRadius() < 0) {
+            return;
+        }
+        if (!frustum.intersectsSphere(node.getSubtreeCenter(), node.getSubtreeRadius())) {
+            culledCount++;
+            return;
+        }
+
+        Model model = node.getModel();
+        if (!isEmpty(model) && node.getBoundsRadius() >= 0) {
+            DrawItem item = nodeItems.computeIfAbsent(node, key -> new DrawItem(model));
+            if (item.model != model) {
+                item = new DrawItem(model);
+                nodeItems.put(node, item);
+            }
+            item.material = model.getMaterial() != null ? model.getMaterial() : defaultMaterial;
+            item.updateFromNode(node);
+            item.lastUsedFrame = frameIndex;
+            enqueueVisible(item, cameraPosition);
+        }
+
+        for (SceneNode child : node.getChildren()) {
+            collectNodes(child, defaultMaterial, cameraPosition);
+        }
+    }
+
+    private void enqueue(DrawItem item, Transform transform, ModelBounds bounds, Vector3f cameraPosition) {
+        item.update(transform, bounds);
+        enqueueVisible(item, cameraPosition);
+    }
+
+    private void enqueueVisible(DrawItem item, Vector3f cameraPosition) {
+        boolean opaque = item.material.getBaseColor().getOpacity() >= 1.0;
+        if (opaque) {
+            shadowCasters.add(item.model);
+            shadowCasterMatrices.add(item.modelMatrix);
+        }
+        if (!frustum.intersectsSphere(item.worldCenter, item.worldRadius)) {
+            culledCount++;
+            return;
+        }
+
+        // Расстояние до ближайшей точки ограничивающей сферы
+        float distance = (float) item.worldCenter.distance(cameraPosition);
+        item.depth = distance - item.worldRadius;
+        item.drawModel = selectLod(item, distance);
+
+        if (opaque) {
+            opaqueOrder.add(item);
+        } else {
+            transparentOrder.add(item);
+        }
+    }
+
+    /**
+     * Уровень детализации по радиусу ограничивающей сферы на экране
+     */
+    private Model selectLod(DrawItem item, float distance) {
+        LodSet lodSet = item.model.getLodSet();
+        if (lodSet == null || distance <= item.worldRadius) {
+            return item.model;
+        }
+        float screenRadius = item.worldRadius * pixelsPerUnitAtUnitDistance / distance;
+        return lodSet.select(screenRadius);
+    }
+
+    private ModelBounds boundsFor(Model model) {
+        ModelBounds bounds = boundsCache.computeIfAbsent(model, ModelBounds::new);
+        bounds.update();
+        return bounds;
+    }
+
+    private void pruneCaches() {
+        List<Model> models = scene.getModels();
+        List<ModelInstances> instancedModels = scene.getInstancedModels();
+
+        // Состояния удаленных из сцены моделей больше не нужны
+        if (modelItems.size() > models.size()) {
+            modelItems.keySet().retainAll(new ArrayList<>(models));
+        }
+        if (instanceItems.size() > instancedModels.size()) {
+            instanceItems.keySet().retainAll(new ArrayList<>(instancedModels));
+        }
+        if (boundsCache.size() > modelItems.size() + instanceItems.size()) {
+            List<Model> used = new ArrayList<>(models);
+            for (ModelInstances instances : instancedModels) {
+                used.add(instances.getModel());
+            }
+            boundsCache.keySet().retainAll(used);
+        }
+        // Узлы, не попавшие в кадр давно (удалены из графа или долго вне экрана)
+        if (frameIndex % 64 == 0) {
+            nodeItems.values().removeIf(item -> frameIndex - item.lastUsedFrame > 64);
+        }
+    }
+
+    private static boolean isEmpty(Model model) {
+        return model == null || model.getVertices() == null || model.getVertices().isEmpty();
+    }
+
     private void renderCameraModels(GraphicsContext gc, Camera activeCamera, int width, int height) {
         // Получаем все камеры кроме активной
         for (int i = 0; i < scene.getCameras().size(); i++) {
@@ -52,6 +331,79 @@ public class SceneRenderer {
         }
     }
 
+    /**
+     * Закешированное между кадрами состояние одной отрисовки: модели или экземпляра
+     */
+    private static final class DrawItem {
+        private final Model model;
+        // Модель для текущего кадра: исходная или ее уровень детализации
+        private Model drawModel;
+
+        // Transform и его версия, по которым построена матрица
+        private Transform transform;
+        private long transformVersion = -1;
+        private long nodeVersion = -1;
+        private Matrix4f modelMatrix;
+        private boolean rigid;
+        private float maxScale;
+        private int boundsVersion = -1;
+
+        private Vector3f worldCenter;
+        private float worldRadius;
+        private Material material;
+        private float depth;
+        private int lastUsedFrame;
+
+        DrawItem(Model model) {
+            this.model = model;
+        }
+
+        void update(Transform transform, ModelBounds bounds) {
+            boolean matrixChanged = updateModelMatrix(transform);
+
+            if (matrixChanged || boundsVersion != bounds.getVersion()) {
+                worldCenter = multiplyMatrix4ByVector3(modelMatrix, bounds.getCenter());
+                worldRadius = bounds.getRadius() * maxScale;
+                boundsVersion = bounds.getVersion();
+            }
+        }
+
+        /**
+         * Матрица и сфера берутся из узла графа сцены, который уже их закешировал
+         */
+        void updateFromNode(SceneNode node) {
+            if (node.getWorldVersion() == nodeVersion) {
+                return;
+            }
+            modelMatrix = node.getWorldMatrix();
+            rigid = node.isWorldRigid();
+            worldCenter = node.getBoundsCenter();
+            worldRadius = node.getBoundsRadius();
+            nodeVersion = node.getWorldVersion();
+        }
+
+        private boolean updateModelMatrix(Transform transform) {
+            if (transform == this.transform && transform.getVersion() == transformVersion) {
+                return false;
+            }
+
+            // Transform строит матрицу для векторов-столбцов, конвейер работает с векторами-строками
+            modelMatrix = transform.getMatrix();
+            modelMatrix.transpose();
+            this.transform = transform;
+            transformVersion = transform.getVersion();
+
+            Vector3f scale = transform.getScale();
+            float sx = Math.abs(scale.getX());
+            float sy = Math.abs(scale.getY());
+            float sz = Math.abs(scale.getZ());
+            maxScale = Math.max(sx, Math.max(sy, sz));
+            // Равномерный положительный масштаб - жесткое преобразование, нормали не нужно обращать
+            rigid = scale.getX() > 0 && sx == sy && sx == sz;
+            return true;
+        }
+    }
+
     // Методы для управления сценой
     public void addModel(Model model) {
         scene.addModel(model);
@@ -78,7 +430,11 @@ public class SceneRenderer {
     }
 
     public RenderSettings getRenderSettings() {
-        return renderManager.getRenderSettings();
+        return renderManager.getRenderer().getRenderSettings();
+    }
+
+    public UnifiedRenderer getRenderer() {
+        return renderManager.getRenderer();
     }
 
 //    public void setRenderSettings(RenderSettings settings) {
@@ -88,4 +444,4 @@ public class SceneRenderer {
     public Scene getScene() {
         return scene;
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,8 @@ module com.cgvsu {
     requires javafx.fxml;
     requires vecmath;
     requires java.desktop;
+    // Векторные ядра растеризации; без --add-modules jdk.incubator.vector работают скалярные
+    requires static jdk.incubator.vector;
 
 
     opens com.cgvsu to javafx.fxml;
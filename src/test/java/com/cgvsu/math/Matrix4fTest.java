@@ -0,0 +1,172 @@
+package com.cgvsu.math;
+
+import com.cgvsu.render_engine.GraphicConveyor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class Matrix4fTest {
+
+    // Не кратно ширине вектора: проверяется и векторная часть, и хвост
+    private static final int COUNT = 1003;
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    private Matrix4f modelViewProjection;
+    private float[] x;
+    private float[] y;
+    private float[] z;
+
+    @BeforeEach
+    void setUp() {
+        Matrix4f model = GraphicConveyor.rotateScaleTranslate(1.5f, 0.8f, 1.2f, 0.3f, -0.7f, 0.2f, 0.5f, -1, 2);
+        Matrix4f view = GraphicConveyor.lookAt(new Vector3f(3, 4, 12), new Vector3f(0, 0, 0));
+        Matrix4f projection = GraphicConveyor.perspective(1.0f, (float) WIDTH / HEIGHT, 0.1f, 100);
+        modelViewProjection = Matrix4f.mul(Matrix4f.mul(model, view, new Matrix4f()), projection, new Matrix4f());
+
+        Random random = new Random(17);
+        x = new float[COUNT];
+        y = new float[COUNT];
+        z = new float[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            x[i] = random.nextFloat() * 8 - 4;
+            y[i] = random.nextFloat() * 8 - 4;
+            z[i] = random.nextFloat() * 8 - 4;
+        }
+    }
+
+    @Test
+    void testScalarTransformPointsMatchesTransformPoint() {
+        float[] outX = new float[COUNT], outY = new float[COUNT], outZ = new float[COUNT];
+        new ScalarBatchTransforms().transformPoints(modelViewProjection, x, y, z, outX, outY, outZ, 0, COUNT);
+
+        Vector3f expected = new Vector3f();
+        for (int i = 0; i < COUNT; i++) {
+            modelViewProjection.transformPoint(x[i], y[i], z[i], expected);
+            assertEquals(expected.getX(), outX[i]);
+            assertEquals(expected.getY(), outY[i]);
+            assertEquals(expected.getZ(), outZ[i]);
+        }
+    }
+
+    @Test
+    void testScalarProjectPointsMatchesVertexToPoint() {
+        float[] screenX = new float[COUNT], screenY = new float[COUNT], depth = new float[COUNT];
+        new ScalarBatchTransforms().projectPoints(modelViewProjection, x, y, z,
+                screenX, screenY, depth, 0, COUNT, WIDTH, HEIGHT);
+
+        for (int i = 0; i < COUNT; i++) {
+            Vector3f vertex = Matrix4f.multiplyMatrix4ByVector3(modelViewProjection, new Vector3f(x[i], y[i], z[i]));
+            javax.vecmath.Point2f point = Matrix4f.vertexToPoint(vertex, WIDTH, HEIGHT);
+            assertEquals(point.x, screenX[i]);
+            assertEquals(point.y, screenY[i]);
+            assertEquals(vertex.getZ(), depth[i]);
+        }
+    }
+
+    @Test
+    void testVectorTransformPointsMatchesScalar() {
+        assumeTrue(Matrix4f.isBatchVectorized());
+        float[] expectedX = new float[COUNT], expectedY = new float[COUNT], expectedZ = new float[COUNT];
+        new ScalarBatchTransforms().transformPoints(modelViewProjection, x, y, z,
+                expectedX, expectedY, expectedZ, 0, COUNT);
+
+        float[] outX = new float[COUNT], outY = new float[COUNT], outZ = new float[COUNT];
+        modelViewProjection.transformPoints(x, y, z, outX, outY, outZ, COUNT);
+
+        assertArrayEquals(expectedX, outX);
+        assertArrayEquals(expectedY, outY);
+        assertArrayEquals(expectedZ, outZ);
+    }
+
+    @Test
+    void testVectorProjectPointsMatchesScalar() {
+        assumeTrue(Matrix4f.isBatchVectorized());
+        float[] expectedX = new float[COUNT], expectedY = new float[COUNT], expectedDepth = new float[COUNT];
+        new ScalarBatchTransforms().projectPoints(modelViewProjection, x, y, z,
+                expectedX, expectedY, expectedDepth, 0, COUNT, WIDTH, HEIGHT);
+
+        float[] screenX = new float[COUNT], screenY = new float[COUNT], depth = new float[COUNT];
+        modelViewProjection.projectPoints(x, y, z, screenX, screenY, depth, COUNT, WIDTH, HEIGHT);
+
+        assertArrayEquals(expectedX, screenX);
+        assertArrayEquals(expectedY, screenY);
+        assertArrayEquals(expectedDepth, depth);
+    }
+
+    @Test
+    void testTransformPoints_OutputMayAliasInput() {
+        float[] expectedX = new float[COUNT], expectedY = new float[COUNT], expectedZ = new float[COUNT];
+        modelViewProjection.transformPoints(x, y, z, expectedX, expectedY, expectedZ, COUNT);
+
+        modelViewProjection.transformPoints(x, y, z, x, y, z, COUNT);
+
+        assertArrayEquals(expectedX, x);
+        assertArrayEquals(expectedY, y);
+        assertArrayEquals(expectedZ, z);
+    }
+
+    @Test
+    void testMul_DestMayAliasOperand() {
+        Matrix4f other = GraphicConveyor.rotateScaleTranslate(0.5f, 2, 1, -0.4f, 0.9f, 1.3f, 3, 0, -2);
+        Matrix4f expected = Matrix4f.mul(modelViewProjection, other, new Matrix4f());
+
+        // dest = a
+        Matrix4f a = new Matrix4f(modelViewProjection);
+        assertSame(a, Matrix4f.mul(a, other, a));
+        assertMatrix(expected, a);
+
+        // dest = b
+        Matrix4f b = new Matrix4f(other);
+        assertSame(b, Matrix4f.mul(modelViewProjection, b, b));
+        assertMatrix(expected, b);
+
+        // a = b = dest: квадрат матрицы
+        Matrix4f square = Matrix4f.mul(other, other, new Matrix4f());
+        Matrix4f same = new Matrix4f(other);
+        Matrix4f.mul(same, same, same);
+        assertMatrix(square, same);
+    }
+
+    @Test
+    void testMul_MatchesMultiply() {
+        Matrix4f other = GraphicConveyor.rotateScaleTranslate(0.5f, 2, 1, -0.4f, 0.9f, 1.3f, 3, 0, -2);
+        Matrix4f expected = new Matrix4f(modelViewProjection);
+        expected.multiply(other);
+
+        assertMatrix(expected, Matrix4f.mul(modelViewProjection, other, new Matrix4f()));
+    }
+
+    @Test
+    void testSet_CopiesMatrix() {
+        Matrix4f copy = new Matrix4f();
+        assertSame(copy, copy.set(modelViewProjection));
+        assertMatrix(modelViewProjection, copy);
+        assertThrows(IllegalArgumentException.class, () -> copy.set((Matrix4f) null));
+    }
+
+    @Test
+    void testBatch_InvalidArguments() {
+        float[] out = new float[COUNT];
+        assertThrows(IllegalArgumentException.class,
+                () -> modelViewProjection.transformPoints(x, y, z, out, out, out, -1));
+        assertThrows(IllegalArgumentException.class,
+                () -> modelViewProjection.transformPoints(x, y, null, out, out, out, COUNT));
+        assertThrows(IllegalArgumentException.class,
+                () -> modelViewProjection.transformPoints(x, y, z, out, out, new float[1], COUNT));
+        assertThrows(IllegalArgumentException.class,
+                () -> modelViewProjection.projectPoints(x, y, z, out, out, out, COUNT, 0, HEIGHT));
+    }
+
+    private static void assertMatrix(Matrix4f expected, Matrix4f actual) {
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                assertEquals(expected.get(row, col), actual.get(row, col), "[" + row + "][" + col + "]");
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.cgvsu.math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Vector3fTest {
+
+    @Test
+    void testNormalizeInto_ZeroVectorCopiedAsIs() {
+        Vector3f zero = new Vector3f(0, 0, 0);
+        Vector3f dest = new Vector3f(5, 6, 7);
+
+        assertSame(dest, zero.normalizeInto(dest));
+        assertEquals(0.0f, dest.getX());
+        assertEquals(0.0f, dest.getY());
+        assertEquals(0.0f, dest.getZ());
+        // normalize() для того же вектора - ошибка
+        assertThrows(ArithmeticException.class, zero::normalize);
+    }
+
+    @Test
+    void testNormalizeInto_IntoThis() {
+        Vector3f v = new Vector3f(3, 0, 4);
+
+        assertSame(v, v.normalizeInto(v));
+        assertEquals(0.6f, v.getX(), 1e-6f);
+        assertEquals(0.0f, v.getY(), 1e-6f);
+        assertEquals(0.8f, v.getZ(), 1e-6f);
+    }
+
+    @Test
+    void testCrossInto_IntoThis() {
+        Vector3f a = new Vector3f(1, 2, 3);
+        Vector3f b = new Vector3f(4, 5, 6);
+        Vector3f expected = a.crossInto(b, new Vector3f());
+
+        assertSame(a, a.crossInto(b, a));
+        assertVector(expected, a);
+        assertVector(new Vector3f(-3, 6, -3), a);
+
+        // Результат в other: оба множителя прочитаны до записи
+        Vector3f c = new Vector3f(1, 2, 3);
+        assertSame(b, c.crossInto(b, b));
+        assertVector(new Vector3f(-3, 6, -3), b);
+    }
+
+    @Test
+    void testSubInto_IntoThis() {
+        Vector3f a = new Vector3f(1, 2, 3);
+        Vector3f b = new Vector3f(4, 6, 8);
+
+        assertSame(a, a.subInto(b, a));
+        assertVector(new Vector3f(-3, -4, -5), a);
+
+        assertSame(b, b.subInto(b, b));
+        assertVector(new Vector3f(0, 0, 0), b);
+    }
+
+    private static void assertVector(Vector3f expected, Vector3f actual) {
+        assertEquals(expected.getX(), actual.getX());
+        assertEquals(expected.getY(), actual.getY());
+        assertEquals(expected.getZ(), actual.getZ());
+    }
+}
@@ -0,0 +1,106 @@
+package com.cgvsu.render_engine.lighting;
+
+import com.cgvsu.math.Vector3f;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LightCullingTest {
+
+    @Test
+    void testSelect_NarrowSpotCone() {
+        // Прожектор в начале координат светит вниз (против direction), угол 30, радиус 10
+        LightCulling culling = LightCulling.of(List.of(spot(new Vector3f(0, 0, 0), new Vector3f(0, 1, 0), 30, 10)));
+
+        assertTrue(selected(culling, 0, -5, 0));
+        assertTrue(selected(culling, 2, -8, 1));
+        // Позади прожектора, сбоку от конуса и дальше радиуса
+        assertFalse(selected(culling, 0, 5, 0));
+        assertFalse(selected(culling, 8, -1, 0));
+        assertFalse(selected(culling, 0, -20, 0));
+    }
+
+    @Test
+    void testSelect_WideSpotCone() {
+        LightCulling culling = LightCulling.of(List.of(spot(new Vector3f(0, 0, 0), new Vector3f(0, 1, 0), 80, 10)));
+
+        // 77.5 градусов от оси, внутри радиуса
+        assertTrue(selected(culling, 9, -2, 0));
+        assertTrue(selected(culling, 0, -9.9f, 0));
+        assertFalse(selected(culling, 0, 9, 0));
+        assertFalse(selected(culling, 0, -12, 0));
+    }
+
+    @Test
+    void testSelect_KeepsEveryLitPoint() {
+        List<LightSource> lights = new ArrayList<>();
+        Random random = new Random(5);
+        for (float angle : new float[]{5, 30, 45, 60, 89}) {
+            Vector3f direction = new Vector3f(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            lights.add(spot(new Vector3f(random.nextFloat() * 4 - 2, random.nextFloat() * 4 - 2, 0), direction, angle, 6));
+        }
+        LightCulling culling = LightCulling.of(lights);
+
+        int[] indices = new int[lights.size()];
+        int culled = 0;
+        for (int sample = 0; sample < 20000; sample++) {
+            float x = random.nextFloat() * 16 - 8, y = random.nextFloat() * 16 - 8, z = random.nextFloat() * 16 - 8;
+            int count = culling.select(x, y, z, x, y, z, indices);
+            for (int i = 0; i < lights.size(); i++) {
+                LightSource light = lights.get(i);
+                Vector3f position = light.getPosition();
+                float dx = x - position.getX(), dy = y - position.getY(), dz = z - position.getZ();
+                float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+                boolean lit = distance <= light.getRange() && light.getSpotFactor(dx, dy, dz) > 0;
+                int lightIndex = i;
+                if (lit) {
+                    assertTrue(Arrays.stream(indices, 0, count).anyMatch(index -> index == lightIndex),
+                            "light " + i + " culled at " + x + ", " + y + ", " + z);
+                }
+            }
+            culled += lights.size() - count;
+        }
+        assertTrue(culled > 0);
+    }
+
+    @Test
+    void testSelect_PointAndDirectionalLights() {
+        LightSource point = new LightSource(LightSource.LightType.POINT, new Vector3f(5, 0, 0), new Vector3f(0, -1, 0),
+                Color.WHITE, 1.0f);
+        point.setRange(3);
+        LightSource directional = new LightSource(LightSource.LightType.DIRECTIONAL, new Vector3f(0, 0, 0),
+                new Vector3f(0, -1, 0), Color.WHITE, 1.0f);
+        LightSource ambient = new LightSource(LightSource.LightType.AMBIENT, new Vector3f(0, 0, 0),
+                new Vector3f(0, -1, 0), Color.WHITE, 0.2f);
+        LightCulling culling = LightCulling.of(List.of(ambient, point, directional));
+        int[] indices = new int[2];
+
+        assertEquals(2, culling.count());
+        // Параллелепипед задевает сферу точечного источника, хотя его центр далеко
+        assertEquals(2, culling.select(-10, -1, -1, 2.5f, 1, 1, indices));
+        assertArrayEquals(new int[]{0, 1}, indices);
+        assertEquals(1, culling.select(-10, -1, -1, 1.5f, 1, 1, indices));
+        assertEquals(1, indices[0]);
+    }
+
+    private static boolean selected(LightCulling culling, float x, float y, float z) {
+        int[] indices = new int[culling.count()];
+        return culling.select(x - 0.01f, y - 0.01f, z - 0.01f, x + 0.01f, y + 0.01f, z + 0.01f, indices) > 0;
+    }
+
+    /**
+     * Прожектор светит против direction (см. LightSource.getSpotFactor)
+     */
+    private static LightSource spot(Vector3f position, Vector3f direction, float angle, float range) {
+        LightSource light = new LightSource(LightSource.LightType.SPOT, position, direction, Color.WHITE, 1.0f);
+        light.setSpotAngle(angle);
+        light.setRange(range);
+        return light;
+    }
+}
@@ -0,0 +1,181 @@
+package com.cgvsu.render_engine.lighting;
+
+import com.cgvsu.math.Vector3f;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SceneLightingTest {
+
+    private static final int SAMPLES = 20000;
+    // Быстрый режим может ошибиться на один уровень 8-битного канала (см. FastLighting)
+    private static final float CHANNEL_STEP = 1.0f / 255.0f;
+    // Темный цвет: фоновая часть прибавляется от каждого источника, светлый цвет уходит в насыщение
+    private static final float BASE_R = 0.3f, BASE_G = 0.25f, BASE_B = 0.2f;
+
+    private SceneLighting lighting;
+    private Material material;
+    private float[] px, py, pz;
+    private float[] nx, ny, nz;
+    private final Vector3f viewDirection = new Vector3f(0.1f, -0.2f, -1.0f);
+
+    @BeforeEach
+    void setUp() {
+        // Фоновый и направленный источники по умолчанию плюс точечные и прожекторы
+        lighting = new SceneLighting();
+        lighting.addLight(point(new Vector3f(2, 1, 0), Color.ORANGE, 0.9f, 6));
+        lighting.addLight(point(new Vector3f(-3, 2, 1), Color.LIGHTBLUE, 0.7f, 4));
+        lighting.addLight(point(new Vector3f(0, -2, 3), Color.WHITE, 0.5f, 30));
+        lighting.addLight(spot(new Vector3f(0, 4, 0), new Vector3f(0, 1, 0), 30, Color.YELLOW, 1.0f, 8));
+        lighting.addLight(spot(new Vector3f(-4, 0, -4), new Vector3f(-1, 0, -1), 60, Color.PINK, 0.8f, 10));
+
+        material = new Material();
+
+        // Точки в кубе [-5, 5]^3 со случайными нормалями
+        Random random = new Random(11);
+        px = new float[SAMPLES];
+        py = new float[SAMPLES];
+        pz = new float[SAMPLES];
+        nx = new float[SAMPLES];
+        ny = new float[SAMPLES];
+        nz = new float[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            px[i] = random.nextFloat() * 10 - 5;
+            py[i] = random.nextFloat() * 10 - 5;
+            pz[i] = random.nextFloat() * 10 - 5;
+            nx[i] = (float) random.nextGaussian();
+            ny[i] = (float) random.nextGaussian();
+            nz[i] = (float) random.nextGaussian();
+        }
+    }
+
+    @Test
+    void testFastMath_MatchesExactWithinOneLevel() {
+        // Ошибка таблицы блика растет с блеском
+        for (float shininess : new float[]{8, 64, 256}) {
+            material.setShininess(shininess);
+            float[][] exact = shadeSamples(false);
+            float[][] fast = shadeSamples(true);
+
+            for (int i = 0; i < SAMPLES; i++) {
+                for (int c = 0; c < 3; c++) {
+                    assertEquals(exact[i][c], fast[i][c], CHANNEL_STEP,
+                            "shininess " + shininess + " sample " + i + " channel " + c);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testFastMath_UsesSnapshotUntilRefreshed() {
+        // Вне радиусов точечных источников и прожекторов, нормаль навстречу направленному
+        Vector3f position = new Vector3f(20, -20, 20);
+        Vector3f normal = new Vector3f(1, 1, 1);
+        float[] snapshot = new float[3];
+        float[] refreshed = new float[3];
+        lighting.setFastMath(true);
+        lighting.calculateLighting(material, position, normal, viewDirection, BASE_R, BASE_G, BASE_B, snapshot);
+
+        lighting.getLights().get(0).setIntensity(0);
+        float[] stale = new float[3];
+        lighting.calculateLighting(material, position, normal, viewDirection, BASE_R, BASE_G, BASE_B, stale);
+        lighting.setFastMath(true);
+        lighting.calculateLighting(material, position, normal, viewDirection, BASE_R, BASE_G, BASE_B, refreshed);
+
+        assertArrayEquals(snapshot, stale);
+        assertTrue(refreshed[0] < snapshot[0]);
+    }
+
+    @Test
+    void testLightCulling_MatchesAllLights() {
+        int[] indices = new int[lighting.getLights().size()];
+        Vector3f position = new Vector3f();
+        Vector3f normal = new Vector3f();
+        float[] all = new float[3];
+        float[] selected = new float[3];
+        for (boolean fastMath : new boolean[]{false, true}) {
+            lighting.setFastMath(fastMath);
+            int culled = 0;
+            for (int i = 0; i < SAMPLES; i++) {
+                position.set(px[i], py[i], pz[i]);
+                normal.set(nx[i], ny[i], nz[i]);
+                lighting.setLightCulling(false);
+                lighting.calculateLighting(material, position, normal, viewDirection, BASE_R, BASE_G, BASE_B, all);
+
+                lighting.setLightCulling(true);
+                // Как у растеризатора: параллелепипед вокруг треугольника, в котором лежит точка
+                int count = lighting.selectLights(px[i] - 0.2f, py[i] - 0.2f, pz[i] - 0.2f,
+                        px[i] + 0.2f, py[i] + 0.2f, pz[i] + 0.2f, indices);
+                culled += lighting.getSelectableLightCount() - count;
+                lighting.calculateLighting(material, position, normal, viewDirection, BASE_R, BASE_G, BASE_B,
+                        indices, count, selected);
+
+                // Отличие только в порядке сложения
+                assertArrayEquals(all, selected, 1e-5f, "fast math " + fastMath + " sample " + i);
+            }
+            assertTrue(culled > SAMPLES, "culled " + culled);
+        }
+    }
+
+    @Test
+    void testSelectLights_DisabledCulling() {
+        lighting.setLightCulling(false);
+        assertEquals(0, lighting.getSelectableLightCount());
+        assertEquals(-1, lighting.selectLights(-1, -1, -1, 1, 1, 1, new int[0]));
+
+        lighting.setLightCulling(true);
+        assertEquals(lighting.getLights().size(), lighting.getSelectableLightCount());
+    }
+
+    @Test
+    void testShadowMaps_ShorterArrayWithCulling() {
+        // Карт меньше, чем источников: остальные источники без теней
+        lighting.setShadowMaps(new ShadowMap[1]);
+        int[] indices = new int[lighting.getLights().size()];
+        Vector3f position = new Vector3f(1, 0, 0);
+        Vector3f normal = new Vector3f(0, 1, 0);
+        float[] expected = new float[3];
+        float[] actual = new float[3];
+        lighting.calculateLighting(material, position, normal, viewDirection, BASE_R, BASE_G, BASE_B, expected);
+
+        lighting.setLightCulling(true);
+        int count = lighting.selectLights(0, -1, -1, 2, 1, 1, indices);
+        assertDoesNotThrow(() -> lighting.calculateLighting(material, position, normal, viewDirection,
+                BASE_R, BASE_G, BASE_B, indices, count, actual));
+        assertArrayEquals(expected, actual, 1e-5f);
+    }
+
+    private float[][] shadeSamples(boolean fastMath) {
+        lighting.setFastMath(fastMath);
+        Vector3f position = new Vector3f();
+        Vector3f normal = new Vector3f();
+        float[][] colors = new float[SAMPLES][3];
+        for (int i = 0; i < SAMPLES; i++) {
+            lighting.calculateLighting(material, position.set(px[i], py[i], pz[i]), normal.set(nx[i], ny[i], nz[i]),
+                    viewDirection, BASE_R, BASE_G, BASE_B, colors[i]);
+        }
+        return colors;
+    }
+
+    private static LightSource point(Vector3f position, Color color, float intensity, float range) {
+        LightSource light = new LightSource(LightSource.LightType.POINT, position, new Vector3f(0, -1, 0),
+                color, intensity);
+        light.setRange(range);
+        return light;
+    }
+
+    /**
+     * Прожектор светит против direction (см. LightSource.getSpotFactor)
+     */
+    private static LightSource spot(Vector3f position, Vector3f direction, float angle,
+                                    Color color, float intensity, float range) {
+        LightSource light = new LightSource(LightSource.LightType.SPOT, position, direction, color, intensity);
+        light.setSpotAngle(angle);
+        light.setRange(range);
+        return light;
+    }
+}
@@ -0,0 +1,77 @@
+package com.cgvsu.render_engine.lighting;
+
+import com.cgvsu.math.Vector3f;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShadowMapTest {
+
+    private static final int SIZE = 16;
+
+    private ShadowMap map;
+
+    @BeforeEach
+    void setUp() {
+        // Свет сверху на сферу радиуса 1 в начале координат: источник в (0, 1, 0), дальность 2.
+        // Строки карты идут против x, так что строки 0..7 - это x > 0.
+        map = ShadowMap.directional(new Vector3f(0, -1, 0), new Vector3f(0, 0, 0), 1, SIZE);
+        float[] depth = new float[SIZE * SIZE];
+        Arrays.fill(depth, Float.MAX_VALUE);
+        // Преграда на высоте y = 0.5 над половиной x > 0: 0.5 от источника при дальности 2
+        Arrays.fill(depth, 0, SIZE * SIZE / 2, 0.25f);
+        map.setDepth(depth);
+    }
+
+    @Test
+    void testVisibility_ShadowedAndLitSides() {
+        assertEquals(0.0f, map.visibility(0.5f, 0, 0, 0, 1, 0), 1e-6f);
+        assertEquals(1.0f, map.visibility(-0.5f, 0, 0, 0, 1, 0), 1e-6f);
+        // Над преградой тени нет
+        assertEquals(1.0f, map.visibility(0.5f, 0.75f, 0, 0, 1, 0), 1e-6f);
+        // Вне карты - освещено
+        assertEquals(1.0f, map.visibility(3, 0, 0, 0, 1, 0), 1e-6f);
+    }
+
+    @Test
+    void testVisibility_PcfSoftensEdge() {
+        // Поперек края тени доля света растет без скачков через промежуточные значения
+        float previous = 0.0f;
+        boolean partial = false;
+        for (float x = 0.5f; x >= -0.5f; x -= 0.01f) {
+            float visibility = map.visibility(x, 0, 0, 0, 1, 0);
+            assertTrue(visibility >= previous - 1e-6f, "x " + x);
+            assertTrue(visibility - previous < 0.2f, "x " + x);
+            partial |= visibility > 0.05f && visibility < 0.95f;
+            previous = visibility;
+        }
+        assertTrue(partial);
+        assertEquals(1.0f, previous, 1e-6f);
+    }
+
+    @Test
+    void testVisibility_WiderFilterWidensPenumbra() {
+        map.setFilterRadius(0);
+        int narrow = countPartial();
+        map.setFilterRadius(2);
+        int wide = countPartial();
+
+        assertTrue(narrow > 0);
+        assertTrue(wide > narrow, narrow + " vs " + wide);
+        assertThrows(IllegalArgumentException.class, () -> map.setFilterRadius(-1));
+    }
+
+    private int countPartial() {
+        int partial = 0;
+        for (float x = 0.5f; x >= -0.5f; x -= 0.01f) {
+            float visibility = map.visibility(x, 0, 0, 0, 1, 0);
+            if (visibility > 0.01f && visibility < 0.99f) {
+                partial++;
+            }
+        }
+        return partial;
+    }
+}
@@ -0,0 +1,101 @@
+package com.cgvsu.render_engine.postprocess;
+
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rasterization.ZBuffer;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DepthOutlinePassTest {
+
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 6;
+    private static final int BACKGROUND = 0xFF336699;
+    private static final int OUTLINE = 0xFFFF0000;
+
+    private PostProcessChain chain;
+    private DepthOutlinePass outline;
+    private FrameBuffer frame;
+    private ZBuffer depth;
+
+    @BeforeEach
+    void setUp() {
+        outline = new DepthOutlinePass();
+        outline.setColor(Color.RED);
+        chain = new PostProcessChain();
+        chain.addPass(outline);
+        frame = new FrameBuffer(WIDTH, HEIGHT);
+        frame.clear(BACKGROUND);
+        depth = new ZBuffer(WIDTH, HEIGHT);
+    }
+
+    @Test
+    void testOutline_OnlyAtDepthDiscontinuity() {
+        // Левая половина на глубине 0.5, правая на 0.9: до камеры 0.5 и 0.1
+        fillDepth(0, WIDTH / 2, 0.5);
+        fillDepth(WIDTH / 2, WIDTH, 0.9);
+
+        chain.process(frame, depth);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // Линия - только с ближней стороны скачка
+                int expected = x == WIDTH / 2 - 1 ? OUTLINE : BACKGROUND;
+                assertEquals(expected, frame.getArgb(x, y), x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void testOutline_SmoothSlopeAndFlatSurfaceUntouched() {
+        // Плавный наклон: соседи отличаются меньше порога
+        for (int x = 0; x < WIDTH; x++) {
+            fillDepth(x, x + 1, 0.5 + x * 0.01);
+        }
+
+        chain.process(frame, depth);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(BACKGROUND, frame.getArgb(x, y), x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void testOutline_SilhouetteAgainstEmptyPixels() {
+        // Поверхность только в квадрате 2..4 x 2..3, вокруг пусто
+        for (int y = 2; y <= 3; y++) {
+            for (int x = 2; x <= 4; x++) {
+                depth.testAndSet(x, y, 0.5);
+            }
+        }
+
+        chain.process(frame, depth);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean covered = x >= 2 && x <= 4 && y >= 2 && y <= 3;
+                // Все пиксели квадрата касаются пустого соседа
+                assertEquals(covered ? OUTLINE : BACKGROUND, frame.getArgb(x, y), x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void testOutline_WithoutDepthCopiesFrame() {
+        int[] before = frame.getPixels().clone();
+        chain.process(frame, null);
+        assertArrayEquals(before, frame.getPixels());
+    }
+
+    private void fillDepth(int fromX, int toX, double value) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = fromX; x < toX; x++) {
+                depth.testAndSet(x, y, value);
+            }
+        }
+    }
+}
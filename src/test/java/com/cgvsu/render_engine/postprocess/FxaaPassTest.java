@@ -0,0 +1,62 @@
+package com.cgvsu.render_engine.postprocess;
+
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FxaaPassTest {
+
+    private static final int SIZE = 24;
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BLACK = 0xFF000000;
+
+    @Test
+    void testFxaa_FlatImageUntouched() {
+        FrameBuffer frame = new FrameBuffer(SIZE, SIZE);
+        frame.clear(0xFF808080);
+        int[] before = frame.getPixels().clone();
+
+        process(frame);
+
+        assertArrayEquals(before, frame.getPixels());
+    }
+
+    @Test
+    void testFxaa_StaircaseEdgeBlended() {
+        // Пологая ступенчатая граница: белое выше y = x / 4
+        FrameBuffer frame = new FrameBuffer(SIZE, SIZE);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                frame.setArgb(x, y, y * 4 < x + 8 ? WHITE : BLACK);
+            }
+        }
+        int[] before = frame.getPixels().clone();
+
+        process(frame);
+
+        int blended = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int argb = frame.getArgb(x, y);
+                boolean nearEdge = Math.abs(y * 4 - (x + 8)) <= 8;
+                if (!nearEdge) {
+                    // Вдали от края пиксели не меняются
+                    assertEquals(before[y * SIZE + x], argb, x + ", " + y);
+                } else if (argb != WHITE && argb != BLACK) {
+                    blended++;
+                    // Смешение серое и непрозрачное
+                    assertEquals(0xFF, argb >>> 24);
+                    assertEquals(argb & 0xFF, (argb >> 16) & 0xFF);
+                }
+            }
+        }
+        assertTrue(blended > SIZE / 2, "blended " + blended);
+    }
+
+    private static void process(FrameBuffer frame) {
+        PostProcessChain chain = new PostProcessChain();
+        chain.addPass(new FxaaPass());
+        chain.process(frame, null);
+    }
+}
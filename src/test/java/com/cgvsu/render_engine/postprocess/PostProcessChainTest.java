@@ -0,0 +1,142 @@
+package com.cgvsu.render_engine.postprocess;
+
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rasterization.ZBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostProcessChainTest {
+
+    // Несколько полос строк по 16
+    private static final int WIDTH = 12;
+    private static final int HEIGHT = 40;
+
+    private PostProcessChain chain;
+    private FrameBuffer frame;
+
+    @BeforeEach
+    void setUp() {
+        chain = new PostProcessChain();
+        frame = new FrameBuffer(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                frame.setArgb(x, y, 0xFF000000 | (y << 8) | x);
+            }
+        }
+    }
+
+    @Test
+    void testProcess_PassesRunInOrderAndLastWritesFrame() {
+        for (int count = 1; count <= 3; count++) {
+            setUp();
+            List<RecordingPass> passes = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                RecordingPass pass = new RecordingPass(i + 1);
+                passes.add(pass);
+                chain.addPass(pass);
+            }
+
+            chain.process(frame, null);
+
+            for (int i = 0; i < count; i++) {
+                RecordingPass pass = passes.get(i);
+                assertNotSame(pass.source, pass.target, "pass " + i + " of " + count);
+                if (i > 0) {
+                    // Каждый проход читает то, что записал предыдущий
+                    assertSame(passes.get(i - 1).target, pass.source, "pass " + i + " of " + count);
+                }
+            }
+            assertSame(frame, passes.get(count - 1).target);
+            if (count > 1) {
+                assertSame(frame, passes.get(0).source);
+            }
+
+            // Проходы (x * 31 + k) mod 256 не коммутируют: порядок виден по результату
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int expected = x;
+                    for (int i = 0; i < count; i++) {
+                        expected = (expected * 31 + i + 1) & 0xFF;
+                    }
+                    assertEquals(0xFF000000 | (y << 8) | expected, frame.getArgb(x, y),
+                            count + " passes at " + x + ", " + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testProcess_DisabledPassesSkipped() {
+        RecordingPass disabled = new RecordingPass(7);
+        disabled.enabled = false;
+        chain.addPass(disabled);
+        int[] before = frame.getPixels().clone();
+
+        assertFalse(chain.isActive());
+        chain.process(frame, null);
+        assertNull(disabled.target);
+        assertArrayEquals(before, frame.getPixels());
+
+        RecordingPass enabled = new RecordingPass(1);
+        chain.addPass(enabled);
+        chain.process(frame, null);
+        assertNull(disabled.target);
+        assertSame(frame, enabled.target);
+        assertEquals(0xFF000000 | (3 << 8) | ((2 * 31 + 1) & 0xFF), frame.getArgb(2, 3));
+    }
+
+    @Test
+    void testNeedsDepth_OnlyEnabledPasses() {
+        DepthOutlinePass outline = new DepthOutlinePass();
+        chain.addPass(new ToneMappingPass());
+        assertFalse(chain.needsDepth());
+
+        chain.addPass(outline);
+        assertTrue(chain.needsDepth());
+        outline.setEnabled(false);
+        assertFalse(chain.needsDepth());
+        assertThrows(IllegalArgumentException.class, () -> chain.addPass(null));
+    }
+
+    /**
+     * Синий канал b -> (b * 31 + k) mod 256; запоминает буферы, с которыми его вызвали
+     */
+    private static final class RecordingPass implements PostProcessPass {
+        private final int k;
+        private boolean enabled = true;
+        private FrameBuffer source;
+        private FrameBuffer target;
+
+        RecordingPass(int k) {
+            this.k = k;
+        }
+
+        @Override
+        public void prepare(FrameBuffer source, ZBuffer depth) {
+            this.source = source;
+        }
+
+        @Override
+        public void apply(FrameBuffer source, FrameBuffer target, ZBuffer depth, int fromRow, int toRow) {
+            // Полоса с первой строкой одна, гонки при записи нет
+            if (fromRow == 0) {
+                this.target = target;
+            }
+            int[] src = source.getPixels();
+            int[] dst = target.getPixels();
+            for (int i = fromRow * WIDTH; i < toRow * WIDTH; i++) {
+                dst[i] = (src[i] & 0xFFFFFF00) | (((src[i] & 0xFF) * 31 + k) & 0xFF);
+            }
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+    }
+}
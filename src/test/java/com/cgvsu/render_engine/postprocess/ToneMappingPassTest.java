@@ -0,0 +1,66 @@
+package com.cgvsu.render_engine.postprocess;
+
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToneMappingPassTest {
+
+    private ToneMappingPass pass;
+    private FrameBuffer frame;
+
+    @BeforeEach
+    void setUp() {
+        pass = new ToneMappingPass();
+        frame = new FrameBuffer(4, 1);
+        frame.setArgb(0, 0, 0xFF4080FF);
+        frame.setArgb(1, 0, 0x80320000);
+        frame.setArgb(2, 0, 0x00123456);
+    }
+
+    @Test
+    void testReinhard_KnownPixel() {
+        // (x / (1 + x)) / (2 / 3) ^ (1 / 2.2): 64 -> 148, 128 -> 186, 255 -> 224
+        pass.setGamma(2.2f);
+        process();
+
+        assertEquals(0xFF94BAE0, frame.getArgb(0, 0));
+        // Нулевая альфа не меняется
+        assertEquals(0x00123456, frame.getArgb(2, 0));
+    }
+
+    @Test
+    void testLinear_ExposureAndPremultipliedAlpha() {
+        pass.setOperator(ToneMappingPass.Operator.LINEAR);
+        pass.setExposure(2.0f);
+        process();
+
+        // 64 -> 128, 128 -> 255 (обрезка), 255 -> 255
+        assertEquals(0xFF80FFFF, frame.getArgb(0, 0));
+        // Красный 50 при альфе 128: без альфы 100 -> 200, обратно 100
+        assertEquals(0x80640000, frame.getArgb(1, 0));
+    }
+
+    @Test
+    void testParametersChangeRebuildsTable() {
+        pass.setOperator(ToneMappingPass.Operator.LINEAR);
+        process();
+        assertEquals(0xFF4080FF, frame.getArgb(0, 0));
+
+        pass.setExposure(0.5f);
+        process();
+        // 64 -> 32, 128 -> 64, 255 -> 128
+        assertEquals(0xFF204080, frame.getArgb(0, 0));
+
+        assertThrows(IllegalArgumentException.class, () -> pass.setGamma(0));
+        assertThrows(IllegalArgumentException.class, () -> pass.setOperator(null));
+    }
+
+    private void process() {
+        PostProcessChain chain = new PostProcessChain();
+        chain.addPass(pass);
+        chain.process(frame, null);
+    }
+}
@@ -0,0 +1,100 @@
+package com.cgvsu.render_engine.processing;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LodSetTest {
+
+    private static final int CELLS = 20;
+    private static final float FOV = 1.0f;
+    private static final int HEIGHT = 600;
+
+    private Model grid;
+
+    @BeforeEach
+    void setUp() {
+        grid = new Triangulator().triangulateModel(grid(CELLS));
+    }
+
+    @Test
+    void testBuild_BoundsAndLevels() {
+        LodSet lodSet = LodSet.build(grid);
+
+        assertEquals(LodSet.DEFAULT_RATIOS.length, lodSet.getLevelCount());
+        assertSame(grid, lodSet.getLevel(0));
+        for (int i = 1; i < lodSet.getLevelCount(); i++) {
+            assertTrue(lodSet.getLevel(i).getPolygons().size() < lodSet.getLevel(i - 1).getPolygons().size());
+        }
+        assertEquals(10.0f, lodSet.getCenter().getX(), 1e-6f);
+        assertEquals(10.0f, lodSet.getCenter().getY(), 1e-6f);
+        assertEquals(10.0f * (float) Math.sqrt(2), lodSet.getRadius(), 1e-4f);
+    }
+
+    @Test
+    void testSelect_ByCameraDistance() {
+        LodSet lodSet = LodSet.build(grid);
+        float radius = lodSet.getRadius();
+        float pixelsPerUnit = (float) (HEIGHT * 0.5 / Math.tan(FOV * 0.5));
+
+        // Внутри сферы и близко - полная детализация, очень далеко - самый грубый уровень
+        assertSame(grid, lodSet.select(at(lodSet, 5), FOV, HEIGHT));
+        assertSame(grid, lodSet.select(at(lodSet, radius * pixelsPerUnit / 350), FOV, HEIGHT));
+        assertSame(lodSet.getLevel(3), lodSet.select(at(lodSet, 1000), FOV, HEIGHT));
+        // Радиус на экране 180 пикселей: (180 / 300)^2 = 0.36, нужна половина треугольников
+        assertSame(lodSet.getLevel(1), lodSet.select(at(lodSet, radius * pixelsPerUnit / 180), FOV, HEIGHT));
+    }
+
+    @Test
+    void testProcessModel_BuildsLodsWhenEnabled() {
+        ModelProcessor processor = new ModelProcessor();
+        assertNull(processor.processModel(grid(CELLS)).getLodSet());
+
+        processor.setBuildLods(true);
+        processor.setOptimizeVertexCache(true);
+        Model model = processor.processModel(grid(CELLS));
+
+        LodSet lodSet = model.getLodSet();
+        assertNotNull(lodSet);
+        assertSame(model, lodSet.getLevel(0));
+        assertEquals(CELLS * CELLS * 2, model.getPolygons().size());
+        assertTrue(lodSet.getLevel(lodSet.getLevelCount() - 1).getPolygons().size() < CELLS * CELLS);
+    }
+
+    /**
+     * Камера на расстоянии distance от центра сферы вдоль z
+     */
+    private static Vector3f at(LodSet lodSet, float distance) {
+        Vector3f center = lodSet.getCenter();
+        return new Vector3f(center.getX(), center.getY(), center.getZ() + distance);
+    }
+
+    /**
+     * Плоская сетка cells x cells квадратов в плоскости z = 0
+     */
+    private static Model grid(int cells) {
+        int side = cells + 1;
+        Model model = new Model();
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                model.getVertices().add(new Vector3f(x, y, (float) (Math.sin(x * 0.4) * 0.01)));
+            }
+        }
+        for (int y = 0; y < cells; y++) {
+            for (int x = 0; x < cells; x++) {
+                int v = y * side + x;
+                Polygon quad = new Polygon();
+                quad.setVertexIndices(new ArrayList<>(Arrays.asList(v, v + 1, v + side + 1, v + side)));
+                model.getPolygons().add(quad);
+            }
+        }
+        return model;
+    }
+}
@@ -0,0 +1,126 @@
+package com.cgvsu.render_engine.processing;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeshSimplifierTest {
+
+    private static final int CELLS = 20;
+
+    private MeshSimplifier simplifier;
+    private Model grid;
+
+    @BeforeEach
+    void setUp() {
+        simplifier = new MeshSimplifier();
+        grid = heightField(CELLS);
+    }
+
+    @Test
+    void testSimplify_ReachesTargetTriangleCount() {
+        // Квадраты сначала делятся на треугольники
+        int sourceTriangles = grid.getPolygons().size() * 2;
+
+        Model result = simplifier.simplify(grid, 0.25f);
+
+        int target = Math.round(sourceTriangles * 0.25f);
+        int triangles = result.getPolygons().size();
+        // Стягивание убирает один или два треугольника
+        assertTrue(triangles <= target && triangles >= target - 2, "triangles: " + triangles);
+        for (Polygon polygon : result.getPolygons()) {
+            assertEquals(3, polygon.getVertexIndices().size());
+            for (int index : polygon.getVertexIndices()) {
+                assertTrue(index >= 0 && index < result.getVertices().size());
+            }
+        }
+        assertTrue(result.getVertices().size() < grid.getVertices().size());
+    }
+
+    @Test
+    void testSimplify_NoFlippedTriangles() {
+        Model result = simplifier.simplify(grid, 0.1f);
+
+        // Поверхность z = f(x, y): все треугольники смотрят вверх
+        for (Polygon polygon : result.getPolygons()) {
+            Vector3f a = result.getVertices().get(polygon.getVertexIndices().get(0));
+            Vector3f b = result.getVertices().get(polygon.getVertexIndices().get(1));
+            Vector3f c = result.getVertices().get(polygon.getVertexIndices().get(2));
+            float normalZ = (b.getX() - a.getX()) * (c.getY() - a.getY())
+                    - (b.getY() - a.getY()) * (c.getX() - a.getX());
+            assertTrue(normalZ > 0, "flipped triangle " + polygon.getVertexIndices());
+        }
+    }
+
+    @Test
+    void testSimplify_KeepsBoundaryAndCornerAttributes() {
+        Model result = simplifier.simplify(grid, 0.25f);
+
+        float minX = Float.MAX_VALUE, maxX = -Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (Vector3f v : result.getVertices()) {
+            minX = Math.min(minX, v.getX());
+            maxX = Math.max(maxX, v.getX());
+            minY = Math.min(minY, v.getY());
+            maxY = Math.max(maxY, v.getY());
+        }
+        // Границу держат плоскости с большим весом, сдвиг - доли клетки
+        assertEquals(0, minX, 0.05);
+        assertEquals(CELLS, maxX, 0.05);
+        assertEquals(0, minY, 0.05);
+        assertEquals(CELLS, maxY, 0.05);
+
+        assertEquals(grid.getTextureVertices().size(), result.getTextureVertices().size());
+        for (Polygon polygon : result.getPolygons()) {
+            assertEquals(3, polygon.getTextureVertexIndices().size());
+        }
+    }
+
+    @Test
+    void testSimplify_FullRatioKeepsMesh() {
+        Model result = simplifier.simplify(grid, 1.0f);
+
+        assertEquals(grid.getPolygons().size() * 2, result.getPolygons().size());
+        assertEquals(grid.getVertices().size(), result.getVertices().size());
+    }
+
+    @Test
+    void testSimplify_InvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> simplifier.simplify(null, 0.5f));
+        assertThrows(IllegalArgumentException.class, () -> simplifier.simplify(grid, 0.0f));
+        assertThrows(IllegalArgumentException.class, () -> simplifier.simplify(grid, 1.5f));
+    }
+
+    /**
+     * Сетка cells x cells квадратов с плавным рельефом, UV по вершинам
+     */
+    private static Model heightField(int cells) {
+        int side = cells + 1;
+        Model model = new Model();
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                float z = (float) (Math.sin(x * 0.4) * Math.cos(y * 0.3));
+                model.getVertices().add(new Vector3f(x, y, z));
+                model.getTextureVertices().add(new Vector2f(x / (float) cells, y / (float) cells));
+            }
+        }
+        for (int y = 0; y < cells; y++) {
+            for (int x = 0; x < cells; x++) {
+                int v = y * side + x;
+                Polygon quad = new Polygon();
+                quad.setVertexIndices(new ArrayList<>(Arrays.asList(v, v + 1, v + side + 1, v + side)));
+                quad.setTextureVertexIndices(new ArrayList<>(Arrays.asList(v, v + 1, v + side + 1, v + side)));
+                model.getPolygons().add(quad);
+            }
+        }
+        return model;
+    }
+}
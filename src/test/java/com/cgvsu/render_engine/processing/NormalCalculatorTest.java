@@ -0,0 +1,212 @@
+package com.cgvsu.render_engine.processing;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NormalCalculatorTest {
+
+    private static final float EPS = 1e-4f;
+
+    @Test
+    void testUnitGrid_TinyFacesAreNotDegenerate() {
+        // Сетка 1000x1000 квадратов в единичном квадрате: грани площадью 1e-6
+        int cells = 1000;
+        int side = cells + 1;
+        float[] positions = new float[side * side * 3];
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                int v = (y * side + x) * 3;
+                positions[v] = x / (float) cells;
+                positions[v + 1] = y / (float) cells;
+            }
+        }
+        int[] cornerOffsets = new int[cells * cells + 1];
+        int[] cornerVertices = new int[cells * cells * 4];
+        for (int y = 0; y < cells; y++) {
+            for (int x = 0; x < cells; x++) {
+                int p = y * cells + x;
+                int v = y * side + x;
+                cornerOffsets[p + 1] = cornerOffsets[p] + 4;
+                cornerVertices[p * 4] = v;
+                cornerVertices[p * 4 + 1] = v + 1;
+                cornerVertices[p * 4 + 2] = v + side + 1;
+                cornerVertices[p * 4 + 3] = v + side;
+            }
+        }
+
+        NormalCalculator.FlatNormals result = NormalCalculator.computeNormals(positions, cornerOffsets,
+                cornerVertices, NormalCalculator.Weighting.AREA, NormalCalculator.SMOOTH_ALL);
+
+        assertEquals(side * side * 3, result.normals.length);
+        for (int v = 0; v < side * side; v++) {
+            assertNormal(0, 0, 1, result.normals, v);
+        }
+    }
+
+    @Test
+    void testNewellNormal_ConcavePolygonWithCollinearStart() {
+        // L-образный шестиугольник, первые три вершины на одной прямой
+        Model model = model(new float[][]{
+                {0, 0, 0}, {1, 0, 0}, {2, 0, 0}, {2, 1, 0}, {1, 1, 0}, {1, 2, 0}, {0, 2, 0}
+        }, new int[][]{{0, 1, 2, 3, 4, 5, 6}});
+        // Поворот плоскости: (x, y, z) -> (x, z, -y), нормаль +z переходит в +y
+        for (Vector3f v : model.getVertices()) {
+            float y = v.getY();
+            v.setY(v.getZ());
+            v.setZ(-y);
+        }
+
+        NormalCalculator.recalculateNormals(model);
+
+        assertEquals(7, model.getNormals().size());
+        for (Vector3f normal : model.getNormals()) {
+            assertNormal(0, 1, 0, normal);
+        }
+        assertEquals(model.getPolygons().get(0).getVertexIndices(), model.getPolygons().get(0).getNormalIndices());
+    }
+
+    @Test
+    void testWeighting_AreaVersusAngle() {
+        // Вершина 0 - общий прямой угол большой грани (+z, площадь 50) и маленькой (+x, площадь 0.5)
+        float[] positions = {
+                0, 0, 0,
+                10, 0, 0,
+                0, 10, 0,
+                0, 1, 0,
+                0, 0, 1
+        };
+        int[] cornerOffsets = {0, 3, 6};
+        int[] cornerVertices = {0, 1, 2, 0, 3, 4};
+
+        NormalCalculator.FlatNormals area = NormalCalculator.computeNormals(positions, cornerOffsets,
+                cornerVertices, NormalCalculator.Weighting.AREA, NormalCalculator.SMOOTH_ALL);
+        NormalCalculator.FlatNormals angle = NormalCalculator.computeNormals(positions, cornerOffsets,
+                cornerVertices, NormalCalculator.Weighting.ANGLE, NormalCalculator.SMOOTH_ALL);
+        NormalCalculator.FlatNormals uniform = NormalCalculator.computeNormals(positions, cornerOffsets,
+                cornerVertices, NormalCalculator.Weighting.UNIFORM, NormalCalculator.SMOOTH_ALL);
+
+        float areaLength = (float) Math.sqrt(0.5 * 0.5 + 50 * 50);
+        assertNormal(0.5f / areaLength, 0, 50 / areaLength, area.normals, 0);
+        float half = (float) Math.sqrt(0.5);
+        assertNormal(half, 0, half, angle.normals, 0);
+        assertNormal(half, 0, half, uniform.normals, 0);
+        // Вершины одной грани получают ее нормаль при любом весе
+        assertNormal(0, 0, 1, area.normals, 1);
+        assertNormal(1, 0, 0, angle.normals, 4);
+    }
+
+    @Test
+    void testCreaseAngle_CubeKeepsHardEdges() {
+        Model cube = cube();
+
+        NormalCalculator.recalculateNormals(cube, NormalCalculator.Weighting.AREA, 30.0f);
+
+        assertEquals(24, cube.getNormals().size());
+        float[][] faceNormals = {{0, 0, -1}, {0, 0, 1}, {0, -1, 0}, {0, 1, 0}, {-1, 0, 0}, {1, 0, 0}};
+        for (int p = 0; p < cube.getPolygons().size(); p++) {
+            ArrayList<Integer> normalIndices = cube.getPolygons().get(p).getNormalIndices();
+            assertEquals(4, normalIndices.size());
+            for (int index : normalIndices) {
+                float[] n = faceNormals[p];
+                assertNormal(n[0], n[1], n[2], cube.getNormals().get(index));
+            }
+        }
+    }
+
+    @Test
+    void testSmoothAll_CubeAveragesCorners() {
+        Model cube = cube();
+
+        NormalCalculator.recalculateNormals(cube, NormalCalculator.Weighting.AREA, NormalCalculator.SMOOTH_ALL);
+
+        assertEquals(8, cube.getNormals().size());
+        float d = (float) (1 / Math.sqrt(3));
+        for (int v = 0; v < 8; v++) {
+            Vector3f p = cube.getVertices().get(v);
+            assertNormal(p.getX() * 2 * d - d, p.getY() * 2 * d - d, p.getZ() * 2 * d - d,
+                    cube.getNormals().get(v));
+        }
+    }
+
+    @Test
+    void testDegenerateFaces_AreIgnored() {
+        Model model = model(new float[][]{
+                {0, 0, 0}, {1, 0, 0}, {0, 1, 0},
+                {2, 0, 0}, {3, 0, 0},
+                {5, 5, 5}
+        }, new int[][]{
+                {0, 1, 2},
+                // Вершины на одной прямой
+                {0, 3, 4},
+                // Повтор одной вершины
+                {5, 5, 5}
+        });
+
+        NormalCalculator.recalculateNormals(model, NormalCalculator.Weighting.ANGLE, NormalCalculator.SMOOTH_ALL);
+
+        assertNormal(0, 0, 1, model.getNormals().get(0));
+        assertNormal(0, 0, 1, model.getNormals().get(1));
+        for (int v = 3; v <= 5; v++) {
+            Vector3f normal = model.getNormals().get(v);
+            assertEquals(0.0f, normal.getX());
+            assertEquals(0.0f, normal.getY());
+            assertEquals(0.0f, normal.getZ());
+        }
+    }
+
+    @Test
+    void testRecalculateNormals_NullArguments() {
+        assertThrows(IllegalArgumentException.class, () -> NormalCalculator.recalculateNormals(null));
+        assertThrows(IllegalArgumentException.class,
+                () -> NormalCalculator.recalculateNormals(new Model(), null, NormalCalculator.SMOOTH_ALL));
+    }
+
+    private static Model cube() {
+        return model(new float[][]{
+                {0, 0, 0}, {1, 0, 0}, {1, 1, 0}, {0, 1, 0},
+                {0, 0, 1}, {1, 0, 1}, {1, 1, 1}, {0, 1, 1}
+        }, new int[][]{
+                {0, 3, 2, 1},
+                {4, 5, 6, 7},
+                {0, 1, 5, 4},
+                {3, 7, 6, 2},
+                {0, 4, 7, 3},
+                {1, 2, 6, 5}
+        });
+    }
+
+    private static Model model(float[][] vertices, int[][] faces) {
+        Model model = new Model();
+        for (float[] v : vertices) {
+            model.getVertices().add(new Vector3f(v[0], v[1], v[2]));
+        }
+        for (int[] face : faces) {
+            Polygon polygon = new Polygon();
+            ArrayList<Integer> indices = new ArrayList<>();
+            for (int index : face) {
+                indices.add(index);
+            }
+            polygon.setVertexIndices(indices);
+            model.getPolygons().add(polygon);
+        }
+        return model;
+    }
+
+    private static void assertNormal(float x, float y, float z, Vector3f normal) {
+        assertNormal(x, y, z, new float[]{normal.getX(), normal.getY(), normal.getZ()}, 0);
+    }
+
+    private static void assertNormal(float x, float y, float z, float[] normals, int index) {
+        String message = "normal " + index + ": " + Arrays.toString(Arrays.copyOfRange(normals, index * 3, index * 3 + 3));
+        assertEquals(x, normals[index * 3], EPS, message);
+        assertEquals(y, normals[index * 3 + 1], EPS, message);
+        assertEquals(z, normals[index * 3 + 2], EPS, message);
+    }
+}
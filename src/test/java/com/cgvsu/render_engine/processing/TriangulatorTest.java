@@ -326,4 +326,179 @@ class TriangulatorTest {
             triangulator.triangulatePolygon(polygon, model);
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void testTriangulateIndices_ConcaveQuad() {
+        // Вершина 1 вогнутая: веер из вершины 0 дал бы вывернутый треугольник
+        Model concave = planarModel(new float[][]{{0, 0}, {2, 1}, {4, 0}, {2, 4}});
+
+        assertValidTriangulation(concave);
+    }
+
+    @Test
+    void testTriangulateIndices_LShape() {
+        // Диагональ веера из первой вершины выходит за границу L
+        Model lShape = planarModel(new float[][]{{2, 0}, {2, 1}, {1, 1}, {1, 2}, {0, 2}, {0, 0}});
+
+        assertValidTriangulation(lShape);
+    }
+
+    @Test
+    void testTriangulateIndices_ClockwiseWinding() {
+        Model clockwise = planarModel(new float[][]{{0, 0}, {0, 2}, {1, 2}, {1, 1}, {2, 1}, {2, 0}});
+
+        Triangulator.Triangulation result = assertValidTriangulation(clockwise);
+        assertTrue(signedArea(clockwise, result.vertexIndices, 0) < 0);
+    }
+
+    @Test
+    void testTriangulateIndices_VerticalPlane() {
+        // L-образная грань в плоскости x = 1: проекция на YZ
+        Model vertical = planarModel(new float[][]{{2, 0}, {2, 1}, {1, 1}, {1, 2}, {0, 2}, {0, 0}});
+        for (Vector3f v : vertical.getVertices()) {
+            v.setZ(v.getY());
+            v.setY(v.getX());
+            v.setX(1);
+        }
+
+        assertValidTriangulation(vertical);
+    }
+
+    @Test
+    void testTriangulateIndices_LargeStar() {
+        // 64 луча - 128 вершин, вогнутые вершины ищутся через сетку
+        int rays = 64;
+        float[][] points = new float[rays * 2][];
+        for (int i = 0; i < points.length; i++) {
+            double angle = Math.PI * i / rays;
+            double radius = i % 2 == 0 ? 10 : 3;
+            points[i] = new float[]{(float) (radius * Math.cos(angle)), (float) (radius * Math.sin(angle))};
+        }
+        // Начинаем с вогнутой вершины
+        float[] first = points[0];
+        System.arraycopy(points, 1, points, 0, points.length - 1);
+        points[points.length - 1] = first;
+
+        assertValidTriangulation(planarModel(points));
+    }
+
+    @Test
+    void testTriangulateIndices_CollinearVertices() {
+        // Лишние вершины на нижнем ребре и вогнутость сверху
+        Model collinear = planarModel(new float[][]{
+                {0, 0}, {1, 0}, {2, 0}, {3, 0}, {3, 2}, {2, 2}, {1.5f, 1}, {1, 2}, {0, 2}});
+
+        assertValidTriangulation(collinear);
+    }
+
+    @Test
+    void testTriangulateIndices_DegeneratePolygon() {
+        // Все вершины на одной прямой: площадь нулевая, но треугольников все равно n - 2
+        Model degenerate = planarModel(new float[][]{{0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}});
+
+        Triangulator.Triangulation result = triangulator.triangulateIndices(degenerate);
+
+        assertEquals(3, result.triangleCount);
+        for (int index : result.vertexIndices) {
+            assertTrue(index >= 0 && index < 5);
+        }
+    }
+
+    @Test
+    void testTriangulateIndices_OffsetsAndMissingAttributes() {
+        model.setVertices(new ArrayList<>());
+        for (int i = 0; i < 12; i++) {
+            model.getVertices().add(new Vector3f(Math.cos(i * Math.PI / 6), Math.sin(i * Math.PI / 6), 0));
+        }
+        Polygon triangle = new Polygon();
+        triangle.setVertexIndices(new ArrayList<>(Arrays.asList(0, 1, 2)));
+        triangle.setTextureVertexIndices(new ArrayList<>(Arrays.asList(10, 11, 12)));
+        Polygon pentagon = new Polygon();
+        pentagon.setVertexIndices(new ArrayList<>(Arrays.asList(3, 4, 5, 6, 7)));
+        pentagon.setNormalIndices(new ArrayList<>(Arrays.asList(23, 24, 25, 26, 27)));
+        Polygon quad = new Polygon();
+        quad.setVertexIndices(new ArrayList<>(Arrays.asList(8, 9, 10, 11)));
+        model.setPolygons(new ArrayList<>(Arrays.asList(triangle, pentagon, quad)));
+
+        Triangulator.Triangulation result = triangulator.triangulateIndices(model);
+
+        // Треугольники граней идут подряд: 1 + 3 + 2
+        assertEquals(6, result.triangleCount);
+        assertEquals(18, result.vertexIndices.length);
+        assertArrayEquals(new int[]{0, 1, 2}, Arrays.copyOfRange(result.vertexIndices, 0, 3));
+        assertArrayEquals(new int[]{10, 11, 12}, Arrays.copyOfRange(result.textureVertexIndices, 0, 3));
+        assertArrayEquals(new int[]{-1, -1, -1}, Arrays.copyOfRange(result.normalIndices, 0, 3));
+        for (int i = 3; i < 12; i++) {
+            int vertex = result.vertexIndices[i];
+            assertTrue(vertex >= 3 && vertex <= 7);
+            assertEquals(vertex + 20, result.normalIndices[i]);
+            assertEquals(-1, result.textureVertexIndices[i]);
+        }
+        for (int i = 12; i < 18; i++) {
+            int vertex = result.vertexIndices[i];
+            assertTrue(vertex >= 8 && vertex <= 11);
+            assertEquals(-1, result.textureVertexIndices[i]);
+            assertEquals(-1, result.normalIndices[i]);
+        }
+    }
+
+    /**
+     * Модель из одной грани в плоскости z = 0
+     */
+    private static Model planarModel(float[][] points) {
+        Model planar = new Model();
+        ArrayList<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < points.length; i++) {
+            planar.getVertices().add(new Vector3f(points[i][0], points[i][1], 0));
+            indices.add(i);
+        }
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(indices);
+        planar.getPolygons().add(polygon);
+        return planar;
+    }
+
+    /**
+     * Треугольников n - 2, все одной ориентации с гранью, и их площади в сумме дают площадь грани
+     */
+    private Triangulator.Triangulation assertValidTriangulation(Model planar) {
+        ArrayList<Integer> polygon = planar.getPolygons().get(0).getVertexIndices();
+        int[] corners = new int[polygon.size()];
+        for (int i = 0; i < corners.length; i++) {
+            corners[i] = polygon.get(i);
+        }
+        Vector3f normal = newell(planar, corners);
+        double polygonArea = normal.length() / 2;
+
+        Triangulator.Triangulation result = triangulator.triangulateIndices(planar);
+
+        assertEquals(corners.length - 2, result.triangleCount);
+        double sum = 0;
+        for (int t = 0; t < result.triangleCount; t++) {
+            int[] triangle = Arrays.copyOfRange(result.vertexIndices, t * 3, t * 3 + 3);
+            Vector3f triangleNormal = newell(planar, triangle);
+            double area = (triangleNormal.getX() * normal.getX() + triangleNormal.getY() * normal.getY()
+                    + triangleNormal.getZ() * normal.getZ()) / normal.length() / 2;
+            assertTrue(area >= -1e-6, "flipped triangle " + Arrays.toString(triangle));
+            sum += area;
+        }
+        assertEquals(polygonArea, sum, 1e-4 * Math.max(1, polygonArea));
+        return result;
+    }
+
+    private static double signedArea(Model planar, int[] triangles, int triangle) {
+        return newell(planar, Arrays.copyOfRange(triangles, triangle * 3, triangle * 3 + 3)).getZ() / 2;
+    }
+
+    private static Vector3f newell(Model planar, int[] corners) {
+        double x = 0, y = 0, z = 0;
+        for (int k = 0; k < corners.length; k++) {
+            Vector3f a = planar.getVertices().get(corners[k]);
+            Vector3f b = planar.getVertices().get(corners[(k + 1) % corners.length]);
+            x += (double) (a.getY() - b.getY()) * (a.getZ() + b.getZ());
+            y += (double) (a.getZ() - b.getZ()) * (a.getX() + b.getX());
+            z += (double) (a.getX() - b.getX()) * (a.getY() + b.getY());
+        }
+        return new Vector3f(x, y, z);
+    }
+}
@@ -0,0 +1,157 @@
+package com.cgvsu.render_engine.processing;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VertexCacheOptimizerTest {
+
+    private static final int CELLS = 40;
+
+    @Test
+    void testOptimize_ShuffledGridLowersAcmr() {
+        Model model = shuffledGrid(CELLS, 42);
+
+        VertexCacheOptimizer.CacheReport report = new VertexCacheOptimizer().optimize(model);
+
+        assertEquals(CELLS * CELLS * 2, report.getTriangleCount());
+        assertTrue(report.getAcmrBefore() > 2.0f, "before: " + report.getAcmrBefore());
+        assertTrue(report.getAcmrAfter() < 0.8f, "after: " + report.getAcmrAfter());
+        assertEquals(VertexCacheOptimizer.computeAcmr(indices(model)), report.getAcmrAfter(), 1e-6f);
+    }
+
+    @Test
+    void testOptimize_KeepsTriangleSet() {
+        Model model = shuffledGrid(CELLS, 7);
+        List<String> before = triangleKeys(model);
+
+        new VertexCacheOptimizer().optimize(model);
+
+        List<String> after = triangleKeys(model);
+        assertEquals(before.size(), after.size());
+        Collections.sort(before);
+        Collections.sort(after);
+        assertEquals(before, after);
+    }
+
+    @Test
+    void testOptimize_VerticesInFirstUseOrder() {
+        Model model = shuffledGrid(CELLS, 3);
+
+        new VertexCacheOptimizer().optimize(model);
+
+        int next = 0;
+        for (int index : indices(model)) {
+            assertTrue(index <= next, "vertex " + index + " used before " + next);
+            if (index == next) {
+                next++;
+            }
+        }
+        assertEquals(model.getVertices().size(), next);
+    }
+
+    @Test
+    void testComputeAcmr() {
+        assertEquals(0.0f, VertexCacheOptimizer.computeAcmr(new int[0]));
+        assertEquals(3.0f, VertexCacheOptimizer.computeAcmr(new int[]{0, 1, 2}));
+        // Второй треугольник приносит одну новую вершину
+        assertEquals(2.0f, VertexCacheOptimizer.computeAcmr(new int[]{0, 1, 2, 2, 1, 3}));
+    }
+
+    @Test
+    void testOptimize_RequiresTriangles() {
+        Model model = new Model();
+        for (int i = 0; i < 4; i++) {
+            model.getVertices().add(new Vector3f(i, 0, 0));
+        }
+        Polygon quad = new Polygon();
+        quad.setVertexIndices(new ArrayList<>(Arrays.asList(0, 1, 2, 3)));
+        model.getPolygons().add(quad);
+
+        assertThrows(IllegalArgumentException.class, () -> new VertexCacheOptimizer().optimize(model));
+        assertThrows(IllegalArgumentException.class, () -> new VertexCacheOptimizer().optimize(null));
+    }
+
+    /**
+     * Сетка из треугольников в случайном порядке, вершины тоже перемешаны
+     */
+    private static Model shuffledGrid(int cells, long seed) {
+        Random random = new Random(seed);
+        int side = cells + 1;
+        int vertexCount = side * side;
+        List<Integer> vertexOrder = new ArrayList<>();
+        for (int i = 0; i < vertexCount; i++) {
+            vertexOrder.add(i);
+        }
+        Collections.shuffle(vertexOrder, random);
+        int[] slot = new int[vertexCount];
+        Vector3f[] vertices = new Vector3f[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            slot[vertexOrder.get(i)] = i;
+            vertices[i] = new Vector3f(vertexOrder.get(i) % side, vertexOrder.get(i) / side, 0);
+        }
+
+        ArrayList<Polygon> triangles = new ArrayList<>();
+        for (int y = 0; y < cells; y++) {
+            for (int x = 0; x < cells; x++) {
+                int v = y * side + x;
+                triangles.add(triangle(slot[v], slot[v + 1], slot[v + side + 1]));
+                triangles.add(triangle(slot[v], slot[v + side + 1], slot[v + side]));
+            }
+        }
+        Collections.shuffle(triangles, random);
+
+        Model model = new Model();
+        model.setVertices(new ArrayList<>(Arrays.asList(vertices)));
+        model.setPolygons(triangles);
+        return model;
+    }
+
+    private static Polygon triangle(int a, int b, int c) {
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(new ArrayList<>(Arrays.asList(a, b, c)));
+        return polygon;
+    }
+
+    private static int[] indices(Model model) {
+        int[] indices = new int[model.getPolygons().size() * 3];
+        int i = 0;
+        for (Polygon polygon : model.getPolygons()) {
+            for (int index : polygon.getVertexIndices()) {
+                indices[i++] = index;
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Треугольники по координатам вершин, начиная с наименьшей - обход сохраняется
+     */
+    private static List<String> triangleKeys(Model model) {
+        List<String> keys = new ArrayList<>();
+        for (Polygon polygon : model.getPolygons()) {
+            int[] corner = new int[3];
+            for (int c = 0; c < 3; c++) {
+                Vector3f v = model.getVertices().get(polygon.getVertexIndices().get(c));
+                corner[c] = (int) v.getY() * 1000 + (int) v.getX();
+            }
+            int first = 0;
+            for (int c = 1; c < 3; c++) {
+                if (corner[c] < corner[first]) {
+                    first = c;
+                }
+            }
+            keys.add(corner[first] + "," + corner[(first + 1) % 3] + "," + corner[(first + 2) % 3]);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,122 @@
+package com.cgvsu.render_engine.processing;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VertexWelderTest {
+
+    @Test
+    void testWeld_DuplicatedQuadsShareEdge() {
+        // Два квадрата, у каждого свои копии общих вершин (1, 2) и (4, 7)
+        Model model = new Model();
+        addVertices(model, new float[][]{
+                {0, 0, 0}, {1, 0, 0}, {1, 1, 0}, {0, 1, 0},
+                {1, 0, 0}, {2, 0, 0}, {2, 1, 0}, {1, 1, 0}
+        });
+        for (int i = 0; i < 8; i++) {
+            model.getTextureVertices().add(new Vector2f(i % 4 == 1 || i % 4 == 2 ? 1 : 0, i % 4 >= 2 ? 1 : 0));
+        }
+        model.getPolygons().add(polygon(new int[]{0, 1, 2, 3}, new int[]{0, 1, 2, 3}));
+        model.getPolygons().add(polygon(new int[]{4, 5, 6, 7}, new int[]{4, 5, 6, 7}));
+
+        VertexWelder welder = new VertexWelder();
+        VertexWelder.WeldReport report = welder.weld(model);
+
+        assertEquals(8, report.getVerticesBefore());
+        assertEquals(6, report.getVerticesAfter());
+        assertEquals(8, report.getTextureVerticesBefore());
+        assertEquals(4, report.getTextureVerticesAfter());
+        assertEquals(0, report.getDegeneratePolygonsRemoved());
+        assertEquals(0.25f, report.getVertexReduction(), 1e-6f);
+        assertSame(report, welder.getLastReport());
+
+        assertEquals(6, model.getVertices().size());
+        assertEquals(Arrays.asList(0, 1, 2, 3), model.getPolygons().get(0).getVertexIndices());
+        assertEquals(Arrays.asList(1, 4, 5, 2), model.getPolygons().get(1).getVertexIndices());
+        assertEquals(Arrays.asList(0, 1, 2, 3), model.getPolygons().get(1).getTextureVertexIndices());
+        // Слитые вершины указывают на те же координаты
+        for (Polygon polygon : model.getPolygons()) {
+            for (int index : polygon.getVertexIndices()) {
+                assertTrue(index < model.getVertices().size());
+            }
+        }
+        assertEquals(2.0f, model.getVertices().get(4).getX());
+    }
+
+    @Test
+    void testWeld_ToleranceAndDegeneratePolygons() {
+        Model model = new Model();
+        addVertices(model, new float[][]{
+                {0, 0, 0}, {1, 0, 0}, {0, 1, 0},
+                {1.0000001f, 0, 0}, {0, 1, 0}
+        });
+        model.getPolygons().add(polygon(new int[]{0, 1, 2}, null));
+        // После слияния остаются две разные вершины
+        model.getPolygons().add(polygon(new int[]{1, 3, 4}, null));
+
+        VertexWelder.WeldReport report = new VertexWelder(1e-3f).weld(model);
+
+        assertEquals(3, report.getVerticesAfter());
+        assertEquals(1, report.getDegeneratePolygonsRemoved());
+        assertEquals(1, model.getPolygons().size());
+        assertEquals(Arrays.asList(0, 1, 2), model.getPolygons().get(0).getVertexIndices());
+    }
+
+    @Test
+    void testWeld_MismatchedStreamsAreRemappedIndependently() {
+        Model model = new Model();
+        addVertices(model, new float[][]{{0, 0, 0}, {1, 0, 0}, {0, 1, 0}, {1, 1, 0}});
+        model.getNormals().add(new Vector3f(0, 0, 1));
+        model.getNormals().add(new Vector3f(0, 0, 1));
+        model.getNormals().add(new Vector3f(0, 1, 0));
+        Polygon polygon = polygon(new int[]{0, 1, 3, 2}, null);
+        // Нормалей меньше, чем вершин
+        polygon.setNormalIndices(new ArrayList<>(Arrays.asList(1, 2, 0)));
+        model.getPolygons().add(polygon);
+
+        VertexWelder.WeldReport report = new VertexWelder().weld(model);
+
+        assertEquals(2, report.getNormalsAfter());
+        assertEquals(Arrays.asList(0, 1, 0), model.getPolygons().get(0).getNormalIndices());
+        for (int index : model.getPolygons().get(0).getNormalIndices()) {
+            assertTrue(index < model.getNormals().size());
+        }
+    }
+
+    @Test
+    void testWeld_InvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new VertexWelder(0.0f));
+        assertThrows(IllegalArgumentException.class, () -> new VertexWelder().weld(null));
+    }
+
+    private static void addVertices(Model model, float[][] vertices) {
+        for (float[] v : vertices) {
+            model.getVertices().add(new Vector3f(v[0], v[1], v[2]));
+        }
+    }
+
+    private static Polygon polygon(int[] vertices, int[] textures) {
+        Polygon polygon = new Polygon();
+        ArrayList<Integer> vertexIndices = new ArrayList<>();
+        for (int index : vertices) {
+            vertexIndices.add(index);
+        }
+        polygon.setVertexIndices(vertexIndices);
+        if (textures != null) {
+            ArrayList<Integer> textureIndices = new ArrayList<>();
+            for (int index : textures) {
+                textureIndices.add(index);
+            }
+            polygon.setTextureVertexIndices(textureIndices);
+        }
+        return polygon;
+    }
+}
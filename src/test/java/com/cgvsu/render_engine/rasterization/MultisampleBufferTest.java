@@ -0,0 +1,90 @@
+package com.cgvsu.render_engine.rasterization;
+
+import com.cgvsu.math.Vector2f;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultisampleBufferTest {
+
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 8;
+    private static final int BLACK = 0xFF000000;
+
+    private final TriangleRasterizer rasterizer = new TriangleRasterizer();
+
+    @Test
+    void testResolve_HalfCoveredEdgePixelBlends() {
+        // У всех шаблонов половина образцов левее центра пикселя, половина правее
+        for (int samples : new int[]{2, 4, 8}) {
+            MultisampleBuffer buffer = new MultisampleBuffer(WIDTH, HEIGHT, samples);
+            buffer.clear(BLACK);
+            fillLeftOf(buffer, 5, Color.WHITE);
+
+            FrameBuffer frame = new FrameBuffer(WIDTH, HEIGHT);
+            buffer.resolve(frame);
+
+            // Правый край прямоугольника проходит через центр пикселя x = 5
+            assertEquals(0xFF808080, frame.getArgb(5, 4), "samples " + samples);
+            assertEquals(0xFFFFFFFF, frame.getArgb(4, 4), "samples " + samples);
+            assertEquals(BLACK, frame.getArgb(6, 4), "samples " + samples);
+        }
+    }
+
+    @Test
+    void testResolve_UniformPixelCopiedUnchanged() {
+        MultisampleBuffer buffer = new MultisampleBuffer(WIDTH, HEIGHT, 4);
+        // Полупрозрачный предумноженный цвет: при усреднении округление могло бы его изменить
+        int translucent = 0x80402011;
+        buffer.clear(translucent);
+        fillLeftOf(buffer, 5, Color.rgb(200, 100, 50));
+
+        FrameBuffer frame = new FrameBuffer(WIDTH, HEIGHT);
+        buffer.resolve(frame);
+
+        assertEquals(FrameBuffer.toArgb(Color.rgb(200, 100, 50)), frame.getArgb(2, 4));
+        assertEquals(translucent, frame.getArgb(8, 4));
+        assertEquals(translucent, frame.getArgb(6, 0));
+    }
+
+    @Test
+    void testWritePixel_OnlySamplesInFrontOfLine() {
+        MultisampleBuffer buffer = new MultisampleBuffer(WIDTH, HEIGHT, 4);
+        buffer.clear(BLACK);
+        // Поверхность на глубине 0.5 в левой половине пикселя (5, 4)
+        rasterizer.rasterizeTriangleMultisample(new Vector2f(-10, -10), new Vector2f(5, -10),
+                new Vector2f(5, 20), 0.5f, 0.5f, 0.5f, buffer, Color.BLACK);
+        rasterizer.rasterizeTriangleMultisample(new Vector2f(-10, -10), new Vector2f(5, 20),
+                new Vector2f(-10, 20), 0.5f, 0.5f, 0.5f, buffer, Color.BLACK);
+
+        // Линия за поверхностью видна только в непокрытых образцах
+        buffer.writePixel(5, 4, 0.7f, 0xFFFFFFFF, false);
+        FrameBuffer frame = new FrameBuffer(WIDTH, HEIGHT);
+        buffer.resolve(frame);
+        assertEquals(0xFF808080, frame.getArgb(5, 4));
+
+        ZBuffer depth = new ZBuffer(WIDTH, HEIGHT);
+        buffer.resolveDepth(depth);
+        assertEquals(0.5, depth.getDepth(5, 4), 1e-6);
+        assertEquals(Float.MAX_VALUE, (float) depth.getDepth(6, 4));
+    }
+
+    @Test
+    void testConstructor_InvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new MultisampleBuffer(WIDTH, HEIGHT, 3));
+        assertThrows(IllegalArgumentException.class, () -> new MultisampleBuffer(0, HEIGHT, 4));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MultisampleBuffer(WIDTH, HEIGHT, 4).resolve(new FrameBuffer(WIDTH + 1, HEIGHT)));
+    }
+
+    /**
+     * Прямоугольник из двух треугольников с правым краем x = edgeX
+     */
+    private void fillLeftOf(MultisampleBuffer buffer, float edgeX, Color color) {
+        rasterizer.rasterizeTriangleMultisample(new Vector2f(-10, -10), new Vector2f(edgeX, -10),
+                new Vector2f(edgeX, 20), 0.5f, 0.5f, 0.5f, buffer, color);
+        rasterizer.rasterizeTriangleMultisample(new Vector2f(-10, -10), new Vector2f(edgeX, 20),
+                new Vector2f(-10, 20), 0.5f, 0.5f, 0.5f, buffer, color);
+    }
+}
@@ -1,7 +1,161 @@
 package com.cgvsu.render_engine.rasterization;
 
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.render_engine.lighting.Material;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class TriangleRasterizerTest {
 
-}
\ No newline at end of file
+    private static final int VECTOR_WIDTH = 67;
+    private static final int VECTOR_HEIGHT = 45;
+
+    private final TriangleRasterizer rasterizer = new TriangleRasterizer();
+
+    private static RasterTriangle triangle(float z) {
+        RasterTriangle t = new RasterTriangle();
+        t.setScreen(new Vector2f(0, 0), z, new Vector2f(7, 0), z, new Vector2f(0, 7), z);
+        return t;
+    }
+
+    @Test
+    void testSolidKernelFillsCoveredPixelsOnly() {
+        FrameBuffer frameBuffer = new FrameBuffer(8, 8);
+        ZBuffer zBuffer = new ZBuffer(8, 8);
+
+        rasterizer.rasterize(RasterKernel.SOLID, triangle(0.5f), new Material(Color.RED), null,
+                frameBuffer, zBuffer, false);
+
+        int red = FrameBuffer.toArgb(Color.RED);
+        assertEquals(red, frameBuffer.getArgb(1, 1));
+        assertEquals(0, frameBuffer.getArgb(7, 7));
+        assertEquals(0.5, zBuffer.getDepth(1, 1), 1e-6);
+    }
+
+    @Test
+    void testDepthPrePassShadesOnlyNearestTriangle() {
+        FrameBuffer frameBuffer = new FrameBuffer(8, 8);
+        ZBuffer zBuffer = new ZBuffer(8, 8);
+        RasterTriangle near = triangle(0.2f);
+        RasterTriangle far = triangle(0.8f);
+
+        rasterizer.rasterizeDepth(near, zBuffer);
+        rasterizer.rasterizeDepth(far, zBuffer);
+        long depthWrites = zBuffer.getWriteCount();
+
+        rasterizer.rasterize(RasterKernel.SOLID, near, new Material(Color.BLUE), null,
+                frameBuffer, zBuffer, true);
+        rasterizer.rasterize(RasterKernel.SOLID, far, new Material(Color.RED), null,
+                frameBuffer, zBuffer, true);
+
+        assertEquals(FrameBuffer.toArgb(Color.BLUE), frameBuffer.getArgb(1, 1));
+        assertEquals(depthWrites, zBuffer.getWriteCount());
+    }
+
+    @Test
+    void testKernelWithoutTexture() {
+        assertEquals(RasterKernel.SOLID, RasterKernel.TEXTURED_BILINEAR.withoutTexture());
+        assertEquals(RasterKernel.LIT_SMOOTH, RasterKernel.LIT_TEXTURED_SMOOTH_NEAREST.withoutTexture());
+        assertEquals(RasterKernel.LIT_FLAT, RasterKernel.select(true, false, false, true));
+        assertFalse(RasterKernel.SOLID.isLit());
+    }
+
+    @Test
+    void testVectorDepthMatchesScalar() {
+        assumeTrue(TriangleRasterizer.isVectorSupported(), "jdk.incubator.vector is not available");
+        RasterTriangle[] triangles = randomTriangles();
+
+        ZBuffer scalar = new ZBuffer(VECTOR_WIDTH, VECTOR_HEIGHT);
+        rasterizer.setVectorized(false);
+        for (RasterTriangle t : triangles) {
+            rasterizer.rasterizeDepth(t, scalar);
+        }
+        ZBuffer vector = new ZBuffer(VECTOR_WIDTH, VECTOR_HEIGHT);
+        rasterizer.setVectorized(true);
+        for (RasterTriangle t : triangles) {
+            rasterizer.rasterizeDepth(t, vector);
+        }
+
+        assertArrayEquals(scalar.getDepthArray(), vector.getDepthArray());
+        assertEquals(scalar.getWriteCount(), vector.getWriteCount());
+    }
+
+    @Test
+    void testVectorVisibilityMatchesScalar() {
+        assumeTrue(TriangleRasterizer.isVectorSupported(), "jdk.incubator.vector is not available");
+        RasterTriangle[] triangles = randomTriangles();
+
+        VisibilityBuffer scalar = new VisibilityBuffer(VECTOR_WIDTH, VECTOR_HEIGHT);
+        ZBuffer scalarDepth = new ZBuffer(VECTOR_WIDTH, VECTOR_HEIGHT);
+        rasterizer.setVectorized(false);
+        for (int i = 0; i < triangles.length; i++) {
+            rasterizer.rasterizeVisibility(triangles[i], i, scalar, scalarDepth);
+        }
+        VisibilityBuffer vector = new VisibilityBuffer(VECTOR_WIDTH, VECTOR_HEIGHT);
+        ZBuffer vectorDepth = new ZBuffer(VECTOR_WIDTH, VECTOR_HEIGHT);
+        rasterizer.setVectorized(true);
+        for (int i = 0; i < triangles.length; i++) {
+            rasterizer.rasterizeVisibility(triangles[i], i, vector, vectorDepth);
+        }
+
+        assertArrayEquals(scalar.getTriangleIds(), vector.getTriangleIds());
+        assertArrayEquals(scalar.getBarycentric1(), vector.getBarycentric1());
+        assertArrayEquals(scalar.getBarycentric2(), vector.getBarycentric2());
+        assertArrayEquals(scalarDepth.getDepthArray(), vectorDepth.getDepthArray());
+        assertEquals(scalarDepth.getWriteCount(), vectorDepth.getWriteCount());
+    }
+
+    @Test
+    void testVectorSolidKernelMatchesScalar() {
+        assumeTrue(TriangleRasterizer.isVectorSupported(), "jdk.incubator.vector is not available");
+        RasterTriangle[] triangles = randomTriangles();
+        Material[] materials = {new Material(Color.RED), new Material(Color.GREEN), new Material(Color.BLUE)};
+
+        FrameBuffer scalar = new FrameBuffer(VECTOR_WIDTH, VECTOR_HEIGHT);
+        ZBuffer scalarDepth = new ZBuffer(VECTOR_WIDTH, VECTOR_HEIGHT);
+        rasterizer.setVectorized(false);
+        for (int i = 0; i < triangles.length; i++) {
+            rasterizer.rasterize(RasterKernel.SOLID, triangles[i], materials[i % 3], null,
+                    scalar, scalarDepth, false);
+        }
+        FrameBuffer vector = new FrameBuffer(VECTOR_WIDTH, VECTOR_HEIGHT);
+        ZBuffer vectorDepth = new ZBuffer(VECTOR_WIDTH, VECTOR_HEIGHT);
+        rasterizer.setVectorized(true);
+        for (int i = 0; i < triangles.length; i++) {
+            rasterizer.rasterize(RasterKernel.SOLID, triangles[i], materials[i % 3], null,
+                    vector, vectorDepth, false);
+        }
+
+        assertArrayEquals(scalar.getPixels(), vector.getPixels());
+        assertArrayEquals(scalarDepth.getDepthArray(), vectorDepth.getDepthArray());
+    }
+
+    /**
+     * Перекрывающиеся треугольники разного размера, часть выходит за край буфера;
+     * ширина буфера не кратна длине вектора
+     */
+    private static RasterTriangle[] randomTriangles() {
+        Random random = new Random(12345);
+        RasterTriangle[] triangles = new RasterTriangle[200];
+        for (int i = 0; i < triangles.length; i++) {
+            float cx = random.nextFloat() * (VECTOR_WIDTH + 20) - 10;
+            float cy = random.nextFloat() * (VECTOR_HEIGHT + 20) - 10;
+            float size = 1 + random.nextFloat() * (i % 10 == 0 ? 60 : 15);
+            RasterTriangle t = new RasterTriangle();
+            t.setScreen(
+                    cx + (random.nextFloat() - 0.5f) * size, cy + (random.nextFloat() - 0.5f) * size,
+                    random.nextFloat(),
+                    cx + (random.nextFloat() - 0.5f) * size, cy + (random.nextFloat() - 0.5f) * size,
+                    random.nextFloat(),
+                    cx + (random.nextFloat() - 0.5f) * size, cy + (random.nextFloat() - 0.5f) * size,
+                    random.nextFloat());
+            triangles[i] = t;
+        }
+        return triangles;
+    }
+}
@@ -0,0 +1,127 @@
+package com.cgvsu.render_engine.rendering;
+
+import com.cgvsu.math.Matrix4f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import com.cgvsu.render_engine.GraphicConveyor;
+import com.cgvsu.render_engine.lighting.LightSource;
+import com.cgvsu.render_engine.lighting.ShadowMap;
+import com.cgvsu.render_engine.rasterization.TriangleRasterizer;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShadowMapCacheTest {
+
+    private static final int SIZE = 128;
+
+    private ShadowMapCache cache;
+    private TriangleRasterizer rasterizer;
+    private LightSource sun;
+    private List<LightSource> lights;
+    private List<Model> models;
+    private List<Matrix4f> matrices;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ShadowMapCache();
+        rasterizer = new TriangleRasterizer();
+        sun = new LightSource(LightSource.LightType.DIRECTIONAL, new Vector3f(0, 0, 0),
+                new Vector3f(0, -1, 0), Color.WHITE, 1.0f);
+        lights = List.of(sun);
+        // Пол y = 0 и навес y = 1 над квадратом [-1, 1] x [-1, 1]
+        models = List.of(quad(3, 0), quad(1, 1));
+        matrices = new ArrayList<>(List.of(GraphicConveyor.rotateScaleTranslate(),
+                GraphicConveyor.rotateScaleTranslate()));
+    }
+
+    @Test
+    void testUpdate_SameFrameUsesCachedMap() {
+        ShadowMap first = update()[0];
+        assertEquals(1, cache.getRenderCount());
+
+        // Те же источник и модели, но новые объекты матриц
+        matrices.set(1, GraphicConveyor.rotateScaleTranslate());
+        ShadowMap second = update()[0];
+
+        assertEquals(1, cache.getRenderCount());
+        assertSame(first, second);
+    }
+
+    @Test
+    void testUpdate_CasterMatrixChangeRebuildsMap() {
+        update();
+        matrices.set(1, GraphicConveyor.rotateScaleTranslate(1, 1, 1, 0, 0, 0, 0.5f, 0, 0));
+        update();
+        assertEquals(2, cache.getRenderCount());
+
+        update();
+        assertEquals(2, cache.getRenderCount());
+    }
+
+    @Test
+    void testUpdate_LightDirectionChangeRebuildsMap() {
+        update();
+        sun.setDirection(new Vector3f(0.2f, -1, 0));
+        update();
+        assertEquals(2, cache.getRenderCount());
+    }
+
+    @Test
+    void testVisibility_PointBehindOccluderShadowed() {
+        ShadowMap map = update()[0];
+        assertNotNull(map);
+
+        // Под навесом, на открытом полу и на самом навесе
+        assertEquals(0.0f, map.visibility(0, 0, 0, 0, 1, 0), 1e-6f);
+        assertEquals(0.0f, map.visibility(0.5f, 0, -0.5f, 0, 1, 0), 1e-6f);
+        assertEquals(1.0f, map.visibility(2.5f, 0, 0, 0, 1, 0), 1e-6f);
+        assertEquals(1.0f, map.visibility(0, 1, 0, 0, 1, 0), 1e-6f);
+    }
+
+    @Test
+    void testUpdate_PointAndAmbientLightsWithoutMaps() {
+        LightSource ambient = new LightSource(LightSource.LightType.AMBIENT, new Vector3f(0, 0, 0),
+                new Vector3f(0, -1, 0), Color.WHITE, 0.2f);
+        LightSource point = new LightSource(LightSource.LightType.POINT, new Vector3f(0, 3, 0),
+                new Vector3f(0, -1, 0), Color.WHITE, 1.0f);
+        lights = List.of(ambient, point, sun);
+
+        ShadowMap[] maps = update();
+
+        // Фоновый источник пропускается, точечный - без карты
+        assertEquals(2, maps.length);
+        assertNull(maps[0]);
+        assertNotNull(maps[1]);
+    }
+
+    private ShadowMap[] update() {
+        return cache.update(lights, models, matrices, SIZE, 1, rasterizer);
+    }
+
+    /**
+     * Горизонтальный квадрат [-half, half] x [-half, half] на высоте y из двух треугольников
+     */
+    private static Model quad(float half, float y) {
+        Model model = new Model();
+        model.getVertices().add(new Vector3f(-half, y, -half));
+        model.getVertices().add(new Vector3f(half, y, -half));
+        model.getVertices().add(new Vector3f(half, y, half));
+        model.getVertices().add(new Vector3f(-half, y, half));
+        model.getPolygons().add(triangle(0, 1, 2));
+        model.getPolygons().add(triangle(0, 2, 3));
+        return model;
+    }
+
+    private static Polygon triangle(int i1, int i2, int i3) {
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(new ArrayList<>(List.of(i1, i2, i3)));
+        return polygon;
+    }
+}
@@ -0,0 +1,124 @@
+package com.cgvsu.render_engine.rendering;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import com.cgvsu.render_engine.Camera;
+import com.cgvsu.render_engine.processing.LodSet;
+import com.cgvsu.render_engine.processing.ModelProcessor;
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnifiedRendererTest {
+
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 64;
+
+    private RenderSettings settings;
+    private Camera camera;
+    private Model model;
+
+    @BeforeEach
+    void setUp() {
+        settings = new RenderSettings();
+        settings.setUseLighting(true);
+        settings.setUseTexture(false);
+        settings.setDeferredShading(true);
+        settings.setMsaaSamples(1);
+        camera = new Camera(new Vector3f(0.2f, 0.3f, 2.0f), new Vector3f(0, 0, 0), 1.5f, 1, 0.1f, 100);
+        model = pyramid();
+    }
+
+    @Test
+    void testReshade_SameSettingsReuseGBuffer() {
+        UnifiedRenderer renderer = new UnifiedRenderer(settings);
+        FrameBuffer frame = new FrameBuffer(WIDTH, HEIGHT);
+
+        renderer.render(frame, camera, model);
+
+        assertTrue(renderer.canReshade(WIDTH, HEIGHT, camera, model, settings, null));
+        camera.setPosition(new Vector3f(0.3f, 0.3f, 2.0f));
+        assertFalse(renderer.canReshade(WIDTH, HEIGHT, camera, model, settings, null));
+    }
+
+    @Test
+    void testReshade_MsaaSwitchRendersNewFrame() {
+        UnifiedRenderer renderer = new UnifiedRenderer(settings);
+        FrameBuffer frame = new FrameBuffer(WIDTH, HEIGHT);
+        renderer.render(frame, camera, model);
+        int[] deferred = frame.getPixels().clone();
+
+        settings.setMsaaSamples(4);
+        assertFalse(renderer.canReshade(WIDTH, HEIGHT, camera, model, settings, null));
+        renderer.render(frame, camera, model);
+
+        // Тот же кадр с MSAA у нового рендерера, без G-буфера прошлого кадра
+        FrameBuffer expected = new FrameBuffer(WIDTH, HEIGHT);
+        new UnifiedRenderer(settings).render(expected, camera, model);
+        assertArrayEquals(expected.getPixels(), frame.getPixels());
+        assertFalse(Arrays.equals(deferred, frame.getPixels()));
+    }
+
+    @Test
+    void testReshade_DeferredShadingOffRendersNewFrame() {
+        UnifiedRenderer renderer = new UnifiedRenderer(settings);
+        renderer.render(new FrameBuffer(WIDTH, HEIGHT), camera, model);
+
+        settings.setDeferredShading(false);
+        assertFalse(renderer.canReshade(WIDTH, HEIGHT, camera, model, settings, null));
+        settings.setDeferredShading(true);
+        settings.setUseZBuffer(false);
+        assertFalse(renderer.canReshade(WIDTH, HEIGHT, camera, model, settings, null));
+    }
+
+    @Test
+    void testRender_DistantModelUsesCoarseLod() {
+        LodSet lodSet = LodSet.build(model, new float[]{1.0f, 0.5f});
+        model.setLodSet(lodSet);
+        Model coarse = lodSet.getLevel(1);
+        assertTrue(coarse.getPolygons().size() < model.getPolygons().size());
+
+        // Пирамида радиусом около 0.7 с расстояния 2 занимает на экране около 12 пикселей
+        FrameBuffer frame = new FrameBuffer(WIDTH, HEIGHT);
+        new UnifiedRenderer(settings).render(frame, camera, model);
+        FrameBuffer expected = new FrameBuffer(WIDTH, HEIGHT);
+        new UnifiedRenderer(settings).render(expected, camera, coarse);
+        assertArrayEquals(expected.getPixels(), frame.getPixels());
+
+        // Вплотную - полная модель
+        lodSet.setFullDetailRadius(1.0f);
+        new UnifiedRenderer(settings).render(frame, camera, model);
+        model.setLodSet(null);
+        new UnifiedRenderer(settings).render(expected, camera, model);
+        assertArrayEquals(expected.getPixels(), frame.getPixels());
+    }
+
+    /**
+     * Четырехгранная пирамида с основанием, триангулированная и с нормалями
+     */
+    private static Model pyramid() {
+        Model pyramid = new Model();
+        pyramid.getVertices().add(new Vector3f(-0.5, -0.4, -0.5));
+        pyramid.getVertices().add(new Vector3f(0.5, -0.4, -0.5));
+        pyramid.getVertices().add(new Vector3f(0.5, -0.4, 0.5));
+        pyramid.getVertices().add(new Vector3f(-0.5, -0.4, 0.5));
+        pyramid.getVertices().add(new Vector3f(0, 0.5, 0));
+        int[][] faces = {{0, 1, 2, 3}, {3, 2, 4}, {2, 1, 4}, {1, 0, 4}, {0, 3, 4}};
+        for (int[] face : faces) {
+            Polygon polygon = new Polygon();
+            ArrayList<Integer> indices = new ArrayList<>();
+            for (int index : face) {
+                indices.add(index);
+            }
+            polygon.setVertexIndices(indices);
+            pyramid.getPolygons().add(polygon);
+        }
+        return new ModelProcessor().processModel(pyramid);
+    }
+}
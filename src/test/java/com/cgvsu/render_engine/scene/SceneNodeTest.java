@@ -0,0 +1,112 @@
+package com.cgvsu.render_engine.scene;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SceneNodeTest {
+
+    private SceneNode root;
+    private SceneNode group;
+    private SceneNode left;
+    private SceneNode right;
+
+    @BeforeEach
+    void setUp() {
+        // root -> group -> (left в начале координат, right в x = 10); у моделей радиус 1
+        root = new SceneNode("root");
+        group = root.addChild(new SceneNode("group"));
+        left = group.addChild(new SceneNode("left", segment()));
+        right = group.addChild(new SceneNode("right", segment()));
+        right.setPosition(10, 0, 0);
+        root.updateWorld();
+    }
+
+    @Test
+    void testUpdateWorld_MovingNodeLeavesSiblingsUntouched() {
+        long leftVersion = left.getWorldVersion();
+        long rightVersion = right.getWorldVersion();
+        long groupVersion = group.getWorldVersion();
+
+        left.setPosition(0, 5, 0);
+        assertTrue(root.isDirty());
+        root.updateWorld();
+
+        assertTrue(left.getWorldVersion() > leftVersion);
+        assertEquals(rightVersion, right.getWorldVersion());
+        assertEquals(groupVersion, group.getWorldVersion());
+        assertFalse(root.isDirty());
+        assertEquals(5.0f, left.getBoundsCenter().getY(), 1e-5f);
+        assertContains(root, left);
+        assertContains(root, right);
+    }
+
+    @Test
+    void testUpdateWorld_ParentMoveUpdatesChildren() {
+        group.setPosition(0, 0, 3);
+        root.updateWorld();
+
+        assertEquals(3.0f, left.getWorldPosition().getZ(), 1e-5f);
+        assertEquals(3.0f, right.getBoundsCenter().getZ(), 1e-5f);
+        assertEquals(10.0f, right.getBoundsCenter().getX(), 1e-5f);
+    }
+
+    @Test
+    void testRemoveChild_ShrinksAncestorBounds() {
+        assertEquals(6.0f, root.getSubtreeRadius(), 1e-4f);
+
+        group.removeChild(right);
+        root.updateWorld();
+
+        assertNull(right.getParent());
+        assertEquals(1.0f, group.getSubtreeRadius(), 1e-4f);
+        assertEquals(1.0f, root.getSubtreeRadius(), 1e-4f);
+        assertEquals(0.0f, root.getSubtreeCenter().getX(), 1e-4f);
+
+        group.removeChild(left);
+        root.updateWorld();
+
+        assertTrue(root.getSubtreeRadius() < 0);
+    }
+
+    @Test
+    void testAddChild_ReparentsAndGrowsBounds() {
+        SceneNode other = root.addChild(new SceneNode("other"));
+        other.setPosition(0, 0, -20);
+        other.addChild(right);
+        root.updateWorld();
+
+        assertEquals(1, group.getChildren().size());
+        assertSame(other, right.getParent());
+        assertEquals(1.0f, group.getSubtreeRadius(), 1e-4f);
+        assertEquals(-20.0f, right.getBoundsCenter().getZ(), 1e-4f);
+        assertContains(root, left);
+        assertContains(root, right);
+    }
+
+    @Test
+    void testAddChild_RejectsCycles() {
+        assertThrows(IllegalArgumentException.class, () -> left.addChild(root));
+        assertThrows(IllegalArgumentException.class, () -> group.addChild(group));
+        assertThrows(IllegalArgumentException.class, () -> group.addChild(null));
+    }
+
+    /**
+     * Отрезок от (-1, 0, 0) до (1, 0, 0): сфера радиуса 1 вокруг начала координат
+     */
+    private static Model segment() {
+        Model model = new Model();
+        model.getVertices().add(new Vector3f(-1, 0, 0));
+        model.getVertices().add(new Vector3f(1, 0, 0));
+        return model;
+    }
+
+    private static void assertContains(SceneNode ancestor, SceneNode node) {
+        float distance = (float) node.getBoundsCenter().subtract(ancestor.getSubtreeCenter()).length();
+        assertTrue(distance + node.getBoundsRadius() <= ancestor.getSubtreeRadius() + 1e-4f,
+                node.getName() + " is outside of " + ancestor.getName());
+    }
+}
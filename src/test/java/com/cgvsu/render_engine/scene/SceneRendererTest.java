@@ -0,0 +1,113 @@
+package com.cgvsu.render_engine.scene;
+
+import com.cgvsu.math.Transform;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import com.cgvsu.render_engine.Camera;
+import com.cgvsu.render_engine.lighting.Material;
+import com.cgvsu.render_engine.processing.ModelProcessor;
+import com.cgvsu.render_engine.rasterization.FrameBuffer;
+import com.cgvsu.render_engine.rendering.RenderSettings;
+import com.cgvsu.render_engine.rendering.UnifiedRenderer;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SceneRendererTest {
+
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 64;
+
+    private SceneRenderer sceneRenderer;
+    private RenderSettings settings;
+    private Camera camera;
+    private Model model;
+    private Material material;
+
+    @BeforeEach
+    void setUp() {
+        settings = new RenderSettings();
+        settings.setUseLighting(true);
+        settings.setUseTexture(false);
+        settings.setDeferredShading(true);
+        settings.setMsaaSamples(1);
+        settings.setSolidColor(Color.CORAL);
+        sceneRenderer = new SceneRenderer();
+        sceneRenderer.getRenderer().setRenderSettings(settings);
+        camera = new Camera(new Vector3f(0.2f, 0.3f, 2.0f), new Vector3f(0, 0, 0), 1.5f, 1, 0.1f, 100);
+        model = pyramid();
+
+        // Как у потока рендера: модель одним экземпляром без преобразования
+        material = new Material(settings.getSolidColor());
+        ModelInstances instances = new ModelInstances(model);
+        instances.addInstance(new Transform());
+        instances.setMaterial(material);
+        sceneRenderer.getScene().addInstances(instances);
+    }
+
+    @Test
+    void testRenderScene_SingleModelMatchesRender() {
+        FrameBuffer frame = new FrameBuffer(WIDTH, HEIGHT);
+        assertTrue(sceneRenderer.renderScene(frame, camera));
+
+        FrameBuffer expected = new FrameBuffer(WIDTH, HEIGHT);
+        new UnifiedRenderer(settings).render(expected, camera, model);
+        assertArrayEquals(expected.getPixels(), frame.getPixels());
+    }
+
+    @Test
+    void testCanReshade_SingleModelReusesGBuffer() {
+        FrameBuffer frame = new FrameBuffer(WIDTH, HEIGHT);
+        sceneRenderer.renderScene(frame, camera);
+        assertTrue(sceneRenderer.canReshade(WIDTH, HEIGHT, camera, settings));
+
+        // Поменялся только цвет: кадр из G-буфера совпадает с нарисованным заново
+        material.setBaseColor(Color.STEELBLUE);
+        settings.setSolidColor(Color.STEELBLUE);
+        sceneRenderer.renderScene(frame, camera);
+        FrameBuffer expected = new FrameBuffer(WIDTH, HEIGHT);
+        new UnifiedRenderer(settings).render(expected, camera, model);
+        assertArrayEquals(expected.getPixels(), frame.getPixels());
+
+        camera.setPosition(new Vector3f(0.3f, 0.3f, 2.0f));
+        assertFalse(sceneRenderer.canReshade(WIDTH, HEIGHT, camera, settings));
+    }
+
+    @Test
+    void testCanReshade_SeveralModelsRenderNewFrame() {
+        Model second = pyramid();
+        second.getTransform().setPosition(new Vector3f(0.6f, 0, -1));
+        sceneRenderer.addModel(second);
+
+        sceneRenderer.renderScene(new FrameBuffer(WIDTH, HEIGHT), camera);
+        assertFalse(sceneRenderer.canReshade(WIDTH, HEIGHT, camera, settings));
+    }
+
+    /**
+     * Четырехгранная пирамида с основанием, триангулированная и с нормалями
+     */
+    private static Model pyramid() {
+        Model pyramid = new Model();
+        pyramid.getVertices().add(new Vector3f(-0.5, -0.4, -0.5));
+        pyramid.getVertices().add(new Vector3f(0.5, -0.4, -0.5));
+        pyramid.getVertices().add(new Vector3f(0.5, -0.4, 0.5));
+        pyramid.getVertices().add(new Vector3f(-0.5, -0.4, 0.5));
+        pyramid.getVertices().add(new Vector3f(0, 0.5, 0));
+        int[][] faces = {{0, 1, 2, 3}, {3, 2, 4}, {2, 1, 4}, {1, 0, 4}, {0, 3, 4}};
+        for (int[] face : faces) {
+            Polygon polygon = new Polygon();
+            ArrayList<Integer> indices = new ArrayList<>();
+            for (int index : face) {
+                indices.add(index);
+            }
+            polygon.setVertexIndices(indices);
+            pyramid.getPolygons().add(polygon);
+        }
+        return new ModelProcessor().processModel(pyramid);
+    }
+}